@@ -353,12 +353,17 @@ public class MessageArrayCompressedReader {
 
       //// numeric fields
 
-      // if dataWidth == 0, just use min value, otherwise read the compressed value here
+      // if dataWidth == 0, just use min value, otherwise read the compressed values here
+      long[] compressedValues = null;
+      if (dataWidth > 0) {
+        compressedValues = new long[this.ndatasets];
+        reader.bits2UInt(dataWidth, compressedValues, 0, this.ndatasets);
+      }
       for (int dataset = 0; dataset < this.ndatasets; dataset++) {
         long value = dataMin; // using an "unsigned long" presumably as widest needed?
 
         if (dataWidth > 0) {
-          long cv = reader.bits2UInt(dataWidth);
+          long cv = compressedValues[dataset];
           if (BufrNumbers.isMissing(cv, dataWidth)) {
             value = BufrNumbers.missingValue(useBitWidth); // set to missing value
           } else { // add to minimum
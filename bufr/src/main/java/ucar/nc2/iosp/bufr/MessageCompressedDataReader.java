@@ -402,12 +402,17 @@ public class MessageCompressedDataReader {
 
       // numeric fields
 
-      // if dataWidth == 0, just use min value, otherwise read the compressed value here
+      // if dataWidth == 0, just use min value, otherwise read the compressed values here
+      long[] compressedValues = null;
+      if (dataWidth > 0) {
+        compressedValues = new long[ndatasets];
+        reader.bits2UInt(dataWidth, compressedValues, 0, ndatasets);
+      }
       for (int dataset = 0; dataset < ndatasets; dataset++) {
         long value = dataMin;
 
         if (dataWidth > 0) {
-          long cv = reader.bits2UInt(dataWidth);
+          long cv = compressedValues[dataset];
           if (BufrNumbers.isMissing(cv, dataWidth))
             value = BufrNumbers.missingValue(useBitWidth); // set to missing value
           else // add to minimum
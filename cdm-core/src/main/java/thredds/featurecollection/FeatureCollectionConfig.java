@@ -439,6 +439,7 @@ public class FeatureCollectionConfig {
     public boolean intvMerge = intvMergeDef;
     public boolean useCenter = useCenterDef;
     public boolean unionRuntimeCoord;
+    public boolean useDataCache = true; // use GribDataCache, if set
 
     public GribIntvFilter intvFilter;
     public TimeUnitConverterHash tuc;
@@ -561,6 +562,10 @@ public class FeatureCollectionConfig {
         unionRuntimeCoord = true;
         return true;
       }
+      if (name.equalsIgnoreCase("dataCache")) {
+        useDataCache = !value.equalsIgnoreCase("false");
+        return true;
+      }
       return false;
     }
 
@@ -678,6 +683,8 @@ public class FeatureCollectionConfig {
         f.format(" useCenter=%s", useCenter);
       if (userTimeUnit != null)
         f.format(" userTimeUnit= %s", userTimeUnit);
+      if (!useDataCache)
+        f.format(" useDataCache=false");
       f.format("%n");
       if (gdsHash != null)
         f.format("  gdsHash=%s%n", gdsHash);
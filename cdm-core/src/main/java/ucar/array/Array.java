@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Objects;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Superclass for implementations of multidimensional arrays. */
@@ -37,6 +38,77 @@ public abstract class Array<T> implements Iterable<T> {
     return this.get(this.getIndex());
   }
 
+  /**
+   * Get the element indicated by the list of multidimensional indices as a double, without boxing.
+   * Same as ((Number) get(index)).doubleValue(), only for numeric types.
+   */
+  public double getDouble(int... index) {
+    return getDoubleElement(indexFn.get(index));
+  }
+
+  /** Get the element indicated by Index as a double, without boxing. Only for numeric types. */
+  public double getDouble(Index index) {
+    return getDouble(index.getCurrentIndex());
+  }
+
+  /**
+   * Get the element indicated by the list of multidimensional indices as a float, without boxing.
+   * Same as ((Number) get(index)).floatValue(), only for numeric types.
+   */
+  public float getFloat(int... index) {
+    return getFloatElement(indexFn.get(index));
+  }
+
+  /** Get the element indicated by Index as a float, without boxing. Only for numeric types. */
+  public float getFloat(Index index) {
+    return getFloat(index.getCurrentIndex());
+  }
+
+  /**
+   * Get the element indicated by the list of multidimensional indices as an int, without boxing.
+   * Same as ((Number) get(index)).intValue(), only for numeric types.
+   */
+  public int getInt(int... index) {
+    return getIntElement(indexFn.get(index));
+  }
+
+  /** Get the element indicated by Index as an int, without boxing. Only for numeric types. */
+  public int getInt(Index index) {
+    return getInt(index.getCurrentIndex());
+  }
+
+  /**
+   * Get the element indicated by the list of multidimensional indices as a long, without boxing.
+   * Same as ((Number) get(index)).longValue(), only for numeric types.
+   */
+  public long getLong(int... index) {
+    return getLongElement(indexFn.get(index));
+  }
+
+  /** Get the element indicated by Index as a long, without boxing. Only for numeric types. */
+  public long getLong(Index index) {
+    return getLong(index.getCurrentIndex());
+  }
+
+  /** Iterates in canonical order over all the elements as doubles, without boxing. Only for numeric types. */
+  public PrimitiveIterator.OfDouble doubleIterator() {
+    return new DoubleIterator();
+  }
+
+  /**
+   * Copy all the elements in canonical order into dest as doubles, without boxing. Only for numeric types.
+   *
+   * @param dest copy into this array, must have room for length() elements starting at destPos.
+   * @param destPos starting pos in dest.
+   */
+  public void copyTo(double[] dest, int destPos) {
+    PrimitiveIterator.OfDouble iter = doubleIterator();
+    int destIndex = destPos;
+    while (iter.hasNext()) {
+      dest[destIndex++] = iter.nextDouble();
+    }
+  }
+
   /** The ArrayType for this Array */
   public ArrayType getArrayType() {
     return this.arrayType;
@@ -131,6 +203,26 @@ public abstract class Array<T> implements Iterable<T> {
 
   abstract void arraycopy(int srcPos, Object dest, int destPos, long length);
 
+  /** Get the ith element of the storage as a double. Numeric subclasses override to avoid boxing. */
+  double getDoubleElement(long elem) {
+    return ((Number) storage().get(elem)).doubleValue();
+  }
+
+  /** Get the ith element of the storage as a float. Numeric subclasses override to avoid boxing. */
+  float getFloatElement(long elem) {
+    return ((Number) storage().get(elem)).floatValue();
+  }
+
+  /** Get the ith element of the storage as an int. Numeric subclasses override to avoid boxing. */
+  int getIntElement(long elem) {
+    return ((Number) storage().get(elem)).intValue();
+  }
+
+  /** Get the ith element of the storage as a long. Numeric subclasses override to avoid boxing. */
+  long getLongElement(long elem) {
+    return ((Number) storage().get(elem)).longValue();
+  }
+
   /** Get underlying storage. */
   abstract Storage<T> storage();
 
@@ -147,5 +239,23 @@ public abstract class Array<T> implements Iterable<T> {
    */
   abstract Array<T> createView(IndexFn view);
 
-}
+  // iterates over the storage directly when in canonical order, otherwise uses the IndexFn
+  private class DoubleIterator implements PrimitiveIterator.OfDouble {
+    private final PrimitiveIterator.OfInt elems = indexFn.isCanonicalOrder() ? null : indexFn.iterator();
+    private final long length = indexFn.length();
+    private long count = 0;
 
+    @Override
+    public boolean hasNext() {
+      return count < length;
+    }
+
+    @Override
+    public double nextDouble() {
+      long elem = (elems == null) ? count : elems.nextInt();
+      count++;
+      return getDoubleElement(elem);
+    }
+  }
+
+}
@@ -9,6 +9,7 @@ import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Byte. */
@@ -63,16 +64,16 @@ final class ArrayByte extends Array<Byte> {
     } else {
       byte[] ddest = (byte[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = getByte(storage, iter.nextInt());
       }
     }
   }
 
   /** Convert the Array into a ByteString. */
   ByteString getByteString() {
-    if (indexFn.isCanonicalOrder()) {
+    if (indexFn.isCanonicalOrder() && storage instanceof StorageS) {
       return ByteString.copyFrom(((StorageS) storage).storage);
     }
 
@@ -86,7 +87,7 @@ final class ArrayByte extends Array<Byte> {
 
   /** Convert the Array into a ByteBuffer. */
   ByteBuffer getByteBuffer() {
-    if (indexFn.isCanonicalOrder()) {
+    if (indexFn.isCanonicalOrder() && storage instanceof StorageS) {
       return ByteBuffer.wrap(((StorageS) storage).storage);
     }
     ByteBuffer result = ByteBuffer.allocate((int) this.length());
@@ -161,6 +162,26 @@ final class ArrayByte extends Array<Byte> {
     return Arrays.factory(ArrayType.STRING, outerShape, result);
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getByte(storage, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return getByte(storage, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return getByte(storage, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return getByte(storage, elem);
+  }
+
   @Override
   Storage<Byte> storage() {
     return storage;
@@ -172,6 +193,11 @@ final class ArrayByte extends Array<Byte> {
     return new ArrayByte(this.arrayType, view, this.storage);
   }
 
+  // read without boxing when the storage allows it
+  static byte getByte(Storage<Byte> storage, long elem) {
+    return (storage instanceof Storage.OfByte) ? ((Storage.OfByte) storage).getByte(elem) : storage.get(elem);
+  }
+
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Byte> {
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -189,7 +215,7 @@ final class ArrayByte extends Array<Byte> {
 
   // standard storage using byte[] primitive array
   @Immutable
-  static final class StorageS implements Storage<Byte> {
+  static final class StorageS implements Storage.OfByte {
     private final byte[] storage;
 
     StorageS(byte[] storage) {
@@ -206,6 +232,11 @@ final class ArrayByte extends Array<Byte> {
       return storage[(int) elem];
     }
 
+    @Override
+    public byte getByte(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
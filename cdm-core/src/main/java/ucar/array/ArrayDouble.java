@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for doubles. */
@@ -64,13 +65,42 @@ final class ArrayDouble extends ucar.array.Array<Double> {
     } else {
       double[] ddest = (double[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storageD.get(iter.next());
+        ddest[destIndex++] = getDouble(storageD, iter.nextInt());
       }
     }
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getDouble(storageD, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return (float) getDouble(storageD, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return (int) getDouble(storageD, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return (long) getDouble(storageD, elem);
+  }
+
+  @Override
+  public void copyTo(double[] dest, int destPos) {
+    if (indexFn.isCanonicalOrder()) {
+      storageD.arraycopy(0, dest, destPos, indexFn.length());
+    } else {
+      super.copyTo(dest, destPos);
+    }
+  }
+
   @Override
   Storage<Double> storage() {
     return storageD;
@@ -82,6 +112,11 @@ final class ArrayDouble extends ucar.array.Array<Double> {
     return new ArrayDouble(view, storageD);
   }
 
+  // read without boxing when the storage allows it
+  static double getDouble(Storage<Double> storage, long elem) {
+    return (storage instanceof Storage.OfDouble) ? ((Storage.OfDouble) storage).getDouble(elem) : storage.get(elem);
+  }
+
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Double> {
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -99,7 +134,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
 
   // standard storage using double[] primitive array
   @Immutable
-  static final class StorageD implements Storage<Double> {
+  static final class StorageD implements Storage.OfDouble {
     private final double[] storage;
 
     StorageD(double[] storage) {
@@ -116,6 +151,11 @@ final class ArrayDouble extends ucar.array.Array<Double> {
       return storage[(int) elem];
     }
 
+    @Override
+    public double getDouble(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
@@ -144,7 +184,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
   /////////////////////////////////////////////////////////////////////////
   // experimental storage using List of Storage<Double>
   @Immutable
-  static class StorageDM implements Storage<Double> {
+  static class StorageDM implements Storage.OfDouble {
     private final ImmutableList<Storage<Double>> dataArrays;
     private final long[] arrayEdge;
     private final long totalLength;
@@ -171,10 +211,15 @@ final class ArrayDouble extends ucar.array.Array<Double> {
 
     @Override
     public Double get(long elem) {
+      return getDouble(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
       int search = Arrays.binarySearch(arrayEdge, elem);
       int arrayIndex = (search < 0) ? -search - 2 : search;
       Storage<Double> array = dataArrays.get(arrayIndex);
-      return array.get((int) (elem - arrayEdge[arrayIndex]));
+      return ArrayDouble.getDouble(array, elem - arrayEdge[arrayIndex]);
     }
 
     @Override
@@ -217,7 +262,7 @@ final class ArrayDouble extends ucar.array.Array<Double> {
           arrayIndex++;
           array = dataArrays.get(arrayIndex);
         }
-        double val = array.get((int) (count - arrayEdge[arrayIndex]));
+        double val = ArrayDouble.getDouble(array, count - arrayEdge[arrayIndex]);
         count++;
         return val;
       }
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for floats. */
@@ -65,13 +66,33 @@ final class ArrayFloat extends Array<Float> {
     } else {
       float[] ddest = (float[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storageF.get(iter.next());
+        ddest[destIndex++] = getFloat(storageF, iter.nextInt());
       }
     }
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getFloat(storageF, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return getFloat(storageF, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return (int) getFloat(storageF, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return (long) getFloat(storageF, elem);
+  }
+
   @Override
   Storage<Float> storage() {
     return storageF;
@@ -83,6 +104,11 @@ final class ArrayFloat extends Array<Float> {
     return new ArrayFloat(view, storageF);
   }
 
+  // read without boxing when the storage allows it
+  static float getFloat(Storage<Float> storage, long elem) {
+    return (storage instanceof Storage.OfFloat) ? ((Storage.OfFloat) storage).getFloat(elem) : storage.get(elem);
+  }
+
   private class CanonicalIterator implements Iterator<Float> {
     // used when the data is not in canonical order
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -99,7 +125,7 @@ final class ArrayFloat extends Array<Float> {
   }
 
   @Immutable
-  static final class StorageF implements Storage<Float> {
+  static final class StorageF implements Storage.OfFloat {
     private final float[] storage;
 
     StorageF(float[] storage) {
@@ -116,6 +142,11 @@ final class ArrayFloat extends Array<Float> {
       return storage[(int) elem];
     }
 
+    @Override
+    public float getFloat(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
@@ -142,7 +173,7 @@ final class ArrayFloat extends Array<Float> {
   }
 
   @Immutable
-  static class StorageFM implements Storage<Float> {
+  static class StorageFM implements Storage.OfFloat {
     private final ImmutableList<Storage<Float>> dataArrays;
     private final long[] arrayEdge;
     private final long totalLength;
@@ -169,10 +200,15 @@ final class ArrayFloat extends Array<Float> {
 
     @Override
     public Float get(long elem) {
+      return getFloat(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
       int search = Arrays.binarySearch(arrayEdge, elem);
       int arrayIndex = (search < 0) ? -search - 2 : search;
       Storage<Float> storage = dataArrays.get(arrayIndex);
-      return storage.get((int) (elem - arrayEdge[arrayIndex]));
+      return ArrayFloat.getFloat(storage, elem - arrayEdge[arrayIndex]);
     }
 
     @Override
@@ -215,7 +251,7 @@ final class ArrayFloat extends Array<Float> {
           arrayIndex++;
           storage = dataArrays.get(arrayIndex);
         }
-        float val = storage.get((int) (count - arrayEdge[arrayIndex]));
+        float val = ArrayFloat.getFloat(storage, count - arrayEdge[arrayIndex]);
         count++;
         return val;
       }
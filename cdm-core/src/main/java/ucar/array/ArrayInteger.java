@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Integer. */
@@ -62,13 +63,33 @@ class ArrayInteger extends Array<Integer> {
     } else {
       int[] ddest = (int[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = getInt(storage, iter.nextInt());
       }
     }
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getInt(storage, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return getInt(storage, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return getInt(storage, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return getInt(storage, elem);
+  }
+
   @Override
   Storage<Integer> storage() {
     return storage;
@@ -80,6 +101,11 @@ class ArrayInteger extends Array<Integer> {
     return new ArrayInteger(this.arrayType, view, this.storage);
   }
 
+  // read without boxing when the storage allows it
+  static int getInt(Storage<Integer> storage, long elem) {
+    return (storage instanceof Storage.OfInt) ? ((Storage.OfInt) storage).getInt(elem) : storage.get(elem);
+  }
+
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Integer> {
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -97,7 +123,7 @@ class ArrayInteger extends Array<Integer> {
 
   // standard storage using int[] primitive array
   @Immutable
-  static final class StorageS implements Storage<Integer> {
+  static final class StorageS implements Storage.OfInt {
     private final int[] storage;
 
     StorageS(int[] storage) {
@@ -114,6 +140,11 @@ class ArrayInteger extends Array<Integer> {
       return storage[(int) elem];
     }
 
+    @Override
+    public int getInt(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Long. */
@@ -60,13 +61,33 @@ final class ArrayLong extends Array<Long> {
     } else {
       long[] ddest = (long[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = getLong(storage, iter.nextInt());
       }
     }
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getLong(storage, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return getLong(storage, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return (int) getLong(storage, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return getLong(storage, elem);
+  }
+
   @Override
   Storage<Long> storage() {
     return storage;
@@ -78,6 +99,11 @@ final class ArrayLong extends Array<Long> {
     return new ArrayLong(this.arrayType, view, this.storage);
   }
 
+  // read without boxing when the storage allows it
+  static long getLong(Storage<Long> storage, long elem) {
+    return (storage instanceof Storage.OfLong) ? ((Storage.OfLong) storage).getLong(elem) : storage.get(elem);
+  }
+
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Long> {
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -95,7 +121,7 @@ final class ArrayLong extends Array<Long> {
 
   // standard storage using long[] primitive array
   @Immutable
-  static final class StorageS implements Storage<Long> {
+  static final class StorageS implements Storage.OfLong {
     private final long[] storage;
 
     StorageS(long[] storage) {
@@ -112,6 +138,11 @@ final class ArrayLong extends Array<Long> {
       return storage[(int) elem];
     }
 
+    @Override
+    public long getLong(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
@@ -6,6 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import javax.annotation.concurrent.Immutable;
 
 /** Concrete implementation of Array specialized for Short. */
@@ -60,13 +61,33 @@ final class ArrayShort extends Array<Short> {
     } else {
       short[] ddest = (short[]) dest;
       int destIndex = destPos;
-      Iterator<Integer> iter = indexFn.iterator(srcPos, length);
+      PrimitiveIterator.OfInt iter = indexFn.iterator(srcPos, length);
       while (iter.hasNext()) {
-        ddest[destIndex++] = storage.get(iter.next());
+        ddest[destIndex++] = getShort(storage, iter.nextInt());
       }
     }
   }
 
+  @Override
+  double getDoubleElement(long elem) {
+    return getShort(storage, elem);
+  }
+
+  @Override
+  float getFloatElement(long elem) {
+    return getShort(storage, elem);
+  }
+
+  @Override
+  int getIntElement(long elem) {
+    return getShort(storage, elem);
+  }
+
+  @Override
+  long getLongElement(long elem) {
+    return getShort(storage, elem);
+  }
+
   @Override
   Storage<Short> storage() {
     return storage;
@@ -78,6 +99,11 @@ final class ArrayShort extends Array<Short> {
     return new ArrayShort(this.arrayType, view, this.storage);
   }
 
+  // read without boxing when the storage allows it
+  static short getShort(Storage<Short> storage, long elem) {
+    return (storage instanceof Storage.OfShort) ? ((Storage.OfShort) storage).getShort(elem) : storage.get(elem);
+  }
+
   // used when the data is not in canonical order
   private class CanonicalIterator implements Iterator<Short> {
     private final Iterator<Integer> iter = indexFn.iterator();
@@ -95,7 +121,7 @@ final class ArrayShort extends Array<Short> {
 
   // standard storage using short[] primitive array
   @Immutable
-  static class StorageS implements Storage<Short> {
+  static class StorageS implements Storage.OfShort {
     private final short[] storage;
 
     StorageS(short[] storage) {
@@ -112,6 +138,11 @@ final class ArrayShort extends Array<Short> {
       return storage[(int) elem];
     }
 
+    @Override
+    public short getShort(long elem) {
+      return storage[(int) elem];
+    }
+
     @Override
     public void arraycopy(int srcPos, Object dest, int destPos, long length) {
       System.arraycopy(storage, srcPos, dest, destPos, (int) length);
@@ -10,6 +10,7 @@ import com.google.protobuf.ByteString;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.PrimitiveIterator;
 
 /** Static helper classes for {@link Array} */
 public class Arrays {
@@ -68,9 +69,13 @@ public class Arrays {
    *
    * @param dataType data type of the data. Vlen detected from the shape.
    * @param shape multidimensional shape, must have same total length as dataArray.
-   * @param dataArray must be java array of T, or java primitive array
+   * @param dataArray must be java array of T, or java primitive array, or a ByteBuffer for numeric types,
+   *        see {@link StorageBB}.
    */
   public static <T> Array<T> factory(ArrayType dataType, int[] shape, Object dataArray) {
+    if (dataArray instanceof ByteBuffer) {
+      return factory(dataType, shape, StorageBB.<T>factory(dataType, (ByteBuffer) dataArray));
+    }
     switch (dataType) {
       case CHAR:
         if (dataArray instanceof char[]) {
@@ -506,13 +511,8 @@ public class Arrays {
     if (array instanceof ArrayDouble) {
       return (Array<Double>) array;
     }
-    Array<Number> conv = (Array<Number>) array;
-    int n = (int) array.length();
-    double[] storage = new double[n];
-    int count = 0;
-    for (Number val : conv) {
-      storage[count++] = val.doubleValue();
-    }
+    double[] storage = new double[(int) array.length()];
+    array.copyTo(storage, 0);
     return factory(ArrayType.DOUBLE, array.getShape(), storage);
   }
 
@@ -522,28 +522,16 @@ public class Arrays {
     boolean hasEval = (eval != null && eval.hasMissing());
     double max = -Double.MAX_VALUE;
     double min = Double.MAX_VALUE;
-    if (a instanceof ArrayDouble) {
-      ArrayDouble ad = (ArrayDouble) a;
-      for (double val : ad) {
-        if (hasEval && eval.isMissing(val)) {
-          continue;
-        }
-        if (val > max)
-          max = val;
-        if (val < min)
-          min = val;
-      }
-    } else {
-      for (Number number : a) {
-        double val = number.doubleValue();
-        if (hasEval && eval.isMissing(val)) {
-          continue;
-        }
-        if (val > max)
-          max = val;
-        if (val < min)
-          min = val;
-      }
+    PrimitiveIterator.OfDouble iter = a.doubleIterator();
+    while (iter.hasNext()) {
+      double val = iter.nextDouble();
+      if (hasEval && eval.isMissing(val)) {
+        continue;
+      }
+      if (val > max)
+        max = val;
+      if (val < min)
+        min = val;
     }
     return MinMax.create(min, max);
   }
@@ -6,7 +6,7 @@ package ucar.array;
 
 import com.google.common.base.Preconditions;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import javax.annotation.concurrent.Immutable;
 
@@ -66,11 +66,11 @@ final class IndexFn implements Iterable<Integer> {
     return shape[index];
   }
 
-  public Iterator<Integer> iterator() {
+  public PrimitiveIterator.OfInt iterator() {
     return new Odometer();
   }
 
-  public Iterator<Integer> iterator(int start, long length) {
+  public PrimitiveIterator.OfInt iterator(int start, long length) {
     return new Odometer(start, length);
   }
 
@@ -389,7 +389,7 @@ final class IndexFn implements Iterable<Integer> {
     return odometer;
   }
 
-  private class Odometer implements Iterator<Integer> {
+  private class Odometer implements PrimitiveIterator.OfInt {
     private final long nelems;
     private final int[] current;
     private int count = 0;
@@ -411,7 +411,7 @@ final class IndexFn implements Iterable<Integer> {
       return count++ < nelems;
     }
 
-    public Integer next() {
+    public int nextInt() {
       int result = nextIndex;
       nextIndex = incr();
       return result;
@@ -23,4 +23,40 @@ public interface Storage<T> extends Iterable<T> {
    * @param length copy these number of elements.
    */
   void arraycopy(int srcPos, Object dest, int destPos, long length);
+
+  /** Storage of doubles that can be read without boxing. */
+  interface OfDouble extends Storage<Double> {
+    /** Get the ith element. */
+    double getDouble(long elem);
+  }
+
+  /** Storage of floats that can be read without boxing. */
+  interface OfFloat extends Storage<Float> {
+    /** Get the ith element. */
+    float getFloat(long elem);
+  }
+
+  /** Storage of longs that can be read without boxing. */
+  interface OfLong extends Storage<Long> {
+    /** Get the ith element. */
+    long getLong(long elem);
+  }
+
+  /** Storage of ints that can be read without boxing. */
+  interface OfInt extends Storage<Integer> {
+    /** Get the ith element. */
+    int getInt(long elem);
+  }
+
+  /** Storage of shorts that can be read without boxing. */
+  interface OfShort extends Storage<Short> {
+    /** Get the ith element. */
+    short getShort(long elem);
+  }
+
+  /** Storage of bytes that can be read without boxing. */
+  interface OfByte extends Storage<Byte> {
+    /** Get the ith element. */
+    byte getByte(long elem);
+  }
 }
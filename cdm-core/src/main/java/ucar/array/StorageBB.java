@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Storage for numeric Arrays held in one or more ByteBuffers, typically direct or memory-mapped buffers,
+ * so that the data lives outside of the Java heap. Each ByteBuffer is read from its position to its limit,
+ * using its ByteOrder. Since a ByteBuffer is limited to 2 GB, large data is split across several ByteBuffers;
+ * all but the last must hold the same number of elements.
+ * <p>
+ * Use with {@link Arrays#factory(ArrayType, int[], Storage)}, eg:
+ *
+ * <pre>
+ * ByteBuffer bb = ByteBuffer.allocateDirect(nelems * 4).order(ByteOrder.LITTLE_ENDIAN);
+ * ... fill bb ...
+ * Array&lt;Float&gt; data = Arrays.factory(ArrayType.FLOAT, shape, StorageBB.factory(ArrayType.FLOAT, bb));
+ * </pre>
+ *
+ * The ByteBuffers must not be modified after the Storage is created.
+ */
+@Immutable
+public abstract class StorageBB<T> implements Storage<T> {
+  private static final int MAX_MAP_BYTES = 1 << 30; // 1 GB
+
+  /**
+   * Create Storage of the given type from the contents of the ByteBuffers.
+   *
+   * @param dataType a numeric, char or enum type.
+   * @param buffers the data, from position to limit, in each buffer's ByteOrder.
+   */
+  public static <T> StorageBB<T> factory(ArrayType dataType, ByteBuffer... buffers) {
+    Preconditions.checkArgument(buffers.length > 0, "no ByteBuffers");
+    switch (dataType) {
+      case BYTE:
+      case CHAR:
+      case ENUM1:
+      case UBYTE:
+        return (StorageBB<T>) new StorageBytes(buffers);
+      case SHORT:
+      case ENUM2:
+      case USHORT:
+        return (StorageBB<T>) new StorageShorts(buffers);
+      case INT:
+      case ENUM4:
+      case UINT:
+        return (StorageBB<T>) new StorageInts(buffers);
+      case LONG:
+      case ULONG:
+        return (StorageBB<T>) new StorageLongs(buffers);
+      case FLOAT:
+        return (StorageBB<T>) new StorageFloats(buffers);
+      case DOUBLE:
+        return (StorageBB<T>) new StorageDoubles(buffers);
+      default:
+        throw new IllegalArgumentException("Unsupported ArrayType " + dataType);
+    }
+  }
+
+  /**
+   * Create read-only Storage of the given type that is memory-mapped from a file.
+   * Data is mapped in windows of up to 1 GB.
+   *
+   * @param dataType a numeric, char or enum type.
+   * @param channel map from this channel.
+   * @param position starting byte position in the channel.
+   * @param nelems number of elements.
+   * @param order byte order of the data.
+   */
+  public static <T> StorageBB<T> map(ArrayType dataType, FileChannel channel, long position, long nelems,
+      ByteOrder order) throws IOException {
+    int elemSize = dataType.getSize();
+    long perWindow = MAX_MAP_BYTES / elemSize;
+    int nwindows = (int) Math.max(1, (nelems + perWindow - 1) / perWindow);
+    ByteBuffer[] buffers = new ByteBuffer[nwindows];
+    for (int i = 0; i < nwindows; i++) {
+      long start = i * perWindow;
+      long n = Math.min(perWindow, nelems - start);
+      buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start * elemSize, n * elemSize).order(order);
+    }
+    return factory(dataType, buffers);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  private final long length;
+  private final int elemsPerBuffer;
+
+  StorageBB(ByteBuffer[] buffers, int elemSize) {
+    long total = 0;
+    int first = buffers[0].remaining() / elemSize;
+    for (int i = 0; i < buffers.length; i++) {
+      int n = buffers[i].remaining() / elemSize;
+      Preconditions.checkArgument(i == buffers.length - 1 || n == first,
+          "all ByteBuffers except the last must have the same number of elements");
+      total += n;
+    }
+    this.length = total;
+    this.elemsPerBuffer = Math.max(first, 1);
+  }
+
+  /** A duplicate of the buffer that keeps its ByteOrder. */
+  static ByteBuffer view(ByteBuffer buffer) {
+    return buffer.duplicate().order(buffer.order());
+  }
+
+  /** Which buffer holds the ith element. */
+  final int buffer(long elem) {
+    return (int) (elem / elemsPerBuffer);
+  }
+
+  /** Index of the ith element in its buffer. */
+  final int index(long elem) {
+    return (int) (elem % elemsPerBuffer);
+  }
+
+  /** Copy n elements starting at index in the given buffer to dest. */
+  abstract void copy(int buffer, int index, Object dest, int destPos, int n);
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+  @Override
+  public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+    long pos = srcPos;
+    int dpos = destPos;
+    long needed = length;
+    while (needed > 0) {
+      int index = index(pos);
+      int n = (int) Math.min(needed, elemsPerBuffer - index);
+      copy(buffer(pos), index, dest, dpos, n);
+      pos += n;
+      dpos += n;
+      needed -= n;
+    }
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new StorageIter();
+  }
+
+  private final class StorageIter implements Iterator<T> {
+    private long count = 0;
+
+    @Override
+    public final boolean hasNext() {
+      return count < length;
+    }
+
+    @Override
+    public final T next() {
+      return get(count++);
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+
+  @Immutable
+  static final class StorageBytes extends StorageBB<Byte> implements Storage.OfByte {
+    private final ByteBuffer[] views;
+
+    StorageBytes(ByteBuffer[] buffers) {
+      super(buffers, 1);
+      this.views = new ByteBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).slice();
+      }
+    }
+
+    @Override
+    public Byte get(long elem) {
+      return getByte(elem);
+    }
+
+    @Override
+    public byte getByte(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      ByteBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((byte[]) dest, destPos, n);
+    }
+  }
+
+  @Immutable
+  static final class StorageShorts extends StorageBB<Short> implements Storage.OfShort {
+    private final ShortBuffer[] views;
+
+    StorageShorts(ByteBuffer[] buffers) {
+      super(buffers, 2);
+      this.views = new ShortBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).asShortBuffer();
+      }
+    }
+
+    @Override
+    public Short get(long elem) {
+      return getShort(elem);
+    }
+
+    @Override
+    public short getShort(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      ShortBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((short[]) dest, destPos, n);
+    }
+  }
+
+  @Immutable
+  static final class StorageInts extends StorageBB<Integer> implements Storage.OfInt {
+    private final IntBuffer[] views;
+
+    StorageInts(ByteBuffer[] buffers) {
+      super(buffers, 4);
+      this.views = new IntBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).asIntBuffer();
+      }
+    }
+
+    @Override
+    public Integer get(long elem) {
+      return getInt(elem);
+    }
+
+    @Override
+    public int getInt(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      IntBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((int[]) dest, destPos, n);
+    }
+  }
+
+  @Immutable
+  static final class StorageLongs extends StorageBB<Long> implements Storage.OfLong {
+    private final LongBuffer[] views;
+
+    StorageLongs(ByteBuffer[] buffers) {
+      super(buffers, 8);
+      this.views = new LongBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).asLongBuffer();
+      }
+    }
+
+    @Override
+    public Long get(long elem) {
+      return getLong(elem);
+    }
+
+    @Override
+    public long getLong(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      LongBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((long[]) dest, destPos, n);
+    }
+  }
+
+  @Immutable
+  static final class StorageFloats extends StorageBB<Float> implements Storage.OfFloat {
+    private final FloatBuffer[] views;
+
+    StorageFloats(ByteBuffer[] buffers) {
+      super(buffers, 4);
+      this.views = new FloatBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).asFloatBuffer();
+      }
+    }
+
+    @Override
+    public Float get(long elem) {
+      return getFloat(elem);
+    }
+
+    @Override
+    public float getFloat(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      FloatBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((float[]) dest, destPos, n);
+    }
+  }
+
+  @Immutable
+  static final class StorageDoubles extends StorageBB<Double> implements Storage.OfDouble {
+    private final DoubleBuffer[] views;
+
+    StorageDoubles(ByteBuffer[] buffers) {
+      super(buffers, 8);
+      this.views = new DoubleBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        this.views[i] = view(buffers[i]).asDoubleBuffer();
+      }
+    }
+
+    @Override
+    public Double get(long elem) {
+      return getDouble(elem);
+    }
+
+    @Override
+    public double getDouble(long elem) {
+      return views[buffer(elem)].get(index(elem));
+    }
+
+    @Override
+    void copy(int buffer, int index, Object dest, int destPos, int n) {
+      DoubleBuffer src = views[buffer].duplicate();
+      src.position(index);
+      src.get((double[]) dest, destPos, n);
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A cache of decoded (unfiltered) HDF5 chunks, bounded by the total number of bytes held, and evicting the least
+ * recently used chunks first. Keyed by file (location, modification time and length), variable name and chunk offset,
+ * so several open handles on the same file share its chunks, and a rewritten file does not get the old ones. Closing
+ * a file does not remove its chunks, they are evicted like any others.
+ * <p>
+ * By default each open file gets its own cache of {@link #setDefaultMaxBytes default size}, which is 0, ie disabled.
+ * Alternatively, a {@link #setGlobalCache global cache} may be set, which is then shared by all HDF5 files.
+ * The cached byte arrays must not be modified.
+ */
+public class H5chunkCache {
+  private static long defaultMaxBytes;
+  private static H5chunkCache globalCache;
+
+  /**
+   * Set the maximum size in bytes of the chunk cache for each open file. Not used if a global cache is set.
+   *
+   * @param maxBytes max number of decoded bytes to keep; 0 (the default) disables the per-file cache.
+   */
+  public static void setDefaultMaxBytes(long maxBytes) {
+    Preconditions.checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+    defaultMaxBytes = maxBytes;
+  }
+
+  /**
+   * Share one chunk cache across all HDF5 files opened after this call.
+   *
+   * @param maxBytes max number of decoded bytes to keep; 0 removes the global cache.
+   */
+  public static void setGlobalCache(long maxBytes) {
+    Preconditions.checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+    globalCache = (maxBytes == 0) ? null : new H5chunkCache(maxBytes);
+  }
+
+  /** The global cache, or null if not set. */
+  @Nullable
+  public static H5chunkCache getGlobalCache() {
+    return globalCache;
+  }
+
+  /** The cache to use for a newly opened file, or null if chunk caching is disabled. */
+  @Nullable
+  static H5chunkCache forFile() {
+    H5chunkCache global = globalCache;
+    if (global != null) {
+      return global;
+    }
+    return (defaultMaxBytes > 0) ? new H5chunkCache(defaultMaxBytes) : null;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  private final long maxBytes;
+  private final Cache<Key, byte[]> cache;
+
+  public H5chunkCache(long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+    this.maxBytes = maxBytes;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((Key key, byte[] value) -> value.length).recordStats().build();
+  }
+
+  /** Get the decoded chunk, or null if not in the cache. */
+  @Nullable
+  byte[] get(FileId file, String varName, int[] offset) {
+    return cache.getIfPresent(new Key(file, varName, offset));
+  }
+
+  void put(FileId file, String varName, int[] offset, byte[] data) {
+    cache.put(new Key(file, varName, offset), data);
+  }
+
+  /** Remove all chunks of the given file, eg to free the memory of a file that has been rewritten. */
+  public void invalidate(String location) {
+    cache.asMap().keySet().removeIf(key -> key.file.location.equals(location));
+  }
+
+  /** Remove all chunks. */
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** The total number of decoded bytes currently held. */
+  public long getCurrentBytes() {
+    long total = 0;
+    for (byte[] data : cache.asMap().values()) {
+      total += data.length;
+    }
+    return total;
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public void showStats(Formatter f) {
+    f.format("H5chunkCache nchunks=%d bytes=%d max=%d %s%n", cache.size(), getCurrentBytes(), maxBytes, cache.stats());
+  }
+
+  /** The contents of an open file, found once for each read rather than for each chunk. */
+  static class FileId {
+    private final String location;
+    private final long lastModified; // a rewritten file has different chunks at the same offsets
+    private final long length;
+
+    FileId(RandomAccessFile raf) throws IOException {
+      this.location = raf.getLocation();
+      this.lastModified = raf.getLastModified();
+      this.length = raf.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      FileId fileId = (FileId) o;
+      return lastModified == fileId.lastModified && length == fileId.length && location.equals(fileId.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length);
+    }
+  }
+
+  private static class Key {
+    private final FileId file;
+    private final String varName;
+    private final int[] offset;
+
+    Key(FileId file, String varName, int[] offset) {
+      this.file = file;
+      this.varName = varName;
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      Key key = (Key) o;
+      return file.equals(key.file) && varName.equals(key.varName) && Arrays.equals(offset, key.offset);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Objects.hash(file, varName) + Arrays.hashCode(offset);
+    }
+  }
+
+}
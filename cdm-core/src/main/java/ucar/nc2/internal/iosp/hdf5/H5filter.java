@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+
+/**
+ * Decodes the data of a chunk that was encoded with an HDF5 filter.
+ * Implementations are found with the ServiceLoader, or added with {@link H5filters#registerFilter}.
+ * Class must have a no-arg Constructor.
+ * Implementations must be thread-safe, since chunks may be decoded concurrently.
+ *
+ * @see "https://portal.hdfgroup.org/display/support/Registered+Filter+Plugins"
+ */
+public interface H5filter {
+
+  /** The HDF5 filter id, eg 1 for deflate, 32015 for zstd. */
+  int getId();
+
+  /** The filter name, used when the file does not store one. */
+  String getName();
+
+  /**
+   * Undo the filter on one chunk.
+   *
+   * @param data the encoded chunk; may be modified or returned.
+   * @param clientValues the filter's client data values stored in the file, may be empty.
+   * @return the decoded chunk.
+   * @throws IOException if the data is corrupt, or cannot be decoded.
+   */
+  byte[] apply(byte[] data, int[] clientValues) throws IOException;
+}
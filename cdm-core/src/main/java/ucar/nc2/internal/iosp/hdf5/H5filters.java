@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import ucar.nc2.util.IO;
+import ucar.unidata.io.blosc.BloscDecoder;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+import ucar.unidata.io.lz4.Lz4BlockDecoder;
+import ucar.unidata.io.zstd.ZstdDecompressor;
+
+/**
+ * The registry of HDF5 filters, by filter id.
+ * Filters found by the ServiceLoader are registered first, and so override the built-in filters:
+ * deflate, shuffle, fletcher32, bzip2, blosc, lz4 and zstd.
+ */
+public class H5filters {
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+  private static final String[] standardName = {"", "deflate", "shuffle", "fletcher32", "szip", "nbit", "scaleoffset"};
+  private static final Map<Integer, H5filter> filters = new ConcurrentHashMap<>();
+
+  static {
+    // user can override
+    for (H5filter filter : ServiceLoader.load(H5filter.class)) {
+      registerFilter(filter);
+    }
+
+    registerBuiltin(new Deflate());
+    registerBuiltin(new Shuffle());
+    registerBuiltin(new Fletcher32());
+    registerBuiltin(new Bzip2());
+    registerBuiltin(new Blosc());
+    registerBuiltin(new Lz4());
+    registerBuiltin(new Zstd());
+  }
+
+  /**
+   * Register a filter, replacing any filter with the same id.
+   *
+   * @param filter decodes chunks for the filter with id filter.getId().
+   */
+  public static void registerFilter(H5filter filter) {
+    filters.put(filter.getId(), filter);
+  }
+
+  // for testing: remove a registered filter, which does not restore a built-in one it replaced
+  static void unregisterFilter(int id) {
+    filters.remove(id);
+  }
+
+  private static void registerBuiltin(H5filter filter) {
+    filters.putIfAbsent(filter.getId(), filter);
+  }
+
+  /** Find the filter with the given id, or null if none is registered. */
+  @Nullable
+  public static H5filter find(int id) {
+    return filters.get(id);
+  }
+
+  /** The name of the filter with the given id, used when the file does not store one. */
+  public static String getName(int id) {
+    H5filter filter = filters.get(id);
+    if (filter != null) {
+      return filter.getName();
+    }
+    return (id < standardName.length) ? standardName[id] : "StandardFilter " + id;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // built-in filters
+
+  static class Deflate implements H5filter {
+    private static final int DEFAULTZIPBUFFERSIZE = 512;
+    // System property name for -D flag
+    private static final String INFLATEBUFFERSIZE_PROPERTY = "unidata.h5iosp.inflate.buffersize";
+
+    private final int inflatebuffersize;
+
+    Deflate() {
+      int size = DEFAULTZIPBUFFERSIZE;
+      if (System.getProperty(INFLATEBUFFERSIZE_PROPERTY) != null) {
+        try {
+          size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE_PROPERTY));
+          if (size <= 0) {
+            H5iosp.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE_PROPERTY));
+            size = DEFAULTZIPBUFFERSIZE;
+          }
+        } catch (NumberFormatException nfe) {
+          H5iosp.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE_PROPERTY));
+        }
+      }
+      this.inflatebuffersize = size;
+    }
+
+    @Override
+    public int getId() {
+      return 1;
+    }
+
+    @Override
+    public String getName() {
+      return "deflate";
+    }
+
+    @Override
+    public byte[] apply(byte[] compressed, int[] clientValues) throws IOException {
+      // run it through the Inflator
+      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
+      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
+      try (java.util.zip.InflaterInputStream inflatestream =
+          new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize)) {
+        int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
+        IO.copyB(inflatestream, out, len);
+        return out.toByteArray();
+      } finally {
+        inflater.end();
+      }
+    }
+  }
+
+  static class Shuffle implements H5filter {
+    @Override
+    public int getId() {
+      return 2;
+    }
+
+    @Override
+    public String getName() {
+      return "shuffle";
+    }
+
+    // clientValues[0] is the element size
+    @Override
+    public byte[] apply(byte[] data, int[] clientValues) {
+      int n = clientValues[0];
+      if (n <= 1)
+        return data;
+
+      int m = data.length / n;
+      int[] count = new int[n];
+      for (int k = 0; k < n; k++)
+        count[k] = k * m;
+
+      byte[] result = new byte[data.length];
+      for (int i = 0; i < m; i++) {
+        for (int j = 0; j < n; j++) {
+          result[i * n + j] = data[i + count[j]];
+        }
+      }
+      // leftover bytes are not shuffled
+      int done = m * n;
+      System.arraycopy(data, done, result, done, data.length - done);
+      return result;
+    }
+  }
+
+  static class Fletcher32 implements H5filter {
+    @Override
+    public int getId() {
+      return 3;
+    }
+
+    @Override
+    public String getName() {
+      return "fletcher32";
+    }
+
+    // just strip off the 4-byte fletcher32 checksum at the end
+    @Override
+    public byte[] apply(byte[] org, int[] clientValues) {
+      byte[] result = new byte[org.length - 4];
+      System.arraycopy(org, 0, result, 0, result.length);
+      return result;
+    }
+  }
+
+  static class Bzip2 implements H5filter {
+    @Override
+    public int getId() {
+      return 307;
+    }
+
+    @Override
+    public String getName() {
+      return "bzip2";
+    }
+
+    @Override
+    public byte[] apply(byte[] compressed, int[] clientValues) throws IOException {
+      // the stream starts with "BZ", which CBZip2InputStream expects to be skipped
+      try (InputStream in = new CBZip2InputStream(new ByteArrayInputStream(compressed), true)) {
+        int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len);
+        IO.copyB(in, out, 64 * 1000);
+        return out.toByteArray();
+      } catch (BZip2ReadException e) {
+        throw new IOException("bzip2: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  static class Blosc implements H5filter {
+    @Override
+    public int getId() {
+      return 32001;
+    }
+
+    @Override
+    public String getName() {
+      return "blosc";
+    }
+
+    @Override
+    public byte[] apply(byte[] compressed, int[] clientValues) throws IOException {
+      return BloscDecoder.decompress(compressed);
+    }
+  }
+
+  static class Lz4 implements H5filter {
+    @Override
+    public int getId() {
+      return 32004;
+    }
+
+    @Override
+    public String getName() {
+      return "lz4";
+    }
+
+    @Override
+    public byte[] apply(byte[] compressed, int[] clientValues) throws IOException {
+      return Lz4BlockDecoder.decompressHdf5(compressed);
+    }
+  }
+
+  static class Zstd implements H5filter {
+    // ZstdDecompressor reuses its tables, so use one per thread
+    private final ThreadLocal<ZstdDecompressor> decompressor = ThreadLocal.withInitial(ZstdDecompressor::new);
+
+    @Override
+    public int getId() {
+      return 32015;
+    }
+
+    @Override
+    public String getName() {
+      return "zstd";
+    }
+
+    @Override
+    public byte[] apply(byte[] compressed, int[] clientValues) throws IOException {
+      return decompressor.get().decompress(compressed, 0, compressed.length);
+    }
+  }
+
+}
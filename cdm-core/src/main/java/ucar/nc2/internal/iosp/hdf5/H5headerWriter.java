@@ -0,0 +1,992 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import ucar.array.ArrayType;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.AttributeContainerMutable;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.iosp.NetcdfFormatUtils;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Writes the metadata of a netCDF-4 file for H5iospWriter, once all the data has been written: the chunk indexes,
+ * the object headers of the groups and datasets with their attributes, the global heap, and the superblock.
+ * <p>
+ * Uses what netcdf-c writes with the HDF5 1.8 file format, which is also what H5header reads: superblock version 2,
+ * version 2 object headers with compact link and attribute storage tracking creation order, and version 1 B-trees to
+ * index the chunks. Dimensions are HDF5 dimension scales, as described in H5header.
+ */
+class H5headerWriter {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(H5headerWriter.class);
+
+  static final long UNDEFINED = -1; // the undefined address
+  static final int SUPERBLOCK_SIZE = 48;
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
+  private static final int BTREE_K = 32; // HDF5 default for chunk indexes: nodes have up to 2K children
+  private static final int MAX_HEAP_OBJECTS = 4096; // objects in one global heap collection
+  private static final int MIN_HEAP_SIZE = 4096; // HDF5 minimum global heap collection size
+  private static final String DIM_WITHOUT_VARIABLE = "This is a netCDF dimension but not a netCDF variable.";
+
+  // message types
+  private static final int DATASPACE = 1;
+  private static final int LINK_INFO = 2;
+  private static final int DATATYPE = 3;
+  private static final int FILL_VALUE = 5;
+  private static final int LINK = 6;
+  private static final int LAYOUT = 8;
+  private static final int GROUP_INFO = 10;
+  private static final int FILTER_PIPELINE = 11;
+  private static final int ATTRIBUTE = 12;
+  private static final int ATTRIBUTE_INFO = 21;
+
+  // little endian IEEE floating point, as written by netcdf-c
+  private static final byte[] FLOAT_TYPE =
+      {0x11, 0x20, 0x1f, 0, 4, 0, 0, 0, 0, 0, 32, 0, 23, 8, 0, 23, 127, 0, 0, 0};
+  private static final byte[] DOUBLE_TYPE =
+      {0x11, 0x20, 0x3f, 0, 8, 0, 0, 0, 0, 0, 64, 0, 52, 11, 0, 52, (byte) 0xff, 3, 0, 0};
+  // variable length sequence of object references, used by DIMENSION_LIST
+  private static final byte[] REFERENCES_TYPE = {0x19, 0, 0, 0, 16, 0, 0, 0, 0x17, 0, 0, 0, 8, 0, 0, 0};
+  // variable length UTF-8 string, null terminated, of unsigned chars
+  private static final byte[] VLEN_STRING_TYPE = {0x19, 1, 1, 0, 16, 0, 0, 0, 0x10, 0, 0, 0, 1, 0, 0, 0, 0, 0, 8, 0};
+  // compound {object reference dataset; int dimension}, used by REFERENCE_LIST
+  private static final byte[] REFERENCE_LIST_TYPE;
+
+  static {
+    Out out = new Out();
+    out.put(0x36).put(2).put(0).put(0).putInt(16);
+    out.put("dataset".getBytes(StandardCharsets.US_ASCII)).put(0).put(0);
+    out.put(0x17).put(0).put(0).put(0).putInt(8);
+    out.put("dimension".getBytes(StandardCharsets.US_ASCII)).put(0).put(8);
+    writeFixedType(out, 4, true);
+    REFERENCE_LIST_TYPE = out.toByteArray();
+  }
+
+  /** A netCDF dimension, stored as an HDF5 dimension scale. */
+  static class DimInfo {
+    final String name;
+    final boolean isUnlimited;
+    final int dimid;
+    int length; // current length, increases as unlimited dimensions are written
+    H5Dataset scale; // the coordinate variable, or a dataset without data
+    final List<H5Dataset> refVariables = new ArrayList<>(); // for the REFERENCE_LIST of the scale
+    final List<Integer> refIndexes = new ArrayList<>();
+
+    DimInfo(String name, boolean isUnlimited, int length, int dimid) {
+      this.name = name;
+      this.isUnlimited = isUnlimited;
+      this.length = length;
+      this.dimid = dimid;
+    }
+  }
+
+  private static class H5Group {
+    final AttributeContainerMutable atts;
+    final List<H5Dataset> datasets = new ArrayList<>();
+    final List<H5Group> groups = new ArrayList<>();
+    final String name;
+    long address;
+
+    H5Group(Group g) {
+      this.name = g.getShortName();
+      this.atts = AttributeContainerMutable.copyFrom(g.attributes());
+    }
+  }
+
+  private static class H5Dataset {
+    final String name; // link name
+    @Nullable
+    final Variable v; // null for a dimension without a variable
+    @Nullable
+    final H5iospWriter.Vinfo vinfo;
+    final AttributeContainerMutable atts;
+    DimInfo scaleOf; // if this is a dimension scale
+    long address;
+
+    H5Dataset(String name, @Nullable Variable v) {
+      this.name = name;
+      this.v = v;
+      this.vinfo = (v == null) ? null : (H5iospWriter.Vinfo) v.getSPobject();
+      this.atts =
+          (v == null) ? new AttributeContainerMutable(name) : AttributeContainerMutable.copyFrom(v.attributes());
+    }
+  }
+
+  private final NetcdfFileFormat format;
+  private final H5Group root;
+  private final Map<Group, H5Group> groupMap = new IdentityHashMap<>();
+  private final Map<Variable, H5Dataset> datasetMap = new IdentityHashMap<>();
+  private final Map<Dimension, DimInfo> dimMap = new IdentityHashMap<>();
+  private int ndims;
+  private boolean fill;
+
+  /**
+   * Map the netCDF objects to HDF5 objects, and set the dimensions of the H5iospWriter.Vinfo of each variable.
+   *
+   * @param format NETCDF4 or NETCDF4_CLASSIC
+   * @param rootGroup the root group of the file being written. Each Variable has an H5iospWriter.Vinfo as its
+   *        SPobject.
+   */
+  H5headerWriter(NetcdfFileFormat format, Group rootGroup) {
+    this.format = format;
+    this.root = makeGroup(rootGroup);
+  }
+
+  private H5Group makeGroup(Group g) {
+    H5Group hg = new H5Group(g);
+    groupMap.put(g, hg);
+
+    // dimension scales first, in the order of the dimensions, as netcdf-c does
+    for (Dimension d : g.getDimensions()) {
+      DimInfo dim = new DimInfo(d.getShortName(), d.isUnlimited(), d.getLength(), ndims++);
+      dimMap.put(d, dim);
+      Variable coord = g.findVariableLocal(d.getShortName());
+      if (coord != null && (coord.getRank() == 0 || !coord.getDimension(0).getShortName().equals(d.getShortName()))) {
+        coord = null; // not a coordinate variable
+      }
+      H5Dataset scale = new H5Dataset(d.getShortName(), coord);
+      scale.scaleOf = dim;
+      dim.scale = scale;
+      hg.datasets.add(scale);
+      if (coord != null) {
+        datasetMap.put(coord, scale);
+      }
+    }
+
+    List<H5Dataset> anonScales = new ArrayList<>();
+    for (Variable v : g.getVariables()) {
+      H5Dataset ds = datasetMap.get(v);
+      if (ds == null) {
+        // a variable with the same name as a dimension, but not its coordinate variable
+        String name = (g.findDimensionLocal(v.getShortName()) == null) ? v.getShortName()
+            : NetcdfFormatUtils.NETCDF4_NON_COORD + v.getShortName();
+        ds = new H5Dataset(name, v);
+        datasetMap.put(v, ds);
+        hg.datasets.add(ds);
+      }
+
+      H5iospWriter.Vinfo vinfo = ds.vinfo;
+      vinfo.dims = new DimInfo[v.getRank()];
+      for (int i = 0; i < v.getRank(); i++) {
+        Dimension d = v.getDimension(i);
+        if (d.isShared()) {
+          vinfo.dims[i] = findDimInfo(g, d);
+        } else { // same name as Nc4writer uses
+          DimInfo dim = new DimInfo(v.getShortName() + "_Dim" + i, false, d.getLength(), ndims++);
+          H5Dataset scale = new H5Dataset(dim.name, null);
+          scale.scaleOf = dim;
+          dim.scale = scale;
+          anonScales.add(scale);
+          vinfo.dims[i] = dim;
+        }
+      }
+      if (ds.scaleOf == null) {
+        for (int i = 0; i < vinfo.dims.length; i++) {
+          vinfo.dims[i].refVariables.add(ds);
+          vinfo.dims[i].refIndexes.add(i);
+        }
+      }
+    }
+    hg.datasets.addAll(anonScales);
+
+    for (Group nested : g.getGroups()) {
+      hg.groups.add(makeGroup(nested));
+    }
+    return hg;
+  }
+
+  private DimInfo findDimInfo(Group g, Dimension d) {
+    for (Group p = g; p != null; p = p.getParentGroup()) {
+      Dimension found = p.findDimensionLocal(d.getShortName());
+      if (found != null) {
+        return dimMap.get(found);
+      }
+    }
+    throw new IllegalStateException("Cant find dimension " + d.getShortName());
+  }
+
+  /** Replace or add an attribute of a variable. */
+  void updateAttribute(Variable v, Attribute att) {
+    H5Dataset ds = datasetMap.get(v);
+    if (ds == null) {
+      throw new IllegalArgumentException("Variable " + v.getFullName() + " is not in the file being written");
+    }
+    ds.atts.addAttribute(att);
+  }
+
+  /** Replace or add an attribute of a group. */
+  void updateAttribute(Group g, Attribute att) {
+    H5Group hg = groupMap.get(g);
+    if (hg == null) {
+      throw new IllegalArgumentException("Group " + g.getFullName() + " is not in the file being written");
+    }
+    hg.atts.addAttribute(att);
+  }
+
+  /**
+   * Write the chunk indexes, the global heap and the object headers, starting at pos. Then write the superblock at
+   * the start of the file.
+   *
+   * @param fill if the fill value is written to unwritten data.
+   * @return the end of file address.
+   */
+  long write(RandomAccessFile raf, long pos, boolean fill) throws IOException {
+    this.fill = fill;
+    List<H5Dataset> datasets = new ArrayList<>();
+    List<Object> objects = new ArrayList<>(); // in file order
+    addObjects(root, datasets, objects);
+    for (H5Dataset ds : datasets) {
+      if (ds.vinfo != null && ds.vinfo.isChunked && !ds.vinfo.stored.isEmpty()) {
+        pos = writeChunkIndex(raf, pos, ds.vinfo);
+      }
+    }
+
+    // first pass finds the sizes, so the addresses are known in the second pass
+    GlobalHeap heap = new GlobalHeap(null);
+    List<byte[]> encoded = encode(objects, heap);
+    long heapAddress = pos;
+    long[] collections = heap.layout(heapAddress);
+    pos += heap.size();
+    for (int i = 0; i < objects.size(); i++) {
+      setAddress(objects.get(i), pos);
+      pos += encoded.get(i).length;
+    }
+
+    heap = new GlobalHeap(collections);
+    encoded = encode(objects, heap);
+    heap.write(raf, heapAddress);
+    raf.seek(heapAddress + heap.size());
+    for (byte[] b : encoded) {
+      raf.write(b);
+    }
+    if (raf.getFilePointer() != pos) {
+      throw new IllegalStateException("Object header sizes changed " + raf.getFilePointer() + " != " + pos);
+    }
+
+    writeSuperblock(raf, pos);
+    return pos;
+  }
+
+  private void addObjects(H5Group hg, List<H5Dataset> datasets, List<Object> objects) {
+    objects.add(hg);
+    objects.addAll(hg.datasets);
+    datasets.addAll(hg.datasets);
+    for (H5Group nested : hg.groups) {
+      addObjects(nested, datasets, objects);
+    }
+  }
+
+  private void setAddress(Object object, long address) {
+    if (object instanceof H5Group) {
+      ((H5Group) object).address = address;
+    } else {
+      ((H5Dataset) object).address = address;
+    }
+  }
+
+  private List<byte[]> encode(List<Object> objects, GlobalHeap heap) {
+    List<byte[]> result = new ArrayList<>(objects.size());
+    for (Object object : objects) {
+      result.add(
+          (object instanceof H5Group) ? encodeGroup((H5Group) object, heap) : encodeDataset((H5Dataset) object, heap));
+    }
+    return result;
+  }
+
+  private void writeSuperblock(RandomAccessFile raf, long eof) throws IOException {
+    Out out = new Out();
+    out.put(SIGNATURE).put(2).put(8).put(8).put(0);
+    out.putLong(0).putLong(UNDEFINED).putLong(eof).putLong(root.address);
+    out.putInt(checksum(out.array(), 0, out.size()));
+    raf.seek(0);
+    raf.write(out.array(), 0, out.size());
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+  // object headers
+
+  private byte[] encodeGroup(H5Group hg, GlobalHeap heap) {
+    List<Att> atts = new ArrayList<>();
+    if (hg == root && !format.isExtendedModel()) {
+      atts.add(makeScalarInt(NetcdfFormatUtils.NETCDF4_STRICT, 1));
+    }
+    for (Attribute att : hg.atts) {
+      addAttribute(atts, att, null, heap);
+    }
+
+    Out msgs = new Out();
+    int nlinks = hg.datasets.size() + hg.groups.size();
+    int m = startMessage(msgs, LINK_INFO, 0, 0);
+    msgs.put(0).put(3).putLong(nlinks).putLong(UNDEFINED).putLong(UNDEFINED).putLong(UNDEFINED);
+    endMessage(msgs, m);
+    m = startMessage(msgs, GROUP_INFO, 0, 0);
+    msgs.put(0).put(0);
+    endMessage(msgs, m);
+
+    int order = 0;
+    for (H5Dataset ds : hg.datasets) {
+      writeLink(msgs, ds.name, order++, ds.address);
+    }
+    for (H5Group nested : hg.groups) {
+      writeLink(msgs, nested.name, order++, nested.address);
+    }
+    writeAttributes(msgs, atts);
+    return objectHeader(msgs);
+  }
+
+  private void writeLink(Out msgs, String name, int order, long address) {
+    byte[] nameb = name.getBytes(StandardCharsets.UTF_8);
+    boolean isAscii = nameb.length == name.length();
+    int flags = 0x04 | (nameb.length < 256 ? 0 : 1) | (isAscii ? 0 : 0x10);
+    int m = startMessage(msgs, LINK, 0, 0);
+    msgs.put(1).put(flags).putLong(order);
+    if (!isAscii) {
+      msgs.put(1); // UTF-8
+    }
+    if (nameb.length < 256) {
+      msgs.put(nameb.length);
+    } else {
+      msgs.putShort(nameb.length);
+    }
+    msgs.put(nameb).putLong(address);
+    endMessage(msgs, m);
+  }
+
+  private byte[] encodeDataset(H5Dataset ds, GlobalHeap heap) {
+    H5iospWriter.Vinfo vinfo = ds.vinfo;
+    DimInfo[] dims = (vinfo == null) ? new DimInfo[] {ds.scaleOf} : vinfo.dims;
+    int rank = dims.length;
+    int elemSize = (vinfo == null) ? 4 : vinfo.elemSize;
+    boolean isChunked = (vinfo == null) ? ds.scaleOf.isUnlimited : vinfo.isChunked;
+
+    List<Att> atts = new ArrayList<>();
+    for (Attribute att : ds.atts) {
+      addAttribute(atts, att, vinfo, heap);
+    }
+    if (ds.scaleOf != null) {
+      atts.add(makeFixedString(H5header.HDF5_CLASS, H5header.HDF5_DIMENSION_SCALE));
+      String name = (ds.v == null) ? DIM_WITHOUT_VARIABLE + String.format("%10d", ds.scaleOf.length) : ds.name;
+      atts.add(makeFixedString(H5header.HDF5_DIMENSION_NAME, name));
+      if (!ds.scaleOf.refVariables.isEmpty()) {
+        atts.add(makeReferenceList(ds.scaleOf));
+      }
+      atts.add(makeScalarInt(NetcdfFormatUtils.NETCDF4_DIMID, ds.scaleOf.dimid));
+      if (rank > 1) {
+        Out data = new Out();
+        for (DimInfo dim : dims) {
+          data.putInt(dim.dimid);
+        }
+        atts.add(new Att(NetcdfFormatUtils.NETCDF4_COORDINATES, fixedType(4, true), simpleSpace(rank),
+            data.toByteArray()));
+      }
+    } else if (rank > 0) {
+      Out data = new Out();
+      for (DimInfo dim : dims) {
+        byte[] ref = new Out().putLong(dim.scale.address).toByteArray();
+        heap.add(ref, 1, data);
+      }
+      atts.add(new Att(H5header.HDF5_DIMENSION_LIST, REFERENCES_TYPE, simpleSpace(rank), data.toByteArray()));
+    }
+
+    Out msgs = new Out();
+    int m = startMessage(msgs, DATASPACE, 0, 0);
+    msgs.put(2).put(rank).put(rank > 0 ? 1 : 0).put(rank > 0 ? 1 : 0);
+    for (DimInfo dim : dims) {
+      msgs.putLong(dim.length);
+    }
+    for (DimInfo dim : dims) {
+      msgs.putLong(dim.isUnlimited ? UNDEFINED : dim.length);
+    }
+    endMessage(msgs, m);
+
+    m = startMessage(msgs, DATATYPE, 1, 0);
+    if (vinfo == null) {
+      msgs.put(FLOAT_TYPE);
+    } else {
+      writeDatatype(msgs, vinfo.dataType);
+    }
+    endMessage(msgs, m);
+
+    byte[] fillValue = (vinfo == null) ? encodeFillValue(ArrayType.FLOAT, null) : vinfo.fillValue;
+    m = startMessage(msgs, FILL_VALUE, 1, 0);
+    // space allocation time late or incremental, fill value write time if set or never, fill value defined
+    int fillFlags = (isChunked ? 3 : 2) | (fill || vinfo == null ? 8 : 4) | 0x20;
+    msgs.put(3).put(fillFlags).putInt(fillValue.length).put(fillValue);
+    endMessage(msgs, m);
+
+    if (vinfo != null && vinfo.deflateLevel > 0) {
+      m = startMessage(msgs, FILTER_PIPELINE, 0, 0);
+      msgs.put(2).put(vinfo.shuffle ? 2 : 1);
+      if (vinfo.shuffle) { // optional, element size
+        msgs.putShort(2).putShort(1).putShort(1).putInt(elemSize);
+      }
+      msgs.putShort(1).putShort(1).putShort(1).putInt(vinfo.deflateLevel); // optional, deflate level
+      endMessage(msgs, m);
+    }
+
+    long address = (vinfo == null) ? UNDEFINED : vinfo.address;
+    m = startMessage(msgs, LAYOUT, 0, 0);
+    if (isChunked) {
+      msgs.put(3).put(2).put(rank + 1).putLong(address);
+      for (int i = 0; i < rank; i++) {
+        msgs.putInt((vinfo == null) ? 1 : vinfo.chunkShape[i]);
+      }
+      msgs.putInt(elemSize);
+    } else {
+      long size = elemSize;
+      for (DimInfo dim : dims) {
+        size *= dim.length;
+      }
+      msgs.put(3).put(1).putLong(address).putLong(size);
+    }
+    endMessage(msgs, m);
+
+    writeAttributes(msgs, atts);
+    return objectHeader(msgs);
+  }
+
+  // version 2 object header, attribute creation order tracked and indexed
+  private byte[] objectHeader(Out msgs) {
+    int size = msgs.size();
+    int sizeFlag = (size < 256) ? 0 : (size < 65536) ? 1 : 2;
+    Out out = new Out();
+    out.put('O').put('H').put('D').put('R').put(2).put(sizeFlag | 0x04 | 0x08);
+    if (sizeFlag == 0) {
+      out.put(size);
+    } else if (sizeFlag == 1) {
+      out.putShort(size);
+    } else {
+      out.putInt(size);
+    }
+    out.put(msgs.array(), 0, size);
+    out.putInt(checksum(out.array(), 0, out.size()));
+    return out.toByteArray();
+  }
+
+  private int startMessage(Out msgs, int type, int flags, int creationOrder) {
+    msgs.put(type);
+    int pos = msgs.size();
+    msgs.putShort(0).put(flags).putShort(creationOrder);
+    return pos;
+  }
+
+  private void endMessage(Out msgs, int pos) {
+    int size = msgs.size() - pos - 5;
+    if (size > 0xffff) {
+      throw new IllegalArgumentException("HDF5 header message size " + size + " > 65535; dense storage of large"
+          + " attributes is not supported");
+    }
+    msgs.setShort(pos, size);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+  // attributes
+
+  private static class Att {
+    final String name;
+    final byte[] type;
+    final byte[] space;
+    final byte[] data;
+
+    Att(String name, byte[] type, byte[] space, byte[] data) {
+      this.name = name;
+      this.type = type;
+      this.space = space;
+      this.data = data;
+    }
+  }
+
+  private void writeAttributes(Out msgs, List<Att> atts) {
+    int m = startMessage(msgs, ATTRIBUTE_INFO, 0, 0);
+    msgs.put(0).put(3).putShort(atts.size()).putLong(UNDEFINED).putLong(UNDEFINED).putLong(UNDEFINED);
+    endMessage(msgs, m);
+
+    int order = 0;
+    for (Att att : atts) {
+      byte[] nameb = att.name.getBytes(StandardCharsets.UTF_8);
+      m = startMessage(msgs, ATTRIBUTE, 0, order++);
+      msgs.put(3).put(0).putShort(nameb.length + 1).putShort(att.type.length).putShort(att.space.length);
+      msgs.put(nameb.length == att.name.length() ? 0 : 1); // ASCII or UTF-8
+      msgs.put(nameb).put(0).put(att.type).put(att.space).put(att.data);
+      endMessage(msgs, m);
+    }
+  }
+
+  // Convert a netCDF attribute, skipping the ones handled internally, like Nc4writer does
+  private void addAttribute(List<Att> atts, Attribute att, @Nullable H5iospWriter.Vinfo vinfo, GlobalHeap heap) {
+    String name = att.getShortName();
+    if (name.equals(H5header.HDF5_CLASS) || name.equals(H5header.HDF5_DIMENSION_LIST)
+        || name.equals(H5header.HDF5_DIMENSION_SCALE) || name.equals(H5header.HDF5_DIMENSION_LABELS)
+        || name.equals(H5header.HDF5_DIMENSION_NAME) || name.equals(H5header.HDF5_REFERENCE_LIST)
+        || name.equals(NetcdfFormatUtils.NETCDF4_COORDINATES) || name.equals(NetcdfFormatUtils.NETCDF4_DIMID)
+        || name.equals(NetcdfFormatUtils.NETCDF4_STRICT) || name.equals(CDM.CHUNK_SIZES)
+        || name.equals(CDM.COMPRESS) || CDM.NETCDF4_SPECIAL_ATTS.contains(name)) {
+      return;
+    }
+
+    if (vinfo != null && name.equals(CDM.FILL_VALUE)) {
+      if (att.getLength() != 1) {
+        log.warn("_FillValue length must be one on var = {}", vinfo.name);
+        return;
+      }
+      if (att.getArrayType() != vinfo.dataType
+          && (att.getArrayType() != ArrayType.STRING || vinfo.dataType != ArrayType.CHAR)) {
+        log.warn("_FillValue type ({}) does not agree with variable '{}' type ({}).", att.getArrayType(), vinfo.name,
+            vinfo.dataType);
+        return;
+      }
+      if (vinfo.dataType == ArrayType.CHAR) {
+        atts.add(makeText(name, vinfo.fillValue));
+        return;
+      }
+    }
+
+    ArrayType dataType = att.getArrayType();
+    if (dataType == ArrayType.STRING) {
+      if (!format.isExtendedModel()) { // concatenate into a character attribute
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < att.getLength(); i++) {
+          text.append(att.getStringValue(i));
+        }
+        atts.add(makeText(name, text.toString().getBytes(StandardCharsets.UTF_8)));
+      } else {
+        Out data = new Out();
+        for (int i = 0; i < att.getLength(); i++) {
+          String s = att.getStringValue(i);
+          byte[] b = (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+          heap.add(b, b.length, data);
+        }
+        atts.add(new Att(name, VLEN_STRING_TYPE, simpleSpace(att.getLength()), data.toByteArray()));
+      }
+      return;
+    }
+
+    Array values = att.getValues();
+    if (values == null || values.getSize() == 0) {
+      Out type = new Out();
+      writeDatatype(type, dataType);
+      atts.add(new Att(name, type.toByteArray(), new byte[] {2, 0, 0, 2}, new byte[0])); // null dataspace
+      return;
+    }
+    if (dataType == ArrayType.CHAR) {
+      atts.add(makeText(name, (byte[]) values.get1DJavaArray(DataType.BYTE)));
+      return;
+    }
+
+    int n = (int) values.getSize();
+    ByteBuffer bb = ByteBuffer.allocate(n * dataType.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    H5iospWriter.encode(values.get1DJavaArray(dataType.getDataType()), 0, n, bb);
+    Out type = new Out();
+    writeDatatype(type, dataType);
+    atts.add(new Att(name, type.toByteArray(), simpleSpace(n), bb.array()));
+  }
+
+  // netcdf-c writes character attributes as a scalar fixed length string
+  private Att makeText(String name, byte[] text) {
+    if (text.length == 0) {
+      text = new byte[1];
+    }
+    return new Att(name, fixedStringType(text.length), scalarSpace(), text);
+  }
+
+  // the dimension scale attributes are null terminated
+  private Att makeFixedString(String name, String value) {
+    byte[] b = value.getBytes(StandardCharsets.UTF_8);
+    return new Att(name, fixedStringType(b.length + 1), scalarSpace(), Arrays.copyOf(b, b.length + 1));
+  }
+
+  private Att makeScalarInt(String name, int value) {
+    return new Att(name, fixedType(4, true), scalarSpace(), new Out().putInt(value).toByteArray());
+  }
+
+  private Att makeReferenceList(DimInfo dim) {
+    Out data = new Out();
+    for (int i = 0; i < dim.refVariables.size(); i++) {
+      data.putLong(dim.refVariables.get(i).address).putInt(dim.refIndexes.get(i)).putInt(0);
+    }
+    return new Att(H5header.HDF5_REFERENCE_LIST, REFERENCE_LIST_TYPE, simpleSpace(dim.refVariables.size()),
+        data.toByteArray());
+  }
+
+  private static byte[] scalarSpace() {
+    return new byte[] {2, 0, 0, 0};
+  }
+
+  private static byte[] simpleSpace(long n) {
+    return new Out().put(2).put(1).put(0).put(1).putLong(n).toByteArray();
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+  // datatypes
+
+  private static void writeDatatype(Out out, ArrayType dataType) {
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+      case SHORT:
+      case USHORT:
+      case INT:
+      case UINT:
+      case LONG:
+      case ULONG:
+        writeFixedType(out, dataType.getSize(), !dataType.isUnsigned());
+        break;
+      case CHAR:
+        out.put(fixedStringType(1));
+        break;
+      case FLOAT:
+        out.put(FLOAT_TYPE);
+        break;
+      case DOUBLE:
+        out.put(DOUBLE_TYPE);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported data type " + dataType);
+    }
+  }
+
+  private static void writeFixedType(Out out, int size, boolean signed) {
+    out.put(0x10).put(signed ? 0x08 : 0).put(0).put(0).putInt(size).putShort(0).putShort(8 * size);
+  }
+
+  private static byte[] fixedType(int size, boolean signed) {
+    Out out = new Out();
+    writeFixedType(out, size, signed);
+    return out.toByteArray();
+  }
+
+  // null terminated ASCII string
+  private static byte[] fixedStringType(int size) {
+    return new Out().put(0x13).put(0).put(0).put(0).putInt(size).toByteArray();
+  }
+
+  /** The fill value of a variable in file order, from the _FillValue attribute or the netCDF default. */
+  static byte[] encodeFillValue(ArrayType dataType, @Nullable Attribute att) {
+    ByteBuffer bb = ByteBuffer.allocate(dataType.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    if (dataType == ArrayType.CHAR) {
+      String s = (att == null) ? null : att.getStringValue();
+      byte[] b = (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+      return new byte[] {(b.length == 0) ? 0 : b[0]};
+    }
+    Number value = (att == null || att.getNumericValue() == null) ? NetcdfFormatUtils.getFillValueDefault(dataType)
+        : att.getNumericValue();
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+        bb.put(value.byteValue());
+        break;
+      case SHORT:
+      case USHORT:
+        bb.putShort(value.shortValue());
+        break;
+      case INT:
+      case UINT:
+        bb.putInt(value.intValue());
+        break;
+      case LONG:
+      case ULONG:
+        bb.putLong(value.longValue());
+        break;
+      case FLOAT:
+        bb.putFloat(value.floatValue());
+        break;
+      case DOUBLE:
+        bb.putDouble(value.doubleValue());
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported data type " + dataType);
+    }
+    return bb.array();
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+  // chunk index
+
+  /**
+   * Write the version 1 B-tree indexing the chunks of a variable at pos, and set its address in vinfo.
+   * Each node is written at the full size HDF5 expects, with 2K children.
+   *
+   * @return the file position after the B-tree.
+   */
+  private long writeChunkIndex(RandomAccessFile raf, long pos, H5iospWriter.Vinfo vinfo) throws IOException {
+    List<H5iospWriter.StoredChunk> chunks = new ArrayList<>(vinfo.stored.values());
+    chunks.sort(Comparator.comparing(c -> c.offset, H5headerWriter::compare));
+    int ndims = vinfo.chunkShape.length + 1;
+    int keySize = 8 + 8 * ndims;
+    int nodeSize = 24 + 2 * BTREE_K * (keySize + 8) + keySize;
+
+    List<byte[]> keys = new ArrayList<>(); // left key of each child
+    List<Long> children = new ArrayList<>();
+    for (H5iospWriter.StoredChunk chunk : chunks) {
+      keys.add(chunkKey(chunk.size, chunk.offset, null, 0));
+      children.add(chunk.filePos);
+    }
+    H5iospWriter.StoredChunk last = chunks.get(chunks.size() - 1);
+    byte[] lastKey = chunkKey(0, last.offset, vinfo.chunkShape, vinfo.elemSize);
+
+    int level = 0;
+    while (true) {
+      int n = children.size();
+      int nnodes = (n + 2 * BTREE_K - 1) / (2 * BTREE_K);
+      List<byte[]> parentKeys = new ArrayList<>();
+      List<Long> parentChildren = new ArrayList<>();
+      raf.seek(pos);
+      for (int node = 0; node < nnodes; node++) {
+        int start = node * 2 * BTREE_K;
+        int end = Math.min(n, start + 2 * BTREE_K);
+        Out out = new Out();
+        out.put('T').put('R').put('E').put('E').put(1).put(level).putShort(end - start);
+        out.putLong(node > 0 ? pos + (long) (node - 1) * nodeSize : UNDEFINED);
+        out.putLong(node < nnodes - 1 ? pos + (long) (node + 1) * nodeSize : UNDEFINED);
+        for (int i = start; i < end; i++) {
+          out.put(keys.get(i)).putLong(children.get(i));
+        }
+        out.put(end < n ? keys.get(end) : lastKey);
+        raf.write(out.array(), 0, out.size());
+        raf.write(new byte[nodeSize - out.size()]);
+        parentKeys.add(keys.get(start));
+        parentChildren.add(pos + (long) node * nodeSize);
+      }
+      long levelStart = pos;
+      pos += (long) nnodes * nodeSize;
+      if (nnodes == 1) {
+        vinfo.address = levelStart;
+        return pos;
+      }
+      keys = parentKeys;
+      children = parentChildren;
+      level++;
+    }
+  }
+
+  // row major order of the chunk offsets
+  private static int compare(int[] offset1, int[] offset2) {
+    for (int i = 0; i < offset1.length; i++) {
+      if (offset1[i] != offset2[i]) {
+        return Integer.compare(offset1[i], offset2[i]);
+      }
+    }
+    return 0;
+  }
+
+  // chunk size, filter mask, offset of each dimension plus the element dimension
+  private byte[] chunkKey(int size, int[] offset, @Nullable int[] add, int elemSize) {
+    Out out = new Out();
+    out.putInt(size).putInt(0);
+    for (int i = 0; i < offset.length; i++) {
+      out.putLong(offset[i] + (add == null ? 0 : add[i]));
+    }
+    out.putLong(elemSize);
+    return out.toByteArray();
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+
+  /** The global heap, holding the variable length data of attributes. */
+  private static class GlobalHeap {
+    @Nullable
+    private final long[] collectionAddress; // from the first pass
+    private final List<Out> collections = new ArrayList<>();
+    private int nobjects; // in the last collection
+    private long size;
+
+    GlobalHeap(@Nullable long[] collectionAddress) {
+      this.collectionAddress = collectionAddress;
+    }
+
+    /** Add an object to the heap, and write its heap id (number of elements, collection address, index) to out. */
+    void add(byte[] data, int nelems, Out out) {
+      if (collections.isEmpty() || nobjects == MAX_HEAP_OBJECTS) {
+        collections.add(new Out());
+        nobjects = 0;
+      }
+      Out c = collections.get(collections.size() - 1);
+      int index = ++nobjects;
+      c.putShort(index).putShort(0).putInt(0).putLong(data.length).put(data);
+      c.put(new byte[(8 - data.length % 8) % 8]);
+
+      int which = collections.size() - 1;
+      out.putInt(nelems).putLong(collectionAddress == null ? 0 : collectionAddress[which]).putInt(index);
+    }
+
+    /** Assign the collection addresses, starting at pos. */
+    long[] layout(long pos) {
+      long[] result = new long[collections.size()];
+      size = 0;
+      for (int i = 0; i < collections.size(); i++) {
+        result[i] = pos + size;
+        size += collectionSize(collections.get(i));
+      }
+      return result;
+    }
+
+    long size() {
+      return size;
+    }
+
+    private long collectionSize(Out c) {
+      long used = 16 + c.size();
+      long total = Math.max(MIN_HEAP_SIZE, used);
+      if (total > used && total - used < 16) { // room for the free space object header
+        total = used + 16;
+      }
+      return total;
+    }
+
+    void write(RandomAccessFile raf, long pos) throws IOException {
+      layout(pos);
+      raf.seek(pos);
+      for (Out c : collections) {
+        long total = collectionSize(c);
+        Out out = new Out();
+        out.put('G').put('C').put('O').put('L').put(1).put(0).put(0).put(0).putLong(total);
+        out.put(c.array(), 0, c.size());
+        long free = total - 16 - c.size();
+        if (free > 0) { // the free space object
+          out.putShort(0).putShort(0).putInt(0).putLong(free);
+          out.put(new byte[(int) free - 16]);
+        }
+        raf.write(out.array(), 0, out.size());
+      }
+    }
+  }
+
+  /** A growable little endian byte buffer. */
+  static class Out {
+    private byte[] buf = new byte[256];
+    private int size;
+
+    Out put(int b) {
+      ensure(1);
+      buf[size++] = (byte) b;
+      return this;
+    }
+
+    Out put(byte[] b) {
+      return put(b, 0, b.length);
+    }
+
+    Out put(byte[] b, int off, int len) {
+      ensure(len);
+      System.arraycopy(b, off, buf, size, len);
+      size += len;
+      return this;
+    }
+
+    Out putShort(int v) {
+      return put(v).put(v >> 8);
+    }
+
+    Out putInt(int v) {
+      return putShort(v).putShort(v >> 16);
+    }
+
+    Out putLong(long v) {
+      return putInt((int) v).putInt((int) (v >> 32));
+    }
+
+    void setShort(int pos, int v) {
+      buf[pos] = (byte) v;
+      buf[pos + 1] = (byte) (v >> 8);
+    }
+
+    int size() {
+      return size;
+    }
+
+    byte[] array() {
+      return buf;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, size);
+    }
+
+    private void ensure(int n) {
+      if (size + n > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(2 * buf.length, size + n));
+      }
+    }
+  }
+
+  /** The Jenkins lookup3 hash (hashlittle, initval 0), used as the checksum of HDF5 metadata. */
+  static int checksum(byte[] key, int offset, int length) {
+    int a, b, c;
+    a = b = c = 0xdeadbeef + length;
+    int k = offset;
+    while (length > 12) {
+      a += getInt(key, k);
+      b += getInt(key, k + 4);
+      c += getInt(key, k + 8);
+      // mix
+      a -= c;
+      a ^= Integer.rotateLeft(c, 4);
+      c += b;
+      b -= a;
+      b ^= Integer.rotateLeft(a, 6);
+      a += c;
+      c -= b;
+      c ^= Integer.rotateLeft(b, 8);
+      b += a;
+      a -= c;
+      a ^= Integer.rotateLeft(c, 16);
+      c += b;
+      b -= a;
+      b ^= Integer.rotateLeft(a, 19);
+      a += c;
+      c -= b;
+      c ^= Integer.rotateLeft(b, 4);
+      b += a;
+      length -= 12;
+      k += 12;
+    }
+    if (length == 0) {
+      return c;
+    }
+    byte[] last = new byte[12]; // zero padded
+    System.arraycopy(key, k, last, 0, length);
+    a += getInt(last, 0);
+    b += getInt(last, 4);
+    c += getInt(last, 8);
+    // final
+    c ^= b;
+    c -= Integer.rotateLeft(b, 14);
+    a ^= c;
+    a -= Integer.rotateLeft(c, 11);
+    b ^= a;
+    b -= Integer.rotateLeft(a, 25);
+    c ^= b;
+    c -= Integer.rotateLeft(b, 16);
+    a ^= c;
+    a -= Integer.rotateLeft(c, 4);
+    b ^= a;
+    b -= Integer.rotateLeft(a, 14);
+    c ^= b;
+    c -= Integer.rotateLeft(b, 24);
+    return c;
+  }
+
+  private static int getInt(byte[] b, int pos) {
+    return (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8 | (b[pos + 2] & 0xff) << 16 | (b[pos + 3] & 0xff) << 24;
+  }
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.Formatter;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructure;
@@ -105,6 +106,8 @@ public class H5iosp extends AbstractIOServiceProvider {
   //////////////////////////////////////////////////////////////////////////////////
 
   H5header header;
+  @Nullable
+  H5chunkCache chunkCache;
   boolean isEos;
   boolean includeOriginalAttributes;
   private Charset valueCharset;
@@ -116,6 +119,7 @@ public class H5iosp extends AbstractIOServiceProvider {
     raf.order(RandomAccessFile.BIG_ENDIAN);
     header = new H5header(raf, rootGroup, this);
     header.read(null);
+    chunkCache = H5chunkCache.forFile();
 
     // check if its an HDF5-EOS file
     if (useHdfEos) {
@@ -167,6 +171,12 @@ public class H5iosp extends AbstractIOServiceProvider {
     return header;
   }
 
+  /** The cache of decoded chunks used by this file, or null if chunk caching is disabled. */
+  @Nullable
+  public H5chunkCache getChunkCache() {
+    return chunkCache;
+  }
+
   public Array readData(Variable v2, Section section) throws IOException, InvalidRangeException {
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
     if (debugRead)
@@ -193,7 +203,7 @@ public class H5iosp extends AbstractIOServiceProvider {
         System.out.println("read variable filtered " + v2.getFullName() + " vinfo = " + vinfo);
       assert vinfo.isChunked;
       ByteOrder bo = vinfo.typeInfo.endian;
-      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo);
+      layout = new H5tiledLayoutBB(v2, wantSection, raf, vinfo.mfp.getFilters(), bo, chunkCache);
       if (vinfo.typeInfo.isVString) {
         data = readFilteredStringData((LayoutBB) layout);
       } else {
@@ -564,6 +574,16 @@ public class H5iosp extends AbstractIOServiceProvider {
     // LOOK headerParser.raf = this.raf;
   }
 
+  @Override
+  public String getDetailInfo() {
+    Formatter f = new Formatter();
+    f.format("%s", super.getDetailInfo());
+    if (chunkCache != null) {
+      chunkCache.showStats(f);
+    }
+    return f.toString();
+  }
+
   @Override
   public String toStringDebug(Object o) {
     if (o instanceof Variable) {
@@ -38,6 +38,7 @@ public class H5iospArrays extends H5iosp {
     raf.order(RandomAccessFile.BIG_ENDIAN);
     header = new H5header(raf, rootGroup, this);
     header.read(null);
+    chunkCache = H5chunkCache.forFile();
 
     // check if its an HDF5-EOS file
     if (useHdfEos) {
@@ -85,7 +86,7 @@ public class H5iospArrays extends H5iosp {
         assert vinfo.isChunked;
         ByteOrder bo = vinfo.typeInfo.endian;
         Section oldSection = ArraysConvert.convertSection(wantSection);
-        layout = new H5tiledLayoutBB(v2, oldSection, raf, vinfo.mfp.getFilters(), bo);
+        layout = new H5tiledLayoutBB(v2, oldSection, raf, vinfo.mfp.getFilters(), bo, chunkCache);
         if (vinfo.typeInfo.isVString) {
           data = readFilteredStringData((LayoutBB) layout);
         } else {
@@ -0,0 +1,745 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import ucar.array.ArrayType;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.ma2.StructureData;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Structure;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.internal.iosp.IospFileWriter;
+import ucar.nc2.internal.util.ExecutionExceptions;
+import ucar.nc2.iosp.Layout;
+import ucar.nc2.iosp.LayoutRegular;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingDefault;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Creates netCDF-4 files in Java, without the netCDF C library.
+ * <p>
+ * Variables are contiguous or chunked, as decided by the Nc4Chunking, and chunks may be compressed with the deflate
+ * and shuffle filters. The data is written as it comes, each chunk once it has been completely written, or when the
+ * file is closed. All metadata is written when the file is closed, see H5headerWriter.
+ * <p>
+ * Limitations: only new files; no String, Structure, Sequence, enum or opaque variables; attributes must fit in the
+ * object header (64 Kbytes each). A chunk that is written to after it has been stored is read back and stored again,
+ * leaving its old storage unused.
+ */
+public class H5iospWriter implements IospFileWriter {
+  // experimental multithreading: compress chunks on this executor; null means compress on the calling thread
+  private static Executor executor;
+  private static int maxChunksInFlight = 2 * Runtime.getRuntime().availableProcessors();
+  private static long maxOpenChunkBytes = 256L * 1024 * 1024;
+
+  /**
+   * Set the Executor used to compress (shuffle, deflate) chunks concurrently.
+   * Chunks and contiguous data are always appended to the file on the calling thread, chunks in the order they were
+   * completed and contiguous data when first written, so the file is the same whether or not an Executor is used.
+   *
+   * @param exec use this Executor, or null (the default) to compress serially on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of chunks that are compressed concurrently, for each file being written.
+   * This bounds the memory used by parallel compression to roughly max * (compressed + uncompressed chunk size).
+   * Only used when an Executor has been set.
+   *
+   * @param max must be > 0, default is twice the number of available processors.
+   */
+  public static void setMaxChunksInFlight(int max) {
+    Preconditions.checkArgument(max > 0, "maxChunksInFlight must be > 0");
+    maxChunksInFlight = max;
+  }
+
+  /**
+   * Set the maximum number of bytes of the chunks that are partially written, for each file being written.
+   * When there are more, the least recently used chunks are stored, and read back if they are written to again.
+   *
+   * @param max must be > 0, default is 256 Mbytes.
+   */
+  public static void setMaxOpenChunkBytes(long max) {
+    Preconditions.checkArgument(max > 0, "maxOpenChunkBytes must be > 0");
+    maxOpenChunkBytes = max;
+  }
+
+  private static final int writeBufferSize = 1024 * 1024;
+
+  private final NetcdfFileFormat format;
+  private Nc4Chunking chunker = new Nc4ChunkingDefault();
+  private boolean fill = true;
+  private RandomAccessFile raf;
+  private NetcdfFile ncfile;
+  private H5headerWriter headerw;
+  private long eof; // data is appended here
+
+  // the chunks being written to, least recently used first
+  private final LinkedHashMap<ChunkKey, Chunk> openChunks = new LinkedHashMap<>(16, 0.75f, true);
+  private long openChunkBytes;
+  // the chunks being compressed, in the order they are written
+  private final ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+  private final Set<ChunkKey> pendingKeys = new HashSet<>();
+  private ByteBuffer writeBuffer; // reused by writeContiguous
+
+  /** @param format NETCDF4 or NETCDF4_CLASSIC */
+  public H5iospWriter(NetcdfFileFormat format) {
+    Preconditions.checkArgument(format.isNetdf4format(), "H5iospWriter writes netCDF-4 only, not " + format);
+    this.format = format;
+  }
+
+  /** Set the Nc4Chunking, or null for the default Nc4ChunkingDefault. */
+  public void setChunker(@Nullable Nc4Chunking chunker) {
+    if (chunker != null)
+      this.chunker = chunker;
+  }
+
+  @Override
+  public NetcdfFile create(String filename, Group.Builder rootGroup, int extra, long preallocateSize, boolean largeFile)
+      throws IOException {
+    makeVinfo(rootGroup);
+    this.ncfile = NetcdfFile.builder().setRootGroup(rootGroup).setLocation(filename).build();
+    this.headerw = new H5headerWriter(format, ncfile.getRootGroup());
+
+    raf = new RandomAccessFile(filename, "rw");
+    raf.order(RandomAccessFile.LITTLE_ENDIAN);
+    eof = H5headerWriter.SUPERBLOCK_SIZE; // written at close
+    return ncfile;
+  }
+
+  private void makeVinfo(Group.Builder g) {
+    for (Variable.Builder<?> vb : g.vbuilders) {
+      vb.setSPobject(new Vinfo(vb, chunker));
+    }
+    for (Group.Builder nested : g.gbuilders) {
+      makeVinfo(nested);
+    }
+  }
+
+  @Override
+  public void openForWriting(String location, Group.Builder rootGroup, CancelTask cancelTask) {
+    throw new UnsupportedOperationException("H5iospWriter can only create new files");
+  }
+
+  @Override
+  public NetcdfFile getOutputFile() {
+    return ncfile;
+  }
+
+  @Override
+  public void setFill(boolean fill) {
+    this.fill = fill;
+  }
+
+  @Override
+  public int appendStructureData(Structure s, StructureData sdata) {
+    throw new UnsupportedOperationException("H5iospWriter cannot write Structures");
+  }
+
+  @Override
+  public void updateAttribute(Variable v2, Attribute att) {
+    headerw.updateAttribute(v2, att);
+  }
+
+  @Override
+  public void updateAttribute(Group g, Attribute att) {
+    headerw.updateAttribute(g, att);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (raf == null) {
+      return;
+    }
+    try {
+      for (Chunk chunk : new ArrayList<>(openChunks.values())) {
+        storeChunk(chunk);
+      }
+      writePending(0);
+      eof = headerw.write(raf, eof, fill);
+      raf.setMinLength(eof); // truncate an existing longer file
+    } finally {
+      raf.close();
+      raf = null;
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+  // write
+
+  @Override
+  public void writeData(Variable v2, Section section, Array values) throws IOException, InvalidRangeException {
+    Vinfo vinfo = (Vinfo) v2.getSPobject();
+    if (section.getRank() != vinfo.dims.length) {
+      throw new InvalidRangeException("Section " + section + " must have rank " + vinfo.dims.length);
+    }
+    for (int i = 0; i < vinfo.dims.length; i++) {
+      H5headerWriter.DimInfo dim = vinfo.dims[i];
+      Range r = section.getRange(i);
+      if (r.length() == 0) {
+        return;
+      }
+      if (dim.isUnlimited) {
+        dim.length = Math.max(dim.length, r.last() + 1);
+      } else if (r.last() >= dim.length) {
+        throw new InvalidRangeException("Section " + section + " is outside of variable " + v2.getFullName());
+      }
+    }
+
+    // in index order, converted if needed; chars are written as bytes
+    DataType dataType = v2.getDataType();
+    Object pa = values.get1DJavaArray(dataType == DataType.CHAR ? DataType.BYTE : dataType);
+    if (vinfo.isChunked) {
+      writeChunked(vinfo, section, pa);
+    } else {
+      writeContiguous(vinfo, section, pa);
+    }
+  }
+
+  private void writeContiguous(Vinfo vinfo, Section section, Object pa) throws IOException, InvalidRangeException {
+    int[] shape = vinfo.getShape();
+    if (writeBuffer == null) {
+      writeBuffer = ByteBuffer.allocate(writeBufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    ByteBuffer bb = writeBuffer;
+    bb.clear();
+
+    if (vinfo.address == H5headerWriter.UNDEFINED) { // allocate on first write
+      writePending(0); // after the chunks completed before it
+      long size = vinfo.elemSize * new Section(shape).computeSize();
+      vinfo.address = eof;
+      eof += size;
+      if (fill) {
+        int n = (int) Math.min(size, writeBufferSize) / vinfo.elemSize;
+        for (int i = 0; i < n; i++) {
+          bb.put(vinfo.fillValue);
+        }
+        for (long pos = vinfo.address; pos < eof; pos += bb.position()) {
+          raf.seek(pos);
+          raf.write(bb.array(), 0, (int) Math.min(bb.position(), eof - pos));
+        }
+        bb.clear();
+      }
+    }
+
+    int elemSize = vinfo.elemSize;
+    Layout index = new LayoutRegular(vinfo.address, elemSize, shape, section);
+    long bufferPos = 0; // file position of the start of bb
+    int paIndex = 0;
+    while (index.hasNext()) {
+      Layout.Chunk chunk = index.next();
+      long filePos = chunk.getSrcPos();
+      int nelems = chunk.getNelems();
+      while (nelems > 0) {
+        if (bb.position() > 0 && (filePos != bufferPos + bb.position() || bb.remaining() < elemSize)) {
+          writeBuffer(bufferPos, bb);
+        }
+        if (bb.position() == 0) {
+          bufferPos = filePos;
+        }
+        int n = Math.min(nelems, bb.remaining() / elemSize);
+        encode(pa, paIndex, n, bb);
+        paIndex += n;
+        nelems -= n;
+        filePos += (long) n * elemSize;
+      }
+    }
+    if (bb.position() > 0) {
+      writeBuffer(bufferPos, bb);
+    }
+  }
+
+  private void writeBuffer(long filePos, ByteBuffer bb) throws IOException {
+    raf.seek(filePos);
+    raf.write(bb.array(), 0, bb.position()); // large writes bypass the raf buffer
+    bb.clear();
+  }
+
+  // copy the values into each chunk that the section intersects
+  private void writeChunked(Vinfo vinfo, Section section, Object pa) throws IOException {
+    int rank = section.getRank();
+    int[] chunkShape = vinfo.chunkShape;
+    int[] shape = section.getShape();
+    int[] srcStride = new int[rank]; // in pa
+    int[] dstStride = new int[rank]; // in the chunk
+    int[] lo = new int[rank]; // chunk indexes
+    int[] hi = new int[rank];
+    for (int i = rank - 1; i >= 0; i--) {
+      srcStride[i] = (i == rank - 1) ? 1 : srcStride[i + 1] * shape[i + 1];
+      dstStride[i] = (i == rank - 1) ? 1 : dstStride[i + 1] * chunkShape[i + 1];
+      lo[i] = section.getRange(i).first() / chunkShape[i];
+      hi[i] = section.getRange(i).last() / chunkShape[i];
+    }
+
+    int[] ci = lo.clone();
+    int[] offset = new int[rank];
+    int[] kmin = new int[rank]; // the section indexes inside the chunk
+    int[] kmax = new int[rank];
+    while (true) {
+      long count = 1;
+      for (int i = 0; i < rank; i++) {
+        Range r = section.getRange(i);
+        offset[i] = ci[i] * chunkShape[i];
+        kmin[i] = Math.max(0, -Math.floorDiv(r.first() - offset[i], r.stride()));
+        kmax[i] = Math.min(r.length() - 1, Math.floorDiv(offset[i] + chunkShape[i] - 1 - r.first(), r.stride()));
+        count *= Math.max(0, kmax[i] - kmin[i] + 1);
+      }
+
+      if (count > 0) {
+        Chunk chunk = getChunk(vinfo, offset.clone());
+        int n = kmax[rank - 1] - kmin[rank - 1] + 1;
+        int step = section.getRange(rank - 1).stride();
+        int[] k = kmin.clone();
+        while (true) {
+          int src = 0;
+          int dst = 0;
+          for (int i = 0; i < rank; i++) {
+            Range r = section.getRange(i);
+            src += k[i] * srcStride[i];
+            dst += (r.first() + k[i] * r.stride() - offset[i]) * dstStride[i];
+          }
+          if (step == 1) {
+            chunk.data.position(dst * vinfo.elemSize);
+            encode(pa, src, n, chunk.data);
+            chunk.setWritten(dst, dst + n);
+          } else {
+            for (int j = 0; j < n; j++) {
+              chunk.data.position((dst + j * step) * vinfo.elemSize);
+              encode(pa, src + j, 1, chunk.data);
+              chunk.setWritten(dst + j * step, dst + j * step + 1);
+            }
+          }
+          if (!increment(k, kmin, kmax, rank - 1)) {
+            break;
+          }
+        }
+        if (chunk.nwritten >= chunk.nelems) {
+          storeChunk(chunk);
+        }
+      }
+
+      if (!increment(ci, lo, hi, rank)) {
+        break;
+      }
+    }
+  }
+
+  // odometer over the first rank dimensions; false when done
+  private static boolean increment(int[] index, int[] min, int[] max, int rank) {
+    int d = rank - 1;
+    while (d >= 0 && index[d] == max[d]) {
+      index[d] = min[d];
+      d--;
+    }
+    if (d < 0) {
+      return false;
+    }
+    index[d]++;
+    return true;
+  }
+
+  // get the open chunk, or read back a stored one, or start a new one
+  private Chunk getChunk(Vinfo vinfo, int[] offset) throws IOException {
+    ChunkKey key = new ChunkKey(vinfo, offset);
+    Chunk chunk = openChunks.get(key);
+    if (chunk != null) {
+      return chunk;
+    }
+    if (pendingKeys.contains(key)) {
+      writePending(0);
+    }
+
+    byte[] data;
+    BitSet written = new BitSet();
+    StoredChunk stored = vinfo.stored.remove(key);
+    if (stored != null) {
+      data = readChunk(vinfo, stored);
+      if (stored.written != null) {
+        written = stored.written;
+      } else {
+        written.set(0, vinfo.chunkBytes / vinfo.elemSize);
+      }
+    } else {
+      data = new byte[vinfo.chunkBytes];
+      if (!isZero(vinfo.fillValue)) {
+        System.arraycopy(vinfo.fillValue, 0, data, 0, vinfo.elemSize);
+        for (int n = vinfo.elemSize; n < data.length; n *= 2) {
+          System.arraycopy(data, 0, data, n, Math.min(n, data.length - n));
+        }
+      }
+    }
+
+    long nelems = 1; // the number of elements inside the variable, unlimited dimensions may grow
+    for (int i = 0; i < offset.length; i++) {
+      H5headerWriter.DimInfo dim = vinfo.dims[i];
+      nelems *= dim.isUnlimited ? vinfo.chunkShape[i] : Math.min(vinfo.chunkShape[i], dim.length - offset[i]);
+    }
+    chunk = new Chunk(key, ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN), nelems, written);
+    openChunks.put(key, chunk);
+    openChunkBytes += data.length;
+    while (openChunkBytes > maxOpenChunkBytes && openChunks.size() > 1) {
+      storeChunk(openChunks.values().iterator().next()); // least recently used
+    }
+    return chunk;
+  }
+
+  private static boolean isZero(byte[] b) {
+    for (byte value : b) {
+      if (value != 0)
+        return false;
+    }
+    return true;
+  }
+
+  // compress the chunk, and write it when it is its turn
+  private void storeChunk(Chunk chunk) throws IOException {
+    openChunks.remove(chunk.key);
+    openChunkBytes -= chunk.data.capacity();
+    Vinfo vinfo = chunk.key.vinfo;
+    byte[] raw = chunk.data.array();
+    BitSet written = (chunk.nwritten >= chunk.nelems) ? null : chunk.written;
+    if (executor == null) {
+      writeChunk(chunk.key, (vinfo.deflateLevel == 0) ? raw : vinfo.compress(raw), written);
+    } else if (vinfo.deflateLevel == 0 && pending.isEmpty()) {
+      writeChunk(chunk.key, raw, written);
+    } else {
+      // uncompressed chunks wait for the chunks before them, so chunks are written in the order they were completed
+      FutureTask<byte[]> task = new FutureTask<>(() -> (vinfo.deflateLevel == 0) ? raw : vinfo.compress(raw));
+      if (vinfo.deflateLevel == 0) {
+        task.run();
+      } else {
+        executor.execute(task);
+      }
+      pending.add(new PendingChunk(chunk.key, task, written));
+      pendingKeys.add(chunk.key);
+      writePending(maxChunksInFlight);
+    }
+  }
+
+  // write pending chunks in order, until there are no more than max left
+  private void writePending(int max) throws IOException {
+    while (pending.size() > max) {
+      PendingChunk p = pending.remove();
+      pendingKeys.remove(p.key);
+      byte[] compressed;
+      try {
+        compressed = p.task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while compressing HDF5 chunk of " + p.key.vinfo.name);
+      } catch (ExecutionException e) {
+        throw ExecutionExceptions.propagateIO(e);
+      }
+      writeChunk(p.key, compressed, p.written);
+    }
+  }
+
+  private void writeChunk(ChunkKey key, byte[] bytes, @Nullable BitSet written) throws IOException {
+    raf.seek(eof);
+    raf.write(bytes);
+    key.vinfo.stored.put(key, new StoredChunk(key.offset, eof, bytes.length, written));
+    eof += bytes.length;
+  }
+
+  private byte[] readChunk(Vinfo vinfo, StoredChunk stored) throws IOException {
+    byte[] bytes = new byte[stored.size];
+    raf.seek(stored.filePos);
+    raf.readFully(bytes);
+    return (vinfo.deflateLevel == 0) ? bytes : vinfo.uncompress(bytes);
+  }
+
+  /** Put n elements of the primitive array pa starting at start into bb. */
+  static void encode(Object pa, int start, int n, ByteBuffer bb) {
+    int pos = bb.position();
+    if (pa instanceof byte[]) {
+      bb.put((byte[]) pa, start, n);
+      return;
+    }
+    int elemSize;
+    if (pa instanceof short[]) {
+      bb.asShortBuffer().put((short[]) pa, start, n);
+      elemSize = 2;
+    } else if (pa instanceof int[]) {
+      bb.asIntBuffer().put((int[]) pa, start, n);
+      elemSize = 4;
+    } else if (pa instanceof long[]) {
+      bb.asLongBuffer().put((long[]) pa, start, n);
+      elemSize = 8;
+    } else if (pa instanceof float[]) {
+      bb.asFloatBuffer().put((float[]) pa, start, n);
+      elemSize = 4;
+    } else if (pa instanceof double[]) {
+      bb.asDoubleBuffer().put((double[]) pa, start, n);
+      elemSize = 8;
+    } else {
+      throw new IllegalStateException("Unsupported array " + pa.getClass().getName());
+    }
+    bb.position(pos + n * elemSize);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////
+
+  /** How a variable is stored. The SPobject of the Variables of the NetcdfFile being written. */
+  static class Vinfo {
+    final String name;
+    final ArrayType dataType;
+    final int elemSize;
+    final byte[] fillValue; // in file order
+    final boolean isChunked;
+    final int[] chunkShape;
+    final int chunkBytes;
+    final int deflateLevel; // 0 means no filters
+    final boolean shuffle;
+
+    H5headerWriter.DimInfo[] dims; // set by H5headerWriter
+    long address = H5headerWriter.UNDEFINED; // the contiguous data or the chunk index
+    final Map<ChunkKey, StoredChunk> stored = new HashMap<>();
+
+    Vinfo(Variable.Builder<?> vb, Nc4Chunking chunker) {
+      this.name = vb.shortName;
+      this.dataType = vb.dataType;
+      switch (dataType) {
+        case BYTE:
+        case UBYTE:
+        case CHAR:
+        case SHORT:
+        case USHORT:
+        case INT:
+        case UINT:
+        case LONG:
+        case ULONG:
+        case FLOAT:
+        case DOUBLE:
+          break;
+        default:
+          throw new UnsupportedOperationException("H5iospWriter cannot write " + dataType + " variable " + name);
+      }
+      this.elemSize = dataType.getSize();
+      Attribute fillAtt = vb.getAttributeContainer().findAttribute(CDM.FILL_VALUE);
+      this.fillValue = H5headerWriter.encodeFillValue(dataType, fillAtt);
+
+      int rank = vb.getRank();
+      boolean wantChunks = rank > 0 && chunker.isChunked(vb);
+      this.isChunked = wantChunks || vb.isUnlimited(); // HDF5 requires chunks to extend a dataset
+      if (isChunked) {
+        long[] want = wantChunks ? chunker.computeChunking(vb) : null;
+        this.chunkShape = new int[rank];
+        long size = elemSize;
+        for (int i = 0; i < rank; i++) {
+          Dimension d = vb.getDimensions().get(i);
+          long n = (want != null && want.length == rank) ? want[i] : (d.isUnlimited() ? 1 : d.getLength());
+          if (!d.isUnlimited()) {
+            n = Math.min(n, d.getLength());
+          }
+          chunkShape[i] = (int) Math.max(1, n);
+          size *= chunkShape[i];
+        }
+        if (size > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Chunk " + Arrays.toString(chunkShape) + " of " + name + " is too big");
+        }
+        this.chunkBytes = (int) size;
+        this.deflateLevel = chunker.getDeflateLevel(vb);
+        this.shuffle = deflateLevel > 0 && chunker.isShuffle(vb) && elemSize > 1;
+      } else {
+        this.chunkShape = null;
+        this.chunkBytes = 0;
+        this.deflateLevel = 0;
+        this.shuffle = false;
+      }
+    }
+
+    int[] getShape() {
+      int[] shape = new int[dims.length];
+      for (int i = 0; i < dims.length; i++) {
+        shape[i] = dims[i].length;
+      }
+      return shape;
+    }
+
+    // shuffle, then deflate
+    byte[] compress(byte[] raw) {
+      byte[] data = shuffle ? shuffle(raw, elemSize) : raw;
+      Deflater deflater = new Deflater(deflateLevel);
+      try {
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+          int n = deflater.deflate(buffer);
+          out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+
+    // inflate, then unshuffle
+    byte[] uncompress(byte[] compressed) throws IOException {
+      byte[] data = new byte[chunkBytes];
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(compressed);
+        int n = 0;
+        while (n < data.length && !inflater.finished()) {
+          int count = inflater.inflate(data, n, data.length - n);
+          if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          n += count;
+        }
+        if (n != data.length) {
+          throw new IOException("Chunk of " + name + " has " + n + " bytes, expected " + data.length);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        inflater.end();
+      }
+      return shuffle ? unshuffle(data, elemSize) : data;
+    }
+  }
+
+  // byte i of each element together
+  static byte[] shuffle(byte[] data, int elemSize) {
+    int n = data.length / elemSize;
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < elemSize; i++) {
+      for (int j = 0; j < n; j++) {
+        result[i * n + j] = data[j * elemSize + i];
+      }
+    }
+    return result;
+  }
+
+  static byte[] unshuffle(byte[] data, int elemSize) {
+    int n = data.length / elemSize;
+    byte[] result = new byte[data.length];
+    for (int i = 0; i < elemSize; i++) {
+      for (int j = 0; j < n; j++) {
+        result[j * elemSize + i] = data[i * n + j];
+      }
+    }
+    return result;
+  }
+
+  static class ChunkKey {
+    final Vinfo vinfo;
+    final int[] offset;
+
+    ChunkKey(Vinfo vinfo, int[] offset) {
+      this.vinfo = vinfo;
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      ChunkKey that = (ChunkKey) o;
+      return vinfo == that.vinfo && Arrays.equals(offset, that.offset);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(vinfo) + Arrays.hashCode(offset);
+    }
+  }
+
+  /** A chunk being written to. */
+  private static class Chunk {
+    final ChunkKey key;
+    final ByteBuffer data;
+    final long nelems; // complete when this many elements have been written
+    final BitSet written; // the elements written, so that writing an element again is only counted once
+    long nwritten;
+
+    Chunk(ChunkKey key, ByteBuffer data, long nelems, BitSet written) {
+      this.key = key;
+      this.data = data;
+      this.nelems = nelems;
+      this.written = written;
+      this.nwritten = written.cardinality();
+    }
+
+    // elements from (inclusive) to (exclusive) have been written
+    void setWritten(int from, int to) {
+      int next = written.nextSetBit(from);
+      if (next < 0 || next >= to) { // the usual case, none written before
+        nwritten += to - from;
+      } else {
+        nwritten += to - from - written.get(from, to).cardinality();
+      }
+      written.set(from, to);
+    }
+  }
+
+  private static class PendingChunk {
+    final ChunkKey key;
+    final FutureTask<byte[]> task;
+    @Nullable
+    final BitSet written;
+
+    PendingChunk(ChunkKey key, FutureTask<byte[]> task, @Nullable BitSet written) {
+      this.key = key;
+      this.task = task;
+      this.written = written;
+    }
+  }
+
+  /** A chunk written to the file. */
+  static class StoredChunk {
+    final int[] offset;
+    final long filePos;
+    final int size;
+    @Nullable
+    final BitSet written; // the elements written, null if all of them
+
+    StoredChunk(int[] offset, long filePos, int size, @Nullable BitSet written) {
+      this.offset = offset;
+      this.filePos = filePos;
+      this.size = size;
+      this.written = written;
+    }
+  }
+}
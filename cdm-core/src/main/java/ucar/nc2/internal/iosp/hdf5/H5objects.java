@@ -1713,8 +1713,6 @@ public class H5objects {
     }
   }
 
-  private static final String[] filterName = {"", "deflate", "shuffle", "fletcher32", "szip", "nbit", "scaleoffset"};
-
   class Filter {
     short id; // 1=deflate, 2=shuffle, 3=fletcher32, 4=szip, 5=nbit, 6=scaleoffset
     short flags;
@@ -1745,7 +1743,7 @@ public class H5objects {
     }
 
     String getFilterName(int id) {
-      return (id < filterName.length) ? filterName[id] : "StandardFilter " + id;
+      return H5filters.getName(id & 0xffff);
     }
 
     public String toString() {
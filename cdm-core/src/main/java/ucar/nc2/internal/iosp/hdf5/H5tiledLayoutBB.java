@@ -7,20 +7,29 @@ package ucar.nc2.internal.iosp.hdf5;
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import com.google.common.util.concurrent.Futures;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Variable;
 import ucar.nc2.internal.iosp.hdf5.H5objects.Filter;
+import ucar.nc2.internal.util.ExecutionExceptions;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
-import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.ReadableRemoteFile;
 
 /**
  * Iterator to read/write subsets of an array.
@@ -34,24 +43,56 @@ import ucar.unidata.io.RandomAccessFile;
 public class H5tiledLayoutBB implements LayoutBB {
   static boolean debugFilter;
 
-  private static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  private static final String INFLATEBUFFERSIZE_PROPERTY = "unidata.h5iosp.inflate.buffersize";
   private static boolean debug;
 
+  // experimental multithreading: decode filtered chunks on this executor; null means decode on the calling thread
+  private static Executor executor;
+  private static int maxChunksInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Set the Executor used to decode (inflate, unshuffle, etc) filtered chunks concurrently.
+   * The chunk bytes are always read on the calling thread; only the filters are run on the executor.
+   *
+   * @param exec use this Executor, or null (the default) to decode serially on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of chunks that are read ahead and decoded concurrently, for each read.
+   * This bounds the memory used by parallel decoding to roughly max * (compressed + uncompressed chunk size).
+   * Only used when an Executor has been set, or when reading a remote file, where the chunks that are read ahead
+   * are fetched together with RandomAccessFile.readRanges().
+   *
+   * @param max must be > 0, default is twice the number of available processors.
+   */
+  public static void setMaxChunksInFlight(int max) {
+    Preconditions.checkArgument(max > 0, "maxChunksInFlight must be > 0");
+    maxChunksInFlight = max;
+  }
+
+  /** The maximum number of chunks that are read ahead and decoded concurrently, for each read. */
+  public static int getMaxChunksInFlight() {
+    return maxChunksInFlight;
+  }
+
   private final LayoutBBTiled delegate;
 
   private final RandomAccessFile raf;
   private final Filter[] filters;
   private final ByteOrder byteOrder;
+  @Nullable
+  private final H5chunkCache chunkCache;
+  @Nullable
+  private final H5chunkCache.FileId fileId; // only used with a chunkCache
+  private final String varName;
 
   private final Section want;
   private final int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
   private final int elemSize; // last dimension of the StorageLayout message
   private final int nChunkDims;
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
-
   /**
    * Constructor.
    * This is for HDF5 chunked data storage. The data is read by chunk, for efficency.
@@ -65,6 +106,23 @@ public class H5tiledLayoutBB implements LayoutBB {
    */
   public H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, Filter[] filters, ByteOrder byteOrder)
       throws InvalidRangeException, IOException {
+    this(v2, wantSection, raf, filters, byteOrder, null);
+  }
+
+  /**
+   * Constructor.
+   * This is for HDF5 chunked data storage. The data is read by chunk, for efficency.
+   *
+   * @param v2 Variable to index over; assumes that vinfo is the data object
+   * @param wantSection the wanted section of data, contains a List of Range objects. must be complete
+   * @param raf the RandomAccessFile
+   * @param filters set of filters that have been applied to the data
+   * @param chunkCache get decoded chunks from this cache, and add them to it; may be null
+   * @throws InvalidRangeException if section invalid for this variable
+   * @throws IOException on io error
+   */
+  public H5tiledLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, Filter[] filters, ByteOrder byteOrder,
+      @Nullable H5chunkCache chunkCache) throws InvalidRangeException, IOException {
     wantSection = Section.fill(wantSection, v2.getShape());
 
     H5header.Vinfo vinfo = (H5header.Vinfo) v2.getSPobject();
@@ -75,6 +133,9 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.raf = raf;
     this.filters = filters;
     this.byteOrder = byteOrder;
+    this.chunkCache = chunkCache;
+    this.fileId = (chunkCache == null) ? null : new H5chunkCache.FileId(raf);
+    this.varName = v2.getFullName();
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, reletive
@@ -94,23 +155,12 @@ public class H5tiledLayoutBB implements LayoutBB {
 
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    Executor exec = executor;
+    LayoutBBTiled.DataChunkIterator dcIter = (exec == null && !(raf instanceof ReadableRemoteFile))
+        ? new DataChunkIterator(iter)
+        : new ReadAheadDataChunkIterator(iter, exec, maxChunksInFlight);
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
-    if (System.getProperty(INFLATEBUFFERSIZE_PROPERTY) != null) {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE_PROPERTY));
-        if (size <= 0)
-          H5iosp.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE_PROPERTY));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iosp.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE_PROPERTY));
-      }
-    }
-    if (debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n", INFLATEBUFFERSIZE_PROPERTY, this.inflatebuffersize);
-
     if (debug)
       System.out.println(" H5tiledLayout: " + this);
   }
@@ -161,11 +211,80 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
   }
 
+  /**
+   * Reads ahead up to maxInFlight chunks that intersect the wanted section, with a single call to
+   * RandomAccessFile.readRanges(), so that a remote file can merge them into fewer requests. If there is an
+   * executor, the chunks are decoded on it, otherwise they are decoded on the calling thread when needed.
+   * The chunk bytes are read on the calling thread, since the RandomAccessFile is not thread-safe.
+   * Chunks are returned in btree order, so the result is the same as the serial DataChunkIterator.
+   */
+  private class ReadAheadDataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final DataBTree.DataChunkIterator delegate;
+    @Nullable
+    private final Executor exec;
+    private final int maxInFlight;
+    private final ArrayDeque<DataChunk> queue = new ArrayDeque<>();
+    private int nInFlight; // number of chunks in the queue that have been read ahead
+
+    ReadAheadDataChunkIterator(DataBTree.DataChunkIterator delegate, @Nullable Executor exec, int maxInFlight)
+        throws IOException {
+      this.delegate = delegate;
+      this.exec = exec;
+      this.maxInFlight = maxInFlight;
+      fill();
+    }
+
+    public boolean hasNext() {
+      return !queue.isEmpty() || delegate.hasNext();
+    }
+
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      if (queue.isEmpty()) {
+        fill();
+      }
+      DataChunk result = queue.poll();
+      if (result.readAhead) {
+        nInFlight--;
+      }
+      fill(); // keep the pipeline full while the caller processes this chunk
+      return result;
+    }
+
+    private void fill() throws IOException {
+      List<DataChunk> toRead = new ArrayList<>();
+      List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+      while (nInFlight < maxInFlight && delegate.hasNext()) {
+        DataChunk dc = new DataChunk(delegate.next());
+        // chunks that dont intersect are skipped by LayoutBBTiled, so dont bother to read them.
+        if (dc.intersectsWant()) {
+          dc.readAhead = true;
+          if (dc.addReadRange(ranges)) {
+            toRead.add(dc);
+          }
+          nInFlight++;
+        }
+        queue.add(dc);
+      }
+      if (!ranges.isEmpty()) {
+        raf.readRanges(ranges);
+      }
+      if (exec != null) {
+        for (DataChunk dc : toRead) {
+          dc.submit(exec);
+        }
+      }
+    }
+  }
+
   private class DataChunk implements LayoutBBTiled.DataChunk {
     // Copied from ArrayList.
     private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
 
     DataBTree.DataChunk delegate;
+    // the rest are only used by ReadAheadDataChunkIterator
+    boolean readAhead; // counted by ReadAheadDataChunkIterator.nInFlight
+    byte[] raw; // undecoded chunk bytes, after they have been read ahead
+    Future<byte[]> decoded;
 
     DataChunk(DataBTree.DataChunk delegate) {
       this.delegate = delegate;
@@ -200,13 +319,97 @@ public class H5tiledLayoutBB implements LayoutBB {
       return offset;
     }
 
+    boolean intersectsWant() {
+      try {
+        return new Section(getOffset(), chunkSize).intersects(want);
+      } catch (InvalidRangeException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    // if the decoded chunk is not in the cache, add the range of chunk bytes to be read into raw, and return true.
+    boolean addReadRange(List<RandomAccessFile.ReadRange> ranges) {
+      byte[] cached = getCached();
+      if (cached != null) {
+        decoded = Futures.immediateFuture(cached);
+        return false;
+      }
+      try {
+        raw = new byte[delegate.size];
+      } catch (OutOfMemoryError e) {
+        throw chunkOutOfMemory(e);
+      }
+      ranges.add(new RandomAccessFile.ReadRange(delegate.filePos, raw, 0, delegate.size));
+      return true;
+    }
+
+    // decode the chunk bytes that have been read ahead on the executor.
+    void submit(Executor exec) {
+      byte[] data = raw;
+      raw = null;
+      FutureTask<byte[]> task = new FutureTask<>(() -> putCached(applyFilters(data)));
+      exec.execute(task);
+      decoded = task;
+    }
+
     public ByteBuffer getByteBuffer() throws IOException {
+      byte[] data = (decoded == null) ? decode() : waitForDecoded();
+      // a new ByteBuffer each time, since the caller changes its position, and the data may be shared by the cache.
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    private byte[] decode() throws IOException {
+      if (raw != null) {
+        byte[] data = raw;
+        raw = null;
+        return putCached(applyFilters(data));
+      }
+      byte[] cached = getCached();
+      if (cached != null) {
+        return cached;
+      }
+      return putCached(applyFilters(readData()));
+    }
+
+    @Nullable
+    private byte[] getCached() {
+      return (chunkCache == null) ? null : chunkCache.get(fileId, varName, getOffset());
+    }
+
+    private byte[] putCached(byte[] data) {
+      if (chunkCache != null) {
+        chunkCache.put(fileId, varName, getOffset(), data);
+      }
+      return data;
+    }
+
+    private byte[] waitForDecoded() throws IOException {
+      try {
+        return decoded.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while decoding HDF5 filtered chunk " + delegate);
+      } catch (ExecutionException e) {
+        throw ExecutionExceptions.propagateIO(e);
+      }
+    }
+
+    private byte[] readData() throws IOException {
       try {
-        // read the data
         byte[] data = new byte[delegate.size];
         raf.seek(delegate.filePos);
         raf.readFully(data);
+        return data;
+      } catch (OutOfMemoryError e) {
+        throw chunkOutOfMemory(e);
+      }
+    }
 
+    // does not use the RandomAccessFile, so may be called from any thread.
+    private byte[] applyFilters(byte[] data) throws IOException {
+      try {
         // apply filters backwards
         for (int i = filters.length - 1; i >= 0; i--) {
           Filter f = filters[i];
@@ -215,107 +418,25 @@ public class H5tiledLayoutBB implements LayoutBB {
               System.out.println("skip for chunk " + delegate);
             continue;
           }
-          if (f.id == 1) {
-            data = inflate(data);
-          } else if (f.id == 2) {
-            data = shuffle(data, f.data[0]);
-          } else if (f.id == 3) {
-            data = checkfletcher32(data);
-            /*
-             * } else if (f.id == 307) {
-             * data = unbzip2(data);
-             */
-          } else
-            throw new RuntimeException("Unknown filter type=" + f.id);
+          H5filter filter = H5filters.find(f.id & 0xffff);
+          if (filter == null)
+            throw new RuntimeException("Unknown filter type=" + f.id + " name=" + f.name);
+          int nbytes = data.length;
+          data = filter.apply(data, f.data);
+          if (debug || debugFilter)
+            System.out.println(" " + filter.getName() + " bytes in= " + nbytes + " bytes out= " + data.length);
         }
-
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
+        return data;
       } catch (OutOfMemoryError e) {
-        Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
-            + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
-        oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
-        throw oom;
+        throw chunkOutOfMemory(e);
       }
     }
 
-    /**
-     * inflate data
-     *
-     * @param compressed compressed data
-     * @return uncompressed data
-     * @throws IOException on I/O error
-     */
-    private byte[] inflate(byte[] compressed) throws IOException {
-      // run it through the Inflator
-      ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-      java.util.zip.Inflater inflater = new java.util.zip.Inflater();
-      java.util.zip.InflaterInputStream inflatestream =
-          new java.util.zip.InflaterInputStream(in, inflater, inflatebuffersize);
-      int len = Math.min(8 * compressed.length, MAX_ARRAY_LEN);
-      ByteArrayOutputStream out = new ByteArrayOutputStream(len); // Fixes KXL-349288
-      IO.copyB(inflatestream, out, len);
-
-      byte[] uncomp = out.toByteArray();
-      if (debug || debugFilter)
-        System.out.println(" inflate bytes in= " + compressed.length + " bytes out= " + uncomp.length);
-      return uncomp;
-    }
-
-    /*
-     * private byte[] unbzip2(byte[] compressed) throws IOException {
-     * int max = 20 * compressed.length;
-     * byte[] buffer = new byte[max];
-     * ByteArrayOutputStream out = new ByteArrayOutputStream(20 * compressed.length);
-     * ByteArrayInputStream in = new ByteArrayInputStream(compressed);
-     * try (org.itadaki.bzip2.BZip2InputStream bzIn = new org.itadaki.bzip2.BZip2InputStream(in, false)) {
-     * int bytesRead;
-     * int totRead = 0;
-     * while ((bytesRead = bzIn.read (buffer)) != -1) {
-     * out.write (buffer, 0, bytesRead) ; // LOOK unneeded copy
-     * totRead += bytesRead;
-     * }
-     * out.close();
-     * //System.out.printf("unbzip2=%d%n", totRead);
-     * } catch (Exception e) {
-     * e.printStackTrace();
-     * }
-     * 
-     * return out.toByteArray();
-     * }
-     */
-
-    // just strip off the 4-byte fletcher32 checksum at the end
-    private byte[] checkfletcher32(byte[] org) {
-      byte[] result = new byte[org.length - 4];
-      System.arraycopy(org, 0, result, 0, result.length);
-      if (debug)
-        System.out.println(" checkfletcher32 bytes in= " + org.length + " bytes out= " + result.length);
-      return result;
-    }
-
-    private byte[] shuffle(byte[] data, int n) {
-      if (debug)
-        System.out.println(" shuffle bytes in= " + data.length + " n= " + n);
-
-      assert data.length % n == 0;
-      if (n <= 1)
-        return data;
-
-      int m = data.length / n;
-      int[] count = new int[n];
-      for (int k = 0; k < n; k++)
-        count[k] = k * m;
-
-      byte[] result = new byte[data.length];
-      for (int i = 0; i < m; i++) {
-        for (int j = 0; j < n; j++) {
-          result[i * n + j] = data[i + count[j]];
-        }
-      }
-
-      return result;
+    private Error chunkOutOfMemory(OutOfMemoryError e) {
+      Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
+          + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
+      oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
+      return oom;
     }
 
     boolean isBitSet(int val, int bitno) {
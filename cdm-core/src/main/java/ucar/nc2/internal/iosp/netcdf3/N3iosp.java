@@ -7,8 +7,11 @@ import com.google.common.base.Preconditions;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Optional;
 
 import ucar.array.ArrayType;
@@ -37,6 +40,7 @@ import ucar.nc2.internal.iosp.netcdf3.N3header.Vinfo;
 import ucar.nc2.iosp.NetcdfFileFormat;
 import ucar.nc2.util.CancelTask;
 import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.ReadableRemoteFile;
 import javax.annotation.Nullable;
 
 /** Netcdf 3 version iosp, using Builders for immutability. */
@@ -84,6 +88,7 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
   protected N3header header;
   protected long lastModified; // used by sync
   private final boolean debugRecord = false;
+  private static final int maxSweepBytes = 8 * 1000 * 1000; // size of the blocks read by readRecordVariables
   private Charset valueCharset;
 
   @Override
@@ -250,6 +255,11 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
     Layout layout = (!v2.isUnlimited()) ? new LayoutRegular(vinfo.begin, v2.getElementSize(), v2.getShape(), section)
         : new LayoutRegularSegmented(vinfo.begin, v2.getElementSize(), header.recsize, v2.getShape(), section);
 
+    // a record variable is in one piece per record; fetch them together so a remote file can merge the requests
+    if (v2.isUnlimited() && raf instanceof ReadableRemoteFile) {
+      return IospHelper.readDataRanges(raf, layout, dataType, ByteOrder.BIG_ENDIAN);
+    }
+
     // not possible, anyway wrong returning Array instead of primitive array
     // if (layout.getTotalNelems() == 0) {
     // return Array.factory(dataType, section.getShape());
@@ -257,6 +267,125 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
     return IospHelper.readDataFill(raf, layout, dataType, null, null);
   }
 
+  /**
+   * Read a set of record variables over a range of records in one sequential pass through the record section, instead
+   * of one pass per variable. Each block of records is read once, then scattered into the variables' arrays.
+   * Obtain the N3iosp of an open file with {@code ncfile.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP)}.
+   *
+   * @param vars record variables of this file, not the record Structure.
+   * @param recordRange the records to read.
+   * @return the data of each variable, in the order of vars, with shape (recordRange.length(), other dimensions).
+   * @throws IllegalArgumentException if a variable is not a record variable of this file.
+   * @throws InvalidRangeException if recordRange goes past the last record.
+   */
+  public List<Array> readRecordVariables(List<Variable> vars, Range recordRange)
+      throws IOException, InvalidRangeException {
+    if (recordRange.last() >= header.numrecs) {
+      throw new InvalidRangeException(
+          "Record range " + recordRange + " is past the last record, numrecs = " + header.numrecs);
+    }
+    int nrecs = recordRange.length();
+    int nvars = vars.size();
+    int[] recOffset = new int[nvars]; // offset of each variable's data in a record
+    int[] recBytes = new int[nvars]; // bytes of each variable's data in a record
+    byte[][] bytes = new byte[nvars][];
+    for (int k = 0; k < nvars; k++) {
+      Variable v = vars.get(k);
+      Preconditions.checkArgument(v.getNetcdfFile() == ncfile, "Not a variable of this file: %s", v.getFullName());
+      Preconditions.checkArgument(v.isUnlimited() && !(v instanceof Structure) && v.getSPobject() instanceof Vinfo,
+          "Not a record variable: %s", v.getFullName());
+      Vinfo vinfo = (Vinfo) v.getSPobject();
+      Preconditions.checkArgument(vinfo.isRecord, "Not a record variable: %s", v.getFullName());
+      long nbytes = v.getElementSize();
+      for (int i = 1; i < v.getRank(); i++) {
+        nbytes *= v.getShape(i);
+      }
+      if (nbytes * nrecs > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException(
+            "Too large read: " + v.getFullName() + " " + (nbytes * nrecs) + " bytes exceeds " + Integer.MAX_VALUE);
+      }
+      recOffset[k] = (int) (vinfo.begin - header.recStart);
+      recBytes[k] = (int) nbytes;
+      bytes[k] = new byte[(int) nbytes * nrecs];
+    }
+    if (header.recsize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Cant read records when recsize > " + Integer.MAX_VALUE);
+    }
+
+    int recsize = (int) header.recsize;
+    int blockRecs = Math.max(1, Math.min(nrecs, maxSweepBytes / Math.max(1, recsize)));
+    byte[] block = new byte[blockRecs * recsize];
+    List<Integer> recnums = new ArrayList<>(blockRecs);
+    int count = 0;
+    for (int recnum : recordRange) {
+      recnums.add(recnum);
+      if (recnums.size() == blockRecs || count + recnums.size() == nrecs) {
+        readRecords(recnums, block);
+        for (int r = 0; r < recnums.size(); r++) {
+          for (int k = 0; k < nvars; k++) {
+            System.arraycopy(block, r * recsize + recOffset[k], bytes[k], (count + r) * recBytes[k], recBytes[k]);
+          }
+        }
+        count += recnums.size();
+        recnums.clear();
+      }
+    }
+
+    List<Array> result = new ArrayList<>(nvars);
+    for (int k = 0; k < nvars; k++) {
+      Variable v = vars.get(k);
+      int[] shape = v.getShape();
+      shape[0] = nrecs;
+      result.add(Array.factory(v.getDataType(), shape, convertBytes(v.getDataType(), bytes[k])));
+    }
+    return result;
+  }
+
+  // convert big endian bytes to the primitive array for dataType
+  private Object convertBytes(DataType dataType, byte[] bytes) {
+    ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+    switch (dataType) {
+      case BYTE:
+      case UBYTE:
+      case ENUM1:
+        return bytes;
+      case CHAR:
+        return IospHelper.convertByteToChar(bytes);
+      case SHORT:
+      case USHORT:
+      case ENUM2: {
+        short[] pa = new short[bytes.length / 2];
+        bb.asShortBuffer().get(pa);
+        return pa;
+      }
+      case INT:
+      case UINT:
+      case ENUM4: {
+        int[] pa = new int[bytes.length / 4];
+        bb.asIntBuffer().get(pa);
+        return pa;
+      }
+      case LONG:
+      case ULONG: {
+        long[] pa = new long[bytes.length / 8];
+        bb.asLongBuffer().get(pa);
+        return pa;
+      }
+      case FLOAT: {
+        float[] pa = new float[bytes.length / 4];
+        bb.asFloatBuffer().get(pa);
+        return pa;
+      }
+      case DOUBLE: {
+        double[] pa = new double[bytes.length / 8];
+        bb.asDoubleBuffer().get(pa);
+        return pa;
+      }
+      default:
+        throw new IllegalStateException("Unsupported data type " + dataType);
+    }
+  }
+
   /**
    * Read data from record structure. For N3, this is the only possible structure, and there can be no nesting.
    * Read all variables for each record, put in ByteBuffer.
@@ -289,23 +418,8 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
     members.setStructureSize((int) header.recsize);
     ArrayStructureBB structureArray = new ArrayStructureBB(members, new int[] {recordRange.length()});
 
-    // loop over records
     byte[] result = structureArray.getByteBuffer().array();
-    int count = 0;
-    for (int recnum : recordRange) {
-      if (debugRecord)
-        System.out.println(" read record " + recnum);
-      raf.seek(header.recStart + recnum * header.recsize); // where the record starts
-
-      if (recnum != header.numrecs - 1) {
-        raf.readFully(result, (int) (count * header.recsize), (int) header.recsize);
-      } else {
-        // "wart" allows file to be one byte short. since its always padding, we allow
-        raf.read(result, (int) (count * header.recsize), (int) header.recsize);
-      }
-      count++;
-    }
-
+    readRecords(recordRange, result);
     return structureArray;
   }
 
@@ -335,23 +449,36 @@ public class N3iosp extends AbstractIOServiceProvider implements IOServiceProvid
     membersb.setStructureSize((int) header.recsize);
 
     byte[] result = new byte[(int) (nrecs * header.recsize)];
-    int rcount = 0;
-    // loop over records
-    for (int recnum : recordRange) {
-      raf.seek(header.recStart + recnum * header.recsize); // where the record starts
+    readRecords(recordRange, result);
+
+    ucar.array.StructureMembers members = membersb.build();
+    Storage<StructureData> storage =
+        new ucar.array.StructureDataStorageBB(members, ByteBuffer.wrap(result), (int) section.computeSize());
+    return new ucar.array.StructureDataArray(members, section.getShape(), storage);
+  }
 
+  /** Read the records in recnums into consecutive slots of result, with a single call to raf.readRanges(). */
+  private void readRecords(Iterable<Integer> recnums, byte[] result) throws IOException {
+    List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+    int count = 0;
+    int wart = -1;
+    for (int recnum : recnums) {
+      if (debugRecord)
+        System.out.println(" read record " + recnum);
       if (recnum != header.numrecs - 1) {
-        raf.readFully(result, (int) (rcount * header.recsize), (int) header.recsize);
+        ranges.add(new RandomAccessFile.ReadRange(header.recStart + recnum * header.recsize, result,
+            (int) (count * header.recsize), (int) header.recsize));
       } else {
-        // "wart" allows file to be one byte short. since its always padding, we allow
-        raf.read(result, (int) (rcount * header.recsize), (int) header.recsize);
+        wart = count;
       }
-      rcount++;
+      count++;
     }
+    raf.readRanges(ranges);
 
-    ucar.array.StructureMembers members = membersb.build();
-    Storage<StructureData> storage =
-        new ucar.array.StructureDataStorageBB(members, ByteBuffer.wrap(result), (int) section.computeSize());
-    return new ucar.array.StructureDataArray(members, section.getShape(), storage);
+    if (wart >= 0) {
+      // "wart" allows file to be one byte short. since its always padding, we allow
+      raf.seek(header.recStart + (header.numrecs - 1) * header.recsize); // where the record starts
+      raf.read(result, (int) (wart * header.recsize), (int) header.recsize);
+    }
   }
 }
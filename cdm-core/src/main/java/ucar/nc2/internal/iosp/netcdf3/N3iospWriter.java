@@ -6,6 +6,8 @@ package ucar.nc2.internal.iosp.netcdf3;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayChar;
@@ -39,6 +41,8 @@ public class N3iospWriter extends N3iosp implements IospFileWriter {
   private boolean fill = true;
   private final IOServiceProvider iosp;
   private N3headerWriter headerw;
+  private static final int writeBufferSize = 1024 * 1024;
+  private ByteBuffer writeBuffer; // reused by writeData
 
   public N3iospWriter() {
     this.iosp = null;
@@ -204,24 +208,15 @@ public class N3iospWriter extends N3iosp implements IospFileWriter {
   }
 
   /**
-   * write data to a file for a variable.
+   * write data to a file for a variable. The values are encoded in bulk into a reusable buffer, and runs of chunks that
+   * are contiguous in the file are written together, in writes of up to writeBufferSize bytes.
    *
    * @param values write this data.
    * @param index handles skipping around in the file.
    * @param dataType dataType of the variable
    */
   private void writeData(Array values, Layout index, DataType dataType) throws java.io.IOException {
-    if ((dataType == DataType.BYTE) || (dataType == DataType.CHAR)) {
-      IndexIterator ii = values.getIndexIterator();
-      while (index.hasNext()) {
-        Layout.Chunk chunk = index.next();
-        raf.seek(chunk.getSrcPos());
-        for (int k = 0; k < chunk.getNelems(); k++)
-          raf.write(ii.getByteNext());
-      }
-      return;
-
-    } else if (dataType == DataType.STRING) { // LOOK not legal
+    if (dataType == DataType.STRING) { // LOOK not legal
       IndexIterator ii = values.getIndexIterator();
       while (index.hasNext()) {
         Layout.Chunk chunk = index.next();
@@ -233,49 +228,77 @@ public class N3iospWriter extends N3iosp implements IospFileWriter {
         }
       }
       return;
+    }
 
-    } else if (dataType == DataType.SHORT) {
-      IndexIterator ii = values.getIndexIterator();
-      while (index.hasNext()) {
-        Layout.Chunk chunk = index.next();
-        raf.seek(chunk.getSrcPos());
-        for (int k = 0; k < chunk.getNelems(); k++)
-          raf.writeShort(ii.getShortNext());
-      }
-      return;
+    if (dataType != DataType.BYTE && dataType != DataType.CHAR && dataType != DataType.SHORT
+        && dataType != DataType.INT && dataType != DataType.FLOAT && dataType != DataType.DOUBLE) {
+      throw new IllegalStateException("dataType= " + dataType);
+    }
 
-    } else if (dataType == DataType.INT) {
-      IndexIterator ii = values.getIndexIterator();
-      while (index.hasNext()) {
-        Layout.Chunk chunk = index.next();
-        raf.seek(chunk.getSrcPos());
-        for (int k = 0; k < chunk.getNelems(); k++)
-          raf.writeInt(ii.getIntNext());
+    int elemSize = dataType.getSize();
+    // in index order, converted if needed; chars are written as bytes
+    Object pa = values.get1DJavaArray(dataType == DataType.CHAR ? DataType.BYTE : dataType);
+    if (writeBuffer == null) {
+      writeBuffer = ByteBuffer.allocate(writeBufferSize).order(ByteOrder.BIG_ENDIAN);
+    }
+    ByteBuffer bb = writeBuffer;
+    bb.clear();
+
+    long bufferPos = 0; // file position of the start of bb
+    int paIndex = 0;
+    while (index.hasNext()) {
+      Layout.Chunk chunk = index.next();
+      long filePos = chunk.getSrcPos();
+      int nelems = chunk.getNelems();
+      while (nelems > 0) {
+        if (bb.position() > 0 && (filePos != bufferPos + bb.position() || bb.remaining() < elemSize)) {
+          writeBuffer(bufferPos, bb);
+        }
+        if (bb.position() == 0) {
+          bufferPos = filePos;
+        }
+        int n = Math.min(nelems, bb.remaining() / elemSize);
+        encode(pa, paIndex, n, dataType, bb);
+        paIndex += n;
+        nelems -= n;
+        filePos += (long) n * elemSize;
       }
-      return;
+    }
+    if (bb.position() > 0) {
+      writeBuffer(bufferPos, bb);
+    }
+  }
 
-    } else if (dataType == DataType.FLOAT) {
-      IndexIterator ii = values.getIndexIterator();
-      while (index.hasNext()) {
-        Layout.Chunk chunk = index.next();
-        raf.seek(chunk.getSrcPos());
-        for (int k = 0; k < chunk.getNelems(); k++)
-          raf.writeFloat(ii.getFloatNext());
-      }
-      return;
+  private void writeBuffer(long filePos, ByteBuffer bb) throws IOException {
+    raf.seek(filePos);
+    raf.write(bb.array(), 0, bb.position()); // large writes bypass the raf buffer
+    bb.clear();
+  }
 
-    } else if (dataType == DataType.DOUBLE) {
-      IndexIterator ii = values.getIndexIterator();
-      while (index.hasNext()) {
-        Layout.Chunk chunk = index.next();
-        raf.seek(chunk.getSrcPos());
-        for (int k = 0; k < chunk.getNelems(); k++)
-          raf.writeDouble(ii.getDoubleNext());
-      }
-      return;
+  // put n elements of pa starting at start into bb, big endian
+  private void encode(Object pa, int start, int n, DataType dataType, ByteBuffer bb) {
+    int pos = bb.position();
+    switch (dataType) {
+      case BYTE:
+      case CHAR:
+        bb.put((byte[]) pa, start, n);
+        return;
+      case SHORT:
+        bb.asShortBuffer().put((short[]) pa, start, n);
+        break;
+      case INT:
+        bb.asIntBuffer().put((int[]) pa, start, n);
+        break;
+      case FLOAT:
+        bb.asFloatBuffer().put((float[]) pa, start, n);
+        break;
+      case DOUBLE:
+        bb.asDoubleBuffer().put((double[]) pa, start, n);
+        break;
+      default:
+        throw new IllegalStateException("dataType= " + dataType);
     }
-
-    throw new IllegalStateException("dataType= " + dataType);
+    bb.position(pos + n * dataType.getSize());
   }
 
   private int setNumrecs(int n) throws IOException, InvalidRangeException {
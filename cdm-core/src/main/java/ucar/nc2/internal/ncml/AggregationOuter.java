@@ -4,7 +4,9 @@
 
 package ucar.nc2.internal.ncml;
 
+import com.google.common.base.Throwables;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Formatter;
@@ -35,6 +37,7 @@ import ucar.nc2.constants.CF;
 import ucar.nc2.dataset.CoordinateAxis1DTime;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dataset.VariableDS;
+import ucar.nc2.internal.util.ExecutionExceptions;
 import ucar.nc2.time.Calendar;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateUnit;
@@ -356,8 +359,48 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     if (debug)
       System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
     List<AggDataset> nestedDatasets = getDatasets();
+    if (executor != null) {
+      // each nested dataset's data goes to a known position, so the reads may complete in any order
+      long innerSize = new Section(innerSection).computeSize();
+      CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+      int count = 0;
+      for (AggDataset nested : nestedDatasets) {
+        AggDatasetOuter dod = (AggDatasetOuter) nested;
+        Range nestedJoinRange = dod.getNestedJoinRange(joinRange);
+        if (nestedJoinRange == null)
+          continue;
+
+        List<Range> readSection;
+        if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
+          readSection = innerSection;
+        } else {
+          readSection = new ArrayList<>(ranges);
+          readSection.set(0, nestedJoinRange);
+        }
+        completionService.submit(new ReaderTask(dod, mainv, cancelTask, readSection, destPos));
+        destPos += (int) (nestedJoinRange.length() * innerSize);
+        count++;
+      }
+
+      try {
+        for (int i = 0; i < count; ++i) {
+          Result r = completionService.take().get();
+          if ((cancelTask != null) && cancelTask.isCancel())
+            return null;
+          r.data = MAMath.convert(r.data, dtype); // just in case it needs to be converted
+          Array.arraycopy(r.data, 0, sectionData, r.index, (int) r.data.getSize());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while reading " + mainv.getFullName());
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), InvalidRangeException.class);
+        throw ExecutionExceptions.propagateIO(e);
+      }
+      return sectionData;
+    }
+
     for (AggDataset nested : nestedDatasets) {
       AggDatasetOuter dod = (AggDatasetOuter) nested;
       Range nestedJoinRange = dod.getNestedJoinRange(joinRange);
@@ -466,24 +509,30 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     AggDataset ds;
     Variable mainv;
     CancelTask cancelTask;
+    List<Range> section; // null means read all
     int index;
 
     ReaderTask(AggDataset ds, Variable mainv, CancelTask cancelTask, int index) {
+      this(ds, mainv, cancelTask, null, index);
+    }
+
+    ReaderTask(AggDataset ds, Variable mainv, CancelTask cancelTask, List<Range> section, int index) {
       this.ds = ds;
       this.mainv = mainv;
       this.cancelTask = cancelTask;
+      this.section = section;
       this.index = index;
     }
 
     public Result call() throws Exception {
-      Array data = ds.read(mainv, cancelTask);
+      Array data = (section == null) ? ds.read(mainv, cancelTask) : ds.read(mainv, cancelTask, section);
       return new Result(data, index);
     }
   }
 
   private static class Result {
     Array data;
-    int index;
+    int index; // the dataset index, or the destination position of a section read
 
     Result(Array data, int index) {
       this.data = data;
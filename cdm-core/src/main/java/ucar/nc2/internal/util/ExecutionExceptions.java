@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.util;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Rethrow the exception that failed a task run on an Executor, from the thread waiting for its result.
+ * Use as {@code throw ExecutionExceptions.propagateIO(e);} so the compiler knows the catch block does not complete.
+ */
+public class ExecutionExceptions {
+
+  /**
+   * Throw the cause of e if it is an IOException or unchecked, else return it wrapped in an IOException.
+   */
+  public static IOException propagateIO(ExecutionException e) throws IOException {
+    Throwable cause = e.getCause();
+    Throwables.throwIfInstanceOf(cause, IOException.class);
+    Throwables.throwIfUnchecked(cause);
+    return new IOException(cause);
+  }
+
+  /**
+   * Throw the cause of e if it is unchecked, else return it wrapped in a RuntimeException.
+   * For tasks that do no IO.
+   */
+  public static RuntimeException propagateUnchecked(ExecutionException e) {
+    Throwable cause = e.getCause();
+    Throwables.throwIfUnchecked(cause);
+    return new RuntimeException(cause);
+  }
+
+  private ExecutionExceptions() {}
+}
@@ -8,6 +8,8 @@ import com.google.common.base.Preconditions;
 import ucar.unidata.io.RandomAccessFile;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /** Helper for reading data that has been bit packed. */
 public class BitReader {
@@ -114,7 +116,7 @@ public class BitReader {
       assert shift >= 0;
 
       // put it there
-      result |= myBits << shift;
+      result |= (long) myBits << shift;
 
       // -- put bit to result ----------------------
       // update information on what we consumed
@@ -125,6 +127,104 @@ public class BitReader {
     return result;
   }
 
+  /**
+   * Read the next n values of nb bits each, as unsigned ints. Gives the same values as calling bits2UInt(nb) n times,
+   * but reads all the bytes at once, and unpacks each value from a 64 bit word.
+   *
+   * @param nb the number of bits in each value, must be 0 <= nb <= 32. Values that don't fit in 31 bits are negative.
+   * @param result put the values here.
+   * @param offset starting at this index in result.
+   * @param n the number of values to read.
+   * @throws java.io.IOException on read error
+   */
+  public void bits2UInt(int nb, int[] result, int offset, int n) throws IOException {
+    Preconditions.checkArgument(nb >= 0 && nb <= Integer.SIZE, "nb must be 0 <= nb <= 32");
+    Preconditions.checkPositionIndexes(offset, offset + n, result.length);
+    if (nb == 0) {
+      Arrays.fill(result, offset, offset + n, 0);
+      return;
+    }
+    long bit = firstBit();
+    ByteBuffer bb = readBits(bit, (long) nb * n);
+    for (int i = offset; i < offset + n; i++) {
+      result[i] = (int) getBits(bb, bit, nb);
+      bit += nb;
+    }
+    setLastBit(bb, bit);
+  }
+
+  /**
+   * Read the next n values of nb bits each, as unsigned longs. Gives the same values as calling bits2UInt(nb) n times,
+   * but reads all the bytes at once, and unpacks each value from a 64 bit word.
+   *
+   * @param nb the number of bits in each value, must be 0 <= nb <= 64.
+   * @param result put the values here.
+   * @param offset starting at this index in result.
+   * @param n the number of values to read.
+   * @throws java.io.IOException on read error
+   */
+  public void bits2UInt(int nb, long[] result, int offset, int n) throws IOException {
+    Preconditions.checkArgument(nb >= 0 && nb <= Long.SIZE, "nb must be 0 <= nb <= 64");
+    Preconditions.checkPositionIndexes(offset, offset + n, result.length);
+    if (nb == 0) {
+      Arrays.fill(result, offset, offset + n, 0);
+      return;
+    }
+    long bit = firstBit();
+    ByteBuffer bb = readBits(bit, (long) nb * n);
+    for (int i = offset; i < offset + n; i++) {
+      result[i] = getBits(bb, bit, nb);
+      bit += nb;
+    }
+    setLastBit(bb, bit);
+  }
+
+  // The bulk readers put the current byte at index 0 of their buffer, this is the first unread bit in it.
+  private long firstBit() {
+    return (bitPos == 0) ? BIT_LENGTH : BIT_LENGTH - bitPos;
+  }
+
+  // Read the bytes holding the next nbits into a big endian buffer, after the current byte,
+  // with enough padding at the end to read a long starting at any of them.
+  private ByteBuffer readBits(long firstBit, long nbits) throws IOException {
+    long nbytes = (firstBit + nbits + BIT_LENGTH - 1) / BIT_LENGTH;
+    Preconditions.checkArgument(nbytes + Long.BYTES + 1 < Integer.MAX_VALUE, "too many bits to read: %s", nbits);
+    byte[] buff = new byte[(int) nbytes + Long.BYTES + 1];
+    buff[0] = bitBuf;
+    int len = (int) nbytes - 1;
+    if (raf != null) {
+      raf.readFully(buff, 1, len);
+    } else {
+      if (dataPos + len > data.length)
+        throw new EOFException();
+      System.arraycopy(data, dataPos, buff, 1, len);
+      dataPos += len;
+    }
+    return ByteBuffer.wrap(buff);
+  }
+
+  // the nb bits starting at bit, 0 < nb <= 64
+  private static long getBits(ByteBuffer bb, long bit, int nb) {
+    int index = (int) (bit >>> 3);
+    int shift = (int) (bit & 7);
+    long word = bb.getLong(index) << shift;
+    if (shift + nb > Long.SIZE) {
+      word |= (bb.get(index + Long.BYTES) & BYTE_BITMASK) >>> (BIT_LENGTH - shift);
+    }
+    return word >>> (Long.SIZE - nb);
+  }
+
+  // Leave the reader in the same state as if the bits had been read one value at a time.
+  private void setLastBit(ByteBuffer bb, long bit) {
+    int used = (int) (bit % BIT_LENGTH);
+    if (used == 0) {
+      bitPos = 0;
+    } else {
+      bitBuf = bb.get((int) (bit / BIT_LENGTH));
+      bitPos = BIT_LENGTH - used;
+    }
+  }
+
   /**
    * Read the next nb bits and return the value as a signed long.
    *
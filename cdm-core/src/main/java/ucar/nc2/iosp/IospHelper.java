@@ -168,6 +168,61 @@ public class IospHelper {
     throw new IllegalStateException("unknown type= " + dataType);
   }
 
+  /**
+   * Read data subset from RandomAccessFile, create primitive array of size Layout.getTotalNelems.
+   * All the chunks of the Layout are read with a single call to RandomAccessFile.readRanges(), so that a remote file
+   * can merge them into fewer requests. The Layout must cover all of the wanted elements.
+   *
+   * @param raf read from here.
+   * @param layout handles skipping around in the file.
+   * @param dataType dataType of the variable, must not be STRING
+   * @param byteOrder byte order of the data in the file
+   * @return primitive array with data read in; char[] for CHAR
+   * @throws java.io.IOException on read error
+   */
+  public static Object readDataRanges(RandomAccessFile raf, Layout layout, DataType dataType, ByteOrder byteOrder)
+      throws java.io.IOException {
+    int elemSize = layout.getElemSize();
+    byte[] bytes = new byte[Math.toIntExact(layout.getTotalNelems() * elemSize)];
+    List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+    while (layout.hasNext()) {
+      Layout.Chunk chunk = layout.next();
+      ranges.add(new RandomAccessFile.ReadRange(chunk.getSrcPos(), bytes, (int) chunk.getDestElem() * elemSize,
+          chunk.getNelems() * elemSize));
+    }
+    raf.readRanges(ranges);
+
+    ByteBuffer bb = ByteBuffer.wrap(bytes).order(byteOrder);
+    int nelems = (int) layout.getTotalNelems();
+    if (dataType == DataType.CHAR) {
+      return convertByteToChar(bytes);
+    } else if (dataType.getPrimitiveClassType() == byte.class || dataType == DataType.STRUCTURE) {
+      return bytes;
+    } else if (dataType.getPrimitiveClassType() == short.class) {
+      short[] pa = new short[nelems];
+      bb.asShortBuffer().get(pa);
+      return pa;
+    } else if (dataType.getPrimitiveClassType() == int.class) {
+      int[] pa = new int[nelems];
+      bb.asIntBuffer().get(pa);
+      return pa;
+    } else if (dataType == DataType.FLOAT) {
+      float[] pa = new float[nelems];
+      bb.asFloatBuffer().get(pa);
+      return pa;
+    } else if (dataType == DataType.DOUBLE) {
+      double[] pa = new double[nelems];
+      bb.asDoubleBuffer().get(pa);
+      return pa;
+    } else if (dataType.getPrimitiveClassType() == long.class) {
+      long[] pa = new long[nelems];
+      bb.asLongBuffer().get(pa);
+      return pa;
+    }
+
+    throw new IllegalStateException("unsupported type= " + dataType);
+  }
+
   /**
    * Read data subset from PositioningDataInputStream, create primitive array of size Layout.getTotalNelems.
    * Reading is controlled by the Layout object.
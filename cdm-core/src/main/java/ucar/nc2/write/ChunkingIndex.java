@@ -7,6 +7,7 @@ package ucar.nc2.write;
 ///////////////////////////////////////////////////////////////////////////////////////////////////////////
 // contributed by cwardgar@usgs.gov 4/12/2010
 
+import javax.annotation.Nullable;
 import ucar.ma2.Index;
 
 /**
@@ -40,4 +41,38 @@ public class ChunkingIndex extends Index {
 
     return chunkShape;
   }
+
+  /**
+   * Computes a slab shape made of whole chunks, so that a series of writes with this shape, starting at multiples of
+   * it, never write to the same chunk twice. The innermost dimensions are grown first.
+   *
+   * @param shape the shape of the variable.
+   * @param chunk the chunk shape of the variable in the output file.
+   * @param maxChunkElems the maximum number of elements in the slab shape.
+   * @return the slab shape, or null if a single chunk has more than maxChunkElems elements, or the variable is empty.
+   */
+  @Nullable
+  public static int[] computeAlignedShape(int[] shape, int[] chunk, long maxChunkElems) {
+    int rank = shape.length;
+    int[] slab = new int[rank];
+    long size = 1;
+    for (int iDim = 0; iDim < rank; ++iDim) {
+      if (shape[iDim] == 0)
+        return null;
+      slab[iDim] = Math.max(1, Math.min(chunk[iDim], shape[iDim]));
+      size *= slab[iDim];
+    }
+    if (size > maxChunkElems)
+      return null;
+
+    for (int iDim = rank - 1; iDim >= 0; --iDim) {
+      long others = size / slab[iDim];
+      long nchunks = Math.min(maxChunkElems / size, (shape[iDim] + slab[iDim] - 1) / slab[iDim]);
+      slab[iDim] = (int) Math.min(shape[iDim], nchunks * slab[iDim]);
+      size = others * slab[iDim];
+      if (slab[iDim] < shape[iDim])
+        break;
+    }
+    return slab;
+  }
 }
@@ -7,8 +7,15 @@ package ucar.nc2.write;
 import com.google.common.base.Preconditions;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Formatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import javax.annotation.Nullable;
 
 import ucar.array.ArrayType;
@@ -25,6 +32,7 @@ import ucar.nc2.Group;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
+import ucar.nc2.internal.util.ExecutionExceptions;
 import ucar.nc2.iosp.NetcdfFileFormat;
 import ucar.nc2.util.CancelTask;
 
@@ -42,9 +50,45 @@ import ucar.nc2.util.CancelTask;
  */
 public class NetcdfCopier implements Closeable {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NetcdfCopier.class);
-  private static final long maxSize = 50 * 1000 * 1000; // 50 Mbytes
+  private static long maxSize = 50 * 1000 * 1000; // 50 Mbytes
   private static boolean debug, debugWrite;
 
+  // experimental multithreading: read ahead on this executor; null means read and write alternately
+  private static Executor executor;
+  private static int maxSlabsAhead = 2;
+
+  /**
+   * Set the Executor used to read the data of the next slabs while the current one is written. The reads are done
+   * one at a time, in order, since a NetcdfFile is not in general safe for concurrent reads; the writes are done on
+   * the calling thread, since the netcdf-3 and netcdf-4 writers are not safe for concurrent writes.
+   *
+   * @param exec use this Executor, or null (the default) to read and write alternately on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of slabs read ahead of the one being written, each up to 50 Mbytes.
+   * Only used when an Executor has been set.
+   *
+   * @param max must be > 0, default is 2.
+   */
+  public static void setMaxSlabsAhead(int max) {
+    Preconditions.checkArgument(max > 0, "maxSlabsAhead must be > 0");
+    maxSlabsAhead = max;
+  }
+
+  // variables larger than this many bytes are copied in slabs; settable so tests can use small files
+  static void setMaxSize(long max) {
+    Preconditions.checkArgument(max > 0, "maxSize must be > 0");
+    maxSize = max;
+  }
+
+  static long getMaxSize() {
+    return maxSize;
+  }
+
   public static void setDebugFlags(ucar.nc2.util.DebugFlags debugFlags) {
     debug = debugFlags.isSet("ncfileWriter/debug");
     debugWrite = debugFlags.isSet("ncfileWriter/debugWrite");
@@ -225,12 +269,43 @@ public class NetcdfCopier implements Closeable {
     int countVars;
   }
 
+  /** A section of one variable to copy, read and written in one go. */
+  private static class Slab {
+    final Variable oldVar;
+    final Variable newVar;
+    @Nullable
+    final int[] origin; // null means the whole variable
+    @Nullable
+    final int[] shape;
+
+    Slab(Variable oldVar, Variable newVar, @Nullable int[] origin, @Nullable int[] shape) {
+      this.oldVar = oldVar;
+      this.newVar = newVar;
+      this.origin = origin;
+      this.shape = shape;
+    }
+  }
+
   private void copyVariableData(NetcdfFormatWriter ncwriter, Group groupIn, Group groupOut, Count counter,
       CancelTask cancel) throws IOException {
-    for (Variable oldVar : groupIn.getVariables()) {
-      if (cancel.isCancel()) {
-        break;
+    List<Slab> slabs = new ArrayList<>();
+    addSlabs(groupIn, groupOut, counter, slabs);
+
+    try (SlabReader reader = new SlabReader(slabs)) {
+      for (Slab slab : slabs) {
+        if (cancel.isCancel()) {
+          break;
+        }
+        Array data = reader.next();
+        if (data.getSize() > 0) { // zero when record dimension = 0
+          write(ncwriter, slab, data);
+        }
       }
+    }
+  }
+
+  private void addSlabs(Group groupIn, Group groupOut, Count counter, List<Slab> slabs) {
+    for (Variable oldVar : groupIn.getVariables()) {
       Variable newVar = groupOut.findVariableLocal(oldVar.getShortName());
       if (debug) {
         System.out.format("write var= %s size = %d type = %s%n", oldVar.getFullName(), oldVar.getSize(),
@@ -241,83 +316,179 @@ public class NetcdfCopier implements Closeable {
       counter.bytes += size;
 
       if (size <= maxSize) {
-        copyAll(ncwriter, oldVar, newVar);
+        slabs.add(new Slab(oldVar, newVar, null, null));
       } else {
-        copySome(ncwriter, oldVar, newVar, maxSize, cancel);
+        addSomeSlabs(oldVar, newVar, maxSize, slabs);
       }
       counter.countVars++;
     }
 
     for (Group nestedIn : groupIn.getGroups()) {
-      if (cancel.isCancel()) {
-        break;
-      }
       Group nestedOut = groupOut.findGroupLocal(nestedIn.getShortName());
-      copyVariableData(ncwriter, nestedIn, nestedOut, counter, cancel);
+      addSlabs(nestedIn, nestedOut, counter, slabs);
     }
   }
 
-  // copy all the data in oldVar to the newVar
-  private void copyAll(NetcdfFormatWriter ncwriter, Variable oldVar, Variable newVar) throws IOException {
-    Array data = oldVar.read();
+  /**
+   * Divides {@code oldVar} into slabs no larger than {@code maxChunkSize} bytes. When the output is chunked, the slabs
+   * are made of whole output chunks, otherwise they are contiguous.
+   *
+   * @param oldVar a variable from the original file to copy data from.
+   * @param newVar the corresponding variable in the new file.
+   * @param maxChunkSize the size, <b>in bytes</b>, of the largest chunk to write.
+   */
+  private void addSomeSlabs(Variable oldVar, Variable newVar, long maxChunkSize, List<Slab> slabs) {
+    long maxChunkElems = maxChunkSize / oldVar.getElementSize();
+    int[] varShape = oldVar.getShape();
+
+    int[] outputChunk = getOutputChunking(newVar);
+    int[] slabShape = (outputChunk == null) ? null
+        : ChunkingIndex.computeAlignedShape(varShape, outputChunk, maxChunkElems);
+    if (slabShape != null) {
+      int[] nslabs = new int[varShape.length];
+      for (int i = 0; i < varShape.length; i++) {
+        nslabs[i] = (varShape[i] + slabShape[i] - 1) / slabShape[i];
+      }
+      Index slabIndex = Index.factory(nslabs);
+      for (int n = 0; n < slabIndex.getSize(); n++) {
+        slabIndex.setCurrentCounter(n);
+        int[] origin = slabIndex.getCurrentCounter();
+        int[] shape = new int[varShape.length];
+        for (int i = 0; i < varShape.length; i++) {
+          origin[i] *= slabShape[i];
+          shape[i] = Math.min(slabShape[i], varShape[i] - origin[i]);
+        }
+        slabs.add(new Slab(oldVar, newVar, origin, shape));
+      }
+      return;
+    }
+
+    ChunkingIndex index = new ChunkingIndex(varShape);
+    while (index.currentElement() < index.getSize()) {
+      int[] chunkOrigin = index.getCurrentCounter();
+      int[] chunkShape = index.computeChunkShape(maxChunkElems);
+      slabs.add(new Slab(oldVar, newVar, chunkOrigin, chunkShape));
+      index.setCurrentCounter(index.currentElement() + (int) Index.computeSize(chunkShape));
+    }
+  }
+
+  // the chunk shape of newVar in the output file, or null if not chunked
+  @Nullable
+  private int[] getOutputChunking(Variable newVar) {
+    if (!getOutputFormat().isNetdf4format() || newVar.getRank() == 0) {
+      return null;
+    }
+    Nc4Chunking chunker = (writerb.chunker != null) ? writerb.chunker : new Nc4ChunkingDefault();
+    Variable.Builder<?> vb = newVar.toBuilder();
+    if (!chunker.isChunked(vb)) {
+      return null;
+    }
+    long[] chunk = chunker.computeChunking(vb);
+    int[] result = new int[chunk.length];
+    for (int i = 0; i < chunk.length; i++) {
+      result[i] = (int) Math.min(Integer.MAX_VALUE, chunk[i]);
+    }
+    return result;
+  }
+
+  private Array read(Slab slab) throws IOException {
     try {
-      if (!extended && oldVar.getArrayType() == ArrayType.STRING) {
-        data = convertDataToChar(newVar, data);
+      if (slab.origin == null) {
+        Array data = slab.oldVar.read();
+        if (!extended && slab.oldVar.getArrayType() == ArrayType.STRING) {
+          data = convertDataToChar(slab.newVar, data);
+        }
+        return data;
       }
-      if (data.getSize() > 0) { // zero when record dimension = 0
-        ncwriter.write(newVar, data);
+      Array data = slab.oldVar.read(slab.origin, slab.shape);
+      if (!getOutputFormat().isNetdf4format() && slab.oldVar.getArrayType() == ArrayType.STRING) {
+        data = convertDataToChar(slab.newVar, data);
       }
+      return data;
 
     } catch (InvalidRangeException e) {
       e.printStackTrace();
-      throw new IOException(e.getMessage() + " for Variable " + oldVar.getFullName());
+      throw new IOException(e.getMessage() + " for Variable " + slab.oldVar.getFullName());
+    }
+  }
+
+  private void write(NetcdfFormatWriter ncwriter, Slab slab, Array data) throws IOException {
+    try {
+      if (slab.origin == null) {
+        ncwriter.write(slab.newVar, data);
+      } else {
+        ncwriter.write(slab.newVar, slab.origin, data);
+        if (debugWrite) {
+          System.out.println(" write " + data.getSize() + " bytes at " + new Section(slab.origin, slab.shape));
+        }
+      }
+    } catch (InvalidRangeException e) {
+      e.printStackTrace();
+      throw new IOException(e.getMessage() + " for Variable " + slab.oldVar.getFullName());
     }
   }
 
   /**
-   * Copies data from {@code oldVar} to {@code newVar}. The writes are done in a series of chunks no larger than
-   * {@code maxChunkSize}
-   * bytes.
-   *
-   * @param oldVar a variable from the original file to copy data from.
-   * @param newVar a variable from the original file to copy data from.
-   * @param maxChunkSize the size, <b>in bytes</b>, of the largest chunk to write.
-   * @param cancel allow user to cancel, may be null.
-   * @throws IOException if an I/O error occurs.
+   * Reads the slabs in order. When an Executor has been set, up to maxSlabsAhead slabs are read ahead on it, one at a
+   * time, while the calling thread writes. Otherwise each slab is read when asked for.
    */
-  private void copySome(NetcdfFormatWriter ncwriter, Variable oldVar, Variable newVar, long maxChunkSize,
-      CancelTask cancel) throws IOException {
-    long maxChunkElems = maxChunkSize / oldVar.getElementSize();
-    long byteWriteTotal = 0;
-
-    ChunkingIndex index = new ChunkingIndex(oldVar.getShape());
-    while (index.currentElement() < index.getSize()) {
-      try {
-        int[] chunkOrigin = index.getCurrentCounter();
-        int[] chunkShape = index.computeChunkShape(maxChunkElems);
+  private class SlabReader implements Closeable {
+    private final Iterator<Slab> slabs;
+    @Nullable
+    private final Executor exec;
+    private final int maxAhead;
+    private final ArrayDeque<FutureTask<Array>> ahead = new ArrayDeque<>();
+    private final Object readLock = new Object(); // reads from fileIn one at a time
+    private volatile boolean closed;
+
+    SlabReader(List<Slab> slabs) {
+      this.slabs = slabs.iterator();
+      this.exec = executor;
+      this.maxAhead = maxSlabsAhead;
+    }
 
-        Array data = oldVar.read(chunkOrigin, chunkShape);
-        if (!getOutputFormat().isNetdf4format() && oldVar.getArrayType() == ArrayType.STRING) {
-          data = convertDataToChar(newVar, data);
-        }
+    // the data of the next slab
+    Array next() throws IOException {
+      if (exec == null) {
+        return read(slabs.next());
+      }
 
-        if (data.getSize() > 0) { // zero when record dimension = 0
-          ncwriter.write(newVar, chunkOrigin, data);
-          if (debugWrite) {
-            System.out.println(" write " + data.getSize() + " bytes at " + new Section(chunkOrigin, chunkShape));
+      while (ahead.size() <= maxAhead && slabs.hasNext()) {
+        Slab slab = slabs.next();
+        FutureTask<Array> task = new FutureTask<>(() -> {
+          synchronized (readLock) {
+            return closed ? null : read(slab);
           }
+        });
+        ahead.add(task);
+        exec.execute(task);
+      }
 
-          byteWriteTotal += data.getSize();
-        }
-
-        index.setCurrentCounter(index.currentElement() + (int) Index.computeSize(chunkShape));
-        if (cancel.isCancel()) {
-          return;
-        }
+      FutureTask<Array> task = ahead.poll();
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while copying " + fileIn.getLocation());
+      } catch (ExecutionException e) {
+        throw ExecutionExceptions.propagateIO(e);
+      }
+    }
 
-      } catch (InvalidRangeException e) {
-        e.printStackTrace();
-        throw new IOException(e.getMessage());
+    /**
+     * Cancel the slabs not yet being read, and wait for the one being read, so that fileIn may be closed when this
+     * returns. A cancelled FutureTask does not wait in get() for a read already running, so the reads are made under
+     * readLock, and a task that gets readLock after close() has started skips its read.
+     */
+    @Override
+    public void close() {
+      closed = true;
+      for (FutureTask<Array> task : ahead) {
+        task.cancel(false);
+      }
+      ahead.clear();
+      synchronized (readLock) {
+        // the running read, if any, is done
       }
     }
   }
@@ -20,6 +20,7 @@ import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.internal.iosp.IospFileWriter;
 import ucar.nc2.internal.iosp.hdf5.H5iosp;
+import ucar.nc2.internal.iosp.hdf5.H5iospWriter;
 import ucar.nc2.internal.iosp.netcdf3.N3iosp;
 import ucar.nc2.internal.iosp.netcdf3.N3iospWriter;
 import ucar.nc2.iosp.IOServiceProvider;
@@ -430,8 +431,17 @@ public class NetcdfFormatWriter implements Closeable {
     } else { // create file
       this.format = builder.format;
 
-      this.useJna = builder.useJna || format.isNetdf4format();
-      IospFileWriter spi = useJna ? openJna("ucar.nc2.jni.netcdf.Nc4writer") : new N3iospWriter();
+      this.useJna = builder.useJna || (format.isNetdf4format() && !builder.useJavaWriter);
+      IospFileWriter spi;
+      if (useJna) {
+        spi = openJna("ucar.nc2.jni.netcdf.Nc4writer");
+      } else if (format.isNetdf4format()) {
+        H5iospWriter h5writer = new H5iospWriter(format);
+        h5writer.setChunker(chunker);
+        spi = h5writer;
+      } else {
+        spi = new N3iospWriter();
+      }
       try {
         // builder.rootGroup has the metadata of the file to be created.
         this.ncout =
@@ -482,6 +492,7 @@ public class NetcdfFormatWriter implements Closeable {
     long preallocateSize;
     Nc4Chunking chunker;
     boolean useJna;
+    boolean useJavaWriter;
     boolean isExisting;
 
     NetcdfFileFormat format = NetcdfFileFormat.NETCDF3;
@@ -556,6 +567,15 @@ public class NetcdfFormatWriter implements Closeable {
       return self();
     }
 
+    /**
+     * Set if you want to create a new Netcdf-4 file without the netcdf c library. Default is false.
+     * The Java writer cannot write String, Structure, enum or opaque variables, see H5iospWriter.
+     */
+    public T setUseJavaWriter(boolean useJavaWriter) {
+      this.useJavaWriter = useJavaWriter;
+      return self();
+    }
+
     /** Add a global attribute */
     public T addAttribute(Attribute att) {
       rootGroup.addAttribute(att);
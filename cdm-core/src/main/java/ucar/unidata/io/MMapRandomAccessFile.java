@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import ucar.unidata.io.spi.RandomAccessFileProvider;
+
+/**
+ * A read-only RandomAccessFile for local files that reads directly from a memory mapping of the file,
+ * bypassing the read buffer. Large files are mapped in windows of 1 GB, each mapped the first time it is read.
+ * The file must not change size while it is open.
+ * <p>
+ * Opt in by opening the location with the "mmap:" prefix, eg "mmap:/data/file.nc".
+ */
+public class MMapRandomAccessFile extends RandomAccessFile {
+  private static final int DEFAULT_WINDOW_SHIFT = 30; // 1 GB
+
+  private final long fileLength;
+  private final int windowShift;
+  private final long windowMask;
+  private final MappedByteBuffer[] windows;
+
+  /**
+   * Constructor.
+   *
+   * @param location location of the file
+   * @throws IOException on open error
+   */
+  public MMapRandomAccessFile(String location) throws IOException {
+    this(location, DEFAULT_WINDOW_SHIFT);
+  }
+
+  // windows are (1 << windowShift) bytes; package private so tests can use small windows
+  MMapRandomAccessFile(String location, int windowShift) throws IOException {
+    super(location, "r", 1); // the read buffer is not used
+    this.fileChannel = file.getChannel();
+    this.fileLength = fileChannel.size();
+    this.windowShift = windowShift;
+    this.windowMask = (1L << windowShift) - 1;
+    long nwindows = (fileLength + windowMask) >>> windowShift;
+    this.windows = new MappedByteBuffer[(int) nwindows];
+  }
+
+  // the window containing pos, mapped if needed
+  private ByteBuffer getWindow(long pos) throws IOException {
+    int index = (int) (pos >>> windowShift);
+    MappedByteBuffer window = windows[index];
+    if (window == null) {
+      long start = (long) index << windowShift;
+      long size = Math.min(1L << windowShift, fileLength - start);
+      window = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      windows[index] = window;
+    }
+    return window;
+  }
+
+  // a view of the mapping from pos to the end of its window, in the current byte order
+  private ByteBuffer view(long pos) throws IOException {
+    ByteBuffer view = getWindow(pos).duplicate();
+    view.position((int) (pos & windowMask));
+    return view.slice().order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
+
+  // copy from the mapping into b, returns the number of bytes copied, or -1 if pos is at or past the end of file
+  private int copy(long pos, byte[] b, int off, int len) throws IOException {
+    if (pos >= fileLength) {
+      return -1;
+    }
+    len = (int) Math.min(len, fileLength - pos);
+    int done = 0;
+    while (done < len) {
+      ByteBuffer view = view(pos + done);
+      int n = Math.min(len - done, view.remaining());
+      view.get(b, off + done, n);
+      done += n;
+    }
+    return done;
+  }
+
+  @Override
+  public long length() {
+    return fileLength;
+  }
+
+  @Override
+  public void setBufferSize(int bufferSize) {
+    // do nothing
+  }
+
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0)
+      throw new java.io.IOException("Negative seek offset");
+    filePosition = pos;
+    endOfFile = (pos >= fileLength);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    if (file == null) {
+      // the mappings are released when garbage collected
+      Arrays.fill(windows, null);
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
+    }
+    int b = getWindow(filePosition).get((int) (filePosition & windowMask)) & 0xff;
+    filePosition++;
+    return b;
+  }
+
+  @Override
+  public int readBytes(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int n = copy(filePosition, b, off, len);
+    if (n < 0) {
+      endOfFile = true;
+      return -1;
+    }
+    filePosition += n;
+    return n;
+  }
+
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    return copy(pos, b, offset, len);
+  }
+
+  @Override
+  public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
+    long end = Math.min(offset + nbytes, fileLength);
+    long pos = offset;
+    while (pos < end) {
+      ByteBuffer view = view(pos);
+      if (view.remaining() > end - pos) {
+        view.limit((int) (end - pos));
+      }
+      int n = view.remaining();
+      while (view.hasRemaining()) {
+        dest.write(view);
+      }
+      pos += n;
+    }
+    return Math.max(0, end - offset);
+  }
+
+  @Override
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer view = (filePosition < fileLength) ? view(filePosition) : null;
+      int count = (view == null) ? 0 : Math.min(n, view.remaining() / 2);
+      if (count == 0) { // element crosses a window boundary, or end of file
+        pa[start++] = readShort();
+        n--;
+        continue;
+      }
+      view.asShortBuffer().get(pa, start, count);
+      filePosition += 2L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer view = (filePosition < fileLength) ? view(filePosition) : null;
+      int count = (view == null) ? 0 : Math.min(n, view.remaining() / 4);
+      if (count == 0) { // element crosses a window boundary, or end of file
+        pa[start++] = readInt();
+        n--;
+        continue;
+      }
+      view.asIntBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer view = (filePosition < fileLength) ? view(filePosition) : null;
+      int count = (view == null) ? 0 : Math.min(n, view.remaining() / 8);
+      if (count == 0) { // element crosses a window boundary, or end of file
+        pa[start++] = readLong();
+        n--;
+        continue;
+      }
+      view.asLongBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer view = (filePosition < fileLength) ? view(filePosition) : null;
+      int count = (view == null) ? 0 : Math.min(n, view.remaining() / 4);
+      if (count == 0) { // element crosses a window boundary, or end of file
+        pa[start++] = readFloat();
+        n--;
+        continue;
+      }
+      view.asFloatBuffer().get(pa, start, count);
+      filePosition += 4L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer view = (filePosition < fileLength) ? view(filePosition) : null;
+      int count = (view == null) ? 0 : Math.min(n, view.remaining() / 8);
+      if (count == 0) { // element crosses a window boundary, or end of file
+        pa[start++] = readDouble();
+        n--;
+        continue;
+      }
+      view.asDoubleBuffer().get(pa, start, count);
+      filePosition += 8L * count;
+      start += count;
+      n -= count;
+    }
+  }
+
+  @Override
+  public boolean searchForward(KMPMatch match, int maxBytes) throws IOException {
+    long start = getFilePointer();
+    long last = (maxBytes < 0) ? fileLength : Math.min(fileLength, start + maxBytes);
+    int matchLen = match.getMatchLength();
+    byte[] chunk = new byte[Math.max(64 * 1024, 2 * matchLen)];
+
+    long pos = start;
+    while (pos < last) {
+      int n = copy(pos, chunk, 0, (int) Math.min(chunk.length, last - pos));
+      int found = match.indexOf(chunk, 0, n);
+      if (found >= 0) {
+        seek(pos + found);
+        return true;
+      }
+      if (pos + n >= last) {
+        break;
+      }
+      pos += n - matchLen + 1; // overlap, so a match that spans two chunks is found
+    }
+
+    // failure
+    seek(last);
+    return false;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read-only");
+  }
+
+  @Override
+  public void writeBytes(byte[] b, int off, int len) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read-only");
+  }
+
+  /** Hook for service provider interface RandomAccessFileProvider */
+  public static class Provider implements RandomAccessFileProvider {
+    private static final String prefix = "mmap:";
+
+    @Override
+    public boolean isOwnerOf(String location) {
+      return location.startsWith(prefix);
+    }
+
+    @Override
+    public RandomAccessFile open(String location) throws IOException {
+      String path = location.substring(prefix.length());
+      if (path.startsWith("file:")) {
+        path = path.substring(5);
+      }
+      return new MMapRandomAccessFile(path);
+    }
+  }
+}
@@ -17,6 +17,7 @@ import ucar.nc2.internal.cache.FileFactory;
 import ucar.unidata.util.StringUtil2;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
@@ -58,6 +59,7 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   public static final int LITTLE_ENDIAN = 1;
 
   protected static final int defaultBufferSize = 8092; // The default buffer size, in bytes.
+  private static final int MAX_BULK_READ = 1024 * 1024; // bulk primitive reads bypass the buffer in chunks of this size
 
   ///////////////////////////////////////////////////////////////////////
   // debug leaks - keep track of open files
@@ -821,6 +823,77 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     }
   }
 
+  /**
+   * Read several byte ranges of the file, each into its own destination array. This is a "vectored" readFully:
+   * subclasses may reorder, merge or parallelize the reads, for example to reduce the number of requests made to
+   * remote storage. This implementation reads each range in turn through the buffer.
+   * The file pointer is left at the end of the last range in the list.
+   *
+   * @param ranges the ranges to read; may be in any order, but must not share destination bytes.
+   * @throws EOFException if any range extends past the end of the file.
+   * @throws IOException if an I/O error occurs.
+   */
+  public void readRanges(List<ReadRange> ranges) throws IOException {
+    for (ReadRange range : ranges) {
+      seek(range.getPosition());
+      readFully(range.getDest(), range.getOffset(), range.getLength());
+    }
+  }
+
+  /** A range of bytes in the file to be read by readRanges(), and where to put them. */
+  public static final class ReadRange {
+    private final long position;
+    private final byte[] dest;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Constructor.
+     *
+     * @param position starting byte position in the file.
+     * @param dest put data into this array.
+     * @param offset starting position in dest.
+     * @param length number of bytes to read.
+     */
+    public ReadRange(long position, byte[] dest, int offset, int length) {
+      if (position < 0 || offset < 0 || length < 0 || offset + length > dest.length) {
+        throw new IllegalArgumentException(
+            String.format("Illegal ReadRange position=%d offset=%d length=%d dest=%d", position, offset, length,
+                dest.length));
+      }
+      this.position = position;
+      this.dest = dest;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    public long getPosition() {
+      return position;
+    }
+
+    public byte[] getDest() {
+      return dest;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return length;
+    }
+
+    /** Position just past the end of the range. */
+    public long getEnd() {
+      return position + length;
+    }
+
+    @Override
+    public String toString() {
+      return "ReadRange{position=" + position + ", length=" + length + '}';
+    }
+  }
+
   /**
    * Skips exactly <code>n</code> bytes of input.
    * This method blocks until all the bytes are skipped, the end of
@@ -1101,9 +1174,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readShort(short[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readShort();
+  public void readShort(short[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(2, n);
+      if (bb == null) { // element crosses the end of the buffer, or end of file
+        pa[start++] = readShort();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 2;
+      bb.asShortBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1260,9 +1342,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readInt(int[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readInt();
+  public void readInt(int[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(4, n);
+      if (bb == null) { // element crosses the end of the buffer, or end of file
+        pa[start++] = readInt();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 4;
+      bb.asIntBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1334,9 +1425,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readLong(long[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = readLong();
+  public void readLong(long[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(8, n);
+      if (bb == null) { // element crosses the end of the buffer, or end of file
+        pa[start++] = readLong();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 8;
+      bb.asLongBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1371,9 +1471,18 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readFloat(float[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = Float.intBitsToFloat(readInt());
+  public void readFloat(float[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(4, n);
+      if (bb == null) { // element crosses the end of the buffer, or end of file
+        pa[start++] = readFloat();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 4;
+      bb.asFloatBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
     }
   }
 
@@ -1408,10 +1517,54 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    * @param n read this many elements
    * @throws IOException on read error
    */
-  public final void readDouble(double[] pa, int start, int n) throws IOException {
-    for (int i = 0; i < n; i++) {
-      pa[start + i] = Double.longBitsToDouble(readLong());
+  public void readDouble(double[] pa, int start, int n) throws IOException {
+    while (n > 0) {
+      ByteBuffer bb = nextElements(8, n);
+      if (bb == null) { // element crosses the end of the buffer, or end of file
+        pa[start++] = readDouble();
+        n--;
+        continue;
+      }
+      int count = bb.remaining() / 8;
+      bb.asDoubleBuffer().get(pa, start, count);
+      start += count;
+      n -= count;
+    }
+  }
+
+  /**
+   * Get a view of the next whole elements, up to n of them, and advance the file position past them.
+   * Decodes directly from the read buffer when possible; large reads bypass the buffer.
+   *
+   * @param elemSize size in bytes of one element
+   * @param n maximum number of elements wanted
+   * @return a ByteBuffer in the current byte order, holding at least one element,
+   *         or null if the next element must be read with the scalar readers.
+   */
+  private ByteBuffer nextElements(int elemSize, int n) throws IOException {
+    int avail = (int) (dataEnd - filePosition);
+    if (avail < elemSize) {
+      if (avail > 0 || endOfFile) {
+        return null;
+      }
+      long nbytes = (long) n * elemSize;
+      if (nbytes > buffer.length) {
+        // large read, dont copy through the buffer
+        int len = (int) Math.min(nbytes, MAX_BULK_READ / elemSize * elemSize);
+        byte[] direct = new byte[len];
+        readFully(direct);
+        return ByteBuffer.wrap(direct).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+      }
+      seek(filePosition); // read a new buffer
+      avail = (int) (dataEnd - filePosition);
+      if (avail < elemSize) {
+        return null;
+      }
     }
+    int len = Math.min(n, avail / elemSize) * elemSize;
+    ByteBuffer bb = ByteBuffer.wrap(buffer, (int) (filePosition - bufferStart), len).slice();
+    filePosition += len;
+    return bb.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
   }
 
   /**
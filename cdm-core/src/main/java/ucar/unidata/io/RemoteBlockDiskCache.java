@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.internal.util.DiskCache2;
+
+/**
+ * A persistent, size-bounded cache on disk of the blocks read by RemoteRandomAccessFile, used as a second tier
+ * behind its in-memory read cache. Blocks are kept across processes, so reopening a remote file does not download
+ * its blocks again.
+ * <p>
+ * Each block is stored in its own file, in a directory named by a hash of the remote file's URL, version (eg ETag or
+ * last modified date), length and block size; a changed remote file gets a new directory, and the old one is
+ * eventually evicted. When the total size exceeds the maximum, the least recently used blocks are deleted.
+ * Files are written atomically, so several processes may share the same cache directory.
+ *
+ * <pre>
+ * DiskCache2 dc = new DiskCache2("remoteBlocks", true, 7 * 24 * 60, 60);
+ * RemoteRandomAccessFile.setDiskCache(new RemoteBlockDiskCache(dc, 10L * 1024 * 1024 * 1024));
+ * </pre>
+ */
+@ThreadSafe
+public class RemoteBlockDiskCache {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteBlockDiskCache.class);
+  private static final String blockExtension = ".blk";
+  private static final String tempExtension = ".tmp";
+
+  private final File root;
+  private final long maxBytes;
+  private final AtomicLong size = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param diskCache put the blocks under the root directory of this DiskCache2. If it scours, blocks that have not
+   *        been used for its persistMinutes are also deleted.
+   * @param maxBytes maximum total size of the blocks in the cache.
+   */
+  public RemoteBlockDiskCache(DiskCache2 diskCache, long maxBytes) {
+    Preconditions.checkNotNull(diskCache.getRootDirectory(), "DiskCache2 has no root directory");
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+    this.root = new File(diskCache.getRootDirectory());
+    this.maxBytes = maxBytes;
+    long total = 0;
+    for (File block : listBlocks()) {
+      total += block.length();
+    }
+    size.set(total);
+  }
+
+  /** Maximum total size in bytes. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Approximate total size in bytes of the blocks in the cache. */
+  public long getSize() {
+    return size.get();
+  }
+
+  /**
+   * Make the key that identifies a version of a remote file.
+   *
+   * @param url location of the remote file.
+   * @param version changes when the remote file changes, eg its ETag or last modified date.
+   * @param length length of the remote file.
+   * @param blockSize size of the cached blocks.
+   */
+  public static String makeKey(String url, String version, long length, int blockSize) {
+    String id = url + '\n' + version + '\n' + length + '\n' + blockSize;
+    return Hashing.sha256().hashString(id, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Get a block from the cache.
+   *
+   * @param key from makeKey().
+   * @param blockNumber which block.
+   * @param length expected length of the block.
+   * @return the block's bytes, or null if not in the cache.
+   */
+  @Nullable
+  public byte[] get(String key, long blockNumber, int length) {
+    File file = blockFile(key, blockNumber);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      byte[] data = Files.readAllBytes(file.toPath());
+      if (data.length != length) {
+        logger.warn("Deleting {} with length {}, expected {}", file, data.length, length);
+        if (delete(file)) {
+          size.addAndGet(-data.length);
+        }
+        return null;
+      }
+      if (!file.setLastModified(System.currentTimeMillis())) { // used to find the least recently used
+        logger.debug("Failed to set last modified on {}", file);
+      }
+      return data;
+    } catch (IOException e) {
+      // may have been evicted by another process
+      logger.debug("Failed to read {}", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Put a block into the cache, evicting the least recently used blocks if needed. Errors are logged and ignored.
+   *
+   * @param key from makeKey().
+   * @param blockNumber which block.
+   * @param data the block's bytes.
+   */
+  public void put(String key, long blockNumber, byte[] data) {
+    File file = blockFile(key, blockNumber);
+    File dir = file.getParentFile();
+    if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+      logger.warn("Failed to create directory {}", dir);
+      return;
+    }
+    File temp = null;
+    long replaced; // length of the block being replaced, already counted in size
+    try {
+      temp = File.createTempFile("block" + blockNumber + "-", tempExtension, dir);
+      Files.write(temp.toPath(), data);
+      replaced = file.length(); // 0 if it does not exist
+      try {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      temp = null;
+    } catch (IOException e) {
+      logger.warn("Failed to write {}", file, e);
+      return;
+    } finally {
+      if (temp != null) {
+        delete(temp);
+      }
+    }
+
+    if (size.addAndGet(data.length - replaced) > maxBytes) {
+      evict();
+    }
+  }
+
+  /**
+   * Delete least recently used blocks until the total size is no more than 90% of the maximum.
+   * The sizes of the files on disk are used, since other processes may share the cache.
+   */
+  synchronized void evict() {
+    List<BlockFile> blocks = new ArrayList<>();
+    long total = 0;
+    for (File file : listBlocks()) {
+      BlockFile block = new BlockFile(file);
+      blocks.add(block);
+      total += block.length;
+    }
+    if (total > maxBytes) {
+      // file times are read once, since other threads may be touching them
+      blocks.sort(Comparator.comparingLong(b -> b.lastModified));
+      long target = maxBytes - maxBytes / 10;
+      for (BlockFile block : blocks) {
+        if (total <= target) {
+          break;
+        }
+        if (delete(block.file)) {
+          total -= block.length;
+          File dir = block.file.getParentFile();
+          String[] remaining = dir.list();
+          if (remaining != null && remaining.length == 0) {
+            delete(dir);
+          }
+        }
+      }
+    }
+    size.set(total);
+  }
+
+  private static class BlockFile {
+    final File file;
+    final long lastModified;
+    final long length;
+
+    BlockFile(File file) {
+      this.file = file;
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+    }
+  }
+
+  private File blockFile(String key, long blockNumber) {
+    return new File(new File(root, key), blockNumber + blockExtension);
+  }
+
+  private List<File> listBlocks() {
+    List<File> result = new ArrayList<>();
+    File[] dirs = root.listFiles(File::isDirectory);
+    if (dirs == null) {
+      return result;
+    }
+    for (File dir : dirs) {
+      File[] blocks = dir.listFiles((d, name) -> name.endsWith(blockExtension));
+      if (blocks != null) {
+        for (File block : blocks) {
+          result.add(block);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean delete(File file) {
+    boolean ok = file.delete();
+    if (!ok) {
+      logger.debug("Failed to delete {}", file);
+    }
+    return ok;
+  }
+
+  @Override
+  public String toString() {
+    return "RemoteBlockDiskCache{root=" + root + ", maxBytes=" + maxBytes + ", size=" + size + '}';
+  }
+}
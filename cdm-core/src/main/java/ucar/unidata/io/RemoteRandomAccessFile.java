@@ -7,14 +7,25 @@ package ucar.unidata.io;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ucar.nc2.internal.util.ExecutionExceptions;
 
 /** An abstract superclass for remote RandomAccessFile. */
 // not immutable because RandomAccessFile is not immutable.
@@ -29,11 +40,70 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   protected static final int defaultRemoteFileTimeout = 10 * 1000;
   // default cache time to live in milliseconds
   private static final long defaultReadCacheTimeToLive = 30 * 1000;
+  // 64 KiB default largest gap between ranges that are merged into one request by readRanges
+  private static final int defaultMaxMergeGap = 65536;
+  // 16 MiB largest request made by readRanges when merging ranges
+  private static final int maxMergedRequestSize = 16 * 1024 * 1024;
+
+  // load missing cache blocks concurrently on this executor; null means load them one at a time on the calling thread
+  private static Executor executor;
+  // number of cache blocks to prefetch past the end of a sequential read, when an executor is set
+  private static int readAheadBlocks =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.remote.readAheadBlocks", "0"));
+  // second tier of the read cache, kept on disk across processes; null means no disk cache
+  private static RemoteBlockDiskCache diskCache;
+  // ranges separated by no more than this many bytes are fetched with one request by readRanges
+  private static int maxMergeGap = Integer.parseInt(
+      System.getProperty("ucar.unidata.io.remote.maxMergeGap", Integer.toString(defaultMaxMergeGap)));
+
+  /**
+   * Set the Executor used to fetch remote data concurrently. When a read spans several cache blocks that are not yet
+   * in the read cache, they are all requested at once instead of one after another. Only used when the read cache is
+   * enabled.
+   *
+   * @param exec use this Executor, or null (the default) to fetch serially on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the number of cache blocks to prefetch past the end of a read, when a read starts where the previous one
+   * ended. Only used when an Executor has been set. Default is 0, or the "ucar.unidata.io.remote.readAheadBlocks"
+   * system property.
+   */
+  public static void setReadAheadBlocks(int nblocks) {
+    readAheadBlocks = Math.max(0, nblocks);
+  }
+
+  /**
+   * Set the disk cache used as a second tier behind the in-memory read cache, so that blocks of remote files are kept
+   * across processes. Only used when the read cache is enabled, and for remote files whose version is known, see
+   * getVersion().
+   *
+   * @param cache use this cache, or null (the default) for no disk cache.
+   */
+  public static void setDiskCache(@Nullable RemoteBlockDiskCache cache) {
+    diskCache = cache;
+  }
+
+  /**
+   * Set the largest gap, in bytes, between two ranges passed to readRanges() that are fetched with a single request.
+   * The bytes in the gap are read and discarded, which is usually much cheaper than another request to remote
+   * storage. Default is 64 KiB, or the "ucar.unidata.io.remote.maxMergeGap" system property; use 0 to merge only
+   * adjacent ranges.
+   */
+  public static void setMaxMergeGap(int nbytes) {
+    maxMergeGap = Math.max(0, nbytes);
+  }
 
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
   private final LoadingCache<Long, byte[]> readCache;
+  private long lastReadEnd = -1; // used to detect sequential reads
+  private volatile String diskCacheKey; // lazily computed; empty if the version is unknown
+  private volatile boolean closed;
 
   protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) {
     super(bufferSize);
@@ -113,6 +183,10 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     // file and the length of read.
     long firstCacheBlockNumber = pos / readCacheBlockSize;
     long lastCacheBlockNumber = (pos + len) / readCacheBlockSize;
+    Executor exec = executor;
+    if (exec != null) {
+      prefetch(exec, firstCacheBlockNumber, lastCacheBlockNumber, pos == lastReadEnd);
+    }
     int totalBytesRead = 0;
     int currentOffsetIntoBuffer = offset;
 
@@ -126,9 +200,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     if ((totalBytesRead < len) && (firstCacheBlockNumber != lastCacheBlockNumber)) {
       // Now fill the buffer using whole cache blocks, up until the last cache block (as reading from the last cache
       // block might be a partial read).
-      // LOOK: might benefit from concurrency? Need to see how often we end up inside this while statement.
-      // Initial testing shows this only happens for small readCacheBlockSize (which is equal to the read buffer size)
-      // when reading netCDF-4 files, but I think might depend on the specific IOSP in use.
+      // If an executor is set, these blocks are already being loaded concurrently, see prefetch().
       long currentCacheBlockNumber = firstCacheBlockNumber + 1;
       while (currentCacheBlockNumber < lastCacheBlockNumber) {
         totalBytesRead += readCacheBlockFull(currentCacheBlockNumber, currentOffsetIntoBuffer, buff);
@@ -144,9 +216,37 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
       }
     }
 
+    lastReadEnd = pos + totalBytesRead;
     return totalBytesRead;
   }
 
+  /**
+   * Start loading the cache blocks after firstCacheBlockNumber up to lastCacheBlockNumber on the executor, plus
+   * readAheadBlocks more if this read is sequential. The calling thread loads the first block itself, and picks up the
+   * others from the cache: a LoadingCache waits for a load already in progress rather than starting another.
+   */
+  private void prefetch(Executor exec, long firstCacheBlockNumber, long lastCacheBlockNumber, boolean sequential)
+      throws IOException {
+    long lastBlockInFile = (length() - 1) / readCacheBlockSize;
+    long last = Math.min(sequential ? lastCacheBlockNumber + readAheadBlocks : lastCacheBlockNumber, lastBlockInFile);
+    for (long block = firstCacheBlockNumber + 1; block <= last; block++) {
+      if (readCache.getIfPresent(block) == null) {
+        final long cacheBlockNumber = block;
+        exec.execute(() -> {
+          if (closed) {
+            return;
+          }
+          try {
+            readCache.get(cacheBlockNumber);
+          } catch (Exception e) {
+            // the calling thread will retry, and report the error if it happens again
+            logger.debug("Failed to prefetch cache block {} of {}", cacheBlockNumber, url, e);
+          }
+        });
+      }
+    }
+  }
+
   private int readCacheBlockPartial(long pos, byte[] buff, int positionInBuffer, boolean fillForward)
       throws IOException {
 
@@ -230,12 +330,240 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     // if size to EOF less than readCacheBlockSize, just read to EOF
     long bytesToRead = toEOF < readCacheBlockSize ? toEOF : readCacheBlockSize;
     int bytes = Math.toIntExact(bytesToRead);
-    byte[] buffer = new byte[bytes];
 
-    readRemote(position, buffer, 0, bytes);
+    RemoteBlockDiskCache disk = diskCache;
+    String key = (disk == null) ? "" : getDiskCacheKey();
+    if (!key.isEmpty()) {
+      byte[] cached = disk.get(key, cacheBlockNumber, bytes);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    byte[] buffer = new byte[bytes];
+    int n = readRemote(position, buffer, 0, bytes);
+    if (!key.isEmpty() && n == bytes) {
+      disk.put(key, cacheBlockNumber, buffer);
+    }
     return buffer;
   }
 
+  private String getDiskCacheKey() throws IOException {
+    String key = diskCacheKey;
+    if (key == null) {
+      String version = getVersion();
+      key = (version == null) ? "" : RemoteBlockDiskCache.makeKey(url, version, length(), readCacheBlockSize);
+      diskCacheKey = key;
+    }
+    return key;
+  }
+
+  /**
+   * Identifies the version of the remote file, such as an ETag, which changes whenever the file's contents change.
+   * Used to key its blocks in the disk cache. This implementation uses getLastModified(), if known.
+   *
+   * @return the version, or null if unknown, in which case the disk cache is not used for this file.
+   */
+  @Nullable
+  protected String getVersion() {
+    long lastModified = getLastModified();
+    return (lastModified > 0) ? Long.toString(lastModified) : null;
+  }
+
+  /**
+   * Read several byte ranges of the remote file. If the read cache is enabled, the ranges are served from the cache
+   * blocks already in the read cache or the disk cache, and only the missing blocks are fetched, then put into both
+   * caches. Otherwise the ranges themselves are fetched. Either way, what is fetched is sorted, and pieces that are
+   * adjacent or separated by no more than maxMergeGap bytes are fetched with a single request, up to 16 MiB per
+   * request. If an Executor has been set, the requests are made concurrently. The file pointer is left at the end of
+   * the last range in the list.
+   */
+  @Override
+  public void readRanges(List<ReadRange> ranges) throws IOException {
+    if (ranges.isEmpty()) {
+      return;
+    }
+    if (readCacheEnabled) {
+      readRangesFromCache(ranges);
+    } else {
+      fetchRanges(ranges);
+    }
+    moveFilePointer(ranges.get(ranges.size() - 1).getEnd());
+  }
+
+  private void readRangesFromCache(List<ReadRange> ranges) throws IOException {
+    RemoteBlockDiskCache disk = diskCache;
+    String diskKey = (disk == null) ? "" : getDiskCacheKey();
+    long fileLength = length();
+
+    // find the blocks holding the ranges, and the ones that must be fetched
+    Map<Long, byte[]> blocks = new HashMap<>();
+    List<ReadRange> missing = new ArrayList<>();
+    for (ReadRange range : ranges) {
+      if (range.getEnd() > fileLength) {
+        throw new EOFException("Reading " + location + " at " + range.getPosition() + " file length = " + fileLength);
+      }
+      if (range.getLength() == 0) {
+        continue;
+      }
+      long last = (range.getEnd() - 1) / readCacheBlockSize;
+      for (long block = range.getPosition() / readCacheBlockSize; block <= last; block++) {
+        if (blocks.containsKey(block)) {
+          continue;
+        }
+        int blockLength = (int) Math.min(readCacheBlockSize, fileLength - block * readCacheBlockSize);
+        byte[] data = readCache.getIfPresent(block);
+        if (data == null && !diskKey.isEmpty()) {
+          data = disk.get(diskKey, block, blockLength);
+          if (data != null) {
+            readCache.put(block, data);
+          }
+        }
+        if (data == null) {
+          data = new byte[blockLength];
+          missing.add(new ReadRange(block * readCacheBlockSize, data, 0, blockLength));
+        }
+        blocks.put(block, data);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      fetchRanges(missing);
+      for (ReadRange fetched : missing) {
+        long block = fetched.getPosition() / readCacheBlockSize;
+        readCache.put(block, fetched.getDest());
+        if (!diskKey.isEmpty()) {
+          disk.put(diskKey, block, fetched.getDest());
+        }
+      }
+    }
+    logger.debug("readRanges {} ranges from {} cache blocks, {} fetched from {}", ranges.size(), blocks.size(),
+        missing.size(), url);
+
+    // copy from the blocks, which are held here in case the cache has already evicted them
+    for (ReadRange range : ranges) {
+      long pos = range.getPosition();
+      int offset = range.getOffset();
+      int remaining = range.getLength();
+      while (remaining > 0) {
+        long block = pos / readCacheBlockSize;
+        int offsetIntoBlock = (int) (pos - block * readCacheBlockSize);
+        int n = Math.min(remaining, readCacheBlockSize - offsetIntoBlock);
+        System.arraycopy(blocks.get(block), offsetIntoBlock, range.getDest(), offset, n);
+        pos += n;
+        offset += n;
+        remaining -= n;
+      }
+    }
+  }
+
+  // fetch the ranges from the remote service, merging nearby ranges into one request
+  private void fetchRanges(List<ReadRange> ranges) throws IOException {
+    List<ReadRange> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(ReadRange::getPosition));
+
+    // group the sorted ranges into requests
+    List<List<ReadRange>> requests = new ArrayList<>();
+    List<ReadRange> current = new ArrayList<>();
+    long start = sorted.get(0).getPosition();
+    long end = start;
+    for (ReadRange range : sorted) {
+      long mergedEnd = Math.max(end, range.getEnd());
+      if (!current.isEmpty()
+          && (range.getPosition() - end > maxMergeGap || mergedEnd - start > maxMergedRequestSize)) {
+        requests.add(current);
+        current = new ArrayList<>();
+        start = range.getPosition();
+        mergedEnd = range.getEnd();
+      }
+      current.add(range);
+      end = mergedEnd;
+    }
+    requests.add(current);
+    logger.debug("fetch {} ranges in {} requests from {}", ranges.size(), requests.size(), url);
+
+    Executor exec = executor;
+    if (exec == null || requests.size() == 1) {
+      for (List<ReadRange> request : requests) {
+        readRequest(request);
+      }
+    } else {
+      List<FutureTask<Void>> tasks = new ArrayList<>(requests.size());
+      for (List<ReadRange> request : requests) {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+          readRequest(request);
+          return null;
+        });
+        exec.execute(task);
+        tasks.add(task);
+      }
+      try {
+        for (FutureTask<Void> task : tasks) {
+          waitFor(task);
+        }
+      } catch (IOException | RuntimeException | Error e) {
+        for (FutureTask<Void> task : tasks) {
+          task.cancel(true);
+        }
+        throw e;
+      }
+    }
+  }
+
+  // like seek(), but dont read a new buffer until it is needed, since that may be another remote request.
+  private void moveFilePointer(long pos) {
+    filePosition = pos;
+    endOfFile = false;
+    if (pos < bufferStart || pos >= dataEnd) {
+      bufferStart = pos;
+      dataEnd = pos;
+      dataSize = 0;
+    }
+  }
+
+  // fetch the bytes spanned by a group of sorted ranges with one request, and copy them to the destinations
+  private void readRequest(List<ReadRange> request) throws IOException {
+    long start = request.get(0).getPosition();
+    long end = start;
+    for (ReadRange range : request) {
+      end = Math.max(end, range.getEnd());
+    }
+    int len = Math.toIntExact(end - start);
+    if (request.size() == 1) {
+      ReadRange range = request.get(0);
+      readRemoteFully(start, range.getDest(), range.getOffset(), len);
+      return;
+    }
+    byte[] data = new byte[len];
+    readRemoteFully(start, data, 0, len);
+    for (ReadRange range : request) {
+      System.arraycopy(data, (int) (range.getPosition() - start), range.getDest(), range.getOffset(),
+          range.getLength());
+    }
+  }
+
+  private void readRemoteFully(long pos, byte[] buff, int offset, int len) throws IOException {
+    int n = 0;
+    while (n < len) {
+      int count = readRemote(pos + n, buff, offset + n, len - n);
+      if (count <= 0) {
+        throw new EOFException("Reading " + location + " at " + (pos + n) + " file length = " + length());
+      }
+      n += count;
+    }
+  }
+
+  private static void waitFor(FutureTask<Void> task) throws IOException {
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading remote ranges");
+    } catch (ExecutionException e) {
+      throw ExecutionExceptions.propagateIO(e);
+    }
+  }
+
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
     int n = (int) nbytes;
@@ -247,6 +575,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
 
   @Override
   public void close() throws IOException {
+    closed = true;
     closeRemote();
     super.close();
     // clean out the cache when closing the Remote Random Access File
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io.blosc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import ucar.unidata.io.lz4.Lz4BlockDecoder;
+import ucar.unidata.io.zstd.ZstdDecompressor;
+
+/**
+ * Decompress a buffer in the Blosc (version 1) format, as written by the HDF5 Blosc filter (id 32001).
+ * Pure java, decode only. Supports the blosclz, lz4, lz4hc, zlib and zstd codecs, with byte or bit shuffle.
+ * Snappy is not supported. Stateless and thread-safe.
+ *
+ * @see "https://github.com/Blosc/c-blosc/blob/master/README_HEADER.rst"
+ */
+public class BloscDecoder {
+  private static final int HEADER_SIZE = 16;
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+
+  private static final int DOSHUFFLE = 0x1;
+  private static final int MEMCPYED = 0x2;
+  private static final int DOBITSHUFFLE = 0x4;
+  private static final int DODELTA = 0x8;
+  private static final int DONT_SPLIT = 0x10;
+
+  private static final int BLOSCLZ = 0;
+  private static final int LZ4 = 1;
+  private static final int SNAPPY = 2;
+  private static final int ZLIB = 3;
+  private static final int ZSTD = 4;
+  private static final String[] codecName = {"blosclz", "lz4", "snappy", "zlib", "zstd"};
+
+  private BloscDecoder() {}
+
+  /**
+   * Get the decompressed size from the Blosc header.
+   *
+   * @throws IOException if src is too short to hold a Blosc header.
+   */
+  public static int getDecompressedSize(byte[] src) throws IOException {
+    if (src.length < HEADER_SIZE) {
+      throw new IOException("Blosc: buffer too short");
+    }
+    return readIntLE(src, 4);
+  }
+
+  /**
+   * Decompress a Blosc buffer.
+   *
+   * @param src the compressed buffer, starting with the 16 byte Blosc header.
+   * @return the decompressed data.
+   * @throws IOException if the data is corrupt, or uses an unsupported codec.
+   */
+  public static byte[] decompress(byte[] src) throws IOException {
+    int nbytes = getDecompressedSize(src);
+    int version = src[0] & 0xFF;
+    int flags = src[2] & 0xFF;
+    int typesize = src[3] & 0xFF;
+    int blocksize = readIntLE(src, 8);
+    int cbytes = readIntLE(src, 12);
+    if (nbytes < 0 || cbytes < HEADER_SIZE || cbytes > src.length || typesize == 0) {
+      throw new IOException("Blosc: bad header, nbytes=" + nbytes + " cbytes=" + cbytes + " typesize=" + typesize);
+    }
+
+    byte[] dest = new byte[nbytes];
+    if ((flags & MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > cbytes) {
+        throw new IOException("Blosc: truncated buffer");
+      }
+      System.arraycopy(src, HEADER_SIZE, dest, 0, nbytes);
+      return dest;
+    }
+    if (nbytes == 0) {
+      return dest;
+    }
+    if ((flags & DODELTA) != 0) {
+      throw new IOException("Blosc: delta filter not supported");
+    }
+    int codec = flags >>> 5;
+    if (codec == SNAPPY || codec >= codecName.length) {
+      throw new IOException("Blosc: codec " + (codec < codecName.length ? codecName[codec] : codec) + " not supported");
+    }
+    if (blocksize <= 0) {
+      throw new IOException("Blosc: bad blocksize " + blocksize);
+    }
+
+    int nblocks = nbytes / blocksize;
+    int leftover = nbytes % blocksize;
+    if (leftover > 0) {
+      nblocks++;
+    }
+    if (HEADER_SIZE + 4L * nblocks > cbytes) {
+      throw new IOException("Blosc: truncated buffer");
+    }
+
+    boolean shuffle = (flags & DOSHUFFLE) != 0 && typesize > 1;
+    boolean bitshuffle = (flags & DOBITSHUFFLE) != 0;
+    boolean dontSplit = (flags & DONT_SPLIT) != 0;
+    byte[] tmp = (shuffle || bitshuffle) ? new byte[Math.min(blocksize, nbytes)] : null;
+
+    try {
+      for (int b = 0; b < nblocks; b++) {
+        boolean leftoverBlock = (b == nblocks - 1) && (leftover > 0);
+        int bsize = leftoverBlock ? leftover : blocksize;
+        int destOffset = b * blocksize;
+        int start = readIntLE(src, HEADER_SIZE + 4 * b);
+        if (start < HEADER_SIZE || start >= cbytes) {
+          throw new IOException("Blosc: bad block start " + start);
+        }
+
+        int nsplits =
+            (!dontSplit && typesize <= MAX_SPLITS && blocksize / typesize >= MIN_BUFFERSIZE && !leftoverBlock) ? typesize
+                : 1;
+        int neblock = bsize / nsplits;
+        byte[] target = (tmp != null) ? tmp : dest;
+        int tpos = (tmp != null) ? 0 : destOffset;
+        int sp = start;
+        for (int s = 0; s < nsplits; s++) {
+          int csize = readIntLE(src, sp);
+          sp += 4;
+          if (csize < 0 || csize > cbytes - sp) {
+            throw new IOException("Blosc: bad split size " + csize);
+          }
+          if (csize == neblock) {
+            System.arraycopy(src, sp, target, tpos, neblock);
+          } else {
+            decompressSplit(codec, src, sp, csize, target, tpos, neblock);
+          }
+          sp += csize;
+          tpos += neblock;
+        }
+
+        if (shuffle) {
+          unshuffle(typesize, bsize, tmp, dest, destOffset);
+        } else if (bitshuffle) {
+          bitunshuffle(typesize, bsize, tmp, dest, destOffset, version);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Blosc: corrupt data", e);
+    }
+    return dest;
+  }
+
+  private static void decompressSplit(int codec, byte[] src, int srcOffset, int srcLength, byte[] dest,
+      int destOffset, int destLength) throws IOException {
+    switch (codec) {
+      case BLOSCLZ:
+        BloscLZ.decompress(src, srcOffset, srcLength, dest, destOffset, destLength);
+        break;
+      case LZ4:
+        Lz4BlockDecoder.decompressBlock(src, srcOffset, srcLength, dest, destOffset, destLength);
+        break;
+      case ZLIB:
+        inflate(src, srcOffset, srcLength, dest, destOffset, destLength);
+        break;
+      case ZSTD:
+        byte[] result = new ZstdDecompressor().decompress(src, srcOffset, srcLength);
+        if (result.length != destLength) {
+          throw new IOException("Blosc: zstd decompressed " + result.length + " bytes, expected " + destLength);
+        }
+        System.arraycopy(result, 0, dest, destOffset, destLength);
+        break;
+      default:
+        throw new IOException("Blosc: codec " + codec + " not supported");
+    }
+  }
+
+  private static void inflate(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+      throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(src, srcOffset, srcLength);
+      int n = 0;
+      while (n < destLength && !inflater.finished()) {
+        int count = inflater.inflate(dest, destOffset + n, destLength - n);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += count;
+      }
+      if (n != destLength) {
+        throw new IOException("Blosc: zlib decompressed " + n + " bytes, expected " + destLength);
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Blosc: corrupt zlib data", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  // bytes were grouped by their position within the element
+  private static void unshuffle(int typesize, int blocksize, byte[] src, byte[] dest, int destOffset) {
+    int nelems = blocksize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int from = j * nelems;
+      for (int i = 0; i < nelems; i++) {
+        dest[destOffset + i * typesize + j] = src[from + i];
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dest, destOffset + done, blocksize - done);
+  }
+
+  // bits were grouped by their position within the element: row 8*j+k holds bit k of byte j of each element
+  private static void bitunshuffle(int typesize, int blocksize, byte[] src, byte[] dest, int destOffset,
+      int version) {
+    int nelems = blocksize / typesize;
+    if (version <= 2 && nelems % 8 != 0) {
+      // older format versions did not bitshuffle these blocks at all
+      System.arraycopy(src, 0, dest, destOffset, blocksize);
+      return;
+    }
+    nelems -= nelems % 8;
+    int rowBytes = nelems / 8;
+    for (int j = 0; j < typesize; j++) {
+      for (int i = 0; i < nelems; i++) {
+        int bitpos = i & 7;
+        int rowOffset = 8 * j * rowBytes + (i >>> 3);
+        int value = 0;
+        for (int k = 0; k < 8; k++) {
+          value |= ((src[rowOffset + k * rowBytes] >>> bitpos) & 1) << k;
+        }
+        dest[destOffset + i * typesize + j] = (byte) value;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dest, destOffset + done, blocksize - done);
+  }
+
+  private static int readIntLE(byte[] b, int pos) {
+    return (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8) | ((b[pos + 2] & 0xFF) << 16) | ((b[pos + 3] & 0xFF) << 24);
+  }
+
+  /** The BloscLZ codec, a variant of FastLZ level 2. */
+  static class BloscLZ {
+    private static final int MAX_DISTANCE = 8191;
+
+    static void decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+        throws IOException {
+      int ip = srcOffset;
+      int ipEnd = srcOffset + srcLength;
+      int op = destOffset;
+      int opEnd = destOffset + destLength;
+
+      int ctrl = src[ip++] & 31;
+      while (true) {
+        if (ctrl >= 32) {
+          // match
+          int len = (ctrl >>> 5) - 1;
+          int ofs = (ctrl & 31) << 8;
+          if (len == 6) {
+            int code;
+            do {
+              code = src[ip++] & 0xFF;
+              len += code;
+            } while (code == 255);
+          }
+          int code = src[ip++] & 0xFF;
+          len += 3;
+          int distance = ofs + code + 1;
+          if (code == 255 && ofs == (31 << 8)) {
+            distance = (((src[ip] & 0xFF) << 8) | (src[ip + 1] & 0xFF)) + MAX_DISTANCE + 1;
+            ip += 2;
+          }
+          int ref = op - distance;
+          if (ref < destOffset || len > opEnd - op) {
+            throw new IOException("BloscLZ: bad match");
+          }
+          if (distance == 1) {
+            Arrays.fill(dest, op, op + len, dest[ref]);
+          } else if (distance >= len) {
+            System.arraycopy(dest, ref, dest, op, len);
+          } else {
+            for (int i = 0; i < len; i++) {
+              dest[op + i] = dest[ref + i];
+            }
+          }
+          op += len;
+        } else {
+          // literal run
+          int len = ctrl + 1;
+          if (len > opEnd - op || len > ipEnd - ip) {
+            throw new IOException("BloscLZ: literal run past end of block");
+          }
+          System.arraycopy(src, ip, dest, op, len);
+          op += len;
+          ip += len;
+        }
+        if (ip >= ipEnd) {
+          break;
+        }
+        ctrl = src[ip++] & 0xFF;
+      }
+
+      if (op != opEnd) {
+        throw new IOException("BloscLZ: decompressed " + (op - destOffset) + " bytes, expected " + destLength);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+/**
+ * INTERNAL CLASSES DO NOT USE: Blosc decompression, pure java, decode only.
+ */
+package ucar.unidata.io.blosc;
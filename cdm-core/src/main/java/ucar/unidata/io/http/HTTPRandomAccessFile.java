@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import ucar.httpservices.HTTPFactory;
 import ucar.httpservices.HTTPMethod;
 import ucar.httpservices.HTTPSession;
@@ -46,6 +47,7 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 
   private HTTPSession session;
   private long total_length;
+  private String version; // ETag or Last-Modified header, may be null
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, httpBufferSize, httpMaxCacheSize);
@@ -68,6 +70,9 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 
       doConnect(method);
 
+      Optional<String> etag = method.getResponseHeaderValue("ETag");
+      version = etag.isPresent() ? etag.get() : method.getResponseHeaderValue("Last-Modified").orElse(null);
+
       Optional<String> acceptRangesOpt = method.getResponseHeaderValue("Accept-Ranges");
       if (acceptRangesOpt.isPresent()) {
         String acceptRanges = acceptRangesOpt.get();
@@ -226,6 +231,17 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
     return 0;
   }
 
+  /**
+   * The ETag of the remote file, or its Last-Modified header if there is no ETag.
+   *
+   * @return the version, or null if the server sent neither header.
+   */
+  @Override
+  @Nullable
+  protected String getVersion() {
+    return version;
+  }
+
   /**
    * Hook into service provider interface for RandomAccessFileProvider.
    */
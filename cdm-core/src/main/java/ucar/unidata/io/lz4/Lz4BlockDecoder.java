@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io.lz4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompress data in the LZ4 block format, and in the framing used by the HDF5 LZ4 filter (id 32004).
+ * Pure java, decode only. Stateless and thread-safe.
+ *
+ * @see "https://github.com/lz4/lz4/blob/dev/doc/lz4_Block_format.md"
+ * @see "https://github.com/nexusformat/HDF5-External-Filter-Plugins/tree/master/LZ4"
+ */
+public class Lz4BlockDecoder {
+  private static final int MIN_MATCH = 4;
+
+  private Lz4BlockDecoder() {}
+
+  /**
+   * Decompress one LZ4 block into dest[destOffset, destOffset + destLength), which must be exactly the size
+   * of the decompressed block.
+   *
+   * @return the number of bytes written, always destLength.
+   * @throws IOException if the data is corrupt, or does not decompress to exactly destLength bytes.
+   */
+  public static int decompressBlock(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset,
+      int destLength) throws IOException {
+    int sp = srcOffset;
+    int srcEnd = srcOffset + srcLength;
+    int dp = destOffset;
+    int destEnd = destOffset + destLength;
+
+    try {
+      while (true) {
+        int token = src[sp++] & 0xFF;
+
+        // literals
+        int litLen = token >>> 4;
+        if (litLen == 15) {
+          int b;
+          do {
+            b = src[sp++] & 0xFF;
+            litLen += b;
+          } while (b == 255);
+        }
+        if (litLen > srcEnd - sp || litLen > destEnd - dp) {
+          throw new IOException("LZ4: literal run past end of block");
+        }
+        System.arraycopy(src, sp, dest, dp, litLen);
+        sp += litLen;
+        dp += litLen;
+
+        // the last sequence has only literals
+        if (sp == srcEnd) {
+          break;
+        }
+
+        // match
+        int offset = (src[sp] & 0xFF) | ((src[sp + 1] & 0xFF) << 8);
+        sp += 2;
+        if (offset == 0 || offset > dp - destOffset) {
+          throw new IOException("LZ4: bad match offset " + offset);
+        }
+        int matchLen = token & 0xF;
+        if (matchLen == 15) {
+          int b;
+          do {
+            b = src[sp++] & 0xFF;
+            matchLen += b;
+          } while (b == 255);
+        }
+        matchLen += MIN_MATCH;
+        if (matchLen > destEnd - dp) {
+          throw new IOException("LZ4: match past end of block");
+        }
+        copyMatch(dest, dp, offset, matchLen);
+        dp += matchLen;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("LZ4: corrupt data", e);
+    }
+
+    if (dp != destEnd) {
+      throw new IOException("LZ4: decompressed " + (dp - destOffset) + " bytes, expected " + destLength);
+    }
+    return destLength;
+  }
+
+  // copy a match that may overlap its own output
+  private static void copyMatch(byte[] dest, int dp, int offset, int len) {
+    int from = dp - offset;
+    if (offset >= len) {
+      System.arraycopy(dest, from, dest, dp, len);
+    } else if (offset == 1) {
+      Arrays.fill(dest, dp, dp + len, dest[from]);
+    } else {
+      for (int i = 0; i < len; i++) {
+        dest[dp + i] = dest[from + i];
+      }
+    }
+  }
+
+  /**
+   * Decompress data written by the HDF5 LZ4 filter: an 8 byte total size and a 4 byte block size (both big endian),
+   * then for each block a 4 byte big endian compressed size followed by the block. A block whose compressed size
+   * equals its decompressed size is stored uncompressed.
+   *
+   * @param src the compressed chunk.
+   * @return the decompressed chunk.
+   * @throws IOException if the data is corrupt.
+   */
+  public static byte[] decompressHdf5(byte[] src) throws IOException {
+    if (src.length < 12) {
+      throw new IOException("LZ4: HDF5 chunk too short");
+    }
+    long totalSize = readLongBE(src, 0);
+    int blockSize = readIntBE(src, 8);
+    if (totalSize < 0 || totalSize > Integer.MAX_VALUE - 8 || (blockSize <= 0 && totalSize > 0)) {
+      throw new IOException("LZ4: bad HDF5 header, total size=" + totalSize + " block size=" + blockSize);
+    }
+
+    byte[] result = new byte[(int) totalSize];
+    int sp = 12;
+    int dp = 0;
+    while (dp < result.length) {
+      int origSize = Math.min(blockSize, result.length - dp);
+      if (sp + 4 > src.length) {
+        throw new IOException("LZ4: HDF5 chunk truncated");
+      }
+      int compSize = readIntBE(src, sp);
+      sp += 4;
+      if (compSize <= 0 || compSize > src.length - sp) {
+        throw new IOException("LZ4: bad HDF5 block size " + compSize);
+      }
+      if (compSize == origSize) {
+        System.arraycopy(src, sp, result, dp, origSize);
+      } else {
+        decompressBlock(src, sp, compSize, result, dp, origSize);
+      }
+      sp += compSize;
+      dp += origSize;
+    }
+    return result;
+  }
+
+  private static int readIntBE(byte[] b, int pos) {
+    return ((b[pos] & 0xFF) << 24) | ((b[pos + 1] & 0xFF) << 16) | ((b[pos + 2] & 0xFF) << 8) | (b[pos + 3] & 0xFF);
+  }
+
+  private static long readLongBE(byte[] b, int pos) {
+    return ((long) readIntBE(b, pos) << 32) | (readIntBE(b, pos + 4) & 0xFFFFFFFFL);
+  }
+
+}
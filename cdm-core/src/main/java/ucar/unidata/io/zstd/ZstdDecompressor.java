@@ -0,0 +1,880 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io.zstd;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompress data in the Zstandard format, following RFC 8878.
+ * Pure java, decode only. Dictionaries are not supported.
+ * One or more (concatenated) frames are decompressed into a single byte array.
+ * <p>
+ * An instance reuses its tables and buffers across calls, so it is not thread-safe.
+ * Use one instance per thread, or the static {@link #decompress(byte[])}.
+ *
+ * @see "https://datatracker.ietf.org/doc/html/rfc8878"
+ */
+public class ZstdDecompressor {
+  private static final int MAGIC = 0xFD2FB528;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+  private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+  private static final int MAX_BLOCK_SIZE = 128 * 1024;
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private static final int BLOCK_RAW = 0;
+  private static final int BLOCK_RLE = 1;
+  private static final int BLOCK_COMPRESSED = 2;
+
+  private static final int LITERALS_RAW = 0;
+  private static final int LITERALS_RLE = 1;
+  private static final int LITERALS_COMPRESSED = 2;
+
+  private static final int MODE_PREDEFINED = 0;
+  private static final int MODE_RLE = 1;
+  private static final int MODE_FSE = 2;
+  private static final int MODE_REPEAT = 3;
+
+  // the three kinds of sequence symbols
+  private static final int LL = 0;
+  private static final int OF = 1;
+  private static final int ML = 2;
+  private static final int[] MAX_SYMBOL = {35, 31, 52};
+  private static final int[] MAX_ACCURACY_LOG = {9, 8, 9};
+
+  private static final int[] LL_BASE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 18, 20, 22, 24, 28, 32,
+      40, 48, 64, 128, 256, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536};
+  private static final int[] LL_BITS =
+      {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  private static final int[] ML_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24,
+      25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+      4099, 8195, 16387, 32771, 65539};
+  private static final int[] ML_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  private static final short[] LL_DEFAULT_NORM = {4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2,
+      2, 3, 2, 1, 1, 1, 1, 1, -1, -1, -1, -1};
+  private static final short[] OF_DEFAULT_NORM =
+      {1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1};
+  private static final short[] ML_DEFAULT_NORM = {1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1};
+
+  private static final FseTable[] PREDEFINED = new FseTable[3];
+
+  static {
+    try {
+      PREDEFINED[LL] = new FseTable(6);
+      PREDEFINED[LL].build(LL_DEFAULT_NORM, LL_DEFAULT_NORM.length, 6);
+      PREDEFINED[OF] = new FseTable(5);
+      PREDEFINED[OF].build(OF_DEFAULT_NORM, OF_DEFAULT_NORM.length, 5);
+      PREDEFINED[ML] = new FseTable(6);
+      PREDEFINED[ML].build(ML_DEFAULT_NORM, ML_DEFAULT_NORM.length, 6);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Decompress all the frames in src.
+   *
+   * @param src compressed data, one or more Zstandard frames.
+   * @return the decompressed data.
+   * @throws IOException if the data is corrupt, or uses an unsupported feature.
+   */
+  public static byte[] decompress(byte[] src) throws IOException {
+    return new ZstdDecompressor().decompress(src, 0, src.length);
+  }
+
+  /**
+   * Get the decompressed size stored in the header of the first frame.
+   *
+   * @return the decompressed size of the first frame, or -1 if not stored.
+   * @throws IOException if src does not start with a Zstandard frame.
+   */
+  public static long getFrameContentSize(byte[] src, int offset, int length) throws IOException {
+    if (length < 5 || readIntLE(src, offset) != MAGIC) {
+      throw new IOException("Zstd: not a Zstandard frame");
+    }
+    FrameHeader header = new FrameHeader();
+    header.read(src, offset + 4, offset + length);
+    return header.contentSize;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // per frame state, reused across frames and calls
+
+  private final int[] repeatOffsets = new int[3];
+  private final FseTable[] currentTables = new FseTable[3];
+  private final FseTable[] fseTables = {new FseTable(9), new FseTable(8), new FseTable(9)};
+  private final FseTable[] rleTables = {new FseTable(0), new FseTable(0), new FseTable(0)};
+  private final HuffmanTable huffman = new HuffmanTable();
+  private final BackwardBitReader bitReader = new BackwardBitReader();
+  private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+
+  // current literals, may point into the source for raw literals
+  private byte[] litBuf;
+  private int litPos;
+  private int litEnd;
+
+  private byte[] out;
+  private int outPos;
+  private int frameStart;
+
+  /**
+   * Decompress all the frames in src[offset, offset+length).
+   *
+   * @return the decompressed data.
+   * @throws IOException if the data is corrupt, or uses an unsupported feature.
+   */
+  public byte[] decompress(byte[] src, int offset, int length) throws IOException {
+    int end = offset + length;
+    out = new byte[0]; // allocated by ensureCapacity(), exactly if the frame content size is known
+    outPos = 0;
+    try {
+      int pos = offset;
+      while (pos < end) {
+        pos = decodeFrame(src, pos, end);
+      }
+      if (pos != end) {
+        throw new IOException("Zstd: truncated frame");
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Zstd: corrupt data", e);
+    }
+    byte[] result = (outPos == out.length) ? out : Arrays.copyOf(out, outPos);
+    out = null;
+    litBuf = null;
+    return result;
+  }
+
+  // returns position after the frame
+  private int decodeFrame(byte[] src, int pos, int end) throws IOException {
+    int magic = readIntLE(src, pos);
+    pos += 4;
+    if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+      long size = readIntLE(src, pos) & 0xFFFFFFFFL;
+      return Math.toIntExact(pos + 4 + size);
+    }
+    if (magic != MAGIC) {
+      throw new IOException("Zstd: bad magic number 0x" + Integer.toHexString(magic));
+    }
+
+    FrameHeader header = new FrameHeader();
+    pos = header.read(src, pos, end);
+    if (header.contentSize >= 0) {
+      ensureCapacity(header.contentSize);
+    }
+
+    frameStart = outPos;
+    repeatOffsets[0] = 1;
+    repeatOffsets[1] = 4;
+    repeatOffsets[2] = 8;
+    Arrays.fill(currentTables, null);
+    huffman.valid = false;
+
+    boolean last;
+    do {
+      int blockHeader = readLE3(src, pos);
+      pos += 3;
+      last = (blockHeader & 1) != 0;
+      int blockType = (blockHeader >>> 1) & 3;
+      int blockSize = blockHeader >>> 3;
+      switch (blockType) {
+        case BLOCK_RAW:
+          ensureCapacity(blockSize);
+          System.arraycopy(src, pos, out, outPos, blockSize);
+          outPos += blockSize;
+          pos += blockSize;
+          break;
+        case BLOCK_RLE:
+          ensureCapacity(blockSize);
+          Arrays.fill(out, outPos, outPos + blockSize, src[pos]);
+          outPos += blockSize;
+          pos += 1;
+          break;
+        case BLOCK_COMPRESSED:
+          if (blockSize > MAX_BLOCK_SIZE || pos + blockSize > end) {
+            throw new IOException("Zstd: bad compressed block size " + blockSize);
+          }
+          decodeCompressedBlock(src, pos, pos + blockSize);
+          pos += blockSize;
+          break;
+        default:
+          throw new IOException("Zstd: reserved block type");
+      }
+    } while (!last);
+
+    if (header.contentSize >= 0 && header.contentSize != outPos - frameStart) {
+      throw new IOException("Zstd: frame content size " + header.contentSize + " != " + (outPos - frameStart));
+    }
+    if (header.hasChecksum) {
+      pos += 4; // the checksum is not verified
+    }
+    return pos;
+  }
+
+  private void ensureCapacity(long nbytes) throws IOException {
+    long need = outPos + nbytes;
+    if (need <= out.length) {
+      return;
+    }
+    if (need > MAX_ARRAY_LEN) {
+      throw new IOException("Zstd: decompressed size " + need + " is larger than the maximum array length");
+    }
+    out = Arrays.copyOf(out, (int) Math.min(Math.max(need, 2L * out.length), MAX_ARRAY_LEN));
+  }
+
+  private void decodeCompressedBlock(byte[] src, int pos, int end) throws IOException {
+    pos = decodeLiterals(src, pos, end);
+    decodeSequences(src, pos, end);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // literals
+
+  // returns position after the literals section
+  private int decodeLiterals(byte[] src, int pos, int end) throws IOException {
+    int b0 = src[pos] & 0xFF;
+    int type = b0 & 3;
+    int sizeFormat = (b0 >>> 2) & 3;
+
+    if (type == LITERALS_RAW || type == LITERALS_RLE) {
+      int size;
+      switch (sizeFormat) {
+        case 0:
+        case 2:
+          size = b0 >>> 3;
+          pos += 1;
+          break;
+        case 1:
+          size = (b0 >>> 4) + ((src[pos + 1] & 0xFF) << 4);
+          pos += 2;
+          break;
+        default:
+          size = (b0 >>> 4) + ((src[pos + 1] & 0xFF) << 4) + ((src[pos + 2] & 0xFF) << 12);
+          pos += 3;
+      }
+      if (size > MAX_BLOCK_SIZE) {
+        throw new IOException("Zstd: literals size " + size + " too large");
+      }
+      if (type == LITERALS_RAW) {
+        if (pos + size > end) {
+          throw new IOException("Zstd: raw literals extend past the block");
+        }
+        setLiterals(src, pos, size);
+        return pos + size;
+      }
+      Arrays.fill(literals, 0, size, src[pos]);
+      setLiterals(literals, 0, size);
+      return pos + 1;
+    }
+
+    // huffman compressed, possibly reusing the previous table ("treeless")
+    int regenSize, compSize;
+    switch (sizeFormat) {
+      case 0:
+      case 1: {
+        int val = readLE3(src, pos);
+        regenSize = (val >>> 4) & 0x3FF;
+        compSize = (val >>> 14) & 0x3FF;
+        pos += 3;
+        break;
+      }
+      case 2: {
+        int val = readIntLE(src, pos);
+        regenSize = (val >>> 4) & 0x3FFF;
+        compSize = (val >>> 18) & 0x3FFF;
+        pos += 4;
+        break;
+      }
+      default: {
+        long val = readIntLE(src, pos) & 0xFFFFFFFFL | ((long) (src[pos + 4] & 0xFF) << 32);
+        regenSize = (int) ((val >>> 4) & 0x3FFFF);
+        compSize = (int) ((val >>> 22) & 0x3FFFF);
+        pos += 5;
+      }
+    }
+    int streamsEnd = pos + compSize;
+    if (regenSize > MAX_BLOCK_SIZE || streamsEnd > end) {
+      throw new IOException("Zstd: bad compressed literals size");
+    }
+
+    if (type == LITERALS_COMPRESSED) {
+      pos = huffman.readTable(src, pos, streamsEnd, bitReader);
+    } else if (!huffman.valid) {
+      throw new IOException("Zstd: treeless literals without a previous huffman table");
+    }
+
+    if (sizeFormat == 0) { // single stream
+      huffman.decodeStream(src, pos, streamsEnd, literals, 0, regenSize, bitReader);
+    } else {
+      int start1 = pos + 6;
+      int start2 = start1 + readShortLE(src, pos);
+      int start3 = start2 + readShortLE(src, pos + 2);
+      int start4 = start3 + readShortLE(src, pos + 4);
+      int segment = (regenSize + 3) / 4;
+      int lastSegment = regenSize - 3 * segment;
+      if (start4 > streamsEnd || lastSegment < 0) {
+        throw new IOException("Zstd: bad literals jump table");
+      }
+      huffman.decodeStream(src, start1, start2, literals, 0, segment, bitReader);
+      huffman.decodeStream(src, start2, start3, literals, segment, segment, bitReader);
+      huffman.decodeStream(src, start3, start4, literals, 2 * segment, segment, bitReader);
+      huffman.decodeStream(src, start4, streamsEnd, literals, 3 * segment, lastSegment, bitReader);
+    }
+    setLiterals(literals, 0, regenSize);
+    return streamsEnd;
+  }
+
+  private void setLiterals(byte[] buf, int start, int size) {
+    this.litBuf = buf;
+    this.litPos = start;
+    this.litEnd = start + size;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+  // sequences
+
+  private void decodeSequences(byte[] src, int pos, int end) throws IOException {
+    int nbSeq = src[pos++] & 0xFF;
+    if (nbSeq == 0) {
+      if (pos != end) {
+        throw new IOException("Zstd: extra bytes after empty sequences section");
+      }
+      copyLiterals(litEnd - litPos);
+      return;
+    }
+    if (nbSeq == 255) {
+      nbSeq = (src[pos] & 0xFF) + ((src[pos + 1] & 0xFF) << 8) + 0x7F00;
+      pos += 2;
+    } else if (nbSeq >= 128) {
+      nbSeq = ((nbSeq - 128) << 8) + (src[pos++] & 0xFF);
+    }
+
+    int modes = src[pos++] & 0xFF;
+    if ((modes & 3) != 0) {
+      throw new IOException("Zstd: reserved bits set in sequence compression modes");
+    }
+    pos = selectTable(LL, modes >>> 6, src, pos, end);
+    pos = selectTable(OF, (modes >>> 4) & 3, src, pos, end);
+    pos = selectTable(ML, (modes >>> 2) & 3, src, pos, end);
+
+    FseTable llTable = currentTables[LL];
+    FseTable ofTable = currentTables[OF];
+    FseTable mlTable = currentTables[ML];
+    int[] rep = repeatOffsets;
+
+    BackwardBitReader br = bitReader;
+    br.init(src, pos, end);
+    int llState = br.read(llTable.accuracyLog);
+    int ofState = br.read(ofTable.accuracyLog);
+    int mlState = br.read(mlTable.accuracyLog);
+
+    for (int i = 0; i < nbSeq; i++) {
+      int ofCode = ofTable.symbols[ofState] & 0xFF;
+      int mlCode = mlTable.symbols[mlState] & 0xFF;
+      int llCode = llTable.symbols[llState] & 0xFF;
+      if (ofCode > 30) {
+        throw new IOException("Zstd: unsupported offset code " + ofCode);
+      }
+
+      int offsetValue = (1 << ofCode) + br.read(ofCode);
+      int matchLength = ML_BASE[mlCode] + br.read(ML_BITS[mlCode]);
+      int literalLength = LL_BASE[llCode] + br.read(LL_BITS[llCode]);
+
+      int offset;
+      if (offsetValue > 3) {
+        offset = offsetValue - 3;
+        rep[2] = rep[1];
+        rep[1] = rep[0];
+        rep[0] = offset;
+      } else {
+        int index = offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+        if (index == 0) {
+          offset = rep[0];
+        } else {
+          offset = (index == 3) ? rep[0] - 1 : rep[index];
+          if (index != 1) {
+            rep[2] = rep[1];
+          }
+          rep[1] = rep[0];
+          rep[0] = offset;
+        }
+      }
+
+      if (i < nbSeq - 1) {
+        llState = llTable.newState[llState] + br.read(llTable.nbBits[llState]);
+        mlState = mlTable.newState[mlState] + br.read(mlTable.nbBits[mlState]);
+        ofState = ofTable.newState[ofState] + br.read(ofTable.nbBits[ofState]);
+      }
+
+      copyLiterals(literalLength);
+      copyMatch(offset, matchLength);
+    }
+    if (!br.isFinished()) {
+      throw new IOException("Zstd: sequences bitstream not fully consumed");
+    }
+    copyLiterals(litEnd - litPos);
+  }
+
+  private int selectTable(int kind, int mode, byte[] src, int pos, int end) throws IOException {
+    switch (mode) {
+      case MODE_PREDEFINED:
+        currentTables[kind] = PREDEFINED[kind];
+        return pos;
+      case MODE_RLE: {
+        int symbol = src[pos] & 0xFF;
+        if (symbol > MAX_SYMBOL[kind]) {
+          throw new IOException("Zstd: bad RLE symbol " + symbol);
+        }
+        rleTables[kind].initRle(symbol);
+        currentTables[kind] = rleTables[kind];
+        return pos + 1;
+      }
+      case MODE_FSE:
+        pos = fseTables[kind].readDescription(src, pos, end, MAX_SYMBOL[kind], MAX_ACCURACY_LOG[kind]);
+        currentTables[kind] = fseTables[kind];
+        return pos;
+      default: // MODE_REPEAT
+        if (currentTables[kind] == null) {
+          throw new IOException("Zstd: repeat mode without a previous table");
+        }
+        return pos;
+    }
+  }
+
+  private void copyLiterals(int len) throws IOException {
+    if (len > litEnd - litPos) {
+      throw new IOException("Zstd: literal length " + len + " exceeds the literals");
+    }
+    ensureCapacity(len);
+    System.arraycopy(litBuf, litPos, out, outPos, len);
+    litPos += len;
+    outPos += len;
+  }
+
+  private void copyMatch(int offset, int len) throws IOException {
+    if (offset <= 0 || offset > outPos - frameStart) {
+      throw new IOException("Zstd: bad match offset " + offset);
+    }
+    ensureCapacity(len);
+    byte[] buf = out;
+    int from = outPos - offset;
+    if (offset >= len) {
+      System.arraycopy(buf, from, buf, outPos, len);
+    } else { // overlapping: repeats the last offset bytes
+      for (int i = 0; i < len; i++) {
+        buf[outPos + i] = buf[from + i];
+      }
+    }
+    outPos += len;
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+
+  private static class FrameHeader {
+    long contentSize = -1;
+    boolean hasChecksum;
+
+    // returns position after the header
+    int read(byte[] src, int pos, int end) throws IOException {
+      int descriptor = src[pos++] & 0xFF;
+      int fcsFlag = descriptor >>> 6;
+      boolean singleSegment = (descriptor & 0x20) != 0;
+      if ((descriptor & 0x08) != 0) {
+        throw new IOException("Zstd: reserved bit set in frame header");
+      }
+      hasChecksum = (descriptor & 0x04) != 0;
+      int dictIdFlag = descriptor & 3;
+
+      if (!singleSegment) {
+        pos++; // window descriptor: not needed, since the entire output is kept
+      }
+      int dictIdSize = (dictIdFlag == 3) ? 4 : dictIdFlag;
+      if (readLE(src, pos, dictIdSize) != 0) {
+        throw new IOException("Zstd: dictionaries are not supported");
+      }
+      pos += dictIdSize;
+
+      int fcsSize = (fcsFlag == 0) ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+      if (fcsSize > 0) {
+        contentSize = readLE(src, pos, fcsSize);
+        if (fcsSize == 2) {
+          contentSize += 256;
+        }
+        pos += fcsSize;
+      }
+      if (pos > end) {
+        throw new IOException("Zstd: truncated frame header");
+      }
+      return pos;
+    }
+  }
+
+  /** Finite State Entropy decoding table. */
+  static final class FseTable {
+    int accuracyLog;
+    final byte[] symbols;
+    final byte[] nbBits;
+    final int[] newState;
+    private final short[] norm = new short[256];
+    private final int[] symbolNext = new int[256];
+
+    FseTable(int maxAccuracyLog) {
+      int size = 1 << maxAccuracyLog;
+      symbols = new byte[size];
+      nbBits = new byte[size];
+      newState = new int[size];
+    }
+
+    void initRle(int symbol) {
+      accuracyLog = 0;
+      symbols[0] = (byte) symbol;
+      nbBits[0] = 0;
+      newState[0] = 0;
+    }
+
+    /** Read the normalized counts (forward bitstream) and build the table. Return position after the description. */
+    int readDescription(byte[] src, int pos, int end, int maxSymbol, int maxAccuracyLog) throws IOException {
+      int bitCount = 0;
+      int bits = peekForward(src, pos, end, bitCount);
+      int log = (bits & 0xF) + 5;
+      if (log > maxAccuracyLog) {
+        throw new IOException("Zstd: FSE accuracy log " + log + " too large");
+      }
+      bitCount += 4;
+
+      int remaining = (1 << log) + 1;
+      int threshold = 1 << log;
+      int nbits = log + 1;
+      int symbol = 0;
+      boolean previous0 = false;
+      while (remaining > 1 && symbol <= maxSymbol) {
+        if (previous0) {
+          int n0 = symbol;
+          bits = peekForward(src, pos, end, bitCount);
+          while ((bits & 0xFFFF) == 0xFFFF) {
+            n0 += 24;
+            bitCount += 16;
+            bits = peekForward(src, pos, end, bitCount);
+          }
+          while ((bits & 3) == 3) {
+            n0 += 3;
+            bits >>>= 2;
+            bitCount += 2;
+          }
+          n0 += bits & 3;
+          bitCount += 2;
+          if (n0 > maxSymbol) {
+            throw new IOException("Zstd: too many symbols in FSE table");
+          }
+          while (symbol < n0) {
+            norm[symbol++] = 0;
+          }
+        }
+
+        bits = peekForward(src, pos, end, bitCount);
+        int max = (2 * threshold - 1) - remaining;
+        int count;
+        if ((bits & (threshold - 1)) < max) {
+          count = bits & (threshold - 1);
+          bitCount += nbits - 1;
+        } else {
+          count = bits & (2 * threshold - 1);
+          if (count >= threshold) {
+            count -= max;
+          }
+          bitCount += nbits;
+        }
+        count--; // -1 means "less than 1" probability
+        remaining -= Math.abs(count);
+        norm[symbol++] = (short) count;
+        previous0 = (count == 0);
+        if (remaining < threshold) {
+          if (remaining <= 1) {
+            break;
+          }
+          nbits = highBit(remaining) + 1;
+          threshold = 1 << (nbits - 1);
+        }
+      }
+      int nbytes = (bitCount + 7) >>> 3;
+      if (remaining != 1 || pos + nbytes > end) {
+        throw new IOException("Zstd: corrupt FSE table description");
+      }
+      build(norm, symbol, log);
+      return pos + nbytes;
+    }
+
+    void build(short[] counts, int nsymbols, int log) throws IOException {
+      int size = 1 << log;
+      int highThreshold = size - 1;
+      for (int s = 0; s < nsymbols; s++) {
+        if (counts[s] == -1) {
+          symbols[highThreshold--] = (byte) s;
+          symbolNext[s] = 1;
+        } else {
+          symbolNext[s] = counts[s];
+        }
+      }
+
+      int mask = size - 1;
+      int step = (size >>> 1) + (size >>> 3) + 3;
+      int position = 0;
+      for (int s = 0; s < nsymbols; s++) {
+        for (int i = 0; i < counts[s]; i++) {
+          symbols[position] = (byte) s;
+          do {
+            position = (position + step) & mask;
+          } while (position > highThreshold);
+        }
+      }
+      if (position != 0) {
+        throw new IOException("Zstd: corrupt FSE table");
+      }
+
+      for (int u = 0; u < size; u++) {
+        int s = symbols[u] & 0xFF;
+        int next = symbolNext[s]++;
+        int nb = log - highBit(next);
+        nbBits[u] = (byte) nb;
+        newState[u] = (next << nb) - size;
+      }
+      accuracyLog = log;
+    }
+
+    // 32 bits starting at bitOffset from pos, zero padded past end
+    private static int peekForward(byte[] src, int pos, int end, int bitOffset) {
+      int index = pos + (bitOffset >>> 3);
+      long word = 0;
+      for (int i = 0; i < 5 && index + i < end; i++) {
+        word |= (long) (src[index + i] & 0xFF) << (8 * i);
+      }
+      return (int) (word >>> (bitOffset & 7));
+    }
+  }
+
+  /** Huffman decoding table for literals. */
+  static final class HuffmanTable {
+    private static final int MAX_BITS = 11;
+
+    boolean valid;
+    private int maxBits;
+    private final byte[] symbols = new byte[1 << MAX_BITS];
+    private final byte[] lengths = new byte[1 << MAX_BITS];
+    private final int[] weights = new int[258];
+    private final int[] rankStart = new int[MAX_BITS + 2];
+    private final FseTable weightTable = new FseTable(6);
+
+    /** Read the huffman tree description and build the table. Return position after the description. */
+    int readTable(byte[] src, int pos, int end, BackwardBitReader br) throws IOException {
+      int header = src[pos++] & 0xFF;
+      int numWeights;
+      if (header < 128) { // fse compressed weights
+        int compEnd = pos + header;
+        if (compEnd > end) {
+          throw new IOException("Zstd: huffman weights extend past the literals");
+        }
+        int start = weightTable.readDescription(src, pos, compEnd, 255, 6);
+        FseTable t = weightTable;
+        br.init(src, start, compEnd);
+        int state1 = br.read(t.accuracyLog);
+        int state2 = br.read(t.accuracyLog);
+        numWeights = 0;
+        while (true) {
+          if (numWeights > 253) {
+            throw new IOException("Zstd: too many huffman weights");
+          }
+          weights[numWeights++] = t.symbols[state1] & 0xFF;
+          state1 = t.newState[state1] + br.read(t.nbBits[state1]);
+          if (br.isOverflowed()) {
+            weights[numWeights++] = t.symbols[state2] & 0xFF;
+            break;
+          }
+          weights[numWeights++] = t.symbols[state2] & 0xFF;
+          state2 = t.newState[state2] + br.read(t.nbBits[state2]);
+          if (br.isOverflowed()) {
+            weights[numWeights++] = t.symbols[state1] & 0xFF;
+            break;
+          }
+        }
+        pos = compEnd;
+
+      } else { // 4 bit weights
+        numWeights = header - 127;
+        int nbytes = (numWeights + 1) / 2;
+        if (pos + nbytes > end) {
+          throw new IOException("Zstd: huffman weights extend past the literals");
+        }
+        for (int i = 0; i < numWeights; i++) {
+          int b = src[pos + i / 2] & 0xFF;
+          weights[i] = (i % 2 == 0) ? b >>> 4 : b & 0xF;
+        }
+        pos += nbytes;
+      }
+
+      // the last weight is implied: it completes the total to a power of 2
+      long total = 0;
+      for (int i = 0; i < numWeights; i++) {
+        int w = weights[i];
+        if (w > MAX_BITS) {
+          throw new IOException("Zstd: bad huffman weight " + w);
+        }
+        if (w > 0) {
+          total += 1L << (w - 1);
+        }
+      }
+      if (total == 0) {
+        throw new IOException("Zstd: all huffman weights are zero");
+      }
+      maxBits = highBit(total) + 1;
+      long rest = (1L << maxBits) - total;
+      if (maxBits > MAX_BITS || (rest & (rest - 1)) != 0) {
+        throw new IOException("Zstd: corrupt huffman weights");
+      }
+      weights[numWeights] = highBit(rest) + 1;
+      int numSymbols = numWeights + 1;
+
+      // symbols with the smallest weight (longest code) come first, then in symbol order
+      Arrays.fill(rankStart, 0);
+      for (int s = 0; s < numSymbols; s++) {
+        rankStart[weights[s]]++;
+      }
+      int next = 0;
+      for (int w = 1; w <= maxBits; w++) {
+        int count = rankStart[w];
+        rankStart[w] = next;
+        next += count << (w - 1);
+      }
+      for (int s = 0; s < numSymbols; s++) {
+        int w = weights[s];
+        if (w == 0) {
+          continue;
+        }
+        int len = 1 << (w - 1);
+        int start = rankStart[w];
+        Arrays.fill(symbols, start, start + len, (byte) s);
+        Arrays.fill(lengths, start, start + len, (byte) (maxBits + 1 - w));
+        rankStart[w] += len;
+      }
+      valid = true;
+      return pos;
+    }
+
+    void decodeStream(byte[] src, int start, int end, byte[] dest, int destPos, int count, BackwardBitReader br)
+        throws IOException {
+      br.init(src, start, end);
+      int mb = maxBits;
+      for (int i = 0; i < count; i++) {
+        int v = br.peek(mb);
+        dest[destPos + i] = symbols[v];
+        br.skip(lengths[v]);
+      }
+      if (!br.isFinished()) {
+        throw new IOException("Zstd: huffman stream not fully consumed");
+      }
+    }
+  }
+
+  /**
+   * Reads a bitstream backwards, from the end to the start. The last byte contains a 1 bit marking the end of
+   * the stream. Reading past the start returns zero bits, and is detected with isOverflowed().
+   */
+  static final class BackwardBitReader {
+    private byte[] buf;
+    private int start;
+    private int end;
+    private int bitPos; // number of unread bits
+
+    void init(byte[] buf, int start, int end) throws IOException {
+      if (end <= start) {
+        throw new IOException("Zstd: empty bitstream");
+      }
+      int last = buf[end - 1] & 0xFF;
+      if (last == 0) {
+        throw new IOException("Zstd: bitstream missing end marker");
+      }
+      this.buf = buf;
+      this.start = start;
+      this.end = end;
+      this.bitPos = (end - start - 1) * 8 + highBit(last);
+    }
+
+    /** Look at the next n bits (n <= 56), without consuming them. */
+    int peek(int n) {
+      int p = bitPos - n;
+      if (p >= 0) {
+        return (int) ((load(start + (p >>> 3)) >>> (p & 7)) & ((1L << n) - 1));
+      }
+      if (bitPos <= 0) {
+        return 0;
+      }
+      return (int) (load(start) & ((1L << bitPos) - 1)) << -p;
+    }
+
+    void skip(int n) {
+      bitPos -= n;
+    }
+
+    int read(int n) {
+      if (n == 0) {
+        return 0;
+      }
+      int v = peek(n);
+      bitPos -= n;
+      return v;
+    }
+
+    boolean isFinished() {
+      return bitPos == 0;
+    }
+
+    boolean isOverflowed() {
+      return bitPos < 0;
+    }
+
+    private long load(int index) {
+      if (index + 8 <= end) {
+        byte[] b = buf;
+        return (b[index] & 0xFFL) | (b[index + 1] & 0xFFL) << 8 | (b[index + 2] & 0xFFL) << 16
+            | (b[index + 3] & 0xFFL) << 24 | (b[index + 4] & 0xFFL) << 32 | (b[index + 5] & 0xFFL) << 40
+            | (b[index + 6] & 0xFFL) << 48 | (b[index + 7] & 0xFFL) << 56;
+      }
+      long word = 0;
+      for (int i = 0; index + i < end; i++) {
+        word |= (buf[index + i] & 0xFFL) << (8 * i);
+      }
+      return word;
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+
+  private static int highBit(long val) {
+    return 63 - Long.numberOfLeadingZeros(val);
+  }
+
+  private static int readShortLE(byte[] b, int pos) {
+    return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8;
+  }
+
+  private static int readLE3(byte[] b, int pos) {
+    return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16;
+  }
+
+  private static int readIntLE(byte[] b, int pos) {
+    return (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16 | (b[pos + 3] & 0xFF) << 24;
+  }
+
+  private static long readLE(byte[] b, int pos, int nbytes) {
+    long result = 0;
+    for (int i = 0; i < nbytes; i++) {
+      result |= (b[pos + i] & 0xFFL) << (8 * i);
+    }
+    return result;
+  }
+
+}
@@ -8,6 +8,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 
 import com.google.common.collect.ImmutableList;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
 import org.junit.Test;
 import ucar.ma2.DataType;
 
@@ -147,4 +149,63 @@ public class TestArrayDouble {
     assertThat(result).isEqualTo(new double[] {5, 6, 7, 8, 9});
   }
 
+  @Test
+  public void testPrimitiveAccess() {
+    int[] shape = new int[] {1, 2, 3};
+    Array<Double> array = Arrays.factory(ArrayType.DOUBLE, shape, new double[] {1.5, 2, 3, 4, 5, 6});
+    assertThat(array.getDouble(0, 0, 0)).isEqualTo(1.5);
+    assertThat(array.getFloat(0, 1, 2)).isEqualTo(6.0f);
+    assertThat(array.getInt(array.getIndex())).isEqualTo(1);
+    assertThat(array.getLong(0, 1, 1)).isEqualTo(5L);
+
+    Array<Double> flip = Arrays.flip(array, 1);
+    assertThat(flip.getDouble(0, 0, 0)).isEqualTo(4);
+    assertThat(flip.getDouble(flip.getIndex().set(0, 1, 0))).isEqualTo(1.5);
+
+    double[] expected = new double[] {4, 5, 6, 1.5, 2, 3};
+    double[] result = new double[7];
+    flip.copyTo(result, 1);
+    assertThat(result).isEqualTo(new double[] {0, 4, 5, 6, 1.5, 2, 3});
+
+    PrimitiveIterator.OfDouble iter = flip.doubleIterator();
+    int count = 0;
+    while (iter.hasNext()) {
+      assertThat(iter.nextDouble()).isEqualTo(expected[count++]);
+    }
+    assertThat(count).isEqualTo(6);
+  }
+
+  @Test
+  public void testPrimitiveAccessBoxedStorage() {
+    // Storage that does not implement Storage.OfDouble
+    Storage<Double> store = new Storage<Double>() {
+      final double[] values = new double[] {1, 2, 3, 4, 5, 6};
+
+      public long length() {
+        return values.length;
+      }
+
+      public Double get(long elem) {
+        return values[(int) elem];
+      }
+
+      public void arraycopy(int srcPos, Object dest, int destPos, long length) {
+        System.arraycopy(values, srcPos, dest, destPos, (int) length);
+      }
+
+      public Iterator<Double> iterator() {
+        return java.util.Arrays.stream(values).iterator();
+      }
+    };
+    Array<Double> array = new ArrayDouble(new int[] {2, 3}, store);
+    assertThat(array.getDouble(1, 2)).isEqualTo(6);
+
+    Array<Double> array2 = Arrays.factory(ArrayType.DOUBLE, new int[] {1, 3}, new double[] {7, 8, 9});
+    Array<Double> both = Arrays.factoryArrays(ArrayType.DOUBLE, new int[] {3, 3}, ImmutableList.of(array, array2));
+    assertThat(both.getDouble(2, 1)).isEqualTo(8);
+    double[] result = new double[9];
+    both.copyTo(result, 0);
+    assertThat(result).isEqualTo(new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+  }
+
 }
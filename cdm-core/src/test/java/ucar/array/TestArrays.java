@@ -350,4 +350,38 @@ public class TestArrays {
     assertThat(minmax3.max()).isEqualTo(5.0);
   }
 
+  @Test
+  public void testMinMaxNonCanonical() throws InvalidRangeException {
+    Array<Integer> iarray = Arrays.factory(ArrayType.INT, new int[] {2, 3}, new int[] {1, -2, 3, 4, 5, 600});
+    Array<Integer> section = Arrays.flip(Arrays.slice(iarray, 1, 2), 0);
+    MinMax minmax = Arrays.getMinMaxSkipMissingData(section, null);
+    assertThat(minmax.min()).isEqualTo(3.0);
+    assertThat(minmax.max()).isEqualTo(600.0);
+
+    MinMax minmax2 = Arrays.getMinMaxSkipMissingData(iarray, new IsMissingEvaluator() {
+      public boolean hasMissing() {
+        return true;
+      }
+
+      public boolean isMissing(double val) {
+        return val == 600.0;
+      }
+    });
+    assertThat(minmax2.min()).isEqualTo(-2.0);
+    assertThat(minmax2.max()).isEqualTo(5.0);
+  }
+
+  @Test
+  public void testToDouble() {
+    Array<Short> sarray = Arrays.factory(ArrayType.SHORT, new int[] {2, 2}, new short[] {1, 2, -3, 4});
+    Array<Double> result = Arrays.toDouble(Arrays.transpose(sarray, 0, 1));
+    assertThat(result.getShape()).isEqualTo(new int[] {2, 2});
+    assertThat(Arrays.copyPrimitiveArray(result)).isEqualTo(new double[] {1, -3, 2, 4});
+
+    Array<Float> farray = Arrays.factory(ArrayType.FLOAT, new int[] {3}, new float[] {1.5f, 2.25f, -3});
+    assertThat(Arrays.copyPrimitiveArray(Arrays.toDouble(farray))).isEqualTo(new double[] {1.5, 2.25, -3});
+
+    assertThat((Object) Arrays.toDouble(array)).isSameInstanceAs(array);
+  }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.array;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test {@link StorageBB} */
+public class TestStorageBB {
+
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testDirect() {
+    ByteBuffer bb = ByteBuffer.allocateDirect(6 * 8).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < 6; i++) {
+      bb.putDouble(i + 1);
+    }
+    bb.flip();
+
+    Array<Double> array = Arrays.factory(ArrayType.DOUBLE, new int[] {2, 3}, bb);
+    assertThat(array.storage()).isInstanceOf(StorageBB.class);
+    assertThat(array.get(0, 0)).isEqualTo(1);
+    assertThat(array.getDouble(1, 2)).isEqualTo(6);
+
+    double[] result = new double[6];
+    array.copyTo(result, 0);
+    assertThat(result).isEqualTo(new double[] {1, 2, 3, 4, 5, 6});
+
+    Array<Double> flip = Arrays.flip(array, 0);
+    assertThat(Arrays.copyPrimitiveArray(flip)).isEqualTo(new double[] {4, 5, 6, 1, 2, 3});
+    assertThat(Arrays.getMinMaxSkipMissingData(flip, null).max()).isEqualTo(6);
+  }
+
+  @Test
+  public void testMultipleBuffers() {
+    // 10 shorts in buffers of 4, 4, 2 elements, with mixed byte order
+    ByteBuffer[] buffers = new ByteBuffer[3];
+    short val = 0;
+    for (int b = 0; b < 3; b++) {
+      int n = (b < 2) ? 4 : 2;
+      buffers[b] = ByteBuffer.allocate(n * 2 + 1).order(b == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+      buffers[b].put((byte) 99); // skipped by setting position
+      for (int i = 0; i < n; i++) {
+        buffers[b].putShort(val++);
+      }
+      buffers[b].position(1);
+    }
+
+    StorageBB<Short> storage = StorageBB.factory(ArrayType.SHORT, buffers);
+    assertThat(storage.length()).isEqualTo(10);
+    int count = 0;
+    for (short s : storage) {
+      assertThat(s).isEqualTo(count++);
+    }
+
+    short[] result = new short[7];
+    storage.arraycopy(2, result, 0, 7);
+    assertThat(result).isEqualTo(new short[] {2, 3, 4, 5, 6, 7, 8});
+
+    Array<Short> array = Arrays.factory(ArrayType.SHORT, new int[] {2, 5}, storage);
+    assertThat(array.getInt(1, 4)).isEqualTo(9);
+    assertThat(array.get(1, 0)).isEqualTo(5);
+  }
+
+  @Test
+  public void testMap() throws IOException {
+    File file = tempFolder.newFile();
+    int n = 1000;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.writeInt(-1);
+      for (int i = 0; i < n; i++) {
+        raf.writeFloat(i * .5f);
+      }
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      StorageBB<Float> storage = StorageBB.map(ArrayType.FLOAT, channel, 4, n, ByteOrder.BIG_ENDIAN);
+      Array<Float> array = Arrays.factory(ArrayType.FLOAT, new int[] {10, 100}, storage);
+      assertThat(array.getFloat(3, 21)).isEqualTo(160.5f);
+
+      float[] result = (float[]) Arrays.copyPrimitiveArray(array);
+      for (int i = 0; i < n; i++) {
+        assertThat(result[i]).isEqualTo(i * .5f);
+      }
+    }
+  }
+
+  @Test
+  public void testUnsupportedType() {
+    try {
+      StorageBB.factory(ArrayType.STRING, ByteBuffer.allocate(8));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
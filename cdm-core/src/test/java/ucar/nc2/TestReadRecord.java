@@ -4,6 +4,10 @@
  */
 package ucar.nc2;
 
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,10 +16,12 @@ import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.dataset.NetcdfDatasets;
 import ucar.nc2.dataset.StructureDS;
+import ucar.nc2.internal.iosp.netcdf3.N3iosp;
 import ucar.unidata.util.test.Assert2;
 import ucar.unidata.util.test.TestDir;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.List;
 
 public class TestReadRecord {
   private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -287,4 +293,50 @@ public class TestReadRecord {
       assert (ta.get() == 6) : ta.get();
     }
   }
+
+  @Test
+  // Reading of several Nc3 record variables in one pass
+  public void testNC3ReadRecordVariablesOnePass() throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = TestDir.openFileLocal("testWriteRecord.nc")) {
+      N3iosp iosp = (N3iosp) nc.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+      List<Variable> vars = ImmutableList.of(nc.findVariable("time"), nc.findVariable("rh"), nc.findVariable("T"));
+
+      List<Array> all = iosp.readRecordVariables(vars, new Range(0, 1));
+      for (int k = 0; k < vars.size(); k++) {
+        assert MAMath.nearlyEquals(all.get(k), vars.get(k).read()) : vars.get(k);
+      }
+
+      List<Array> second = iosp.readRecordVariables(vars, new Range(1, 1));
+      for (int k = 0; k < vars.size(); k++) {
+        Variable v = vars.get(k);
+        int[] origin = new int[v.getRank()];
+        origin[0] = 1;
+        int[] shape = v.getShape();
+        shape[0] = 1;
+        assert MAMath.nearlyEquals(second.get(k), v.read(origin, shape)) : v;
+      }
+    }
+  }
+
+  @Test
+  public void testNC3ReadRecordVariablesChecks() throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = TestDir.openFileLocal("testWriteRecord.nc");
+        NetcdfFile other = TestDir.openFileLocal("testWriteRecord.nc")) {
+      N3iosp iosp = (N3iosp) nc.sendIospMessage(NetcdfFile.IOSP_MESSAGE_GET_IOSP);
+      List<Variable> vars = ImmutableList.of(nc.findVariable("rh"));
+      try {
+        iosp.readRecordVariables(vars, new Range(1, 2)); // 2 records
+        fail();
+      } catch (InvalidRangeException e) {
+        // expected
+      }
+
+      try {
+        iosp.readRecordVariables(ImmutableList.of(other.findVariable("rh")), new Range(0, 1));
+        fail();
+      } catch (IllegalArgumentException e) {
+        assertThat(e.getMessage()).contains("Not a variable of this file");
+      }
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.write.Nc4ChunkingStrategyGrib;
+import ucar.nc2.write.NetcdfFormatWriter;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test {@link H5chunkCache} */
+public class TestH5chunkCache {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testHitAndMiss() throws IOException {
+    H5chunkCache cache = new H5chunkCache(1000);
+    File file = makeFile(200);
+    H5chunkCache.FileId fileId = fileId(file);
+    H5chunkCache.FileId other = fileId(makeFile(200));
+    assertThat(cache.get(fileId, "var", new int[] {0, 0})).isNull();
+
+    byte[] data = new byte[100];
+    cache.put(fileId, "var", new int[] {0, 0}, data);
+    assertThat(cache.get(fileId(file), "var", new int[] {0, 0})).isSameInstanceAs(data); // another handle
+    assertThat(cache.get(fileId, "var", new int[] {0, 10})).isNull();
+    assertThat(cache.get(fileId, "other", new int[] {0, 0})).isNull();
+    assertThat(cache.get(other, "var", new int[] {0, 0})).isNull();
+
+    assertThat(cache.getStats().hitCount()).isEqualTo(1);
+    assertThat(cache.getStats().missCount()).isEqualTo(4);
+    assertThat(cache.getCurrentBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void testRewrite() throws IOException {
+    H5chunkCache cache = new H5chunkCache(1000);
+    File file = makeFile(200);
+    cache.put(fileId(file), "var", new int[] {0}, new byte[10]);
+
+    // rewritten with the same length, a different modification time
+    Files.write(file.toPath(), new byte[200]);
+    assertThat(file.setLastModified(file.lastModified() - 10000)).isTrue();
+    assertThat(cache.get(fileId(file), "var", new int[] {0})).isNull();
+    cache.put(fileId(file), "var", new int[] {0}, new byte[10]);
+    assertThat(cache.get(fileId(file), "var", new int[] {0})).isNotNull();
+
+    // rewritten with a different length, the same modification time
+    long lastModified = file.lastModified();
+    Files.write(file.toPath(), new byte[300]);
+    assertThat(file.setLastModified(lastModified)).isTrue();
+    assertThat(cache.get(fileId(file), "var", new int[] {0})).isNull();
+  }
+
+  @Test
+  public void testBoundedByBytes() throws IOException {
+    H5chunkCache cache = new H5chunkCache(1000);
+    H5chunkCache.FileId fileId = fileId(makeFile(200));
+    for (int i = 0; i < 20; i++) {
+      cache.put(fileId, "var", new int[] {i * 10}, new byte[100]);
+    }
+    assertThat(cache.getCurrentBytes()).isAtMost(1000);
+    assertThat(cache.getStats().evictionCount()).isAtLeast(10);
+  }
+
+  @Test
+  public void testInvalidate() throws IOException {
+    H5chunkCache cache = new H5chunkCache(1000);
+    File file1 = makeFile(200);
+    File file2 = makeFile(200);
+    cache.put(fileId(file1), "var", new int[] {0}, new byte[10]);
+    cache.put(fileId(file2), "var", new int[] {0}, new byte[10]);
+    cache.invalidate(file1.getPath());
+    assertThat(cache.get(fileId(file1), "var", new int[] {0})).isNull();
+    assertThat(cache.get(fileId(file2), "var", new int[] {0})).isNotNull();
+  }
+
+  // closing one handle on a file leaves the chunks in the global cache for the others
+  @Test
+  public void testCloseSharedFile() throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename)
+        .setFormat(NetcdfFileFormat.NETCDF4).setChunker(new Nc4ChunkingStrategyGrib(5, true)).setUseJavaWriter(true);
+    writerb.addDimension("time", 20); // over 64K, so chunked by lat, lon
+    writerb.addDimension("lat", 30);
+    writerb.addDimension("lon", 40);
+    writerb.addVariable("temp", DataType.FLOAT, "time lat lon");
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("temp", Array.factory(DataType.FLOAT, new int[] {20, 30, 40}, new float[20 * 30 * 40]));
+    }
+
+    H5chunkCache.setGlobalCache(1000 * 1000);
+    try {
+      H5chunkCache cache = H5chunkCache.getGlobalCache();
+      try (NetcdfFile second = NetcdfFiles.open(filename)) {
+        try (NetcdfFile first = NetcdfFiles.open(filename)) {
+          first.findVariable("temp").read();
+        }
+        assertThat(cache.getCurrentBytes()).isEqualTo(20 * 30 * 40 * 4);
+        long hits = cache.getStats().hitCount();
+        second.findVariable("temp").read();
+        assertThat(cache.getStats().hitCount()).isEqualTo(hits + 20);
+      }
+    } finally {
+      H5chunkCache.setGlobalCache(0);
+    }
+  }
+
+  private File makeFile(int length) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[length]);
+    return file;
+  }
+
+  private H5chunkCache.FileId fileId(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      return new H5chunkCache.FileId(raf);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.nc2.util.IO;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link H5filters} and the built-in filters, against the same file compressed with each codec. */
+public class TestH5filters {
+  private static final String dir = TestDir.cdmLocalTestDataDir + "compress/";
+  private static byte[] expected;
+
+  @BeforeClass
+  public static void readExpected() throws IOException {
+    try (InputStream in = new GZIPInputStream(new FileInputStream(dir + "testGzip.nc.gz"))) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      IO.copy(in, out);
+      expected = out.toByteArray();
+    }
+  }
+
+  @Test
+  public void testNames() {
+    assertThat(H5filters.getName(1)).isEqualTo("deflate");
+    assertThat(H5filters.getName(4)).isEqualTo("szip");
+    assertThat(H5filters.getName(307)).isEqualTo("bzip2");
+    assertThat(H5filters.getName(32001)).isEqualTo("blosc");
+    assertThat(H5filters.getName(32004)).isEqualTo("lz4");
+    assertThat(H5filters.getName(32015)).isEqualTo("zstd");
+    assertThat(H5filters.getName(9999)).isEqualTo("StandardFilter 9999");
+    assertThat(H5filters.find(9999)).isNull();
+  }
+
+  @Test
+  public void testBzip2() throws IOException {
+    testFilter(307, "testBzip.nc.bz2");
+  }
+
+  @Test
+  public void testBlosc() throws IOException {
+    testFilter(32001, "testBlosc.nc.blosc");
+  }
+
+  @Test
+  public void testLz4() throws IOException {
+    testFilter(32004, "testLz4.nc.lz4");
+  }
+
+  @Test
+  public void testZstd() throws IOException {
+    testFilter(32015, "testZstd.nc.zst");
+  }
+
+  @Test
+  public void testShuffle() throws IOException {
+    byte[] shuffled = {1, 3, 5, 2, 4, 6, 7};
+    byte[] result = H5filters.find(2).apply(shuffled, new int[] {2});
+    assertThat(result).isEqualTo(new byte[] {1, 2, 3, 4, 5, 6, 7});
+  }
+
+  @Test
+  public void testRegisterFilter() throws IOException {
+    H5filter reverse = new H5filter() {
+      @Override
+      public int getId() {
+        return 32999;
+      }
+
+      @Override
+      public String getName() {
+        return "test";
+      }
+
+      @Override
+      public byte[] apply(byte[] data, int[] clientValues) {
+        return new byte[] {data[1], data[0]};
+      }
+    };
+    H5filters.registerFilter(reverse);
+    try {
+      assertThat(H5filters.getName(32999)).isEqualTo("test");
+      assertThat(H5filters.find(32999).apply(new byte[] {1, 2}, new int[0])).isEqualTo(new byte[] {2, 1});
+    } finally {
+      H5filters.unregisterFilter(32999);
+    }
+    assertThat(H5filters.find(32999)).isNull();
+  }
+
+  private void testFilter(int id, String filename) throws IOException {
+    H5filter filter = H5filters.find(id);
+    assertThat(filter).isNotNull();
+    byte[] compressed = Files.readAllBytes(Paths.get(dir + filename));
+    assertThat(filter.apply(compressed, new int[0])).isEqualTo(expected);
+  }
+
+}
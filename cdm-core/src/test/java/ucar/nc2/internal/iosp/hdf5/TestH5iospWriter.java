@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.write.Nc4ChunkingStrategyGrib;
+import ucar.nc2.write.NetcdfFormatWriter;
+import ucar.unidata.util.test.TestDir;
+
+/** Test {@link H5iospWriter} writes netCDF-4 files that are read back the same, serially or in parallel. */
+public class TestH5iospWriter {
+  private static final int nrecs = 5;
+  private static final int nlat = 30;
+  private static final int nlon = 40;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void reset() {
+    H5iospWriter.setExecutor(null);
+    H5iospWriter.setMaxChunksInFlight(2 * Runtime.getRuntime().availableProcessors());
+    H5iospWriter.setMaxOpenChunkBytes(256L * 1024 * 1024);
+  }
+
+  @Test
+  public void testChecksum() throws IOException {
+    // the superblock checksum of a file written by the netcdf C library
+    byte[] superblock = Files.readAllBytes(Paths.get(TestDir.cdmLocalTestDataDir, "testCFGridWriter.nc4"));
+    int stored = (superblock[44] & 0xff) | (superblock[45] & 0xff) << 8 | (superblock[46] & 0xff) << 16
+        | (superblock[47] & 0xff) << 24;
+    assertThat(H5headerWriter.checksum(superblock, 0, 44)).isEqualTo(stored);
+  }
+
+  @Test
+  public void testSerial() throws IOException, InvalidRangeException {
+    doOne(NetcdfFileFormat.NETCDF4);
+  }
+
+  @Test
+  public void testParallel() throws IOException, InvalidRangeException {
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      H5iospWriter.setExecutor(exec);
+      H5iospWriter.setMaxChunksInFlight(2);
+      doOne(NetcdfFileFormat.NETCDF4);
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  @Test
+  public void testClassic() throws IOException, InvalidRangeException {
+    doOne(NetcdfFileFormat.NETCDF4_CLASSIC);
+  }
+
+  @Test
+  public void testEvictOpenChunks() throws IOException, InvalidRangeException {
+    H5iospWriter.setMaxOpenChunkBytes(1); // every partially written chunk is stored and read back
+    doOne(NetcdfFileFormat.NETCDF4);
+  }
+
+  @Test
+  public void testSameFile() throws IOException, InvalidRangeException {
+    String serial = writeMixed();
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      H5iospWriter.setExecutor(exec);
+      H5iospWriter.setMaxChunksInFlight(2);
+      assertThat(Files.readAllBytes(Paths.get(writeMixed()))).isEqualTo(Files.readAllBytes(Paths.get(serial)));
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  // compressed and uncompressed chunks, and contiguous data, written in turns
+  private String writeMixed() throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    Nc4ChunkingStrategyGrib chunker = new Nc4ChunkingStrategyGrib(5, true) {
+      @Override
+      public boolean isChunked(Variable.Builder<?> vb) {
+        return !vb.shortName.equals("contiguous") && super.isChunked(vb);
+      }
+
+      @Override
+      public int getDeflateLevel(Variable.Builder<?> vb) {
+        return vb.shortName.equals("raw") ? 0 : super.getDeflateLevel(vb);
+      }
+    };
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename)
+        .setFormat(NetcdfFileFormat.NETCDF4).setChunker(chunker).setUseJavaWriter(true);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("lat", nlat);
+    writerb.addDimension("lon", nlon);
+    writerb.addVariable("deflated", DataType.FLOAT, "time lat lon");
+    writerb.addVariable("raw", DataType.FLOAT, "time lat lon");
+    writerb.addVariable("contiguous", DataType.FLOAT, "lat lon");
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      for (int rec = 0; rec < nrecs; rec++) {
+        Array data = Array.factory(DataType.FLOAT, new int[] {1, nlat, nlon}, makeFloats(nlat * nlon, rec * 10000));
+        writer.write(writer.findVariable("deflated"), new int[] {rec, 0, 0}, data);
+        writer.write(writer.findVariable("raw"), new int[] {rec, 0, 0}, data);
+        if (rec == 2) {
+          writer.write("contiguous", Array.factory(DataType.FLOAT, new int[] {nlat, nlon}, makeFloats(nlat * nlon, 0)));
+        }
+      }
+    }
+    return filename;
+  }
+
+  @Test
+  public void testRewriteBeforeComplete() throws IOException, InvalidRangeException {
+    // writing the first half of a chunk twice must not complete it
+    long once = writeHalves(false);
+    long twice = writeHalves(true);
+    assertThat(twice).isEqualTo(once);
+  }
+
+  // the length of the file, with one chunk written in halves
+  private long writeHalves(boolean twice) throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename)
+        .setFormat(NetcdfFileFormat.NETCDF4).setChunker(new Nc4ChunkingStrategyGrib(5, true)).setUseJavaWriter(true);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("lat", nlat);
+    writerb.addDimension("lon", nlon);
+    writerb.addVariable("temp", DataType.FLOAT, "time lat lon");
+
+    int half = nlat / 2 * nlon;
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      Variable temp = writer.findVariable("temp");
+      Array first = Array.factory(DataType.FLOAT, new int[] {1, nlat / 2, nlon}, makeFloats(half, 0));
+      writer.write(temp, new int[] {0, 0, 0}, first);
+      if (twice) {
+        writer.write(temp, new int[] {0, 0, 0}, first);
+      }
+      writer.write(temp, new int[] {0, nlat / 2, 0},
+          Array.factory(DataType.FLOAT, new int[] {1, nlat / 2, nlon}, makeFloats(half, half)));
+    }
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      float[] tvals = (float[]) ncfile.findVariable("temp").read().get1DJavaArray(DataType.FLOAT);
+      assertThat(tvals).isEqualTo(makeFloats(nlat * nlon, 0));
+    }
+    return Files.size(Paths.get(filename));
+  }
+
+  private void doOne(NetcdfFileFormat format) throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename).setFormat(format)
+        .setChunker(new Nc4ChunkingStrategyGrib(5, true)).setUseJavaWriter(true);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("lat", nlat);
+    writerb.addDimension("lon", nlon);
+    writerb.addDimension("strlen", 7);
+    writerb.addAttribute(new Attribute("title", "TestH5iospWriter"));
+    writerb.addVariable("time", DataType.DOUBLE, "time").addAttribute(new Attribute("units", "hours since 2000-01-01"));
+    writerb.addVariable("lat", DataType.FLOAT, "lat");
+    writerb.addVariable("temp", DataType.FLOAT, "time lat lon").addAttribute(new Attribute("_FillValue", -999f));
+    writerb.addVariable("ival", DataType.INT, "lat lon");
+    writerb.addVariable("names", DataType.CHAR, "lat strlen");
+    writerb.addVariable("scalar", DataType.LONG, "");
+    if (format == NetcdfFileFormat.NETCDF4) {
+      Group.Builder nested = Group.builder().setName("nested").setParentGroup(writerb.getRootGroup());
+      nested.addDimension(new Dimension("z", 3));
+      nested.addVariable(Variable.builder().setName("zval").setDataType(DataType.UINT).setParentGroupBuilder(nested)
+          .setDimensionsByName("z lat"));
+      writerb.getRootGroup().addGroup(nested);
+    }
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("time", Array.makeFromJavaArray(new double[] {0, 6, 12, 18, 24}));
+      writer.write("lat", Array.factory(DataType.FLOAT, new int[] {nlat}, makeFloats(nlat, 0)));
+      // record 2 is not written; record 4 is written in two halves, with record 0 written again in between
+      for (int rec : new int[] {0, 1, 3}) {
+        writer.write(writer.findVariable("temp"), new int[] {rec, 0, 0},
+            Array.factory(DataType.FLOAT, new int[] {1, nlat, nlon}, makeFloats(nlat * nlon, rec * 10000)));
+      }
+      int half = nlat / 2 * nlon;
+      writer.write(writer.findVariable("temp"), new int[] {4, 0, 0},
+          Array.factory(DataType.FLOAT, new int[] {1, nlat / 2, nlon}, makeFloats(half, 40000)));
+      writer.write(writer.findVariable("temp"), new int[] {0, 5, 5},
+          Array.factory(DataType.FLOAT, new int[] {1, 1, 1}, new float[] {-1}));
+      writer.write(writer.findVariable("temp"), new int[] {4, nlat / 2, 0},
+          Array.factory(DataType.FLOAT, new int[] {1, nlat / 2, nlon}, makeFloats(half, 40000 + half)));
+
+      int[] ivals = new int[nlat * nlon];
+      for (int i = 0; i < ivals.length; i++) {
+        ivals[i] = i - 600;
+      }
+      writer.write("ival", Array.factory(DataType.INT, new int[] {nlat, nlon}, ivals));
+      ArrayChar names = new ArrayChar.D2(nlat, 7);
+      for (int i = 0; i < nlat; i++) {
+        names.setString(i, "name" + i);
+      }
+      writer.write("names", names);
+      writer.write("scalar", Array.factory(DataType.LONG, new int[0], new long[] {1234567890123L}));
+      if (format == NetcdfFileFormat.NETCDF4) {
+        int[] zvals = new int[3 * nlat];
+        for (int i = 0; i < zvals.length; i++) {
+          zvals[i] = i;
+        }
+        writer.write("nested/zval", Array.factory(DataType.UINT, new int[] {3, nlat}, zvals));
+      }
+    }
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename)) {
+      assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("TestH5iospWriter");
+      Dimension time = ncfile.findDimension("time");
+      assertThat(time.isUnlimited()).isTrue();
+      assertThat(time.getLength()).isEqualTo(nrecs);
+
+      Variable timeVar = ncfile.findVariable("time");
+      assertThat(timeVar.findAttributeString("units", null)).isEqualTo("hours since 2000-01-01");
+      assertThat((double[]) timeVar.read().get1DJavaArray(DataType.DOUBLE)).isEqualTo(new double[] {0, 6, 12, 18, 24});
+      assertThat((float[]) ncfile.findVariable("lat").read().get1DJavaArray(DataType.FLOAT))
+          .isEqualTo(makeFloats(nlat, 0));
+
+      Variable temp = ncfile.findVariable("temp");
+      assertThat(temp.getDimensionsString()).isEqualTo("time lat lon");
+      float[] tvals = (float[]) temp.read().get1DJavaArray(DataType.FLOAT);
+      assertThat(tvals).hasLength(nrecs * nlat * nlon);
+      for (int rec = 0; rec < nrecs; rec++) {
+        for (int i = 0; i < nlat * nlon; i++) {
+          float expected = (rec == 2) ? -999f : rec * 10000 + i;
+          if (rec == 0 && i == 5 * nlon + 5) {
+            expected = -1;
+          }
+          assertThat(tvals[rec * nlat * nlon + i]).isEqualTo(expected);
+        }
+      }
+
+      int[] ivals = (int[]) ncfile.findVariable("ival").read().get1DJavaArray(DataType.INT);
+      for (int i = 0; i < ivals.length; i++) {
+        assertThat(ivals[i]).isEqualTo(i - 600);
+      }
+      ArrayChar names = (ArrayChar) ncfile.findVariable("names").read();
+      assertThat(names.getString(12)).isEqualTo("name12");
+      assertThat(ncfile.findVariable("scalar").readScalarLong()).isEqualTo(1234567890123L);
+
+      Variable zval = ncfile.findVariable("nested/zval");
+      if (format == NetcdfFileFormat.NETCDF4) {
+        assertThat(zval.getDataType()).isEqualTo(DataType.UINT);
+        assertThat(zval.getDimensionsString()).isEqualTo("z lat");
+        int[] zvals = (int[]) zval.read().get1DJavaArray(DataType.INT);
+        assertThat(zvals[89]).isEqualTo(89);
+      } else {
+        assertThat(zval).isNull();
+      }
+    }
+  }
+
+  private float[] makeFloats(int n, int start) {
+    float[] result = new float[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = start + i;
+    }
+    return result;
+  }
+}
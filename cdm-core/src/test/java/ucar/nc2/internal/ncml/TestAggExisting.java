@@ -7,6 +7,8 @@ package ucar.nc2.internal.ncml;
 import static com.google.common.truth.Truth.assertThat;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +49,20 @@ public class TestAggExisting {
     ncfile.close();
   }
 
+  @Test
+  public void testNcmlDatasetMultithreaded() throws IOException, InvalidRangeException {
+    String filename = "file:./" + TestNcmlRead.topDir + "aggExisting.xml";
+    ExecutorService exec = Executors.newFixedThreadPool(2);
+    Aggregation.setExecutor(exec);
+    try (NetcdfFile ncfile = NetcdfDatasets.openDataset(filename, true, null)) {
+      testReadData(ncfile);
+      testReadSlice(ncfile);
+    } finally {
+      Aggregation.setExecutor(null);
+      exec.shutdown();
+    }
+  }
+
   @Test
   public void testNcmlDatasetNoProtocolInFilename() throws IOException, InvalidRangeException {
     String filename = "./" + TestNcmlRead.topDir + "aggExisting.xml";
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+
+/** Test {@link ExecutionExceptions} rethrows the cause of a failed task. */
+public class TestExecutionExceptions {
+
+  @Test
+  public void testPropagateIO() {
+    IOException io = new IOException("io");
+    IllegalStateException unchecked = new IllegalStateException("unchecked");
+    AssertionError error = new AssertionError("error");
+    Exception checked = new Exception("checked");
+
+    for (Throwable cause : new Throwable[] {io, unchecked, error}) {
+      try {
+        throw ExecutionExceptions.propagateIO(new ExecutionException(cause));
+      } catch (Throwable t) {
+        assertThat(t).isSameInstanceAs(cause);
+      }
+    }
+
+    try {
+      throw ExecutionExceptions.propagateIO(new ExecutionException(checked));
+    } catch (IOException e) {
+      assertThat(e.getCause()).isSameInstanceAs(checked);
+    }
+  }
+
+  @Test
+  public void testPropagateUnchecked() {
+    IllegalStateException unchecked = new IllegalStateException("unchecked");
+    try {
+      throw ExecutionExceptions.propagateUnchecked(new ExecutionException(unchecked));
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameInstanceAs(unchecked);
+    }
+
+    Exception checked = new Exception("checked");
+    try {
+      throw ExecutionExceptions.propagateUnchecked(new ExecutionException(checked));
+    } catch (RuntimeException e) {
+      assertThat(e.getCause()).isSameInstanceAs(checked);
+    }
+  }
+}
@@ -5,9 +5,13 @@
 
 package ucar.nc2.iosp;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Random;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,4 +64,72 @@ public class TestBitReader {
     assertEquals(6, (int) bu.bits2UInt(8));
   }
 
+  @Test
+  public void testBulkInt() throws IOException {
+    byte[] bits = new byte[1000];
+    new Random(13).nextBytes(bits);
+    for (int nb = 0; nb <= 32; nb++) {
+      for (int skip = 0; skip < 9; skip++) {
+        BitReader scalar = new BitReader(bits);
+        BitReader bulk = new BitReader(bits);
+        scalar.bits2UInt(skip);
+        bulk.bits2UInt(skip);
+
+        int n = 100;
+        int[] expected = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+          expected[i + 1] = (int) scalar.bits2UInt(nb);
+        }
+        int[] result = new int[n + 1];
+        bulk.bits2UInt(nb, result, 1, n);
+        assertThat(result).isEqualTo(expected);
+
+        // the readers are left in the same state
+        assertThat(bulk.bits2UInt(7)).isEqualTo(scalar.bits2UInt(7));
+      }
+    }
+  }
+
+  @Test
+  public void testBulkLong() throws IOException {
+    byte[] bits = new byte[2000];
+    new Random(17).nextBytes(bits);
+    for (int nb = 0; nb <= 64; nb++) {
+      for (int skip = 0; skip < 9; skip++) {
+        BitReader bu = new BitReader(bits);
+        bu.bits2UInt(skip);
+        int n = 100;
+        long[] result = new long[n];
+        bu.bits2UInt(nb, result, 0, n);
+
+        // compare with the bits one at a time, and with the values one at a time
+        BitReader single = new BitReader(bits);
+        single.bits2UInt(skip);
+        BitReader scalar = new BitReader(bits);
+        scalar.bits2UInt(skip);
+        for (int i = 0; i < n; i++) {
+          long expected = 0;
+          for (int b = 0; b < nb; b++) {
+            expected = (expected << 1) | single.bits2UInt(1);
+          }
+          assertThat(result[i]).isEqualTo(expected);
+          assertThat(scalar.bits2UInt(nb)).isEqualTo(expected);
+        }
+        assertThat(bu.bits2UInt(5)).isEqualTo(single.bits2UInt(5));
+      }
+    }
+  }
+
+  @Test
+  public void testBulkEof() throws IOException {
+    BitReader bu = new BitReader(new byte[] {1, 2, 3});
+    bu.bits2UInt(3);
+    try {
+      bu.bits2UInt(11, new int[3], 0, 3);
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
 }
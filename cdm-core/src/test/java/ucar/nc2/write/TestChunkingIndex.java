@@ -5,6 +5,8 @@
 
 package ucar.nc2.write;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +53,24 @@ public class TestChunkingIndex {
     System.out.printf(")%n");
   }
 
+  @Test
+  public void testAlignedShape() {
+    // grow the inner dimensions first, in whole chunks
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {100, 1000, 1000}, new int[] {1, 100, 100}, 250 * 1000))
+        .isEqualTo(new int[] {1, 200, 1000});
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {100, 1000, 1000}, new int[] {10, 100, 100}, 25000000))
+        .isEqualTo(new int[] {20, 1000, 1000});
+    // partial chunks at the edges
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {77, 3712, 2332}, new int[] {1, 512, 512}, 5 * 1000 * 1000))
+        .isEqualTo(new int[] {1, 2048, 2332});
+    // chunk larger than the variable
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {3, 5}, new int[] {10, 10}, 100))
+        .isEqualTo(new int[] {3, 5});
+    // chunk larger than the max, or empty variable
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {100, 100}, new int[] {50, 50}, 1000)).isNull();
+    assertThat(ChunkingIndex.computeAlignedShape(new int[] {0, 100}, new int[] {1, 100}, 1000)).isNull();
+  }
+
   @Test
   public void testChunkingStrategy() {
     Dimension d2 = new Dimension("2", 2);
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.write;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.util.CancelTask;
+
+/** Test {@link NetcdfCopier} copies variables larger than its maximum size in slabs, reading ahead on an Executor. */
+public class TestNetcdfCopier {
+  private static final int ntimes = 20;
+  private static final int nlat = 30;
+  private static final int nlon = 40;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ExecutorService exec;
+  private long saveMaxSize;
+  private String source;
+
+  @Before
+  public void setup() throws IOException, InvalidRangeException {
+    // 10000 bytes: "temp" is copied in 10 slabs, "ival" in one
+    saveMaxSize = NetcdfCopier.getMaxSize();
+    NetcdfCopier.setMaxSize(10000);
+    exec = Executors.newFixedThreadPool(4);
+    NetcdfCopier.setExecutor(exec);
+    NetcdfCopier.setMaxSlabsAhead(3);
+
+    source = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.createNewNetcdf3(source);
+    writerb.addDimension("time", ntimes);
+    writerb.addDimension("lat", nlat);
+    writerb.addDimension("lon", nlon);
+    writerb.addVariable("temp", DataType.FLOAT, "time lat lon");
+    writerb.addVariable("ival", DataType.INT, "lat lon");
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("temp", makeFloats());
+      int[] ivals = new int[nlat * nlon];
+      for (int i = 0; i < ivals.length; i++) {
+        ivals[i] = i - 600;
+      }
+      writer.write("ival", Array.factory(DataType.INT, new int[] {nlat, nlon}, ivals));
+    }
+  }
+
+  @After
+  public void reset() {
+    NetcdfCopier.setMaxSize(saveMaxSize);
+    NetcdfCopier.setExecutor(null);
+    NetcdfCopier.setMaxSlabsAhead(2);
+    exec.shutdown();
+  }
+
+  // netcdf-4 output chunked by lat, lon: the slabs are made of whole output chunks
+  @Test
+  public void testAlignedSlabs() throws IOException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename)
+        .setFormat(NetcdfFileFormat.NETCDF4).setChunker(new Nc4ChunkingStrategyGrib(0, false)).setUseJavaWriter(true);
+    copyAndCheck(writerb);
+  }
+
+  // netcdf-3 output is not chunked: the slabs are contiguous
+  @Test
+  public void testUnalignedSlabs() throws IOException {
+    copyAndCheck(NetcdfFormatWriter.createNewNetcdf3(tempFolder.newFile().getAbsolutePath()));
+  }
+
+  @Test
+  public void testCancel() throws IOException {
+    CancelTask cancel = new CancelTask() {
+      private int count;
+
+      @Override
+      public void cancel() {}
+
+      @Override
+      public boolean isCancel() {
+        return count++ > 3; // after the first slabs are written, with more being read ahead
+      }
+    };
+    try (NetcdfFile ncfileIn = NetcdfFiles.open(source)) {
+      NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.createNewNetcdf3(tempFolder.newFile().getPath());
+      try (NetcdfCopier copier = NetcdfCopier.create(ncfileIn, writerb)) {
+        copier.write(cancel);
+      }
+      // no read is left running on the executor
+      assertThat(ncfileIn.findVariable("temp").read().getSize()).isEqualTo(ntimes * nlat * nlon);
+    }
+  }
+
+  private void copyAndCheck(NetcdfFormatWriter.Builder<?> writerb) throws IOException {
+    try (NetcdfFile ncfileIn = NetcdfFiles.open(source)) {
+      try (NetcdfCopier copier = NetcdfCopier.create(ncfileIn, writerb)) {
+        copier.write(null);
+      }
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open(writerb.location)) {
+      float[] tvals = (float[]) ncfile.findVariable("temp").read().get1DJavaArray(DataType.FLOAT);
+      assertThat(tvals).isEqualTo((float[]) makeFloats().get1DJavaArray(DataType.FLOAT));
+      int[] ivals = (int[]) ncfile.findVariable("ival").read().get1DJavaArray(DataType.INT);
+      assertThat(ivals).hasLength(nlat * nlon);
+      for (int i = 0; i < ivals.length; i++) {
+        assertThat(ivals[i]).isEqualTo(i - 600);
+      }
+    }
+  }
+
+  private Array makeFloats() {
+    float[] result = new float[ntimes * nlat * nlon];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = i * 0.5f;
+    }
+    return Array.factory(DataType.FLOAT, new int[] {ntimes, nlat, nlon}, result);
+  }
+}
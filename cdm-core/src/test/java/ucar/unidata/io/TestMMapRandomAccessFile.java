@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test {@link MMapRandomAccessFile} against {@link RandomAccessFile}, using small windows to cross boundaries. */
+public class TestMMapRandomAccessFile {
+
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final int WINDOW_SHIFT = 4; // 16 byte windows
+  private static final int FILE_LENGTH = 1001;
+  private static byte[] contents;
+  private static String location;
+
+  @BeforeClass
+  public static void makeTestFile() throws IOException {
+    contents = new byte[FILE_LENGTH];
+    new Random(17).nextBytes(contents);
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), contents);
+    location = file.getPath();
+  }
+
+  @Test
+  public void testReadBytes() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(location, WINDOW_SHIFT)) {
+      assertThat(raf.length()).isEqualTo(FILE_LENGTH);
+      raf.seek(5);
+      assertThat(raf.read()).isEqualTo(contents[5] & 0xff);
+
+      byte[] b = new byte[100];
+      raf.readFully(b);
+      assertThat(b).isEqualTo(Arrays.copyOfRange(contents, 6, 106));
+      assertThat(raf.getFilePointer()).isEqualTo(106);
+
+      raf.seek(FILE_LENGTH - 10);
+      assertThat(raf.read(b, 0, 100)).isEqualTo(10);
+      assertThat(raf.read(b, 0, 100)).isEqualTo(-1);
+      assertThat(raf.isAtEndOfFile()).isTrue();
+    }
+  }
+
+  @Test
+  public void testReadToByteChannel() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(location, WINDOW_SHIFT)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertThat(raf.readToByteChannel(Channels.newChannel(out), 7, 500)).isEqualTo(500);
+      assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(contents, 7, 507));
+
+      out.reset();
+      assertThat(raf.readToByteChannel(Channels.newChannel(out), 990, 500)).isEqualTo(11);
+    }
+  }
+
+  @Test
+  public void testReadPrimitiveArrays() throws IOException {
+    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      try (RandomAccessFile expected = new RandomAccessFile(location, "r", 20);
+          RandomAccessFile mmap = new MMapRandomAccessFile(location, WINDOW_SHIFT)) {
+        expected.order(order);
+        mmap.order(order);
+
+        short[] s1 = new short[400], s2 = new short[400];
+        expected.seek(3);
+        expected.readShort(s1, 0, 400);
+        mmap.seek(3);
+        mmap.readShort(s2, 0, 400);
+        assertThat(s2).isEqualTo(s1);
+
+        int[] i1 = new int[200], i2 = new int[200];
+        expected.seek(1);
+        expected.readInt(i1, 0, 200);
+        mmap.seek(1);
+        mmap.readInt(i2, 0, 200);
+        assertThat(i2).isEqualTo(i1);
+
+        long[] l1 = new long[100], l2 = new long[100];
+        expected.seek(7);
+        expected.readLong(l1, 0, 100);
+        mmap.seek(7);
+        mmap.readLong(l2, 0, 100);
+        assertThat(l2).isEqualTo(l1);
+
+        float[] f1 = new float[200], f2 = new float[200];
+        expected.seek(2);
+        expected.readFloat(f1, 0, 200);
+        mmap.seek(2);
+        mmap.readFloat(f2, 0, 200);
+        assertThat(Arrays.equals(f1, f2)).isTrue();
+
+        double[] d1 = new double[100], d2 = new double[100];
+        expected.seek(5);
+        expected.readDouble(d1, 0, 100);
+        mmap.seek(5);
+        mmap.readDouble(d2, 0, 100);
+        assertThat(Arrays.equals(d1, d2)).isTrue();
+        assertThat(mmap.getFilePointer()).isEqualTo(expected.getFilePointer());
+
+        mmap.seek(3);
+        assertThat(mmap.readInt()).isEqualTo(readIntAt(expected, 3));
+      }
+    }
+  }
+
+  @Test
+  public void testReadPastEnd() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(location, WINDOW_SHIFT)) {
+      raf.seek(FILE_LENGTH - 9);
+      try {
+        raf.readDouble(new double[2], 0, 2);
+        fail();
+      } catch (EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSearchForward() throws IOException {
+    byte[] match = Arrays.copyOfRange(contents, 700, 705);
+    try (RandomAccessFile raf = new MMapRandomAccessFile(location)) {
+      raf.seek(650);
+      assertThat(raf.searchForward(new KMPMatch(match), -1)).isTrue();
+      assertThat(raf.getFilePointer()).isEqualTo(700);
+
+      raf.seek(650);
+      assertThat(raf.searchForward(new KMPMatch(match), 40)).isFalse();
+      assertThat(raf.getFilePointer()).isEqualTo(690);
+    }
+  }
+
+  @Test
+  public void testReadOnly() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(location)) {
+      raf.writeInt(1);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private int readIntAt(RandomAccessFile raf, long pos) throws IOException {
+    raf.seek(pos);
+    return raf.readInt();
+  }
+}
@@ -11,6 +11,8 @@ import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -233,6 +235,26 @@ public class TestRandomAccessFile {
     assertThat(arraysMatch(buff, UTF8_BYTES, offset, 0, len)).isTrue();
   }
 
+  @Test
+  public void testReadRanges() throws IOException {
+    byte[] buff = new byte[20];
+    List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+    ranges.add(new RandomAccessFile.ReadRange(30, buff, 10, 10));
+    ranges.add(new RandomAccessFile.ReadRange(0, buff, 0, 5));
+    ranges.add(new RandomAccessFile.ReadRange(3, buff, 5, 5));
+    testFile.readRanges(ranges);
+    assertThat(arraysMatch(buff, UTF8_BYTES, 0, 0, 5)).isTrue();
+    assertThat(arraysMatch(buff, UTF8_BYTES, 5, 3, 5)).isTrue();
+    assertThat(arraysMatch(buff, UTF8_BYTES, 10, 30, 10)).isTrue();
+    assertThat(testFile.getFilePointer()).isEqualTo(8);
+
+    // range past the end of the file
+    ranges.add(new RandomAccessFile.ReadRange(TEST_FILE_LENGTH - 2, buff, 0, 5));
+    Assert.assertThrows(EOFException.class, () -> {
+      testFile.readRanges(ranges);
+    });
+  }
+
   @Test
   public void testSkipBytes() throws IOException {
     testFile.seek(0);
@@ -417,6 +439,62 @@ public class TestRandomAccessFile {
     assertThat(testFile.searchForward(notMatch, -1)).isFalse();
   }
 
+  @Test
+  public void testReadPrimitiveArrays() throws IOException {
+    // bulk reads that start mid buffer, cross buffer boundaries, and are larger than the buffer
+    byte[] contents = new byte[5000];
+    new java.util.Random(11).nextBytes(contents);
+    java.io.File file = tempFolder.newFile();
+    java.nio.file.Files.write(file.toPath(), contents);
+
+    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      ByteBuffer expected = ByteBuffer.wrap(contents).order(order);
+      try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r", TEST_BUFFER_SIZE)) {
+        raf.order(order);
+        for (int n : new int[] {1, 3, 100}) {
+          raf.seek(3);
+          short[] shorts = new short[n];
+          raf.readShort(shorts, 0, n);
+          for (int i = 0; i < n; i++) {
+            assertThat(shorts[i]).isEqualTo(expected.getShort(3 + 2 * i));
+          }
+
+          raf.seek(5);
+          int[] ints = new int[n];
+          raf.readInt(ints, 0, n);
+          for (int i = 0; i < n; i++) {
+            assertThat(ints[i]).isEqualTo(expected.getInt(5 + 4 * i));
+          }
+
+          raf.seek(7);
+          long[] longs = new long[n];
+          raf.readLong(longs, 0, n);
+          for (int i = 0; i < n; i++) {
+            assertThat(longs[i]).isEqualTo(expected.getLong(7 + 8 * i));
+          }
+
+          raf.seek(1);
+          float[] floats = new float[n];
+          raf.readFloat(floats, 0, n);
+          for (int i = 0; i < n; i++) {
+            assertThat(Float.floatToRawIntBits(floats[i])).isEqualTo(expected.getInt(1 + 4 * i));
+          }
+
+          raf.seek(2);
+          double[] doubles = new double[n + 1];
+          raf.readDouble(doubles, 1, n);
+          for (int i = 0; i < n; i++) {
+            assertThat(Double.doubleToRawLongBits(doubles[i + 1])).isEqualTo(expected.getLong(2 + 8 * i));
+          }
+          assertThat(raf.getFilePointer()).isEqualTo(2 + 8 * n);
+        }
+
+        raf.seek(contents.length - 12);
+        Assert.assertThrows(EOFException.class, () -> raf.readLong(new long[2], 0, 2));
+      }
+    }
+  }
+
   ////////////////////////////
   // test writes on temp file
 
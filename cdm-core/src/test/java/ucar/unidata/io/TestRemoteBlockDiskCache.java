@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.internal.util.DiskCache2;
+
+/** Test {@link RemoteBlockDiskCache} */
+public class TestRemoteBlockDiskCache {
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private DiskCache2 makeDiskCache() throws IOException {
+    return new DiskCache2(tempFolder.newFolder().getAbsolutePath(), false, 0, 0);
+  }
+
+  @Test
+  public void testPutGet() throws IOException {
+    DiskCache2 dc = makeDiskCache();
+    RemoteBlockDiskCache cache = new RemoteBlockDiskCache(dc, 10000);
+    String key = RemoteBlockDiskCache.makeKey("http://server/file.nc", "etag1", 5000, 100);
+    assertThat(key).isNotEqualTo(RemoteBlockDiskCache.makeKey("http://server/file.nc", "etag2", 5000, 100));
+
+    byte[] data = new byte[100];
+    Arrays.fill(data, (byte) 7);
+    assertThat(cache.get(key, 3, 100)).isNull();
+    cache.put(key, 3, data);
+    assertThat(cache.get(key, 3, 100)).isEqualTo(data);
+    assertThat(cache.get(key, 4, 100)).isNull();
+    // wrong length is treated as a miss
+    assertThat(cache.get(key, 3, 50)).isNull();
+    assertThat(cache.get(key, 3, 100)).isNull();
+
+    // survives a new instance
+    cache.put(key, 3, data);
+    RemoteBlockDiskCache cache2 = new RemoteBlockDiskCache(dc, 10000);
+    assertThat(cache2.getSize()).isEqualTo(100);
+    assertThat(cache2.get(key, 3, 100)).isEqualTo(data);
+  }
+
+  @Test
+  public void testReplace() throws IOException {
+    RemoteBlockDiskCache cache = new RemoteBlockDiskCache(makeDiskCache(), 10000);
+    String key = RemoteBlockDiskCache.makeKey("http://server/file.nc", "etag1", 5000, 100);
+    byte[] data = new byte[100];
+    for (int i = 0; i < 5; i++) {
+      cache.put(key, 3, data);
+    }
+    assertThat(cache.getSize()).isEqualTo(100);
+    cache.put(key, 4, data);
+    assertThat(cache.getSize()).isEqualTo(200);
+  }
+
+  @Test
+  public void testEvict() throws IOException {
+    DiskCache2 dc = makeDiskCache();
+    RemoteBlockDiskCache cache = new RemoteBlockDiskCache(dc, 1000);
+    String key = RemoteBlockDiskCache.makeKey("s3://bucket/key", "etag", 100000, 100);
+    byte[] data = new byte[100];
+    for (int block = 0; block < 10; block++) {
+      cache.put(key, block, data);
+      // block 0 is oldest, 9 is newest
+      assertThat(new File(dc.getRootDirectory(), key + "/" + block + ".blk").setLastModified(1000000L + block * 1000))
+          .isTrue();
+    }
+    assertThat(cache.getSize()).isEqualTo(1000);
+
+    // reading block 0 makes it the most recently used
+    assertThat(cache.get(key, 0, 100)).isNotNull();
+    cache.put(key, 10, data);
+    assertThat(cache.getSize()).isEqualTo(900);
+    assertThat(cache.get(key, 1, 100)).isNull();
+    assertThat(cache.get(key, 2, 100)).isNull();
+    assertThat(cache.get(key, 0, 100)).isNotNull();
+    assertThat(cache.get(key, 3, 100)).isNotNull();
+    assertThat(cache.get(key, 10, 100)).isNotNull();
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.internal.util.DiskCache2;
+
+/** Test {@link RemoteRandomAccessFile} concurrent block fetching, readRanges and the disk cache, using an in-memory "remote" file. */
+public class TestRemoteRandomAccessFile {
+  @ClassRule
+  public static final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final int BLOCK_SIZE = 1024;
+  private static final int FILE_LENGTH = 20 * BLOCK_SIZE + 100;
+
+  private byte[] contents;
+  private ExecutorService exec;
+
+  @Before
+  public void setup() {
+    contents = new byte[FILE_LENGTH];
+    new Random(11).nextBytes(contents);
+    exec = Executors.newFixedThreadPool(8);
+    RemoteRandomAccessFile.setExecutor(exec);
+  }
+
+  @After
+  public void cleanup() {
+    RemoteRandomAccessFile.setExecutor(null);
+    RemoteRandomAccessFile.setReadAheadBlocks(0);
+    exec.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentFetch() throws IOException {
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+      byte[] result = new byte[10 * BLOCK_SIZE];
+      raf.seek(300);
+      raf.readFully(result);
+      assertThat(result).isEqualTo(Arrays.copyOfRange(contents, 300, 300 + result.length));
+      assertThat(raf.maxConcurrent.get()).isGreaterThan(1);
+      // each block is only fetched once
+      assertThat(raf.nreads.get()).isEqualTo(raf.fetched.size());
+    }
+  }
+
+  @Test
+  public void testReadAhead() throws IOException {
+    RemoteRandomAccessFile.setReadAheadBlocks(4);
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+      byte[] result = new byte[FILE_LENGTH];
+      for (int pos = 0; pos < FILE_LENGTH; pos++) {
+        result[pos] = (byte) raf.read();
+      }
+      assertThat(result).isEqualTo(contents);
+      assertThat(raf.read()).isEqualTo(-1);
+      // each block is only fetched once
+      assertThat(raf.nreads.get()).isEqualTo(21);
+    }
+  }
+
+  @Test
+  public void testSerial() throws IOException {
+    RemoteRandomAccessFile.setExecutor(null);
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+      byte[] result = new byte[5000];
+      raf.seek(FILE_LENGTH - 5000);
+      raf.readFully(result);
+      assertThat(result).isEqualTo(Arrays.copyOfRange(contents, FILE_LENGTH - 5000, FILE_LENGTH));
+      assertThat(raf.maxConcurrent.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testReadRanges() throws IOException {
+    RemoteRandomAccessFile.setMaxMergeGap(BLOCK_SIZE);
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+      // 10 ranges of 100 bytes, 500 bytes apart, in reverse order; then one far away
+      byte[] result = new byte[1100];
+      List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+      for (int i = 9; i >= 0; i--) {
+        ranges.add(new RandomAccessFile.ReadRange(i * 600, result, i * 100, 100));
+      }
+      ranges.add(new RandomAccessFile.ReadRange(FILE_LENGTH - 100, result, 1000, 100));
+      raf.readRanges(ranges);
+
+      for (int i = 0; i < 10; i++) {
+        assertThat(Arrays.copyOfRange(result, i * 100, i * 100 + 100))
+            .isEqualTo(Arrays.copyOfRange(contents, i * 600, i * 600 + 100));
+      }
+      assertThat(Arrays.copyOfRange(result, 1000, 1100))
+          .isEqualTo(Arrays.copyOfRange(contents, FILE_LENGTH - 100, FILE_LENGTH));
+      // blocks 0-5 in one request, block 20 in another
+      assertThat(raf.nreads.get()).isEqualTo(2);
+      assertThat(raf.getFilePointer()).isEqualTo(FILE_LENGTH);
+      assertThat(raf.read()).isEqualTo(-1);
+
+      // the blocks are in the read cache now
+      Arrays.fill(result, (byte) 0);
+      raf.readRanges(ranges);
+      assertThat(Arrays.copyOfRange(result, 500, 600)).isEqualTo(Arrays.copyOfRange(contents, 3000, 3100));
+      raf.seek(2 * BLOCK_SIZE);
+      raf.readFully(new byte[BLOCK_SIZE]);
+      assertThat(raf.nreads.get()).isEqualTo(2);
+
+      // only the missing blocks are fetched
+      byte[] more = new byte[2 * BLOCK_SIZE];
+      raf.readRanges(Arrays.asList(new RandomAccessFile.ReadRange(5 * BLOCK_SIZE, more, 0, 2 * BLOCK_SIZE)));
+      assertThat(more).isEqualTo(Arrays.copyOfRange(contents, 5 * BLOCK_SIZE, 7 * BLOCK_SIZE));
+      assertThat(raf.nreads.get()).isEqualTo(3);
+      assertThat(raf.fetched).contains((long) 6 * BLOCK_SIZE);
+
+      // past the end of the file
+      ranges.add(new RandomAccessFile.ReadRange(FILE_LENGTH - 10, result, 0, 20));
+      try {
+        raf.readRanges(ranges);
+        fail();
+      } catch (EOFException e) {
+        // expected
+      }
+    } finally {
+      RemoteRandomAccessFile.setMaxMergeGap(64 * 1024);
+    }
+  }
+
+  @Test
+  public void testReadRangesNoMerge() throws IOException {
+    RemoteRandomAccessFile.setMaxMergeGap(0);
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+      // 10 ranges of 100 bytes, in every other block
+      byte[] result = new byte[1000];
+      List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        ranges.add(new RandomAccessFile.ReadRange(2 * i * BLOCK_SIZE + 10, result, i * 100, 100));
+      }
+      raf.readRanges(ranges);
+      for (int i = 0; i < 10; i++) {
+        int pos = 2 * i * BLOCK_SIZE + 10;
+        assertThat(Arrays.copyOfRange(result, i * 100, i * 100 + 100))
+            .isEqualTo(Arrays.copyOfRange(contents, pos, pos + 100));
+      }
+      assertThat(raf.nreads.get()).isEqualTo(10);
+      assertThat(raf.maxConcurrent.get()).isGreaterThan(1);
+    } finally {
+      RemoteRandomAccessFile.setMaxMergeGap(64 * 1024);
+    }
+  }
+
+  @Test
+  public void testReadRangesNoCache() throws IOException {
+    RemoteRandomAccessFile.setMaxMergeGap(BLOCK_SIZE);
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents, 0)) {
+      byte[] result = new byte[300];
+      List<RandomAccessFile.ReadRange> ranges = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        ranges.add(new RandomAccessFile.ReadRange(i * 5000, result, i * 100, 100));
+      }
+      raf.readRanges(ranges);
+      for (int i = 0; i < 3; i++) {
+        assertThat(Arrays.copyOfRange(result, i * 100, i * 100 + 100))
+            .isEqualTo(Arrays.copyOfRange(contents, i * 5000, i * 5000 + 100));
+      }
+      // the ranges themselves are fetched, not cache blocks
+      assertThat(raf.nreads.get()).isEqualTo(3);
+      assertThat(raf.fetched).contains(5000L);
+    } finally {
+      RemoteRandomAccessFile.setMaxMergeGap(64 * 1024);
+    }
+  }
+
+  @Test
+  public void testDiskCache() throws IOException {
+    RemoteRandomAccessFile.setExecutor(null);
+    DiskCache2 dc = new DiskCache2(tempFolder.newFolder().getAbsolutePath(), false, 0, 0);
+    RemoteRandomAccessFile.setDiskCache(new RemoteBlockDiskCache(dc, 100L * BLOCK_SIZE));
+    try {
+      byte[] result = new byte[5 * BLOCK_SIZE];
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.version = "v1";
+        raf.readFully(result);
+        assertThat(raf.nreads.get()).isGreaterThan(0);
+      }
+
+      // a new instance gets its blocks from disk
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.version = "v1";
+        raf.readFully(result);
+        assertThat(result).isEqualTo(Arrays.copyOf(contents, result.length));
+        assertThat(raf.nreads.get()).isEqualTo(0);
+      }
+
+      // readRanges uses the disk cache too, and puts what it fetches there
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.version = "v1";
+        byte[] range = new byte[100];
+        raf.readRanges(Arrays.asList(new RandomAccessFile.ReadRange(BLOCK_SIZE + 10, range, 0, 100),
+            new RandomAccessFile.ReadRange(10 * BLOCK_SIZE, range, 0, 100)));
+        assertThat(raf.nreads.get()).isEqualTo(1);
+      }
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.version = "v1";
+        byte[] range = new byte[100];
+        raf.readRanges(Arrays.asList(new RandomAccessFile.ReadRange(10 * BLOCK_SIZE, range, 0, 100)));
+        assertThat(range).isEqualTo(Arrays.copyOfRange(contents, 10 * BLOCK_SIZE, 10 * BLOCK_SIZE + 100));
+        assertThat(raf.nreads.get()).isEqualTo(0);
+      }
+
+      // a new version of the file does not
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.version = "v2";
+        raf.readFully(result);
+        assertThat(raf.nreads.get()).isGreaterThan(0);
+      }
+
+      // nor does a file whose version is unknown
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.readFully(result);
+        raf.nreads.set(0);
+      }
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(contents)) {
+        raf.readFully(result);
+        assertThat(raf.nreads.get()).isGreaterThan(0);
+      }
+    } finally {
+      RemoteRandomAccessFile.setDiskCache(null);
+    }
+  }
+
+  private static class MemoryRemoteFile extends RemoteRandomAccessFile {
+    private final byte[] contents;
+    String version;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+    final AtomicInteger nreads = new AtomicInteger();
+    final Set<Long> fetched = ConcurrentHashMap.newKeySet();
+
+    MemoryRemoteFile(byte[] contents) {
+      this(contents, 100L * BLOCK_SIZE);
+    }
+
+    MemoryRemoteFile(byte[] contents, long maxCacheSize) {
+      super("memory:test", BLOCK_SIZE, maxCacheSize);
+      this.contents = contents;
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
+      nreads.incrementAndGet();
+      fetched.add(pos);
+      int now = inFlight.incrementAndGet();
+      maxConcurrent.accumulateAndGet(now, Math::max);
+      try {
+        Thread.sleep(20); // latency
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      int n = (int) Math.min(len, contents.length - pos);
+      System.arraycopy(contents, (int) pos, buff, offset, n);
+      return n;
+    }
+
+    @Override
+    public void closeRemote() {}
+
+    @Override
+    protected String getVersion() {
+      return version;
+    }
+
+    @Override
+    public long length() {
+      return contents.length;
+    }
+  }
+}
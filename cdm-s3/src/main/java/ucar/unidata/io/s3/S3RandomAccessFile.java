@@ -128,6 +128,12 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
     return objectHeadResponse.lastModified().toEpochMilli();
   }
 
+  /** The ETag of the object. */
+  @Override
+  protected String getVersion() {
+    return objectHeadResponse.eTag();
+  }
+
   @Override
   public String getLocation() {
     return uri.toString();
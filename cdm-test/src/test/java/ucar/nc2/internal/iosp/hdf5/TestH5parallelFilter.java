@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+/** Compare filtered chunk reads decoded serially and in parallel. */
+@Category(NeedsCdmUnitTest.class)
+public class TestH5parallelFilter {
+
+  @Test
+  public void testDeflateParallel() throws IOException, InvalidRangeException {
+    try (NetcdfFile ncfile = TestH5.openH5("msg/MSG1_8bit_HRV.H5")) {
+      Variable v = ncfile.findVariable("image1/image_data");
+      assertThat((Object) v).isNotNull();
+      v.setCaching(false);
+
+      Array serial = v.read();
+      Array serialSection = v.read("100:899:3,17:1400");
+
+      ExecutorService exec = Executors.newFixedThreadPool(4);
+      int saveMaxChunksInFlight = H5tiledLayoutBB.getMaxChunksInFlight();
+      try {
+        H5tiledLayoutBB.setExecutor(exec);
+        H5tiledLayoutBB.setMaxChunksInFlight(3);
+        assertThat(MAMath.equals(serial, v.read())).isTrue();
+        assertThat(MAMath.equals(serialSection, v.read("100:899:3,17:1400"))).isTrue();
+      } finally {
+        H5tiledLayoutBB.setExecutor(null);
+        H5tiledLayoutBB.setMaxChunksInFlight(saveMaxChunksInFlight);
+        exec.shutdown();
+      }
+    }
+  }
+
+}
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Test NetcdfCopier write to netcdf3, then read back and comparing to original. */
 @Category(NeedsCdmUnitTest.class)
@@ -57,6 +59,22 @@ public class TestNetcdfCopierClassic {
 
   @Test
   public void doOne() throws IOException {
+    copyAndCompare();
+  }
+
+  @Test
+  public void doOneReadAhead() throws IOException {
+    ExecutorService exec = Executors.newSingleThreadExecutor();
+    NetcdfCopier.setExecutor(exec);
+    try {
+      copyAndCompare();
+    } finally {
+      NetcdfCopier.setExecutor(null);
+      exec.shutdown();
+    }
+  }
+
+  private void copyAndCompare() throws IOException {
     File fin = new File(filename);
     File fout = tempFolder.newFile();
     System.out.printf("Write %s %n   to %s (%s %s)%n", fin.getAbsolutePath(), fout.getAbsolutePath(), fout.exists(),
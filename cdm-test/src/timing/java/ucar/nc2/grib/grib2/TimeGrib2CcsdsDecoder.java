@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import ucar.unidata.io.RandomAccessFile;
+
+/*
+ * Compare reading the data of GRIB2 template 5.42 (CCSDS, with Grib2CcsdsDecoder) and 5.40 (JPEG2000, with jj2000)
+ * messages. Give it a 5.40 file and the same file repacked by ecCodes, for example
+ *
+ * grib_set -r -s packingType=grid_ccsds pdsScale.pds1.grib2 pdsScale.pds1.ccsds.grib2
+ *
+ * Default file ../grib/src/test/data/pdsScale.pds1.grib2, best of 5. Prints for each file and template:
+ *
+ * <file> template 5.<n> <records> records <values> values <bytes> data bytes <t> msecs
+ */
+public class TimeGrib2CcsdsDecoder {
+  private static final int NTRIES = 5;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      args = new String[] {"../grib/src/test/data/pdsScale.pds1.grib2"};
+    }
+    for (String filename : args) {
+      try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+        raf.order(RandomAccessFile.BIG_ENDIAN);
+        List<Grib2Record> records = new ArrayList<>();
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          records.add(scanner.next());
+        }
+        for (int template : new int[] {40, 42}) {
+          time(filename, raf, records, template);
+        }
+      }
+    }
+  }
+
+  private static void time(String filename, RandomAccessFile raf, List<Grib2Record> all, int template)
+      throws IOException {
+    List<Grib2Record> records = new ArrayList<>();
+    long nbytes = 0;
+    for (Grib2Record gr : all) {
+      if (gr.getDataRepresentationSection().getDataTemplate() == template) {
+        records.add(gr);
+        nbytes += gr.getDataSection().getMsgLength();
+      }
+    }
+    if (records.isEmpty()) {
+      return;
+    }
+
+    long best = Long.MAX_VALUE;
+    long nvalues = 0;
+    for (int t = 0; t < NTRIES; t++) {
+      nvalues = 0;
+      long start = System.nanoTime();
+      for (Grib2Record gr : records) {
+        nvalues += gr.readData(raf).length;
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("%s template 5.%d %d records %d values %d data bytes %d msecs%n", filename, template,
+        records.size(), nvalues, nbytes, best / 1000000);
+  }
+}
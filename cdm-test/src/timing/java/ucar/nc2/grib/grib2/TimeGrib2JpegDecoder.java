@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import ucar.unidata.io.RandomAccessFile;
+
+/*
+ * Time decoding the GRIB2 template 5.40 (JPEG2000) messages in a file with jj2000, splitting the time spent
+ * constructing a Grib2JpegDecoder from the time spent decoding the code stream. Use this to decide whether
+ * reusing decoders, or replacing jj2000 with a specialised decoder, is worth doing.
+ * Default file ../grib/src/test/data/pdsScale.pds1.grib2, best of 5. Prints for each file:
+ *
+ * <file> <n> messages <m> values construct <c> msecs decode <d> msecs
+ */
+public class TimeGrib2JpegDecoder {
+  private static final int NTRIES = 5;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      args = new String[] {"../grib/src/test/data/pdsScale.pds1.grib2"};
+    }
+    for (String filename : args) {
+      try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+        raf.order(RandomAccessFile.BIG_ENDIAN);
+        List<byte[]> codeStreams = new ArrayList<>();
+        List<Integer> nbits = new ArrayList<>();
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          if (gr.getDataRepresentationSection().getDataTemplate() != 40) {
+            continue;
+          }
+          Grib2Drs.Type40 drs = (Grib2Drs.Type40) gr.getDataRepresentationSection().getDrs(raf);
+          if (drs.numberOfBits == 0) {
+            continue;
+          }
+          byte[] section = gr.getDataSection().getBytes(raf);
+          codeStreams.add(Arrays.copyOfRange(section, 5, section.length));
+          nbits.add(drs.numberOfBits);
+        }
+
+        long construct = Long.MAX_VALUE;
+        long decode = Long.MAX_VALUE;
+        long nvalues = 0;
+        for (int t = 0; t < NTRIES; t++) {
+          long constructTime = 0;
+          long decodeTime = 0;
+          nvalues = 0;
+          for (int i = 0; i < codeStreams.size(); i++) {
+            long start = System.nanoTime();
+            Grib2JpegDecoder g2j = new Grib2JpegDecoder(nbits.get(i), false);
+            long built = System.nanoTime();
+            g2j.decode(codeStreams.get(i));
+            decodeTime += System.nanoTime() - built;
+            constructTime += built - start;
+            nvalues += g2j.getGdata().length;
+          }
+          construct = Math.min(construct, constructTime);
+          decode = Math.min(decode, decodeTime);
+        }
+        System.out.printf("%s %d messages %d values construct %d msecs decode %d msecs%n", filename,
+            codeStreams.size(), nvalues, construct / 1000000, decode / 1000000);
+      }
+    }
+  }
+}
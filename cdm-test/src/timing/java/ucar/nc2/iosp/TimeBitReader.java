@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import ucar.unidata.io.RandomAccessFile;
+
+/*
+ * Compare reading packed values one at a time with BitReader.bits2UInt(nb) against the bulk
+ * bits2UInt(nb, int[], off, n) and bits2UInt(nb, long[], off, n), for the widths of TestBitReader:
+ * 0 to 32 bits into int[], 0 to 64 bits into long[]. 10,000,000 values from a file, default buffer size, best of 5.
+ * Some of the results:
+ *
+ * int[] nb 1 scalar 44 msecs, bulk 27 msecs
+ * int[] nb 7 scalar 64 msecs, bulk 26 msecs
+ * int[] nb 8 scalar 51 msecs, bulk 27 msecs
+ * int[] nb 12 scalar 62 msecs, bulk 27 msecs
+ * int[] nb 16 scalar 81 msecs, bulk 30 msecs
+ * int[] nb 24 scalar 120 msecs, bulk 39 msecs
+ * int[] nb 32 scalar 229 msecs, bulk 66 msecs
+ * long[] nb 1 scalar 39 msecs, bulk 24 msecs
+ * long[] nb 7 scalar 81 msecs, bulk 28 msecs
+ * long[] nb 8 scalar 53 msecs, bulk 26 msecs
+ * long[] nb 12 scalar 106 msecs, bulk 32 msecs
+ * long[] nb 16 scalar 93 msecs, bulk 32 msecs
+ * long[] nb 24 scalar 140 msecs, bulk 39 msecs
+ * long[] nb 32 scalar 179 msecs, bulk 68 msecs
+ * long[] nb 48 scalar 270 msecs, bulk 94 msecs
+ * long[] nb 64 scalar 304 msecs, bulk 97 msecs
+ */
+public class TimeBitReader {
+  private static final int NVALUES = 10 * 1000 * 1000;
+  private static final int NTRIES = 5;
+
+  public static void main(String[] args) throws IOException {
+    File file = File.createTempFile("TimeBitReader", ".dat");
+    file.deleteOnExit();
+    byte[] contents = new byte[NVALUES * Long.BYTES + 1];
+    new Random(1).nextBytes(contents);
+    Files.write(file.toPath(), contents);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      int[] ints = new int[NVALUES];
+      for (int nb = 0; nb <= Integer.SIZE; nb++) {
+        long scalar = Long.MAX_VALUE;
+        long bulk = Long.MAX_VALUE;
+        for (int t = 0; t < NTRIES; t++) {
+          long start = System.nanoTime();
+          BitReader reader = new BitReader(raf, 0);
+          for (int i = 0; i < NVALUES; i++) {
+            ints[i] = (int) reader.bits2UInt(nb);
+          }
+          scalar = Math.min(scalar, System.nanoTime() - start);
+          int last = ints[NVALUES - 1];
+
+          start = System.nanoTime();
+          reader = new BitReader(raf, 0);
+          reader.bits2UInt(nb, ints, 0, NVALUES);
+          bulk = Math.min(bulk, System.nanoTime() - start);
+          if (ints[NVALUES - 1] != last) {
+            throw new IllegalStateException("bulk and scalar values differ for nb = " + nb);
+          }
+        }
+        System.out.printf("int[] nb %d scalar %d msecs, bulk %d msecs%n", nb, scalar / 1000000, bulk / 1000000);
+      }
+
+      long[] longs = new long[NVALUES];
+      for (int nb = 0; nb <= Long.SIZE; nb++) {
+        long scalar = Long.MAX_VALUE;
+        long bulk = Long.MAX_VALUE;
+        for (int t = 0; t < NTRIES; t++) {
+          long start = System.nanoTime();
+          BitReader reader = new BitReader(raf, 0);
+          for (int i = 0; i < NVALUES; i++) {
+            longs[i] = reader.bits2UInt(nb);
+          }
+          scalar = Math.min(scalar, System.nanoTime() - start);
+          long last = longs[NVALUES - 1];
+
+          start = System.nanoTime();
+          reader = new BitReader(raf, 0);
+          reader.bits2UInt(nb, longs, 0, NVALUES);
+          bulk = Math.min(bulk, System.nanoTime() - start);
+          if (longs[NVALUES - 1] != last) {
+            throw new IllegalStateException("bulk and scalar values differ for nb = " + nb);
+          }
+        }
+        System.out.printf("long[] nb %d scalar %d msecs, bulk %d msecs%n", nb, scalar / 1000000, bulk / 1000000);
+      }
+    }
+  }
+}
@@ -5,6 +5,19 @@
 
 package ucar.nc2.grib;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.annotation.Nullable;
+import ucar.nc2.internal.util.ExecutionExceptions;
+
 /**
  * Converts a QuasiRegular grid into a regular rectanglar (lat/lon) grid.
  *
@@ -14,6 +27,23 @@ package ucar.nc2.grib;
  * @since 9/10/11
  */
 public class QuasiRegular {
+  private static final int rowsPerTask = 64;
+
+  // experimental multithreading: expand rows on this executor; null means expand on the calling thread
+  private static Executor executor;
+
+  // the expansion plans of recently used layouts, which are the same for every record with the same GDS
+  private static final Cache<Layout, Plan> plans = CacheBuilder.newBuilder().maximumSize(100).build();
+
+  /**
+   * Set the Executor used to expand the rows of large grids concurrently, in tasks of rowsPerTask rows.
+   *
+   * @param exec use this Executor, or null (the default) to expand on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
   /**
    * @param quasi input data
    * @param linePts npts in each line
@@ -26,118 +56,238 @@ public class QuasiRegular {
 
     if (interpolationMethod == GribData.InterpolationMethod.none)
       return quasi;
+    if (interpolationMethod != GribData.InterpolationMethod.cubic
+        && interpolationMethod != GribData.InterpolationMethod.linear)
+      throw new RuntimeException("unsupported interpolation method");
+    boolean cubic = (interpolationMethod == GribData.InterpolationMethod.cubic);
+
+    Plan plan = getPlan(linePts, nx, ny);
+    float[] data = new float[plan.nx * plan.ny];
 
+    Executor exec = executor;
+    if (exec == null || plan.ny < 2 * rowsPerTask) {
+      plan.expand(quasi, data, 0, plan.ny, cubic);
+      return data;
+    }
 
-    // int nrows; /* number of rows in input */
-    // int ix[]; /* row i starts at idat[ix[i]], and ix[nrows] is 1 after
-    // last elem of idat */
-    // float *idat; /* input quasi-regular data */
-    // int ni; /* constant length of each output row */
-    // int nj; /* number of output rows */
-    // float *odat; /* where to put ni*nj outputs, already allocated */
-
-    int max = getMax(linePts);
-    if (nx < 0) {
-      assert ny == linePts.length;
-      nx = max;
-    } else {
-      assert ny < 0;
-      assert nx == linePts.length;
-      ny = max;
+    List<FutureTask<Void>> tasks = new ArrayList<>();
+    for (int from = 0; from < plan.ny; from += rowsPerTask) {
+      int start = from;
+      int end = Math.min(plan.ny, from + rowsPerTask);
+      FutureTask<Void> task = new FutureTask<>(() -> plan.expand(quasi, data, start, end, cubic), null);
+      tasks.add(task);
+      exec.execute(task);
+    }
+    try {
+      for (FutureTask<Void> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while expanding quasi regular grid", e);
+    } catch (ExecutionException e) {
+      throw ExecutionExceptions.propagateUnchecked(e);
     }
+    return data;
+  }
 
-    double x1_der = 1.0e30; /* derivative of the first end point */
-    double xn_der = 1.0e30; /* derivative of the nth end point */
-    double[] second_d; /* second derivatives of input row */
-    int inputIdx = 0; /* current index position in input */
-    int outputIdx = 0; /* current index position in output */
+  private static Plan getPlan(int[] linePts, int nx, int ny) {
+    Layout layout = new Layout(linePts, nx, ny);
+    Plan plan = plans.getIfPresent(layout);
+    if (plan == null) {
+      plan = new Plan(linePts, nx, ny);
+      plans.put(new Layout(linePts.clone(), nx, ny), plan);
+    }
+    return plan;
+  }
 
-    float[] data = new float[nx * ny];
+  private static class Layout {
+    private final int[] linePts;
+    private final int nx;
+    private final int ny;
 
-    if (interpolationMethod == GribData.InterpolationMethod.cubic) {
+    Layout(int[] linePts, int nx, int ny) {
+      this.linePts = linePts;
+      this.nx = nx;
+      this.ny = ny;
+    }
 
-      for (int j = 0; j < ny; j++) { // LOOK - assumes varies by x
-        // int inrow; /* input row to use */
-        int npoints; /* number input points in current parrallel */
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      Layout layout = (Layout) o;
+      return nx == layout.nx && ny == layout.ny && Arrays.equals(linePts, layout.linePts);
+    }
 
-        // inrow = j * (nrows - 1) / (nj - 1); /* set the row number */
-        // npoints = ix[inrow+1] - ix[inrow]; /* set number of input points */
-        npoints = linePts[j]; /* number of input points in this parellel */
+    @Override
+    public int hashCode() {
+      return 31 * (31 * nx + ny) + Arrays.hashCode(linePts);
+    }
+  }
 
+  /**
+   * The part of the expansion that depends only on the layout: where each row starts, and for each distinct row
+   * length, the interpolation weights and the data independent half of the spline decomposition. Gives the same
+   * results as secondDerivative(), cubicSpline() and linear().
+   */
+  private static class Plan {
+    private final int nx;
+    private final int ny;
+    private final int maxPoints;
+    private final int[] rowStart; // index in quasi of the first point of each row
+    private final RowPlan[] rows; // shared by rows with the same number of points, null if npoints == nx
+
+    Plan(int[] linePts, int nx, int ny) {
+      // int nrows; /* number of rows in input */
+      // int ix[]; /* row i starts at idat[ix[i]], and ix[nrows] is 1 after
+      // last elem of idat */
+      // float *idat; /* input quasi-regular data */
+      // int ni; /* constant length of each output row */
+      // int nj; /* number of output rows */
+      // float *odat; /* where to put ni*nj outputs, already allocated */
+
+      int max = getMax(linePts);
+      if (nx < 0) {
+        assert ny == linePts.length;
+        nx = max;
+      } else {
+        assert ny < 0;
+        assert nx == linePts.length;
+        ny = max;
+      }
+      this.nx = nx;
+      this.ny = ny;
+      this.maxPoints = max;
+
+      this.rowStart = new int[ny];
+      this.rows = new RowPlan[ny];
+      Map<Integer, RowPlan> byPoints = new HashMap<>();
+      int inputIdx = 0;
+      for (int j = 0; j < ny; j++) { // LOOK - assumes varies by x
+        int npoints = linePts[j]; /* number of input points in this parellel */
+        rowStart[j] = inputIdx;
         // skip the processing if npoints = number of points in output parrallel
-        if (npoints == nx) {
-          for (int i = 0; i < nx; i++) {
-            data[outputIdx++] = quasi[inputIdx++];
-          }
-          continue;
-        }
-        // second_d = (float *)emalloc(npoints * sizeof(double));
-        second_d = new double[npoints];
-
-        /* calculate the second derivatives of the input row */
-        secondDerivative(
-            // &idat[ix[inrow]], /* input row */
-            quasi, /* input data */
-            inputIdx, /* current index position in input */
-            npoints, /* number of points in input row */
-            x1_der, /* first derivative of first element */
-            xn_der, /* first derivative of nth element */
-            second_d); /* output second derivative */
-
-        /* interpolate the output row */
-        for (int i = 0; i < nx; i++) {
-          double mapped_i; /* i mapped to input space */
-          mapped_i = (float) i / ((float) nx) * ((float) npoints);
-
-          /* map output point to input space */
-          cubicSpline( /* interpolate the value */
-              quasi, /* input data */
-              inputIdx, /* current index position in input */
-              second_d, /* calculated second derivatives */
-              mapped_i, /* element to be interpolated */
-              data, /* output data */
-              outputIdx++); /* where to put the interpolated value */
+        if (npoints != nx) {
+          int nxf = nx;
+          rows[j] = byPoints.computeIfAbsent(npoints, n -> new RowPlan(n, nxf));
         }
         inputIdx += npoints;
       }
+    }
 
-    } else if (interpolationMethod == GribData.InterpolationMethod.linear) { // =>
-      // USE_LINEAR
+    // expand rows [from, to) of quasi into data
+    void expand(float[] quasi, float[] data, int from, int to, boolean cubic) {
+      double[] y2d = cubic ? new double[maxPoints] : null;
+      double[] scratch = cubic ? new double[maxPoints] : null;
+      for (int j = from; j < to; j++) {
+        RowPlan row = rows[j];
+        if (row == null) {
+          System.arraycopy(quasi, rowStart[j], data, j * nx, nx);
+        } else if (cubic) {
+          row.cubic(quasi, rowStart[j], data, j * nx, y2d, scratch);
+        } else {
+          row.linear(quasi, rowStart[j], data, j * nx);
+        }
+      }
+    }
+  }
 
-      for (int j = 0; j < ny; j++) { // LOOK - assumes varies by x
-        // int inrow; /* input row to use */
-        // inrow = j * (nrows - 1) / (nj - 1); /* set the row number */
-        // npoints = ix[inrow+1] - ix[inrow]; /* set number of input points */
-        int npoints = linePts[j]; /* number of input points in this parallel */
-
-        // skip the processing if npoints = number of points in output
-        // parallel
-        if (npoints == nx) {
-          for (int i = 0; i < nx; i++)
-            data[outputIdx++] = quasi[inputIdx++];
+  private static class RowPlan {
+    private final int npoints;
+    private final int[] low; // input point at or below each output point
+    private final int[] hi; // input point above each output point, wrapping to 0; -1 if on an input point
+    private final double[] a; // weight of low
+    private final double[] b; // weight of hi
+    private final double[] ca; // (a * a * a - a), weight of the second derivative at low
+    private final double[] cb; // (b * b * b - b), weight of the second derivative at hi
+    private final double[] p; // divisors of the decomposition loop
+    private final double[] u; // second derivatives before back substitution
+
+    RowPlan(int npoints, int nx) {
+      this.npoints = npoints;
+      this.low = new int[nx];
+      this.hi = new int[nx];
+      this.a = new double[nx];
+      this.b = new double[nx];
+      this.ca = new double[nx];
+      this.cb = new double[nx];
+      for (int i = 0; i < nx; i++) {
+        double x = (float) i / ((float) nx) * ((float) npoints); // i mapped to input space
+        if (Math.floor(x) == x) { /* existing data point */
+          low[i] = (int) x;
+          hi[i] = -1;
           continue;
         }
+        /* set the input bracket */
+        int h = (int) Math.ceil(x);
+        low[i] = (int) Math.floor(x);
+        a[i] = h - x;
+        b[i] = x - low[i];
+        ca[i] = a[i] * a[i] * a[i] - a[i];
+        cb[i] = b[i] * b[i] * b[i] - b[i];
+        hi[i] = h > (npoints - 1) ? 0 : h;
+      }
 
-        for (int i = 0; i < nx; i++) {
-          double mapped_i = (float) i / ((float) nx) * ((float) npoints); // i mapped to input space
-
-          // interpolate this point
-          linear(quasi, /* input data */
-              inputIdx, /* current index position in input */
-              mapped_i, /* element to be interpolated */
-              data, /* output data */
-              outputIdx++, /* where to put the interpolated value */
-              npoints);
-        }
+      // lower boundary is natural
+      this.p = new double[Math.max(npoints, 1)];
+      this.u = new double[Math.max(npoints, 1)];
+      for (int i = 1; i < npoints - 1; i++) {
+        p[i] = 0.5 * u[i - 1] + 2.0;
+        u[i] = (0.5 - 1.0) / p[i];
+      }
+    }
 
-        inputIdx += npoints;
+    // same as secondDerivative() then cubicSpline() for each output point
+    void cubic(float[] quasi, int in, float[] data, int out, double[] y2d, double[] scratch) {
+      int n = npoints;
+      if (n == 0) {
+        Arrays.fill(data, out, out + low.length, Float.NaN);
+        return;
+      }
+      scratch[0] = 0;
+      for (int i = 1; i < n - 1; i++) { /* decomposition loop */
+        double d = (quasi[in + i + 1] - quasi[in + i]) - (quasi[in + i] - quasi[in + i - 1]);
+        scratch[i] = (6.0 * d / 2.0 - 0.5 * scratch[i - 1]) / p[i];
+      }
+      if (n > 1) { // upper boundary is natural, written out to propagate NaNs the same way
+        y2d[n - 1] = (0.0 - 0.0 * scratch[n - 2]) / (0.0 * u[n - 2] + 1.0);
+      } else {
+        y2d[0] = 0;
+      }
+      for (int i = n - 2; i >= 0; i--) { /* back substitution loop */
+        y2d[i] = u[i] * y2d[i + 1] + scratch[i];
       }
 
-    } else {
-      throw new RuntimeException("unsupported interpolation method");
+      for (int i = 0; i < low.length; i++) {
+        int lo = low[i];
+        int h = hi[i];
+        if (h < 0) {
+          data[out + i] = quasi[in + lo];
+        } else {
+          data[out + i] = (float) (a[i] * quasi[in + lo] + b[i] * quasi[in + h]
+              + (ca[i] * y2d[lo] + cb[i] * y2d[h]) / 6.0);
+        }
+      }
     }
 
-    return data;
+    // same as linear() for each output point
+    void linear(float[] quasi, int in, float[] data, int out) {
+      if (npoints == 0) {
+        Arrays.fill(data, out, out + low.length, Float.NaN);
+        return;
+      }
+      for (int i = 0; i < low.length; i++) {
+        int h = hi[i];
+        if (h < 0) {
+          data[out + i] = quasi[in + low[i]];
+        } else {
+          data[out + i] = (float) (a[i] * quasi[in + low[i]] + b[i] * quasi[in + h]);
+        }
+      }
+    }
   }
 
   public static int getMax(int[] vals) {
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import thredds.inventory.CloseableIterator;
+import thredds.inventory.MFile;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import ucar.nc2.internal.util.ExecutionExceptions;
+
+/**
+ * Reads or creates the gbx9 index of each file of a collection, returning them in the order of the file iterator, so
+ * that records are numbered and grouped the same way whether or not the indexes are read concurrently.
+ * When an Executor has been set, up to maxIndexesInFlight files are indexed ahead of the caller.
+ *
+ * @see GribCdmIndex#setIndexExecutor
+ */
+class GbxIndexQueue<T> implements Closeable {
+
+  // experimental multithreading: index files on this executor; null means index on the calling thread
+  private static Executor executor;
+  private static int maxIndexesInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+  static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  static void setMaxIndexesInFlight(int max) {
+    Preconditions.checkArgument(max > 0, "maxIndexesInFlight must be > 0");
+    maxIndexesInFlight = max;
+  }
+
+  static int getMaxIndexesInFlight() {
+    return maxIndexesInFlight;
+  }
+
+  /** Reads or creates the index of one file. Called from the executor threads. */
+  interface IndexReader<T> {
+    @Nullable
+    T read(MFile mfile) throws IOException;
+  }
+
+  /** The index of one file, or the IOException from reading or creating it. */
+  static class FileIndex<T> {
+    final MFile mfile;
+    @Nullable
+    final T index;
+    @Nullable
+    final IOException error;
+
+    private FileIndex(MFile mfile, @Nullable T index, @Nullable IOException error) {
+      this.mfile = mfile;
+      this.index = index;
+      this.error = error;
+    }
+  }
+
+  private final CloseableIterator<MFile> files;
+  private final IndexReader<T> reader;
+  @Nullable
+  private final Executor exec;
+  private final int maxInFlight;
+  private final ArrayDeque<FutureTask<FileIndex<T>>> inFlight = new ArrayDeque<>();
+
+  GbxIndexQueue(CloseableIterator<MFile> files, IndexReader<T> reader) {
+    this.files = files;
+    this.reader = reader;
+    this.exec = executor;
+    this.maxInFlight = maxIndexesInFlight;
+  }
+
+  /**
+   * The index of the next file, in the order of the file iterator.
+   *
+   * @return the next index, or null when there are no more files.
+   */
+  @Nullable
+  FileIndex<T> next() throws IOException {
+    if (exec == null) {
+      return files.hasNext() ? read(files.next()) : null;
+    }
+
+    while (inFlight.size() < maxInFlight && files.hasNext()) {
+      MFile mfile = files.next();
+      FutureTask<FileIndex<T>> task = new FutureTask<>(() -> read(mfile));
+      inFlight.add(task);
+      exec.execute(task);
+    }
+    FutureTask<FileIndex<T>> task = inFlight.poll();
+    if (task == null) {
+      return null;
+    }
+
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while indexing GRIB files");
+    } catch (ExecutionException e) {
+      throw ExecutionExceptions.propagateIO(e);
+    }
+  }
+
+  private FileIndex<T> read(MFile mfile) {
+    try {
+      return new FileIndex<>(mfile, reader.read(mfile), null);
+    } catch (IOException ioe) {
+      return new FileIndex<>(mfile, null, ioe);
+    }
+  }
+
+  /** Cancel the files not yet being indexed, and close the file iterator. */
+  @Override
+  public void close() {
+    for (FutureTask<FileIndex<T>> task : inFlight) {
+      task.cancel(false); // let running tasks finish writing their gbx9
+    }
+    inFlight.clear();
+    files.close();
+  }
+}
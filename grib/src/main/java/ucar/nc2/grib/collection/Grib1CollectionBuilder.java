@@ -27,7 +27,6 @@ import ucar.nc2.grib.grib2.Grib2Utils;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import thredds.inventory.CloseableIterator;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -68,30 +67,27 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib1Index index;
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null)
-              continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index =
-                (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile); // add on success
-
-        } catch (IOException ioe) {
+    Grib1SectionCache sections = new Grib1SectionCache(); // records share equal grid definitions
+    // the files are not sorted; the indexes may be read or created concurrently, but come back in iterator order
+    try (GbxIndexQueue<Grib1Index> indexes = new GbxIndexQueue<>(dcm.getFileIterator(), this::readIndex)) {
+      GbxIndexQueue.FileIndex<Grib1Index> fileIndex;
+      while ((fileIndex = indexes.next()) != null) {
+        MFile mfile = fileIndex.mfile;
+        Grib1Index index = fileIndex.index;
+
+        if (fileIndex.error != null) {
           logger.error("Grib1CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed", ioe);
+              + " failed", fileIndex.error);
           continue;
         }
+        if (index == null) // only when Grib.debugGbxIndexOnly
+          continue;
+        allFiles.add(mfile); // add on success
+
 
         for (Grib1Record gr : index.getRecords()) { // we are using entire Grib1Record - likely this is the memory
                                                     // bottleneck for how big a collection can handle
+          sections.share(gr);
           if (this.cust == null) {
             cust = Grib1Customizer.factory(gr, null);
             cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
@@ -146,6 +142,15 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // called from the GbxIndexQueue executor threads
+  private Grib1Index readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly) {
+      return (Grib1Index) GribIndex.open(true, mfile);
+    }
+    // here is where gbx9 files get recreated
+    return (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means remove
   private boolean filterIntervals(Grib1Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     Grib1SectionProductDefinition pdss = gr.getPDSsection();
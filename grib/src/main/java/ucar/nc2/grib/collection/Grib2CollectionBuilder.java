@@ -26,7 +26,6 @@ import ucar.nc2.grib.grib2.table.Grib2Tables;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarPeriod;
-import thredds.inventory.CloseableIterator;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -67,26 +66,21 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
     // place each record into its group
     int totalRecords = 0;
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
-        Grib2Index index;
-
-        try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib2Index) GribIndex.open(false, mfile);
-          } else {
-            // this is where gbx9 files get recreated
-            index =
-                (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
-          }
-          allFiles.add(mfile); // add on success
-
-        } catch (IOException ioe) {
+    Grib2SectionCache sections = new Grib2SectionCache(); // records share equal sections
+    // the files are not sorted; the indexes may be read or created concurrently, but come back in iterator order
+    try (GbxIndexQueue<Grib2Index> indexes = new GbxIndexQueue<>(dcm.getFileIterator(), this::readIndex)) {
+      GbxIndexQueue.FileIndex<Grib2Index> fileIndex;
+      while ((fileIndex = indexes.next()) != null) {
+        MFile mfile = fileIndex.mfile;
+        Grib2Index index = fileIndex.index;
+
+        if (fileIndex.error != null) {
           logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
-              + " failed", ioe);
+              + " failed", fileIndex.error);
           continue;
         }
+        allFiles.add(mfile); // add on success
+
         if (index == null) {
           logger.error("Grib2CollectionBuilder " + name + " : reading/Creating gbx9 index for file " + mfile.getPath()
               + " failed");
@@ -96,6 +90,7 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
         totalRecords += n;
 
         for (Grib2Record gr : index.getRecords()) { // we are using entire Grib2Record - memory limitations
+          sections.share(gr);
           if (this.cust == null) {
             this.cust = Grib2Tables.factory(gr);
             cust.setTimeUnitConverter(gribConfig.getTimeUnitConverter());
@@ -131,6 +126,8 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
       }
     }
 
+    logger.debug(" {} records share {} product definition sections", totalRecords, sections.getNumPds());
+
     if (totalRecords == 0) {
       logger.warn("No records found in files. Check Grib1/Grib2 for collection {}. If wrong, delete gbx9.", name);
       throw new IllegalStateException("No records found in dataset " + name);
@@ -155,6 +152,15 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // called from the GbxIndexQueue executor threads
+  private Grib2Index readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly) {
+      return (Grib2Index) GribIndex.open(false, mfile);
+    }
+    // this is where gbx9 files get recreated
+    return (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means discard
   private boolean filterIntervals(Grib2Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     // hack a whack - filter out records with unknown time units
@@ -11,6 +11,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Formatter;
 import java.util.List;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +58,17 @@ public abstract class GribArrayReader {
 
   protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException;
 
+  /**
+   * Read only the wanted points of the record, without unpacking the whole grid.
+   *
+   * @return data as float[ys.length * xs.length], or null if not supported for this record, then use readData().
+   */
+  @Nullable
+  protected float[] readDataWindow(RandomAccessFile rafData, GribReaderRecord dr, int[] ys, int[] xs)
+      throws IOException {
+    return null;
+  }
+
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -279,9 +291,14 @@ public abstract class GribArrayReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        float[] window = readWindow(rafData, dr, hcs, dataReceiver);
+        if (window != null) {
+          dataReceiver.addWantedData(window, dr.resultIndex);
+        } else {
+          float[] data = readCachedData(rafData, dr);
+          dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        }
       }
 
     } finally {
@@ -331,9 +348,14 @@ public abstract class GribArrayReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        float[] window = readWindow(rafData, dr, hcs, dataReceiver);
+        if (window != null) {
+          dataReceiver.addWantedData(window, dr.resultIndex);
+        } else {
+          float[] data = readCachedData(rafData, dr);
+          dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        }
       }
 
     } finally {
@@ -342,9 +364,59 @@ public abstract class GribArrayReader {
     }
   }
 
+  /** The decoded data cache, or null if not used for this collection. */
+  @Nullable
+  private GribDataCache getDataCache() {
+    if (gribCollection.config != null && !gribCollection.config.gribConfig.useDataCache)
+      return null;
+    return GribDataCache.getGlobalCache();
+  }
+
+  // read the whole record, from the decoded data cache if there is one
+  private float[] readCachedData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
+    GribDataCache cache = getDataCache();
+    if (cache == null)
+      return readData(rafData, dr);
+    float[] data = cache.get(rafData, dr.record);
+    if (data == null) {
+      data = readData(rafData, dr);
+      cache.put(rafData, dr.record, data);
+    }
+    return data;
+  }
+
+  /**
+   * Read only the wanted (x, y) points of the record, when they are less than half of a regular grid.
+   *
+   * @return the wanted points, or null if the whole grid must be read.
+   */
+  @Nullable
+  private float[] readWindow(RandomAccessFile rafData, GribReaderRecord dr, GdsHorizCoordSys hcs,
+      DataReceiverIF dataReceiver) throws IOException {
+    if (getDataCache() != null) // read whole records, so they can be cached
+      return null;
+    if (hcs.nptsInLine != null || hcs.nx != hcs.nxRaw || hcs.ny != hcs.nyRaw)
+      return null;
+    int[][] wanted = dataReceiver.getWantedPoints();
+    if (wanted == null || 2L * wanted[0].length * wanted[1].length > (long) hcs.nx * hcs.ny)
+      return null;
+    return readDataWindow(rafData, dr, wanted[0], wanted[1]);
+  }
+
   public interface DataReceiverIF {
     void addData(float[] data, int resultIndex, int nx);
 
+    /** The wanted (y, x) indices as int[2][], or null if only addData() is supported. */
+    @Nullable
+    default int[][] getWantedPoints() {
+      return null;
+    }
+
+    /** Add data for the points in getWantedPoints(), in row major order. */
+    default void addWantedData(float[] data, int resultIndex) {
+      throw new UnsupportedOperationException();
+    }
+
     void setDataToZero(); // only used when debugging with gbx/ncx only, to fake the data
 
     Array<?> getArray();
@@ -356,6 +428,7 @@ public abstract class GribArrayReader {
     private final int horizSize;
     private final float[] dataArray;
     private final int[] shape;
+    private int[][] wanted;
 
     DataReceiver(int[] shape, RangeIterator yRange, RangeIterator xRange) {
       this.shape = shape;
@@ -387,6 +460,29 @@ public abstract class GribArrayReader {
       }
     }
 
+    @Override
+    public int[][] getWantedPoints() {
+      if (wanted == null) {
+        int[] ys = new int[yRange.length()];
+        int count = 0;
+        for (int y : yRange) {
+          ys[count++] = y;
+        }
+        int[] xs = new int[xRange.length()];
+        count = 0;
+        for (int x : xRange) {
+          xs[count++] = x;
+        }
+        wanted = new int[][] {ys, xs};
+      }
+      return wanted;
+    }
+
+    @Override
+    public void addWantedData(float[] data, int resultIndex) {
+      System.arraycopy(data, 0, this.dataArray, resultIndex * horizSize, horizSize);
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
@@ -418,6 +514,16 @@ public abstract class GribArrayReader {
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected float[] readDataWindow(RandomAccessFile rafData, GribReaderRecord dr, int[] ys, int[] xs)
+        throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      return Grib2Record.readDataWindow(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
+          ys, xs);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -37,6 +37,7 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -97,6 +98,26 @@ public class GribCdmIndex implements IndexReader {
       gribCollectionCache.clearCache(true);
   }
 
+  /**
+   * Set the Executor used to read or create the gbx9 indexes of the files in a collection concurrently. The records
+   * are still grouped in file order, so the resulting ncx4 index is the same as when indexing serially.
+   *
+   * @param exec use this Executor, or null (the default) to index the files serially on the calling thread.
+   */
+  public static void setIndexExecutor(@Nullable Executor exec) {
+    GbxIndexQueue.setExecutor(exec);
+  }
+
+  /**
+   * Set the maximum number of files being indexed at one time, for each collection.
+   * Only used when an index Executor has been set.
+   *
+   * @param max must be > 0, default is twice the number of available processors.
+   */
+  public static void setMaxIndexesInFlight(int max) {
+    GbxIndexQueue.setMaxIndexesInFlight(max);
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////////
 
   public static File getTopIndexFileFromConfig(FeatureCollectionConfig config) {
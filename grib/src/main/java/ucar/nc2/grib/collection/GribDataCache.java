@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.util.Formatter;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A cache of decoded GRIB records, shared by all GRIB collections, bounded by the total number of bytes held, and
+ * evicting the least recently used records first. Keyed by data file location, last modified date and length, and
+ * by record position, so records of a data file that has been rewritten are not returned.
+ * <p>
+ * Disabled by default, see {@link #setGlobalCache}. A collection may opt out with the gribConfig option
+ * {@code <option name="dataCache" value="false"/>}. The cached float arrays must not be modified.
+ */
+public class GribDataCache {
+  private static GribDataCache globalCache;
+
+  /**
+   * Share one decoded data cache across all GRIB collections, used by GribIosp and GribCoverageDataset.
+   *
+   * @param maxBytes max number of decoded bytes to keep; 0 (the default) removes the global cache.
+   */
+  public static void setGlobalCache(long maxBytes) {
+    Preconditions.checkArgument(maxBytes >= 0, "maxBytes must be >= 0");
+    globalCache = (maxBytes == 0) ? null : new GribDataCache(maxBytes);
+  }
+
+  /** The global cache, or null if not set. */
+  @Nullable
+  public static GribDataCache getGlobalCache() {
+    return globalCache;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////
+
+  private final long maxBytes;
+  private final Cache<Key, float[]> cache;
+
+  public GribDataCache(long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+    this.maxBytes = maxBytes;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((Key key, float[] value) -> 4 * value.length).recordStats().build();
+  }
+
+  /** Get the decoded record of the open data file, or null if not in the cache. */
+  @Nullable
+  float[] get(RandomAccessFile rafData, GribCollectionImmutable.Record record) throws IOException {
+    return cache.getIfPresent(new Key(rafData, record));
+  }
+
+  void put(RandomAccessFile rafData, GribCollectionImmutable.Record record, float[] data) throws IOException {
+    cache.put(new Key(rafData, record), data);
+  }
+
+  /** Remove all records of the given data file, eg to free the memory of a file that has been rewritten. */
+  public void invalidate(String location) {
+    cache.asMap().keySet().removeIf(key -> key.location.equals(location));
+  }
+
+  /** Remove all records. */
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** The total number of decoded bytes currently held. */
+  public long getCurrentBytes() {
+    long total = 0;
+    for (float[] data : cache.asMap().values()) {
+      total += 4L * data.length;
+    }
+    return total;
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public void showStats(Formatter f) {
+    f.format("GribDataCache nrecords=%d bytes=%d max=%d hitRate=%f %s%n", cache.size(), getCurrentBytes(), maxBytes,
+        cache.stats().hitRate(), cache.stats());
+  }
+
+  private static class Key {
+    private final String location;
+    private final long lastModified; // a rewritten file has different records at the same pos
+    private final long length;
+    private final long pos;
+    private final int drsOffset; // grib2 messages may contain several fields at the same pos
+
+    Key(RandomAccessFile rafData, GribCollectionImmutable.Record record) throws IOException {
+      this.location = rafData.getLocation();
+      this.lastModified = rafData.getLastModified();
+      this.length = rafData.length();
+      this.pos = record.pos;
+      this.drsOffset = record.drsOffset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      Key key = (Key) o;
+      return pos == key.pos && drsOffset == key.drsOffset && lastModified == key.lastModified
+          && length == key.length && location.equals(key.location);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length, pos, drsOffset);
+    }
+  }
+
+}
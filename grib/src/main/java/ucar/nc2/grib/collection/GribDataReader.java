@@ -5,6 +5,7 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,10 +23,19 @@ import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.nc2.internal.util.ExecutionExceptions;
 import ucar.unidata.io.RandomAccessFile;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Grib Data Reader.
@@ -37,6 +47,38 @@ import java.util.*;
 @Immutable
 public abstract class GribDataReader {
   private static final Logger logger = LoggerFactory.getLogger(GribDataReader.class);
+  private static final int maxRecordsPerTask = 64;
+
+  // experimental multithreading: decode records on this executor; null means decode on the calling thread
+  private static Executor executor;
+  private static int maxTasksInFlight = 2 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Set the Executor used to read and decode GRIB records concurrently. The records are split into tasks, each of
+   * which reads a run of records from the same data file with its own RandomAccessFile, and sends the data to the
+   * DataReceiver in no particular order.
+   *
+   * @param exec use this Executor, or null (the default) to read serially on the calling thread.
+   */
+  public static void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of tasks submitted to the Executor at one time, for each read.
+   * Only used when an Executor has been set.
+   *
+   * @param max must be > 0, default is twice the number of available processors.
+   */
+  public static void setMaxTasksInFlight(int max) {
+    Preconditions.checkArgument(max > 0, "maxTasksInFlight must be > 0");
+    maxTasksInFlight = max;
+  }
+
+  /** The maximum number of tasks submitted to the Executor at one time, for each read. */
+  public static int getMaxTasksInFlight() {
+    return maxTasksInFlight;
+  }
 
 
   public static GribDataReader factory(GribCollectionImmutable gribCollection,
@@ -49,6 +91,17 @@ public abstract class GribDataReader {
 
   protected abstract float[] readData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException;
 
+  /**
+   * Read only the wanted points of the record, without unpacking the whole grid.
+   *
+   * @return data as float[ys.length * xs.length], or null if not supported for this record, then use readData().
+   */
+  @Nullable
+  protected float[] readDataWindow(RandomAccessFile rafData, GribReaderRecord dr, int[] ys, int[] xs)
+      throws IOException {
+    return null;
+  }
+
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -234,6 +287,11 @@ public abstract class GribDataReader {
    */
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    Executor exec = executor;
+    if (exec != null && !isDebugging()) {
+      readParallel(dataReceiver, exec, false);
+      return;
+    }
 
     int currFile = -1;
     RandomAccessFile rafData = null;
@@ -268,9 +326,14 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        float[] window = readWindow(rafData, dr, hcs, dataReceiver);
+        if (window != null) {
+          dataReceiver.addWantedData(window, dr.resultIndex);
+        } else {
+          float[] data = readCachedData(rafData, dr);
+          dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        }
       }
 
     } finally {
@@ -287,6 +350,11 @@ public abstract class GribDataReader {
 
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    Executor exec = executor;
+    if (exec != null && !isDebugging()) {
+      readParallel(dataReceiver, exec, true);
+      return;
+    }
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
@@ -320,9 +388,14 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        float[] window = readWindow(rafData, dr, hcs, dataReceiver);
+        if (window != null) {
+          dataReceiver.addWantedData(window, dr.resultIndex);
+        } else {
+          float[] data = readCachedData(rafData, dr);
+          dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        }
       }
 
     } finally {
@@ -331,9 +404,175 @@ public abstract class GribDataReader {
     }
   }
 
+  /** The decoded data cache, or null if not used for this collection. */
+  @Nullable
+  private GribDataCache getDataCache() {
+    if (gribCollection.config != null && !gribCollection.config.gribConfig.useDataCache)
+      return null;
+    return GribDataCache.getGlobalCache();
+  }
+
+  // read the whole record, from the decoded data cache if there is one
+  private float[] readCachedData(RandomAccessFile rafData, GribReaderRecord dr) throws IOException {
+    GribDataCache cache = getDataCache();
+    if (cache == null)
+      return readData(rafData, dr);
+    float[] data = cache.get(rafData, dr.record);
+    if (data == null) {
+      data = readData(rafData, dr);
+      cache.put(rafData, dr.record, data);
+    }
+    return data;
+  }
+
+  /**
+   * Read only the wanted (x, y) points of the record, when they are less than half of a regular grid.
+   *
+   * @return the wanted points, or null if the whole grid must be read.
+   */
+  @Nullable
+  private float[] readWindow(RandomAccessFile rafData, GribReaderRecord dr, GdsHorizCoordSys hcs,
+      DataReceiverIF dataReceiver) throws IOException {
+    if (getDataCache() != null) // read whole records, so they can be cached
+      return null;
+    if (hcs.nptsInLine != null || hcs.nx != hcs.nxRaw || hcs.ny != hcs.nyRaw)
+      return null;
+    int[][] wanted = dataReceiver.getWantedPoints();
+    if (wanted == null || 2L * wanted[0].length * wanted[1].length > (long) hcs.nx * hcs.ny)
+      return null;
+    return readDataWindow(rafData, dr, wanted[0], wanted[1]);
+  }
+
+  // the debugging and validation modes use the serial readers
+  private boolean isDebugging() {
+    return Grib.debugIndexOnly || Grib.debugGbxIndexOnly || GribDataReader.validator != null || show;
+  }
+
+  /**
+   * Read the sorted records concurrently. Consecutive records in the same file are grouped into tasks, and no more than
+   * maxTasksInFlight tasks are submitted at once. Each task opens its own RandomAccessFile. DataReceiver.addData is
+   * called from the executor threads, synchronized on the dataReceiver. If a task fails, the others are stopped, and
+   * the ones already running are waited for, so that none of them adds data after this returns.
+   */
+  private void readParallel(DataReceiverIF dataReceiver, Executor exec, boolean partitioned) throws IOException {
+    int maxInFlight = maxTasksInFlight;
+    int perTask = Math.max(1, Math.min(maxRecordsPerTask, records.size() / (4 * maxInFlight)));
+
+    List<List<GribReaderRecord>> tasks = new ArrayList<>();
+    List<GribReaderRecord> current = null;
+    GribReaderRecord last = null;
+    for (GribReaderRecord dr : records) {
+      if (dr.record.pos == GribCollectionMutable.MISSING_RECORD)
+        continue;
+      if (current == null || current.size() >= perTask || !usesSameFile(dr, last, partitioned)) {
+        current = new ArrayList<>(perTask);
+        tasks.add(current);
+      }
+      current.add(dr);
+      last = dr;
+    }
+
+    CompletionService<Void> completionService = new ExecutorCompletionService<>(exec);
+    AtomicBoolean stop = new AtomicBoolean();
+    int next = 0;
+    int nInFlight = 0;
+    try {
+      while (next < tasks.size() || nInFlight > 0) {
+        while (nInFlight < maxInFlight && next < tasks.size()) {
+          List<GribReaderRecord> task = tasks.get(next++);
+          completionService.submit(() -> {
+            readTask(task, dataReceiver, partitioned, stop);
+            return null;
+          });
+          nInFlight++;
+        }
+        Future<Void> done = completionService.take();
+        nInFlight--;
+        done.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stopTasks(completionService, stop, nInFlight);
+      throw new InterruptedIOException("Interrupted while reading GRIB records");
+    } catch (ExecutionException e) {
+      stopTasks(completionService, stop, nInFlight);
+      throw ExecutionExceptions.propagateIO(e);
+    }
+  }
+
+  // tell the submitted tasks to stop after their current record, and wait for them, ignoring their errors
+  private static void stopTasks(CompletionService<Void> completionService, AtomicBoolean stop, int nInFlight) {
+    stop.set(true);
+    boolean interrupted = false;
+    for (int i = 0; i < nInFlight; i++) {
+      try {
+        completionService.take();
+      } catch (InterruptedException e) {
+        interrupted = true;
+        i--; // still wait for it, the tasks are short once stopped
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean usesSameFile(GribReaderRecord dr, @Nullable GribReaderRecord last, boolean partitioned) {
+    if (last == null)
+      return false;
+    if (partitioned)
+      return ((PartitionCollectionImmutable.DataRecord) dr)
+          .usesSameFile((PartitionCollectionImmutable.DataRecord) last);
+    return dr.record.fileno == last.record.fileno;
+  }
+
+  // all the records in the task are in the same file
+  private void readTask(List<GribReaderRecord> task, DataReceiverIF dataReceiver, boolean partitioned,
+      AtomicBoolean stop) throws IOException {
+    GribReaderRecord first = task.get(0);
+    RandomAccessFile rafData;
+    if (partitioned) {
+      PartitionCollectionImmutable.DataRecord drp = (PartitionCollectionImmutable.DataRecord) first;
+      rafData = drp.usePartition.getRaf(drp.partno, first.record.fileno);
+    } else {
+      rafData = gribCollection.getDataRaf(first.record.fileno);
+    }
+
+    try {
+      for (GribReaderRecord dr : task) {
+        if (stop.get())
+          return;
+        float[] window = readWindow(rafData, dr, dr.hcs, dataReceiver);
+        if (window != null) {
+          synchronized (dataReceiver) {
+            dataReceiver.addWantedData(window, dr.resultIndex);
+          }
+        } else {
+          float[] data = readCachedData(rafData, dr);
+          synchronized (dataReceiver) {
+            dataReceiver.addData(data, dr.resultIndex, dr.hcs.nx);
+          }
+        }
+      }
+    } finally {
+      rafData.close();
+    }
+  }
+
   public interface DataReceiverIF {
     void addData(float[] data, int resultIndex, int nx);
 
+    /** The wanted (y, x) indices as int[2][], or null if only addData() is supported. */
+    @Nullable
+    default int[][] getWantedPoints() {
+      return null;
+    }
+
+    /** Add data for the points in getWantedPoints(), in row major order. */
+    default void addWantedData(float[] data, int resultIndex) {
+      throw new UnsupportedOperationException();
+    }
+
     void setDataToZero(); // only used when debugging with gbx/ncx only, to fake the data
 
     Array getArray();
@@ -341,9 +580,11 @@ public abstract class GribDataReader {
 
   public static class DataReceiver implements DataReceiverIF {
     private final Array dataArray;
+    private final float[] storage;
     private final RangeIterator yRange;
     private final RangeIterator xRange;
     private final int horizSize;
+    private int[][] wanted;
 
     DataReceiver(int[] shape, RangeIterator yRange, RangeIterator xRange) {
       this.yRange = yRange;
@@ -356,9 +597,9 @@ public abstract class GribDataReader {
             Throwables.getStackTraceAsString(new Throwable()));
         throw new IllegalArgumentException("RequestTooLarge: Len greater that 100M ");
       }
-      float[] data = new float[(int) len];
-      Arrays.fill(data, Float.NaN); // prefill primitive array
-      dataArray = Array.factory(DataType.FLOAT, shape, data);
+      storage = new float[(int) len];
+      Arrays.fill(storage, Float.NaN); // prefill primitive array
+      dataArray = Array.factory(DataType.FLOAT, shape, storage);
     }
 
     @Override
@@ -374,11 +615,33 @@ public abstract class GribDataReader {
       }
     }
 
+    @Override
+    public synchronized int[][] getWantedPoints() {
+      if (wanted == null) {
+        int[] ys = new int[yRange.length()];
+        int count = 0;
+        for (int y : yRange) {
+          ys[count++] = y;
+        }
+        int[] xs = new int[xRange.length()];
+        count = 0;
+        for (int x : xRange) {
+          xs[count++] = x;
+        }
+        wanted = new int[][] {ys, xs};
+      }
+      return wanted;
+    }
+
+    @Override
+    public void addWantedData(float[] data, int resultIndex) {
+      System.arraycopy(data, 0, storage, resultIndex * horizSize, horizSize);
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
-      float[] data = (float[]) dataArray.get1DJavaArray(dataArray.getDataType());
-      Arrays.fill(data, 0.0f);
+      Arrays.fill(storage, 0.0f);
     }
 
     @Override
@@ -406,6 +669,16 @@ public abstract class GribDataReader {
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected float[] readDataWindow(RandomAccessFile rafData, GribReaderRecord dr, int[] ys, int[] xs)
+        throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      return Grib2Record.readDataWindow(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw,
+          ys, xs);
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
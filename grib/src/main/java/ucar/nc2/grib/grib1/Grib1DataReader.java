@@ -124,15 +124,34 @@ public class Grib1DataReader {
       }
       BitReader reader = new BitReader(raf, startPos + 11);
       values = new float[nPts];
-      for (int i = 0; i < nPts; i++) {
-        if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          if (!isConstant) {
-            values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
-          } else { // rdg - added this to handle a constant valued parameter
-            values[i] = ref;
+      if (!isConstant && info.numberOfBits <= Integer.SIZE) {
+        // unpack all the values at once
+        int npacked = 0;
+        for (int i = 0; i < nPts; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8))
+            npacked++;
+        }
+        int[] packed = new int[npacked];
+        reader.bits2UInt(info.numberOfBits, packed, 0, npacked);
+        int count = 0;
+        for (int i = 0; i < nPts; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+            values[i] = ref + scale * (packed[count++] & 0xffffffffL);
+          } else {
+            values[i] = staticMissingValue;
+          }
+        }
+      } else {
+        for (int i = 0; i < nPts; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+            if (!isConstant) {
+              values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+            } else { // rdg - added this to handle a constant valued parameter
+              values[i] = ref;
+            }
+          } else {
+            values[i] = staticMissingValue;
           }
-        } else {
-          values[i] = staticMissingValue;
         }
       }
       scanningModeCheck(values, scanMode, nxRaw);
@@ -148,8 +167,17 @@ public class Grib1DataReader {
           values = new float[nPts];
         }
         BitReader reader = new BitReader(raf, startPos + 11);
-        for (int i = 0; i < values.length; i++) {
-          values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+        if (info.numberOfBits <= Integer.SIZE) {
+          // unpack all the values at once
+          int[] packed = new int[values.length];
+          reader.bits2UInt(info.numberOfBits, packed, 0, values.length);
+          for (int i = 0; i < values.length; i++) {
+            values[i] = ref + scale * (packed[i] & 0xffffffffL);
+          }
+        } else {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+          }
         }
         scanningModeCheck(values, scanMode, nxRaw);
 
@@ -805,8 +833,12 @@ public class Grib1DataReader {
     // *** read int values *******************************************************
     BitReader reader = new BitReader(raf, startPos + 11);
     int[] ivals = new int[nPts];
-    for (int i = 0; i < nPts; i++) {
-      ivals[i] = (int) reader.bits2UInt(numbits);
+    if (numbits <= Integer.SIZE) {
+      reader.bits2UInt(numbits, ivals, 0, nPts);
+    } else {
+      for (int i = 0; i < nPts; i++) {
+        ivals[i] = (int) reader.bits2UInt(numbits);
+      }
     }
 
     return ivals;
@@ -23,7 +23,7 @@ import java.util.Formatter;
 public class Grib1Record {
 
   private final Grib1SectionIndicator is;
-  private final Grib1SectionGridDefinition gdss;
+  private Grib1SectionGridDefinition gdss;
   private final Grib1SectionProductDefinition pdss;
   private final Grib1SectionBitMap bitmap;
   private final Grib1SectionBinaryData dataSection;
@@ -117,6 +117,11 @@ public class Grib1Record {
     this.file = file;
   }
 
+  // used by Grib1SectionCache, the section must be equal to the one it replaces
+  void setSharedGDSsection(Grib1SectionGridDefinition gdss) {
+    this.gdss = gdss;
+  }
+
   private Grib1ParamTime ptime;
 
   public Grib1ParamTime getParamTime(Grib1Customizer cust) {
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib1;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares equal grid definition sections between Grib1Records. Each file has its own copies, and records on a
+ * predefined grid each have their own. When many records are kept in memory, as when building a collection, this
+ * keeps one copy of each distinct grid, along with its parsed Grib1Gds.
+ * Not thread safe.
+ */
+public class Grib1SectionCache {
+  private final Map<ByteBuffer, Grib1SectionGridDefinition> gdsMap = new HashMap<>();
+  private final Map<Long, Grib1SectionGridDefinition> predefinedMap = new HashMap<>();
+
+  /** Replace the grid definition section of gr with the shared one, if an equal one has been seen before. */
+  public void share(Grib1Record gr) {
+    Grib1SectionGridDefinition gdss = gr.getGDSsection();
+    Grib1SectionGridDefinition shared;
+    if (gdss.getRawBytes() != null) {
+      shared = gdsMap.computeIfAbsent(ByteBuffer.wrap(gdss.getRawBytes()), k -> gdss);
+    } else {
+      Grib1SectionProductDefinition pds = gr.getPDSsection();
+      long key = ((long) pds.getCenter() << 32) | pds.getGridDefinition();
+      shared = predefinedMap.computeIfAbsent(key, k -> gdss);
+    }
+    if (shared != gdss) {
+      gr.setSharedGDSsection(shared);
+    }
+  }
+}
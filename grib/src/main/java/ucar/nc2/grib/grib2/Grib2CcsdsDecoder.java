@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib2;
+
+import com.google.common.base.Preconditions;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Decoder for CCSDS 121.0-B lossless compression (Adaptive Entropy Coding, as in libaec), used by GRIB2 data
+ * representation template 5.42. Decodes in a single pass straight into the output array, keeping only one block of
+ * intermediate values.
+ *
+ * @see "https://public.ccsds.org/Pubs/121x0b3.pdf"
+ * @see "https://gitlab.dkrz.de/k202009/libaec"
+ */
+public class Grib2CcsdsDecoder {
+  // CCSDS compression options mask, octet 22 of template 5.42. Only these affect the encoded stream.
+  public static final int AEC_DATA_SIGNED = 1;
+  public static final int AEC_DATA_PREPROCESS = 8;
+  public static final int AEC_RESTRICTED = 16;
+  public static final int AEC_PAD_RSI = 32;
+
+  private static final int ROS = 5; // zero block: remainder of segment
+  private static final int SE_TABLE_SIZE = 90;
+  private static final int[] seTable = new int[2 * (SE_TABLE_SIZE + 1)];
+
+  static {
+    // second extension: for each m, the sum of the pair and the first m with that sum
+    int k = 0;
+    for (int i = 0; i < 13; i++) {
+      int ms = k;
+      for (int j = 0; j <= i; j++) {
+        seTable[2 * k] = i;
+        seTable[2 * k + 1] = ms;
+        k++;
+      }
+    }
+  }
+
+  private final int bitsPerSample;
+  private final int blockSize;
+  private final int rsi;
+  private final boolean signed;
+  private final boolean preprocess;
+  private final boolean padRsi;
+  private final int idLen;
+  private final long xmax;
+  private final long[] block; // the fundamental sequences of a split block
+
+  // input
+  private byte[] in;
+  private int inPos;
+  private int inEnd;
+  private long acc; // unread bits are the low accBits
+  private int accBits;
+
+  // output
+  private int[] out;
+  private int nout;
+  private int count;
+  private long last; // last value, for preprocessing
+
+  /**
+   * Constructor.
+   *
+   * @param bitsPerSample number of bits in each value, 1 to 32.
+   * @param blockSize number of samples in each block.
+   * @param rsi reference sample interval, the number of blocks between references.
+   * @param flags CCSDS compression options mask.
+   */
+  public Grib2CcsdsDecoder(int bitsPerSample, int blockSize, int rsi, int flags) {
+    Preconditions.checkArgument(bitsPerSample > 0 && bitsPerSample <= 32, "bitsPerSample must be 1 to 32");
+    Preconditions.checkArgument(blockSize > 1 && blockSize % 2 == 0, "blockSize must be even");
+    Preconditions.checkArgument(rsi > 0, "rsi must be > 0");
+    this.bitsPerSample = bitsPerSample;
+    this.blockSize = blockSize;
+    this.rsi = rsi;
+    this.signed = (flags & AEC_DATA_SIGNED) != 0;
+    this.preprocess = (flags & AEC_DATA_PREPROCESS) != 0;
+    this.padRsi = (flags & AEC_PAD_RSI) != 0;
+
+    if (bitsPerSample > 16) {
+      idLen = 5;
+    } else if (bitsPerSample > 8) {
+      idLen = 4;
+    } else if ((flags & AEC_RESTRICTED) != 0) {
+      Preconditions.checkArgument(bitsPerSample <= 4, "restricted coding needs bitsPerSample <= 4");
+      idLen = (bitsPerSample <= 2) ? 1 : 2;
+    } else {
+      idLen = 3;
+    }
+    this.xmax = signed ? (1L << (bitsPerSample - 1)) - 1 : (1L << bitsPerSample) - 1;
+    this.block = new long[blockSize];
+  }
+
+  /**
+   * Decode n values.
+   *
+   * @param input the encoded stream.
+   * @param offset the stream starts here.
+   * @param length length of the stream.
+   * @param result put the values here; when unsigned, values that don't fit in 31 bits are negative.
+   * @param n number of values to decode.
+   * @throws IOException if the stream is too short or not valid.
+   */
+  public void decode(byte[] input, int offset, int length, int[] result, int n) throws IOException {
+    Preconditions.checkPositionIndexes(offset, offset + length, input.length);
+    Preconditions.checkPositionIndexes(0, n, result.length);
+    this.in = input;
+    this.inPos = offset;
+    this.inEnd = offset + length;
+    this.acc = 0;
+    this.accBits = 0;
+    this.out = result;
+    this.nout = n;
+    this.count = 0;
+
+    int uncompressedId = (1 << idLen) - 1;
+    int blocksInRsi = 0;
+    while (count < nout) {
+      boolean ref = preprocess && blocksInRsi == 0;
+      int id = (int) bits(idLen);
+      if (id == 0) {
+        // low entropy
+        boolean secondExtension = bits(1) == 1;
+        if (ref) {
+          putReference(bits(bitsPerSample));
+        }
+        if (secondExtension) {
+          decodeSecondExtension(ref);
+          blocksInRsi++;
+        } else {
+          blocksInRsi += decodeZeroBlocks(ref, blocksInRsi);
+        }
+
+      } else if (id == uncompressedId) {
+        int i = 0;
+        if (ref) {
+          putReference(bits(bitsPerSample));
+          i++;
+        }
+        for (; i < blockSize; i++) {
+          put(bits(bitsPerSample));
+        }
+        blocksInRsi++;
+
+      } else {
+        // sample splitting: all the fundamental sequences, then k low bits for each
+        int k = id - 1;
+        int i = 0;
+        if (ref) {
+          putReference(bits(bitsPerSample));
+          i++;
+        }
+        for (int j = i; j < blockSize; j++) {
+          block[j] = fs();
+        }
+        for (int j = i; j < blockSize; j++) {
+          put((block[j] << k) | bits(k));
+        }
+        blocksInRsi++;
+      }
+
+      if (blocksInRsi >= rsi) {
+        blocksInRsi = 0;
+        if (padRsi) {
+          accBits -= accBits % 8; // skip to the next byte
+        }
+      }
+    }
+  }
+
+  private void decodeSecondExtension(boolean ref) throws IOException {
+    int i = ref ? 1 : 0;
+    while (i < blockSize) {
+      int m = fs();
+      if (m > SE_TABLE_SIZE) {
+        throw new IOException("CCSDS second extension value out of range: " + m);
+      }
+      int d1 = m - seTable[2 * m + 1];
+      if ((i & 1) == 0) {
+        put(seTable[2 * m] - d1);
+        i++;
+      }
+      put(d1);
+      i++;
+    }
+  }
+
+  // return number of blocks
+  private int decodeZeroBlocks(boolean ref, int blocksInRsi) throws IOException {
+    int zeroBlocks = fs() + 1;
+    if (zeroBlocks == ROS) {
+      zeroBlocks = Math.min(rsi - blocksInRsi, 64 - (blocksInRsi % 64));
+    } else if (zeroBlocks > ROS) {
+      zeroBlocks--;
+    }
+    int n = zeroBlocks * blockSize - (ref ? 1 : 0);
+    for (int i = 0; i < n && count < nout; i++) {
+      put(0);
+    }
+    return zeroBlocks;
+  }
+
+  private void putReference(long value) {
+    if (signed) {
+      long m = 1L << (bitsPerSample - 1);
+      value = (value ^ m) - m;
+    }
+    last = value;
+    store(value);
+  }
+
+  // undo the preprocessing: d is the mapped difference from the last value
+  private void put(long d) {
+    if (!preprocess) {
+      if (signed) {
+        long m = 1L << (bitsPerSample - 1);
+        d = (d ^ m) - m;
+      }
+      store(d);
+      return;
+    }
+
+    long half = (d >> 1) + (d & 1);
+    long delta = ((d & 1) == 0) ? (d >> 1) : -(d >> 1) - 1;
+    if (signed) {
+      if (last < 0) {
+        last = (half <= xmax + last + 1) ? last + delta : d - xmax - 1;
+      } else {
+        last = (half <= xmax - last) ? last + delta : xmax - d;
+      }
+    } else {
+      if (last <= xmax / 2) {
+        last = (half <= last) ? last + delta : d;
+      } else {
+        last = (half <= xmax - last) ? last + delta : xmax - d;
+      }
+    }
+    store(last);
+  }
+
+  private void store(long value) {
+    if (count < nout) {
+      out[count] = (int) value;
+    }
+    count++;
+  }
+
+  // the next n <= 32 bits
+  private long bits(int n) throws IOException {
+    if (accBits < n) {
+      fill();
+      if (accBits < n) {
+        throw new EOFException("CCSDS stream ended after " + count + " values");
+      }
+    }
+    accBits -= n;
+    return (acc >>> accBits) & ((1L << n) - 1);
+  }
+
+  // fundamental sequence: the number of 0 bits before the next 1 bit
+  private int fs() throws IOException {
+    int result = 0;
+    while (true) {
+      if (accBits == 0) {
+        fill();
+        if (accBits == 0) {
+          throw new EOFException("CCSDS stream ended after " + count + " values");
+        }
+      }
+      long unread = acc & ((1L << accBits) - 1);
+      if (unread == 0) {
+        result += accBits;
+        accBits = 0;
+      } else {
+        int zeros = Long.numberOfLeadingZeros(unread) - (Long.SIZE - accBits);
+        result += zeros;
+        accBits -= zeros + 1;
+        return result;
+      }
+    }
+  }
+
+  // keeps accBits < 64, so the masks above are valid
+  private void fill() {
+    while (accBits <= Long.SIZE - 9 && inPos < inEnd) {
+      acc = (acc << 8) | (in[inPos++] & 0xff);
+      accBits += 8;
+    }
+  }
+
+}
@@ -73,6 +73,7 @@ public class Grib2DataReader {
    * 4: Grid point data - IEEE floating point data
    * 40: Grid point data - JPEG 2000 code stream format
    * 41: Grid point data - Portable Network Graphics (PNG)
+   * 42: Grid point and spectral data - CCSDS recommended lossless compression
    * 50: Spectral data - simple packing
    * 51: Spherical harmonics data - complex packing
    * 61: Grid point data - simple packing with logarithm pre-processing
@@ -81,16 +82,7 @@ public class Grib2DataReader {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
-    this.bitmap = bitmapSection.getBitmap(raf);
-    this.bitmapIndicator = bitmapSection.getBitMapIndicator();
-
-    if (bitmap != null) { // is bitmap ok ?
-      if (bitmap.length * 8 < totalNPoints) { // gdsNumberPoints == nx * ny ??
-        logger.warn("Bitmap section length = {} != grid length {} ({},{})", bitmap.length, totalNPoints, nx,
-            totalNPoints / nx);
-        throw new IllegalStateException("Bitmap section length!= grid length");
-      }
-    }
+    readBitmap(raf, bitmapSection);
 
     raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
 
@@ -111,6 +103,9 @@ public class Grib2DataReader {
       case 41:
         data = getData41(raf, (Grib2Drs.Type0) gdrs);
         break;
+      case 42:
+        data = getData42(raf, (Grib2Drs.Type42) gdrs);
+        break;
       case 50002:
         data = getData50002(raf, (Grib2Drs.Type50002) gdrs);
         break;
@@ -125,8 +120,116 @@ public class Grib2DataReader {
     return data;
   }
 
+  /**
+   * Read only the wanted points of the grid, for data representations where the position of any point in the data
+   * section can be computed, currently only simple packing (DRS template 0). This avoids unpacking the whole grid when
+   * a small window or a single point is wanted.
+   *
+   * @param ys wanted row indices, after the scan mode has been applied.
+   * @param xs wanted column indices, after the scan mode has been applied.
+   * @return data for the wanted points, in row major order (ys.length by xs.length), or null if not possible for this
+   *         data representation, in which case use getData().
+   */
   @Nullable
-  int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
+  public float[] getDataWindow(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs, int[] ys,
+      int[] xs) throws IOException {
+    if (dataTemplate != 0) {
+      return null;
+    }
+    Grib2Drs.Type0 drs0 = (Grib2Drs.Type0) gdrs;
+    int nb = drs0.numberOfBits;
+    if ((long) totalNPoints * nb > Integer.MAX_VALUE) { // BitReader uses an int bit offset
+      return null;
+    }
+    readBitmap(raf, bitmapSection);
+
+    float DD = (float) java.lang.Math.pow((double) 10, (double) drs0.decimalScaleFactor);
+    float R = drs0.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) drs0.binaryScaleFactor);
+
+    BitReader reader = new BitReader(raf, startPos + 5);
+    float[] result = new float[ys.length * xs.length];
+    int[] cols = new int[xs.length];
+    int count = 0;
+    int counted = 0; // bitmap bits have been counted up to here
+    int nset = 0; // number of bitmap bits set before counted
+    for (int y : ys) {
+      // the same transformation as scanningModeCheck(), from wanted column to the column in the data section
+      boolean flip = (scanMode != 0) && (scanMode != 64) && (!GribUtils.scanModeXisPositive(scanMode)
+          || (!GribUtils.scanModeSameDirection(scanMode) && y % 2 != 0));
+      int first = Integer.MAX_VALUE;
+      int last = -1;
+      for (int i = 0; i < xs.length; i++) {
+        cols[i] = flip ? nx - xs[i] - 1 : xs[i];
+        first = Math.min(first, cols[i]);
+        last = Math.max(last, cols[i]);
+      }
+
+      // unpack the row from the first to the last wanted column
+      float[] row = new float[last - first + 1];
+      int start = y * nx + first;
+      if (bitmap == null) {
+        reader.setBitOffset(start * nb);
+        for (int i = 0; i < row.length; i++) {
+          row[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        }
+      } else {
+        if (start < counted) {
+          counted = 0;
+          nset = 0;
+        }
+        nset += countBits(counted, start);
+        counted = start;
+        reader.setBitOffset(nset * nb);
+        for (int i = 0; i < row.length; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[(start + i) / 8], (start + i) % 8)) {
+            row[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+          } else {
+            row[i] = staticMissingValue;
+          }
+        }
+      }
+
+      for (int col : cols) {
+        result[count++] = row[col - first];
+      }
+    }
+    return result;
+  }
+
+  // the longest group, used to size the buffer that groups are unpacked into
+  private static int maxGroupLength(int[] groupLengths) {
+    int result = 0;
+    for (int len : groupLengths) {
+      result = Math.max(result, len);
+    }
+    return result;
+  }
+
+  // number of bitmap bits set, from bit start (inclusive) to bit end (exclusive)
+  private int countBits(int start, int end) {
+    int result = 0;
+    int bit = start;
+    while (bit < end && bit % 8 != 0) {
+      if (GribNumbers.testBitIsSet(bitmap[bit / 8], bit % 8)) {
+        result++;
+      }
+      bit++;
+    }
+    while (bit + 8 <= end) {
+      result += Integer.bitCount(bitmap[bit / 8] & 0xff);
+      bit += 8;
+    }
+    while (bit < end) {
+      if (GribNumbers.testBitIsSet(bitmap[bit / 8], bit % 8)) {
+        result++;
+      }
+      bit++;
+    }
+    return result;
+  }
+
+  private void readBitmap(RandomAccessFile raf, Grib2SectionBitMap bitmapSection) throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
@@ -137,6 +240,11 @@ public class Grib2DataReader {
         throw new IllegalStateException("Bitmap section length!= grid length");
       }
     }
+  }
+
+  @Nullable
+  int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
+    readBitmap(raf, bitmapSection);
 
     raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
 
@@ -229,18 +337,40 @@ public class Grib2DataReader {
     // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
 
     BitReader reader = new BitReader(raf, startPos + 5);
+    if (nb > Integer.SIZE) {
+      if (bitmap == null) {
+        for (int i = 0; i < totalNPoints; i++) {
+          // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
+          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        }
+      } else {
+        for (int i = 0; i < totalNPoints; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+            data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+          } else {
+            data[i] = staticMissingValue;
+            // data[i] = R / DD;
+          }
+        }
+      }
+      return data;
+    }
+
+    // unpack all the values at once
+    int npacked = (bitmap == null) ? totalNPoints : countBits(0, totalNPoints);
+    int[] X2 = new int[npacked];
+    reader.bits2UInt(nb, X2, 0, npacked);
     if (bitmap == null) {
       for (int i = 0; i < totalNPoints; i++) {
-        // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
-        data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        data[i] = (R + (X2[i] & 0xffffffffL) * EE) / DD;
       }
     } else {
+      int count = 0;
       for (int i = 0; i < totalNPoints; i++) {
         if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+          data[i] = (R + (X2[count++] & 0xffffffffL) * EE) / DD;
         } else {
           data[i] = staticMissingValue;
-          // data[i] = R / DD;
         }
       }
     }
@@ -295,9 +425,7 @@ public class Grib2DataReader {
     int[] X1 = new int[NG];
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.bits2UInt(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -305,9 +433,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.bits2UInt(nb, NB, 0, NG);
     }
 
     // [yy +1 ]-zz Get the scaled group lengths using formula
@@ -320,8 +446,9 @@ public class Grib2DataReader {
     nb = gdrs.bitsScaledGroupLength;
 
     reader.incrByte();
+    reader.bits2UInt(nb, L, 0, NG);
     for (int i = 0; i < NG; i++) {
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[i] = ref + L[i] * len_inc;
     }
     L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
 
@@ -339,7 +466,11 @@ public class Grib2DataReader {
     // D = THE DECIMAL SCALE FACTOR
     int count = 0;
     reader.incrByte();
+    int[] X2 = new int[maxGroupLength(L)]; // each group is unpacked into X2
     for (int i = 0; i < NG; i++) {
+      if (NB[i] != 0) {
+        reader.bits2UInt(NB[i], X2, 0, Math.max(L[i], 0));
+      }
       for (int j = 0; j < L[i]; j++) {
         if (NB[i] == 0) {
           if (mvm == 0) { // X2 = 0
@@ -348,15 +479,14 @@ public class Grib2DataReader {
             data[count++] = mv;
           }
         } else {
-          int X2 = (int) reader.bits2UInt(NB[i]);
           if (mvm == 0) {
-            data[count++] = (R + (X1[i] + X2) * EE) / DD;
+            data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
           } else { // if (mvm == 1) || (mvm == 2 )
             // X2 is also set to missing value if all bits set to 1's
-            if (X2 == bitsmv1[NB[i]]) {
+            if (X2[j] == bitsmv1[NB[i]]) {
               data[count++] = mv;
             } else {
-              data[count++] = (R + (X1[i] + X2) * EE) / DD;
+              data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
             }
           }
         }
@@ -520,9 +650,7 @@ public class Grib2DataReader {
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.bits2UInt(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -531,9 +659,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.bits2UInt(nb, NB, 0, NG);
     }
 
     int referenceGroupWidths = gdrs.referenceGroupWidths;
@@ -552,9 +678,7 @@ public class Grib2DataReader {
 
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        L[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.bits2UInt(nb, L, 0, NG);
     }
 
     int totalL = 0;
@@ -606,11 +730,13 @@ public class Grib2DataReader {
     reader.incrByte();
     int dataSize = 0;
     boolean[] dataBitMap = null;
+    int[] X2 = new int[maxGroupLength(L)]; // each group is unpacked into X2
     if (mvm == 0) {
       for (int i = 0; i < NG; i++) {
         if (NB[i] != 0) {
+          reader.bits2UInt(NB[i], X2, 0, Math.max(L[i], 0));
           for (int j = 0; j < L[i]; j++) {
-            data[count++] = (int) reader.bits2UInt(NB[i]) + X1[i];
+            data[count++] = X2[j] + X1[i];
           }
         } else {
           for (int j = 0; j < L[i]; j++) {
@@ -627,8 +753,9 @@ public class Grib2DataReader {
         if (NB[i] != 0) {
           int msng1 = bitsmv1[NB[i]];
           int msng2 = msng1 - 1;
+          reader.bits2UInt(NB[i], X2, 0, Math.max(L[i], 0));
           for (int j = 0; j < L[i]; j++) {
-            data[count] = (int) reader.bits2UInt(NB[i]);
+            data[count] = X2[j];
             if (data[count] == msng1 || mvm == 2 && data[count] == msng2) {
               dataBitMap[count] = false;
             } else {
@@ -921,6 +1048,42 @@ public class Grib2DataReader {
     return data;
   }
 
+  /*
+   * Data template 7.42 – Grid point and spectral data – CCSDS recommended lossless compression
+   * Octet No. Contents
+   * 6-nn CCSDS encoded data (Adaptive Entropy Coding, CCSDS 121.0-B)
+   * The decoded values are unpacked as for simple packing.
+   */
+  private float[] getData42(RandomAccessFile raf, Grib2Drs.Type42 gdrs) throws IOException {
+    int nb = gdrs.numberOfBits;
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+
+    int npacked = (bitmap == null) ? totalNPoints : countBits(0, totalNPoints);
+    int[] X = new int[npacked]; // constant field when nb == 0
+    if (nb != 0) {
+      byte[] buf = new byte[dataLength - 5];
+      raf.readFully(buf);
+      Grib2CcsdsDecoder decoder = new Grib2CcsdsDecoder(nb, gdrs.blockSize, gdrs.referenceSampleInterval,
+          gdrs.compressionOptionsMask);
+      decoder.decode(buf, 0, buf.length, X, npacked);
+    }
+    boolean signed = (gdrs.compressionOptionsMask & Grib2CcsdsDecoder.AEC_DATA_SIGNED) != 0;
+    long mask = signed ? -1L : 0xffffffffL;
+
+    float[] data = new float[totalNPoints];
+    int count = 0;
+    for (int i = 0; i < totalNPoints; i++) {
+      if (bitmap == null || GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+        data[i] = (R + (X[count++] & mask) * EE) / DD;
+      } else {
+        data[i] = staticMissingValue;
+      }
+    }
+    return data;
+  }
+
   // by jkaehler@meteomatics.com
   // ported from
   // https://github.com/erdc-cm/grib_api/blob/master/src/grib_accessor_class_data_g1second_order_general_extended_packing.c
@@ -930,21 +1093,15 @@ public class Grib2DataReader {
 
     reader = new BitReader(raf, startPos + 5);
     int[] groupWidth = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      groupWidth[i] = (int) reader.bits2UInt(gdrs.widthOfWidth);
-    }
+    reader.bits2UInt(gdrs.widthOfWidth, groupWidth, 0, gdrs.p1);
 
     reader = new BitReader(raf, raf.getFilePointer());
     int[] groupLength = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      groupLength[i] = (int) reader.bits2UInt(gdrs.widthOfLength);
-    }
+    reader.bits2UInt(gdrs.widthOfLength, groupLength, 0, gdrs.p1);
 
     reader = new BitReader(raf, raf.getFilePointer());
     int[] firstOrderValues = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      firstOrderValues[i] = (int) reader.bits2UInt(gdrs.widthOfFirstOrderValues);
-    }
+    reader.bits2UInt(gdrs.widthOfFirstOrderValues, firstOrderValues, 0, gdrs.p1);
 
     int bias = 0;
     if (gdrs.orderOfSPD > 0) {
@@ -957,8 +1114,8 @@ public class Grib2DataReader {
     for (int i = 0; i < gdrs.p1; i++) {
       if (groupWidth[i] > 0) {
 
+        reader.bits2UInt(groupWidth[i], data, cnt, Math.max(groupLength[i], 0));
         for (int j = 0; j < groupLength[i]; j++) {
-          data[cnt] = (int) reader.bits2UInt(groupWidth[i]);
           data[cnt] += firstOrderValues[i];
           cnt++;
         }
@@ -31,6 +31,8 @@ public abstract class Grib2Drs {
         return new Type3(raf);
       case 40:
         return new Type40(raf);
+      case 42:
+        return new Type42(raf);
       case 50002: // ECMWF's second order packing
         return new Type50002(raf);
       default:
@@ -441,6 +443,67 @@ public abstract class Grib2Drs {
     }
   }
 
+  /*
+   * Data representation template 5.42 – Grid point and spectral data – CCSDS recommended lossless compression
+   * Octet No. Contents
+   * 12–21 Same as simple packing, template 5.0
+   * 22 CCSDS compression options mask (see Grib2CcsdsDecoder)
+   * 23 Block size
+   * 24–25 Reference sample interval
+   */
+  public static class Type42 extends Type0 {
+
+    int compressionOptionsMask, blockSize, referenceSampleInterval;
+
+    Type42(RandomAccessFile raf) throws IOException {
+      super(raf);
+      this.compressionOptionsMask = raf.read();
+      this.blockSize = raf.read();
+      this.referenceSampleInterval = GribNumbers.uint2(raf);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("referenceValue", referenceValue)
+          .add("binaryScaleFactor", binaryScaleFactor).add("decimalScaleFactor", decimalScaleFactor)
+          .add("numberOfBits", numberOfBits).add("originalType", originalType)
+          .add("compressionOptionsMask", compressionOptionsMask).add("blockSize", blockSize)
+          .add("referenceSampleInterval", referenceSampleInterval).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      if (!super.equals(o)) {
+        return false;
+      }
+
+      Type42 type42 = (Type42) o;
+
+      if (compressionOptionsMask != type42.compressionOptionsMask) {
+        return false;
+      }
+      if (blockSize != type42.blockSize) {
+        return false;
+      }
+      return referenceSampleInterval == type42.referenceSampleInterval;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = super.hashCode();
+      result = 31 * result + compressionOptionsMask;
+      result = 31 * result + blockSize;
+      result = 31 * result + referenceSampleInterval;
+      return result;
+    }
+  }
+
   // pull request #52 "lost-carrier" jkaehler@meteomatics.com
   public static class Type50002 extends Grib2Drs {
 
@@ -36,6 +36,11 @@ import java.io.ByteArrayInputStream;
 public class Grib2JpegDecoder {
   private static final Logger logger = LoggerFactory.getLogger(Grib2JpegDecoder.class);
 
+  /**
+   * The default parameter list (with modules arguments), the same for every decoder.
+   */
+  private static final ParameterList defaultParameters = makeDefaultParameters();
+
   private boolean debug;
   private final int rate;
 
@@ -82,21 +87,8 @@ public class Grib2JpegDecoder {
     argv[4] = "-debug";
     argv[5] = "on";
 
-    // Initialize default parameters
-    // System.err.println("calling Grib2JpegDecoder with argv argument");
-    /*
-     * The default parameter list (with modules arguments)
-     */
-    ParameterList defpl = new ParameterList();
-    String[][] param = Grib2JpegDecoder.getAllParameters();
-
-    for (int i = param.length - 1; i >= 0; i--) {
-      if (param[i][3] != null)
-        defpl.put(param[i][0], param[i][3]);
-    }
-
     // Create parameter list using defaults
-    pl = new ParameterList(defpl);
+    pl = new ParameterList(defaultParameters);
 
     // Parse arguments from argv
     try {
@@ -106,6 +98,17 @@ public class Grib2JpegDecoder {
     }
   } // end Grib2JpegDecoder constructor
 
+  private static ParameterList makeDefaultParameters() {
+    ParameterList defpl = new ParameterList();
+    String[][] param = Grib2JpegDecoder.getAllParameters();
+
+    for (int i = param.length - 1; i >= 0; i--) {
+      if (param[i][3] != null)
+        defpl.put(param[i][0], param[i][3]);
+    }
+    return defpl;
+  }
+
   /**
    * Returns the exit code of the class. This is only initialized after the
    * constructor and when the run method returns.
@@ -25,7 +25,7 @@ public class Grib2Record {
 
   //////////////////////////////////////////////////////////////
   private final Grib2SectionIndicator is;
-  private final Grib2SectionIdentification id;
+  private Grib2SectionIdentification id;
   private Grib2SectionLocalUse lus; // local use section
   private Grib2SectionGridDefinition gdss;
   private Grib2SectionProductDefinition pdss;
@@ -193,6 +193,16 @@ public class Grib2Record {
     this.dataSection = dataSection;
   }
 
+  // used by Grib2SectionCache, the sections must be equal to the ones they replace
+  void setSharedSections(Grib2SectionIdentification id, @Nullable Grib2SectionLocalUse lus,
+      Grib2SectionGridDefinition gdss, Grib2SectionProductDefinition pdss, @Nullable Grib2Pds pds) {
+    this.id = id;
+    this.lus = lus;
+    this.gdss = gdss;
+    this.pdss = pdss;
+    this.pds2 = pds;
+  }
+
   public int getFile() {
     return file;
   }
@@ -328,6 +338,42 @@ public class Grib2Record {
     return data;
   }
 
+  /**
+   * Read only the wanted points of a regular grid, without unpacking the whole grid, when the data representation
+   * allows it.
+   *
+   * @param raf from this RandomAccessFile
+   * @param drsPos Grib2SectionDataRepresentation starts here
+   * @param bmsPos if non-zero, use the bms that starts here
+   * @param gdsNumberPoints gdss.getNumberPoints()
+   * @param scanMode gds.scanMode
+   * @param nx gds.nx
+   * @param ys wanted rows
+   * @param xs wanted columns
+   * @return data for the wanted points as float[ys.length * xs.length], or null if not supported for this record.
+   * @throws IOException on read error
+   */
+  @Nullable
+  public static float[] readDataWindow(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints,
+      int scanMode, int nx, int[] ys, int[] xs) throws IOException {
+    raf.seek(drsPos);
+    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+    if (drs.getDataTemplate() != 0) {
+      return null;
+    }
+    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+    Grib2SectionData dataSection = new Grib2SectionData(raf);
+
+    if (bmsPos > 0)
+      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+
+    Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(), scanMode,
+        nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+    Grib2Drs gdrs = drs.getDrs(raf);
+    return reader.getDataWindow(raf, bms, gdrs, ys, xs);
+  }
+
   public void check(RandomAccessFile raf, Formatter f) throws IOException {
     long messLen = is.getMessageLength();
     long startPos = is.getStartPos();
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 1998-2018 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.grib2;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares equal sections between Grib2Records. Records keep their own copy of the identification, local use, product
+ * definition and (per file) grid definition sections, even though most records of a collection have the same ones.
+ * When many records are kept in memory, as when building a collection, this keeps one copy of each distinct section,
+ * along with its parsed Grib2Pds.
+ * Not thread safe.
+ */
+public class Grib2SectionCache {
+  private final Map<Grib2SectionIdentification, Grib2SectionIdentification> idsMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib2SectionLocalUse> lusMap = new HashMap<>();
+  private final Map<ByteBuffer, Grib2SectionGridDefinition> gdsMap = new HashMap<>();
+  private final Map<ByteBuffer, SharedPds> pdsMap = new HashMap<>();
+
+  private static class SharedPds {
+    final Grib2SectionProductDefinition pdss;
+    @Nullable
+    final Grib2Pds pds;
+
+    SharedPds(Grib2SectionProductDefinition pdss) {
+      this.pdss = pdss;
+      this.pds = pdss.getPDS();
+    }
+  }
+
+  /** Replace the sections of gr with the shared ones, if equal sections have been seen before. */
+  public void share(Grib2Record gr) {
+    Grib2SectionIdentification ids = idsMap.computeIfAbsent(gr.getId(), k -> k);
+
+    Grib2SectionLocalUse lus = gr.getLocalUseSection();
+    if (lus != null && lus.getRawBytes() != null) {
+      lus = lusMap.computeIfAbsent(ByteBuffer.wrap(lus.getRawBytes()), k -> gr.getLocalUseSection());
+    }
+
+    Grib2SectionGridDefinition gdss = gr.getGDSsection();
+    gdss = gdsMap.computeIfAbsent(ByteBuffer.wrap(gdss.getRawBytes()), k -> gr.getGDSsection());
+
+    Grib2SectionProductDefinition pdss = gr.getPDSsection();
+    SharedPds shared = pdsMap.computeIfAbsent(ByteBuffer.wrap(pdss.getRawBytes()), k -> new SharedPds(pdss));
+
+    gr.setSharedSections(ids, lus, gdss, shared.pdss, shared.pds);
+  }
+
+  /** The number of distinct product definition sections seen. */
+  public int getNumPds() {
+    return pdsMap.size();
+  }
+}
@@ -10,6 +10,7 @@ import ucar.nc2.time.CalendarDate;
 import ucar.unidata.io.RandomAccessFile;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
+import java.util.Objects;
 
 /**
  * The Identification section 1 for GRIB-2 files
@@ -204,4 +205,24 @@ public class Grib2SectionIdentification {
     return "id {" + "center_id=" + center_id + ", subcenter_id=" + subcenter_id + ", master_table_version="
         + master_table_version + ", local_table_version=" + local_table_version + '}';
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    Grib2SectionIdentification that = (Grib2SectionIdentification) o;
+    return center_id == that.center_id && subcenter_id == that.subcenter_id
+        && master_table_version == that.master_table_version && local_table_version == that.local_table_version
+        && significanceOfRT == that.significanceOfRT && year == that.year && month == that.month && day == that.day
+        && hour == that.hour && minute == that.minute && second == that.second
+        && productionStatus == that.productionStatus && processedDataType == that.processedDataType;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(center_id, subcenter_id, master_table_version, local_table_version, significanceOfRT, year,
+        month, day, hour, minute, second, productionStatus, processedDataType);
+  }
 }
@@ -8,9 +8,13 @@ package ucar.nc2.grib;
 /**
  * from https://github.com/lost-carrier 6/12/2014
  */
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -50,4 +54,90 @@ public class TestQuasiRegular {
     assertEquals(13.5, out[7], 0.0);
   }
 
+  // a reduced gaussian layout: few points near the poles, nx at the equator
+  private static int[] reducedGaussian(int ny, int nx) {
+    int[] linePts = new int[ny];
+    for (int j = 0; j < ny; j++) {
+      double lat = Math.PI * (j + 0.5) / ny - Math.PI / 2;
+      linePts[j] = Math.max(4, (int) Math.round(nx * Math.cos(lat)));
+    }
+    return linePts;
+  }
+
+  private static float[] randomData(int[] linePts) {
+    Random random = new Random(42);
+    float[] quasi = new float[sum(linePts)];
+    for (int i = 0; i < quasi.length; i++) {
+      quasi[i] = 250 + 50 * random.nextFloat();
+    }
+    quasi[7] = Float.NaN; // missing value
+    return quasi;
+  }
+
+  private static int sum(int[] linePts) {
+    int total = 0;
+    for (int n : linePts)
+      total += n;
+    return total;
+  }
+
+  // the row by row conversion, computing the spline for each row of each record
+  private static float[] expandRowByRow(float[] quasi, int[] linePts, int nx, GribData.InterpolationMethod method) {
+    int ny = linePts.length;
+    float[] data = new float[nx * ny];
+    int inputIdx = 0;
+    int outputIdx = 0;
+    for (int npoints : linePts) {
+      if (npoints == nx) {
+        System.arraycopy(quasi, inputIdx, data, outputIdx, nx);
+        outputIdx += nx;
+      } else if (method == GribData.InterpolationMethod.cubic) {
+        double[] d2 = new double[npoints];
+        QuasiRegular.secondDerivative(quasi, inputIdx, npoints, x1d, xnd, d2);
+        for (int i = 0; i < nx; i++) {
+          double x = (float) i / ((float) nx) * ((float) npoints);
+          QuasiRegular.cubicSpline(quasi, inputIdx, d2, x, data, outputIdx++);
+        }
+      } else {
+        for (int i = 0; i < nx; i++) {
+          double x = (float) i / ((float) nx) * ((float) npoints);
+          QuasiRegular.linear(quasi, inputIdx, x, data, outputIdx++, npoints);
+        }
+      }
+      inputIdx += npoints;
+    }
+    return data;
+  }
+
+  @Test
+  public void testConvertQuasiGrid() {
+    int[] linePts = reducedGaussian(160, 320);
+    float[] quasi = randomData(linePts);
+    for (GribData.InterpolationMethod method : new GribData.InterpolationMethod[] {GribData.InterpolationMethod.cubic,
+        GribData.InterpolationMethod.linear}) {
+      float[] expected = expandRowByRow(quasi, linePts, 320, method);
+      assertArrayEquals(expected, QuasiRegular.convertQuasiGrid(quasi, linePts, -1, linePts.length, method), 0.0f);
+      // again, with the cached plan
+      assertArrayEquals(expected, QuasiRegular.convertQuasiGrid(quasi, linePts, -1, linePts.length, method), 0.0f);
+    }
+  }
+
+  @Test
+  public void testConvertQuasiGridConcurrent() {
+    int[] linePts = reducedGaussian(640, 1280);
+    float[] quasi = randomData(linePts);
+    float[] expected = expandRowByRow(quasi, linePts, 1280, GribData.InterpolationMethod.cubic);
+
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    QuasiRegular.setExecutor(exec);
+    try {
+      float[] data =
+          QuasiRegular.convertQuasiGrid(quasi, linePts, -1, linePts.length, GribData.InterpolationMethod.cubic);
+      assertArrayEquals(expected, data, 0.0f);
+    } finally {
+      QuasiRegular.setExecutor(null);
+      exec.shutdown();
+    }
+  }
+
 }
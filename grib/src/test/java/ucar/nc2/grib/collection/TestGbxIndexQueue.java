@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import thredds.filesystem.MFileOS;
+import thredds.inventory.CloseableIterator;
+import thredds.inventory.MFile;
+
+/** Test {@link GbxIndexQueue} returns the indexes in file order, whether or not they are read concurrently. */
+public class TestGbxIndexQueue {
+
+  @Test
+  public void testSerial() throws IOException {
+    assertThat(readAll(20)).isEqualTo(expected(20));
+  }
+
+  @Test
+  public void testConcurrent() throws IOException {
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    int saveMaxIndexesInFlight = GbxIndexQueue.getMaxIndexesInFlight();
+    GbxIndexQueue.setExecutor(exec);
+    GbxIndexQueue.setMaxIndexesInFlight(3);
+    try {
+      assertThat(readAll(20)).isEqualTo(expected(20));
+      assertThat(readAll(0)).isEmpty();
+    } finally {
+      GbxIndexQueue.setExecutor(null);
+      GbxIndexQueue.setMaxIndexesInFlight(saveMaxIndexesInFlight);
+      exec.shutdown();
+    }
+  }
+
+  // later files are faster, so they finish first; every fifth file fails
+  private List<String> readAll(int nfiles) throws IOException {
+    List<MFile> files = new ArrayList<>();
+    for (int i = 0; i < nfiles; i++) {
+      files.add(new MFileOS("file" + i));
+    }
+    GbxIndexQueue.IndexReader<String> reader = mfile -> {
+      int fileno = Integer.parseInt(mfile.getName().substring(4));
+      try {
+        Thread.sleep(nfiles - fileno);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      if (fileno % 5 == 0) {
+        throw new IOException("bad " + mfile.getName());
+      }
+      return "index " + mfile.getName();
+    };
+
+    List<String> result = new ArrayList<>();
+    try (GbxIndexQueue<String> queue = new GbxIndexQueue<>(iterator(files), reader)) {
+      GbxIndexQueue.FileIndex<String> fileIndex;
+      while ((fileIndex = queue.next()) != null) {
+        result.add(fileIndex.error != null ? fileIndex.error.getMessage() : fileIndex.index);
+      }
+    }
+    return result;
+  }
+
+  private List<String> expected(int nfiles) {
+    List<String> result = new ArrayList<>();
+    for (int i = 0; i < nfiles; i++) {
+      result.add(i % 5 == 0 ? "bad file" + i : "index file" + i);
+    }
+    return result;
+  }
+
+  private CloseableIterator<MFile> iterator(List<MFile> files) {
+    Iterator<MFile> iter = files.iterator();
+    return new CloseableIterator<MFile>() {
+      public boolean hasNext() {
+        return iter.hasNext();
+      }
+
+      public MFile next() {
+        return iter.next();
+      }
+
+      public void close() {}
+    };
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Formatter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test {@link GribDataCache} keys records by file and position, and evicts by size. */
+public class TestGribDataCache {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testGetPut() throws IOException {
+    GribDataCache cache = new GribDataCache(1000);
+    GribCollectionImmutable.Record record = new GribCollectionImmutable.Record(0, 100, 0, 16);
+    float[] data = new float[10];
+    try (RandomAccessFile raf1 = open(makeFile(200)); RandomAccessFile raf2 = open(makeFile(200))) {
+      cache.put(raf1, record, data);
+
+      assertThat(cache.get(raf1, new GribCollectionImmutable.Record(3, 100, 0, 16))).isSameInstanceAs(data);
+      assertThat(cache.get(raf2, record)).isNull();
+      assertThat(cache.get(raf1, new GribCollectionImmutable.Record(0, 200, 0, 16))).isNull();
+      assertThat(cache.get(raf1, new GribCollectionImmutable.Record(0, 100, 0, 116))).isNull(); // next field
+      assertThat(cache.getCurrentBytes()).isEqualTo(40);
+      assertThat(cache.getStats().hitCount()).isEqualTo(1);
+      assertThat(cache.getStats().missCount()).isEqualTo(3);
+
+      cache.invalidate(raf1.getLocation());
+      assertThat(cache.get(raf1, record)).isNull();
+    }
+    Formatter f = new Formatter();
+    cache.showStats(f);
+    assertThat(f.toString()).startsWith("GribDataCache nrecords=0");
+  }
+
+  @Test
+  public void testRewrite() throws IOException {
+    GribDataCache cache = new GribDataCache(1000);
+    GribCollectionImmutable.Record record = new GribCollectionImmutable.Record(0, 100, 0, 16);
+    float[] data = new float[10];
+    File file = makeFile(200);
+    try (RandomAccessFile raf = open(file)) {
+      cache.put(raf, record, data);
+    }
+    try (RandomAccessFile raf = open(file)) {
+      assertThat(cache.get(raf, record)).isSameInstanceAs(data);
+    }
+
+    // rewritten with the same length, a different modification time
+    Files.write(file.toPath(), new byte[200]);
+    assertThat(file.setLastModified(file.lastModified() - 10000)).isTrue();
+    try (RandomAccessFile raf = open(file)) {
+      assertThat(cache.get(raf, record)).isNull();
+      cache.put(raf, record, data);
+      assertThat(cache.get(raf, record)).isSameInstanceAs(data);
+    }
+
+    // rewritten with a different length, the same modification time
+    long lastModified = file.lastModified();
+    Files.write(file.toPath(), new byte[300]);
+    assertThat(file.setLastModified(lastModified)).isTrue();
+    try (RandomAccessFile raf = open(file)) {
+      assertThat(cache.get(raf, record)).isNull();
+    }
+  }
+
+  @Test
+  public void testEvict() throws IOException {
+    GribDataCache cache = new GribDataCache(1000);
+    try (RandomAccessFile raf = open(makeFile(200))) {
+      for (int i = 0; i < 10; i++) {
+        cache.put(raf, new GribCollectionImmutable.Record(0, i, 0, 0), new float[100]);
+      }
+    }
+    assertThat(cache.getCurrentBytes()).isAtMost(1000);
+    assertThat(cache.getStats().evictionCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void testGlobalCache() {
+    assertThat(GribDataCache.getGlobalCache()).isNull();
+    GribDataCache.setGlobalCache(1000);
+    try {
+      assertThat(GribDataCache.getGlobalCache().getMaxBytes()).isEqualTo(1000);
+    } finally {
+      GribDataCache.setGlobalCache(0);
+    }
+    assertThat(GribDataCache.getGlobalCache()).isNull();
+  }
+
+  private File makeFile(int length) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[length]);
+    return file;
+  }
+
+  private RandomAccessFile open(File file) throws IOException {
+    return new RandomAccessFile(file.getPath(), "r");
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Test {@link GribDataReader} reading records concurrently gives the same result as reading them serially. */
+public class TestGribDataReaderParallel {
+
+  @Test
+  public void testParallelMatchesSerial() throws IOException {
+    compare("../grib/src/test/data/ofs_atl.grib2");
+    compare("../grib/src/test/data/complex_packing.grib1");
+  }
+
+  private void compare(String filename) throws IOException {
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try (NetcdfFile serial = NetcdfFiles.open(filename); NetcdfFile parallel = NetcdfFiles.open(filename)) {
+      int count = 0;
+      for (Variable v : serial.getVariables()) {
+        if (v.getDataType() != DataType.FLOAT || v.getRank() < 3) {
+          continue;
+        }
+        Array expected = v.read();
+        int saveMaxTasksInFlight = GribDataReader.getMaxTasksInFlight();
+        GribDataReader.setExecutor(exec);
+        GribDataReader.setMaxTasksInFlight(3);
+        Array result;
+        try {
+          result = parallel.findVariable(v.getFullName()).read();
+        } finally {
+          GribDataReader.setExecutor(null);
+          GribDataReader.setMaxTasksInFlight(saveMaxTasksInFlight);
+        }
+        assertThat(result.getShape()).isEqualTo(expected.getShape());
+        assertThat(Arrays.equals((float[]) result.get1DJavaArray(DataType.FLOAT),
+            (float[]) expected.get1DJavaArray(DataType.FLOAT))).isTrue();
+        count++;
+      }
+      assertThat(count).isGreaterThan(0);
+    } finally {
+      exec.shutdown();
+    }
+  }
+}
@@ -8,7 +8,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
 import ucar.ma2.DataType;
+import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFiles;
 import ucar.nc2.Variable;
@@ -29,6 +34,46 @@ public class TestDataTemplate {
     }
   }
 
+  // Tests reading a window of data using template 5.0, which does not unpack the whole grid
+  @Test
+  public void testDrs0Window() throws IOException, InvalidRangeException {
+    final String testfile = "../grib/src/test/data/Eumetsat.VerticalPerspective.grib2";
+    try (NetcdfFile nc = NetcdfFiles.open(testfile)) {
+      Variable var = nc.findVariable("Pixel_scene_type");
+      Array all = var.read();
+      int rank = var.getRank();
+      int[] shape = var.getShape();
+      int nx = shape[rank - 1];
+
+      String[] windows = {"580:590,600:640", "584,632", "0:500:100,3:1200:37"};
+      for (String window : windows) {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < rank - 2; i++) {
+          spec.append("0,");
+        }
+        Section section = new Section(spec + window);
+        Array data = var.read(section);
+        Range yRange = section.getRange(rank - 2);
+        Range xRange = section.getRange(rank - 1);
+        float[] expected = (float[]) all.get1DJavaArray(DataType.FLOAT);
+
+        Index index = data.getIndex();
+        int[] counter = new int[rank];
+        int ycount = 0;
+        for (int y : yRange) {
+          int xcount = 0;
+          for (int x : xRange) {
+            counter[rank - 2] = ycount;
+            counter[rank - 1] = xcount;
+            Assert.assertEquals(window, expected[y * nx + x], data.getFloat(index.set(counter)), 0.0);
+            xcount++;
+          }
+          ycount++;
+        }
+      }
+    }
+  }
+
   // Tests reading data using template 5.2
   @Test
   public void testDrs2() throws IOException {
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Test {@link Grib2CcsdsDecoder}, using streams written here following CCSDS 121.0-B, with each coding option
+ * chosen explicitly.
+ */
+public class TestGrib2CcsdsDecoder {
+  private static final int BLOCK_SIZE = 16;
+  private static final int RSI = 4;
+
+  private enum Option {
+    UNCOMPRESSED, SPLIT, ZERO, SECOND_EXTENSION
+  }
+
+  @Test
+  public void testUncompressed() throws IOException {
+    int[] values = randomValues(12, 200, 4095);
+    check(values, 12, 0, Option.UNCOMPRESSED);
+    check(values, 12, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS, Option.UNCOMPRESSED);
+  }
+
+  @Test
+  public void testSplit() throws IOException {
+    int[] values = randomValues(7, 333, 100);
+    check(values, 16, 0, Option.SPLIT);
+    check(values, 16, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS, Option.SPLIT);
+    check(values, 24, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS | Grib2CcsdsDecoder.AEC_PAD_RSI, Option.SPLIT);
+  }
+
+  @Test
+  public void testZeroBlocks() throws IOException {
+    int[] values = new int[20 * BLOCK_SIZE + 5];
+    Arrays.fill(values, 42);
+    // after the reference, all differences are zero, coded as runs of zero blocks
+    check(values, 8, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS, Option.ZERO);
+    check(values, 8, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS | Grib2CcsdsDecoder.AEC_PAD_RSI, Option.ZERO);
+  }
+
+  @Test
+  public void testSecondExtension() throws IOException {
+    int[] values = randomValues(3, 150, 4);
+    check(values, 8, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS, Option.SECOND_EXTENSION);
+    check(values, 8, 0, Option.SECOND_EXTENSION);
+  }
+
+  @Test
+  public void testSigned() throws IOException {
+    int[] values = randomValues(5, 100, 2000);
+    for (int i = 0; i < values.length; i++) {
+      values[i] -= 1000;
+    }
+    int flags = Grib2CcsdsDecoder.AEC_DATA_SIGNED | Grib2CcsdsDecoder.AEC_DATA_PREPROCESS;
+    check(values, 12, flags, Option.SPLIT);
+    check(values, 12, flags, Option.UNCOMPRESSED);
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    int[] values = randomValues(11, 100, 255);
+    byte[] stream = encode(values, 8, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS, Option.SPLIT);
+    Grib2CcsdsDecoder decoder = new Grib2CcsdsDecoder(8, BLOCK_SIZE, RSI, Grib2CcsdsDecoder.AEC_DATA_PREPROCESS);
+    try {
+      decoder.decode(stream, 0, stream.length / 2, new int[values.length], values.length);
+      fail();
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
+  private int[] randomValues(long seed, int n, int max) {
+    Random random = new Random(seed);
+    int[] values = new int[n];
+    int value = max / 2;
+    for (int i = 0; i < n; i++) {
+      value = Math.max(0, Math.min(max, value + random.nextInt(5) - 2)); // smooth, like a field
+      values[i] = (i % 50 == 17) ? random.nextInt(max + 1) : value;
+    }
+    return values;
+  }
+
+  private void check(int[] values, int nbits, int flags, Option option) throws IOException {
+    byte[] stream = encode(values, nbits, flags, option);
+    int[] result = new int[values.length];
+    new Grib2CcsdsDecoder(nbits, BLOCK_SIZE, RSI, flags).decode(stream, 0, stream.length, result, values.length);
+    assertThat(result).isEqualTo(values);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Encoder, following CCSDS 121.0-B. The option is used where it can code the block.
+
+  private byte[] encode(int[] values, int nbits, int flags, Option option) {
+    boolean signed = (flags & Grib2CcsdsDecoder.AEC_DATA_SIGNED) != 0;
+    boolean preprocess = (flags & Grib2CcsdsDecoder.AEC_DATA_PREPROCESS) != 0;
+    int idLen = (nbits > 16) ? 5 : (nbits > 8) ? 4 : 3;
+    long xmin = signed ? -(1L << (nbits - 1)) : 0;
+    long xmax = signed ? (1L << (nbits - 1)) - 1 : (1L << nbits) - 1;
+
+    // pad the last block with the last value
+    int nblocks = (values.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    long[] x = new long[nblocks * BLOCK_SIZE];
+    for (int i = 0; i < x.length; i++) {
+      x[i] = values[Math.min(i, values.length - 1)];
+    }
+
+    // mapped prediction residuals
+    long[] d = new long[x.length];
+    for (int i = 0; i < x.length; i++) {
+      boolean ref = preprocess && i % (BLOCK_SIZE * RSI) == 0;
+      if (!preprocess || ref) {
+        d[i] = x[i] & ((1L << nbits) - 1);
+      } else {
+        long delta = x[i] - x[i - 1];
+        long theta = Math.min(x[i - 1] - xmin, xmax - x[i - 1]);
+        if (delta >= 0 && delta <= theta) {
+          d[i] = 2 * delta;
+        } else if (delta < 0 && delta >= -theta) {
+          d[i] = -2 * delta - 1;
+        } else {
+          d[i] = theta + Math.abs(delta);
+        }
+      }
+    }
+
+    BitWriter out = new BitWriter();
+    int block = 0;
+    while (block < nblocks) {
+      int blockInRsi = block % RSI;
+      boolean ref = preprocess && blockInRsi == 0;
+      int start = block * BLOCK_SIZE + (ref ? 1 : 0);
+      int end = (block + 1) * BLOCK_SIZE;
+
+      if (option == Option.ZERO && allZero(d, start, end)) {
+        // count the zero blocks to the end of this RSI
+        int nzero = 1;
+        while (blockInRsi + nzero < RSI && block + nzero < nblocks
+            && allZero(d, (block + nzero) * BLOCK_SIZE, (block + nzero + 1) * BLOCK_SIZE)) {
+          nzero++;
+        }
+        out.write(0, idLen);
+        out.write(0, 1);
+        if (ref) {
+          out.write(d[block * BLOCK_SIZE], nbits);
+        }
+        if (blockInRsi + nzero == RSI && nzero > 1) {
+          out.writeFs(4); // remainder of segment
+        } else {
+          out.writeFs((nzero < 5) ? nzero - 1 : nzero);
+        }
+        block += nzero;
+
+      } else if (option == Option.SECOND_EXTENSION && maxValue(d, start, end) < 6) {
+        out.write(0, idLen);
+        out.write(1, 1);
+        if (ref) {
+          out.write(d[block * BLOCK_SIZE], nbits);
+        }
+        for (int i = block * BLOCK_SIZE; i < end; i += 2) {
+          long a = (ref && i == block * BLOCK_SIZE) ? 0 : d[i];
+          long b = d[i + 1];
+          out.writeFs((a + b) * (a + b + 1) / 2 + b);
+        }
+        block++;
+
+      } else if (option == Option.SPLIT && maxValue(d, start, end) < (1L << (nbits - 2))) {
+        int k = Math.max(0, 64 - Long.numberOfLeadingZeros(maxValue(d, start, end)) - 2);
+        out.write(k + 1, idLen);
+        if (ref) {
+          out.write(d[block * BLOCK_SIZE], nbits);
+        }
+        for (int i = start; i < end; i++) {
+          out.writeFs(d[i] >> k);
+        }
+        for (int i = start; i < end; i++) {
+          out.write(d[i] & ((1L << k) - 1), k);
+        }
+        block++;
+
+      } else {
+        out.write((1 << idLen) - 1, idLen);
+        for (int i = block * BLOCK_SIZE; i < end; i++) {
+          out.write(d[i], nbits);
+        }
+        block++;
+      }
+
+      if (block % RSI == 0 && (flags & Grib2CcsdsDecoder.AEC_PAD_RSI) != 0) {
+        out.pad();
+      }
+    }
+    out.pad();
+    return out.toByteArray();
+  }
+
+  private boolean allZero(long[] d, int start, int end) {
+    return maxValue(d, start, end) == 0;
+  }
+
+  private long maxValue(long[] d, int start, int end) {
+    long max = 0;
+    for (int i = start; i < end; i++) {
+      max = Math.max(max, d[i]);
+    }
+    return max;
+  }
+
+  private static class BitWriter extends ByteArrayOutputStream {
+    private int bitBuf;
+    private int nbits;
+
+    void write(long value, int n) {
+      for (int i = n - 1; i >= 0; i--) {
+        writeBit((int) (value >> i) & 1);
+      }
+    }
+
+    void writeFs(long zeros) {
+      for (long i = 0; i < zeros; i++) {
+        writeBit(0);
+      }
+      writeBit(1);
+    }
+
+    void pad() {
+      while (nbits != 0) {
+        writeBit(0);
+      }
+    }
+
+    private void writeBit(int bit) {
+      bitBuf = (bitBuf << 1) | bit;
+      if (++nbits == 8) {
+        write(bitBuf);
+        bitBuf = 0;
+        nbits = 0;
+      }
+    }
+  }
+
+}
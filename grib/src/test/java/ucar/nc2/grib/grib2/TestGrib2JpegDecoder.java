@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Test that {@link Grib2JpegDecoder}s sharing the default parameter list decode the same values. */
+public class TestGrib2JpegDecoder {
+  private static final String testfile = "../grib/src/test/data/pdsScale.pds1.grib2";
+
+  @Test
+  public void testSharedDefaults() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(testfile, "r")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      List<Grib2Record> records = new ArrayList<>();
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      while (scanner.hasNext()) {
+        records.add(scanner.next());
+      }
+      assertThat(records).isNotEmpty();
+
+      for (Grib2Record gr : records) {
+        assertThat(gr.getDataRepresentationSection().getDataTemplate()).isEqualTo(40);
+        Grib2Drs.Type40 drs = (Grib2Drs.Type40) gr.getDataRepresentationSection().getDrs(raf);
+        byte[] section = gr.getDataSection().getBytes(raf);
+        byte[] codeStream = Arrays.copyOfRange(section, 5, section.length);
+
+        Grib2JpegDecoder first = new Grib2JpegDecoder(drs.numberOfBits, false);
+        first.decode(codeStream);
+        Grib2JpegDecoder second = new Grib2JpegDecoder(drs.numberOfBits, false);
+        second.decode(codeStream);
+        assertThat(first.getGdata()).isNotEmpty();
+        assertThat(second.getGdata()).isEqualTo(first.getGdata());
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+/** Test {@link Grib2SectionCache} shares equal sections, and only equal ones. */
+public class TestGrib2SectionCache {
+
+  @Test
+  public void testShare() {
+    Grib2Record gr1 = makeRecord(0, 12, 1);
+    Grib2Record gr2 = makeRecord(1000, 12, 1); // same sections, other position and copies
+    Grib2Record gr3 = makeRecord(2000, 18, 2); // other run, other parameter
+
+    Grib2SectionCache cache = new Grib2SectionCache();
+    cache.share(gr1);
+    cache.share(gr2);
+    cache.share(gr3);
+
+    assertThat(gr2.getId()).isSameInstanceAs(gr1.getId());
+    assertThat(gr2.getGDSsection()).isSameInstanceAs(gr1.getGDSsection());
+    assertThat(gr2.getPDSsection()).isSameInstanceAs(gr1.getPDSsection());
+    assertThat(gr2.getPDS()).isSameInstanceAs(gr1.getPDS());
+    assertThat(gr2.getIs().getStartPos()).isEqualTo(1000);
+
+    assertThat(gr3.getId()).isNotSameInstanceAs(gr1.getId());
+    assertThat(gr3.getGDSsection()).isSameInstanceAs(gr1.getGDSsection());
+    assertThat(gr3.getPDSsection()).isNotSameInstanceAs(gr1.getPDSsection());
+    assertThat(gr3.getReferenceDate().getHourOfDay()).isEqualTo(18);
+    assertThat(gr3.getPDS().getParameterNumber()).isEqualTo(2);
+    assertThat(cache.getNumPds()).isEqualTo(2);
+  }
+
+  private Grib2Record makeRecord(long pos, int runHour, int param) {
+    Grib2SectionIndicator is = new Grib2SectionIndicator(pos, 100, 0);
+    Grib2SectionIdentification ids = new Grib2SectionIdentification(7, 0, 2, 1, 1, 2021, 3, 4, runHour, 0, 0, 0, 1);
+
+    byte[] gds = new byte[72];
+    gds[4] = 3; // section 3, template 3.0
+    byte[] pds = new byte[34];
+    pds[4] = 4; // section 4, template 4.0
+    pds[9] = 0; // parameter category
+    pds[10] = (byte) param; // parameter number
+
+    return new Grib2Record(new byte[0], is, ids, null, new Grib2SectionGridDefinition(gds),
+        new Grib2SectionProductDefinition(pds), new Grib2SectionDataRepresentation(pos + 50, 10, 0),
+        new Grib2SectionBitMap(pos + 60, 255), new Grib2SectionData(pos + 70, 30), false, 0);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.jni.netcdf;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import java.io.IOException;
+import java.util.Formatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.ffi.netcdf.NetcdfClibrary;
+import ucar.nc2.internal.iosp.hdf5.H5iospWriter;
+import ucar.nc2.internal.util.CompareNetcdf2;
+import ucar.nc2.iosp.NetcdfFileFormat;
+import ucar.nc2.write.Nc4ChunkingStrategyGrib;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/** Test that the netCDF C library reads the files written by the pure Java {@link H5iospWriter}. */
+public class TestH5iospWriterJni {
+  private static final int nrecs = 4;
+  private static final int nlat = 30;
+  private static final int nlon = 40;
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Before
+  public void setLibrary() {
+    // Ignore this class's tests if NetCDF-4 isn't present.
+    // We're using @Before because it shows these tests as being ignored.
+    // @BeforeClass shows them as *non-existent*, which is not what we want.
+    Assume.assumeTrue("NetCDF-4 C library not present.", NetcdfClibrary.isLibraryPresent());
+  }
+
+  @After
+  public void reset() {
+    H5iospWriter.setExecutor(null);
+  }
+
+  @Test
+  public void testSerial() throws IOException, InvalidRangeException {
+    doOne(NetcdfFileFormat.NETCDF4);
+  }
+
+  @Test
+  public void testParallel() throws IOException, InvalidRangeException {
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      H5iospWriter.setExecutor(exec);
+      doOne(NetcdfFileFormat.NETCDF4);
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  @Test
+  public void testClassic() throws IOException, InvalidRangeException {
+    doOne(NetcdfFileFormat.NETCDF4_CLASSIC);
+  }
+
+  private void doOne(NetcdfFileFormat format) throws IOException, InvalidRangeException {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder<?> writerb = NetcdfFormatWriter.builder().setLocation(filename).setFormat(format)
+        .setChunker(new Nc4ChunkingStrategyGrib(5, true)).setUseJavaWriter(true);
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("lat", nlat);
+    writerb.addDimension("lon", nlon);
+    writerb.addDimension("strlen", 7);
+    writerb.addAttribute(new Attribute("title", "TestH5iospWriterJni"));
+    writerb.addVariable("time", DataType.DOUBLE, "time").addAttribute(new Attribute("units", "hours since 2000-01-01"));
+    writerb.addVariable("temp", DataType.FLOAT, "time lat lon").addAttribute(new Attribute("_FillValue", -999f));
+    writerb.addVariable("ival", DataType.INT, "lat lon");
+    writerb.addVariable("names", DataType.CHAR, "lat strlen");
+    if (format == NetcdfFileFormat.NETCDF4) {
+      Group.Builder nested = Group.builder().setName("nested").setParentGroup(writerb.getRootGroup());
+      nested.addDimension(new Dimension("z", 3));
+      nested.addVariable(Variable.builder().setName("zval").setDataType(DataType.UINT).setParentGroupBuilder(nested)
+          .setDimensionsByName("z lat"));
+      writerb.getRootGroup().addGroup(nested);
+    }
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("time", Array.makeFromJavaArray(new double[] {0, 6, 12, 18}));
+      for (int rec : new int[] {0, 1, 3}) { // record 2 is left to the fill value
+        writer.write(writer.findVariable("temp"), new int[] {rec, 0, 0},
+            Array.factory(DataType.FLOAT, new int[] {1, nlat, nlon}, makeFloats(nlat * nlon, rec * 10000)));
+      }
+      int[] ivals = new int[nlat * nlon];
+      for (int i = 0; i < ivals.length; i++) {
+        ivals[i] = i - 600;
+      }
+      writer.write("ival", Array.factory(DataType.INT, new int[] {nlat, nlon}, ivals));
+      ArrayChar names = new ArrayChar.D2(nlat, 7);
+      for (int i = 0; i < nlat; i++) {
+        names.setString(i, "name" + i);
+      }
+      writer.write("names", names);
+      if (format == NetcdfFileFormat.NETCDF4) {
+        int[] zvals = new int[3 * nlat];
+        for (int i = 0; i < zvals.length; i++) {
+          zvals[i] = i;
+        }
+        writer.write("nested/zval", Array.factory(DataType.UINT, new int[] {3, nlat}, zvals));
+      }
+    }
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(filename); NetcdfFile jni = TestNc4reader.openJni(filename)) {
+      assertThat(jni.getRootGroup().findAttributeString("title", null)).isEqualTo("TestH5iospWriterJni");
+      Dimension time = jni.findDimension("time");
+      assertThat(time.isUnlimited()).isTrue();
+      assertThat(time.getLength()).isEqualTo(nrecs);
+
+      float[] tvals = (float[]) jni.findVariable("temp").read().get1DJavaArray(DataType.FLOAT);
+      assertThat(tvals).hasLength(nrecs * nlat * nlon);
+      for (int rec = 0; rec < nrecs; rec++) {
+        for (int i = 0; i < nlat * nlon; i++) {
+          assertThat(tvals[rec * nlat * nlon + i]).isEqualTo((rec == 2) ? -999f : rec * 10000 + i);
+        }
+      }
+      assertThat(((ArrayChar) jni.findVariable("names").read()).getString(12)).isEqualTo("name12");
+
+      Formatter f = new Formatter();
+      CompareNetcdf2 tc = new CompareNetcdf2(f, false, false, true);
+      boolean ok = tc.compare(ncfile, jni, new CompareNetcdf2.Netcdf4ObjectFilter());
+      assertWithMessage(f.toString()).that(ok).isTrue();
+    }
+  }
+
+  private float[] makeFloats(int n, int start) {
+    float[] result = new float[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = start + i;
+    }
+    return result;
+  }
+}